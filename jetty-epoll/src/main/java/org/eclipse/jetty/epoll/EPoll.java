@@ -0,0 +1,287 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.epoll;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import com.kenai.jffi.MemoryIO;
+import jnr.ffi.LibraryLoader;
+import jnr.ffi.Platform;
+import jnr.ffi.annotations.In;
+import jnr.ffi.annotations.Out;
+import jnr.ffi.types.intptr_t;
+import jnr.ffi.types.size_t;
+import jnr.ffi.types.ssize_t;
+
+/**
+ * <p>Bindings to the Linux socket and epoll system calls.</p>
+ * <p>Direct buffers and native structures are passed by address, so that the
+ * calls made by the select loop and by the endpoints neither copy nor allocate.</p>
+ */
+final class EPoll
+{
+    static final int AF_INET = 2;
+    static final int AF_INET6 = 10;
+    static final int SOCK_STREAM = 1;
+    static final int SOCK_NONBLOCK = 0x800;
+    static final int SOCK_CLOEXEC = 0x80000;
+    static final int SOL_SOCKET = 1;
+    static final int SO_REUSEADDR = 2;
+    static final int IPPROTO_TCP = 6;
+    static final int TCP_NODELAY = 1;
+    static final int IPPROTO_IPV6 = 41;
+    static final int IPV6_V6ONLY = 26;
+    static final int SHUT_WR = 1;
+    static final int SHUT_RDWR = 2;
+
+    static final int EPOLL_CLOEXEC = 0x80000;
+    static final int EPOLL_CTL_ADD = 1;
+    static final int EPOLLIN = 0x001;
+    static final int EPOLLOUT = 0x004;
+    static final int EPOLLERR = 0x008;
+    static final int EPOLLHUP = 0x010;
+    static final int EPOLLRDHUP = 0x2000;
+    static final int EPOLLET = 1 << 31;
+    static final int EFD_NONBLOCK = 0x800;
+    static final int EFD_CLOEXEC = 0x80000;
+
+    static final int EINTR = 4;
+    static final int EAGAIN = 11;
+    static final int ECONNABORTED = 103;
+
+    /**
+     * The size of a {@code struct epoll_event}, which is packed on x86_64 only.
+     */
+    static final int EVENT_SIZE;
+    /**
+     * The offset of the data of a {@code struct epoll_event}.
+     */
+    static final int EVENT_DATA_OFFSET;
+    /**
+     * The size of a {@code struct iovec}.
+     */
+    static final int IOVEC_SIZE = 16;
+
+    static final LibC LIBC;
+    private static final jnr.ffi.Runtime RUNTIME;
+    private static final MemoryIO MEMORY;
+    private static final Throwable UNAVAILABLE;
+
+    static
+    {
+        Platform platform = Platform.getNativePlatform();
+        boolean packed = platform.getCPU() == Platform.CPU.X86_64;
+        EVENT_SIZE = packed ? 12 : 16;
+        EVENT_DATA_OFFSET = packed ? 4 : 8;
+
+        LibC libc = null;
+        jnr.ffi.Runtime runtime = null;
+        MemoryIO memory = null;
+        Throwable unavailable = null;
+        try
+        {
+            if (platform.getOS() != Platform.OS.LINUX || platform.addressSize() != 64)
+                throw new UnsupportedOperationException("epoll requires 64 bit Linux, not " + platform.getName());
+            libc = LibraryLoader.create(LibC.class).load("c");
+            runtime = jnr.ffi.Runtime.getRuntime(libc);
+            memory = MemoryIO.getInstance();
+        }
+        catch (Throwable x)
+        {
+            libc = null;
+            unavailable = x;
+        }
+        LIBC = libc;
+        RUNTIME = runtime;
+        MEMORY = memory;
+        UNAVAILABLE = unavailable;
+    }
+
+    private EPoll()
+    {
+    }
+
+    /**
+     * @return whether epoll can be used on this platform
+     */
+    static boolean isAvailable()
+    {
+        return UNAVAILABLE == null;
+    }
+
+    /**
+     * @throws IOException if epoll cannot be used on this platform
+     */
+    static void ensureAvailable() throws IOException
+    {
+        if (UNAVAILABLE != null)
+            throw new IOException("epoll is not available", UNAVAILABLE);
+    }
+
+    /**
+     * @return the error number of the last failed call made by this thread
+     */
+    static int errno()
+    {
+        return RUNTIME.getLastError();
+    }
+
+    /**
+     * @param operation the name of the failed call
+     * @param errno the error number of the failed call
+     * @return an exception describing the failure
+     */
+    static IOException newIOException(String operation, int errno)
+    {
+        return new IOException(operation + " failed: " + LIBC.strerror(errno) + " (errno " + errno + ")");
+    }
+
+    /**
+     * @param buffer a direct buffer
+     * @return the native address of the start of the buffer, ignoring its position
+     */
+    static long address(ByteBuffer buffer)
+    {
+        return MEMORY.getDirectBufferAddress(buffer);
+    }
+
+    /**
+     * @param size the size of the structure
+     * @return a direct buffer in native byte order to hold a native structure
+     */
+    static ByteBuffer allocate(int size)
+    {
+        return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * @param fd the socket
+     * @param level the option level
+     * @param option the option
+     * @param value the value of the option
+     * @throws IOException if the option cannot be set
+     */
+    static void setOption(int fd, int level, int option, int value) throws IOException
+    {
+        if (LIBC.setsockopt(fd, level, option, new int[]{value}, 4) < 0)
+            throw newIOException("setsockopt", errno());
+    }
+
+    /**
+     * @param address the socket address
+     * @return the {@code struct sockaddr_in} or {@code struct sockaddr_in6} for the address
+     */
+    static byte[] toSockAddr(InetSocketAddress address)
+    {
+        byte[] ip = address.getAddress().getAddress();
+        ByteBuffer sockaddr = ByteBuffer.allocate(ip.length == 4 ? 16 : 28);
+        sockaddr.order(ByteOrder.nativeOrder()).putShort((short)(ip.length == 4 ? AF_INET : AF_INET6));
+        sockaddr.order(ByteOrder.BIG_ENDIAN).putShort((short)address.getPort());
+        if (ip.length != 4)
+            sockaddr.putInt(0);
+        sockaddr.put(ip);
+        return sockaddr.array();
+    }
+
+    /**
+     * @param sockaddr a {@code struct sockaddr_in} or {@code struct sockaddr_in6}
+     * @return the socket address, or null if the address family is not supported
+     * @throws UnknownHostException if the address is malformed
+     */
+    static InetSocketAddress fromSockAddr(byte[] sockaddr) throws UnknownHostException
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(sockaddr);
+        int family = buffer.order(ByteOrder.nativeOrder()).getShort();
+        int port = buffer.order(ByteOrder.BIG_ENDIAN).getShort() & 0xFFFF;
+        byte[] ip;
+        switch (family)
+        {
+            case AF_INET:
+                ip = new byte[4];
+                buffer.get(ip);
+                break;
+            case AF_INET6:
+                ip = new byte[16];
+                buffer.getInt();
+                buffer.get(ip);
+                break;
+            default:
+                return null;
+        }
+        // An IPv4-mapped IPv6 address is returned as an IPv4 address.
+        return new InetSocketAddress(InetAddress.getByAddress(ip), port);
+    }
+
+    /**
+     * @param fd the socket
+     * @return the local address of the socket
+     * @throws IOException if the address cannot be obtained
+     */
+    static InetSocketAddress getLocalAddress(int fd) throws IOException
+    {
+        byte[] sockaddr = new byte[28];
+        if (LIBC.getsockname(fd, sockaddr, new int[]{sockaddr.length}) < 0)
+            throw newIOException("getsockname", errno());
+        return fromSockAddr(sockaddr);
+    }
+
+    /**
+     * The system calls, as declared by the C library.
+     * Public, as it is implemented by a class generated in another class loader.
+     */
+    public interface LibC
+    {
+        int socket(int domain, int type, int protocol);
+
+        int setsockopt(int fd, int level, int option, @In int[] value, int length);
+
+        int bind(int fd, @In byte[] address, int length);
+
+        int listen(int fd, int backlog);
+
+        int accept4(int fd, @Out byte[] address, @In @Out int[] length, int flags);
+
+        int getsockname(int fd, @Out byte[] address, @In @Out int[] length);
+
+        @ssize_t long read(int fd, @intptr_t long buffer, @size_t long length);
+
+        @ssize_t long write(int fd, @intptr_t long buffer, @size_t long length);
+
+        @ssize_t long writev(int fd, @intptr_t long iov, int count);
+
+        int shutdown(int fd, int how);
+
+        int close(int fd);
+
+        int epoll_create1(int flags);
+
+        int epoll_ctl(int epfd, int op, int fd, @intptr_t long event);
+
+        int epoll_wait(int epfd, @intptr_t long events, int maxEvents, int timeout);
+
+        int eventfd(int value, int flags);
+
+        String strerror(int errno);
+    }
+}
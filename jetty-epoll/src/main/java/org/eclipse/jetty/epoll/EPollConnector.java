@@ -0,0 +1,476 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.epoll;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.concurrent.Executor;
+
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.server.AbstractConnectionFactory;
+import org.eclipse.jetty.server.AbstractNetworkConnector;
+import org.eclipse.jetty.server.ConnectionFactory;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.Name;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.Scheduler;
+
+/**
+ * <p>A server connector for Linux that uses epoll and socket system calls directly,
+ * as an alternative to the NIO {@link org.eclipse.jetty.server.ServerConnector}.</p>
+ * <p>Each {@link EPollSelector} registers its sockets once, edge-triggered, for both
+ * reads and writes, so that the interest changes of its {@link EPollEndPoint}s need
+ * no system call, and runs the registrations submitted by other threads in a batch
+ * before each {@code epoll_wait}.</p>
+ * <p>The listening socket is registered with the first selector, which accepts
+ * connections and distributes them among all the selectors; the connector has
+ * no acceptor threads.</p>
+ * <p>The connector is only available on 64 bit Linux; starting it elsewhere fails.</p>
+ */
+@ManagedObject("HTTP connector using epoll")
+public class EPollConnector extends AbstractNetworkConnector
+{
+    private static final Logger LOG = Log.getLogger(EPollConnector.class);
+    private static final int MAX_EVENTS = 1024;
+
+    private final EPollSelector[] _selectors;
+    private final Acceptor _acceptor = new Acceptor();
+    private long _selectorIndex;
+    private volatile int _fd = -1;
+    private volatile int _localPort = -1;
+    private volatile int _acceptQueueSize = 0;
+    private volatile boolean _reuseAddress = true;
+
+    /* ------------------------------------------------------------ */
+    /** HTTP Server Connection.
+     * <p>Construct an EPollConnector with a private instance of {@link HttpConnectionFactory} as the only factory.</p>
+     * @param server The {@link Server} this connector will accept connection for.
+     */
+    public EPollConnector(@Name("server") Server server)
+    {
+        this(server,null,null,null,-1,new HttpConnectionFactory());
+    }
+
+    /* ------------------------------------------------------------ */
+    /** HTTP Server Connection.
+     * <p>Construct an EPollConnector with a private instance of {@link HttpConnectionFactory} as the only factory.</p>
+     * @param server The {@link Server} this connector will accept connection for.
+     * @param selectors
+     *          the number of selector threads, or &lt;=0 for a default value. Selectors notice and schedule established connection that can make IO progress.
+     */
+    public EPollConnector(
+        @Name("server") Server server,
+        @Name("selectors") int selectors)
+    {
+        this(server,null,null,null,selectors,new HttpConnectionFactory());
+    }
+
+    /* ------------------------------------------------------------ */
+    /** Generic Server Connection with default configuration.
+     * <p>Construct an EPollConnector with the passed Connection factories.</p>
+     * @param server The {@link Server} this connector will accept connection for.
+     * @param factories Zero or more {@link ConnectionFactory} instances used to create and configure connections.
+     */
+    public EPollConnector(
+        @Name("server") Server server,
+        @Name("factories") ConnectionFactory... factories)
+    {
+        this(server,null,null,null,-1,factories);
+    }
+
+    /* ------------------------------------------------------------ */
+    /** HTTP Server Connection.
+     * <p>Construct an EPollConnector with a private instance of {@link HttpConnectionFactory} as the primary protocol</p>.
+     * @param server The {@link Server} this connector will accept connection for.
+     * @param sslContextFactory If non null, then a {@link SslConnectionFactory} is instantiated and prepended to the
+     * list of HTTP Connection Factory.
+     */
+    public EPollConnector(
+        @Name("server") Server server,
+        @Name("sslContextFactory") SslContextFactory sslContextFactory)
+    {
+        this(server,null,null,null,-1,AbstractConnectionFactory.getFactories(sslContextFactory,new HttpConnectionFactory()));
+    }
+
+    /** Generic Server Connection.
+     * @param server
+     *          The server this connector will be accept connection for.
+     * @param executor
+     *          An executor used to run tasks for handling requests and selectors.
+     *          If null then use the servers executor
+     * @param scheduler
+     *          A scheduler used to schedule timeouts. If null then use the servers scheduler
+     * @param bufferPool
+     *          A ByteBuffer pool used to allocate buffers.  If null then create a private pool with default configuration.
+     * @param selectors
+     *          the number of selector threads, or &lt;=0 for a default value. Selectors notice and schedule established connection that can make IO progress.
+     * @param factories
+     *          Zero or more {@link ConnectionFactory} instances used to create and configure connections.
+     */
+    public EPollConnector(
+        @Name("server") Server server,
+        @Name("executor") Executor executor,
+        @Name("scheduler") Scheduler scheduler,
+        @Name("bufferPool") ByteBufferPool bufferPool,
+        @Name("selectors") int selectors,
+        @Name("factories") ConnectionFactory... factories)
+    {
+        super(server,executor,scheduler,bufferPool,0,factories);
+        if (selectors<=0)
+            selectors=Math.max(1,(Runtime.getRuntime().availableProcessors()+1)/2);
+        _selectors=new EPollSelector[selectors];
+        for (int i=0;i<selectors;i++)
+        {
+            _selectors[i]=new EPollSelector(this,i,MAX_EVENTS);
+            addBean(_selectors[i]);
+        }
+    }
+
+    /**
+     * @return the number of selectors
+     */
+    @ManagedAttribute("The number of selectors")
+    public int getSelectorCount()
+    {
+        return _selectors.length;
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        super.doStart();
+
+        for (EPollSelector selector : _selectors)
+            getExecutor().execute(selector);
+
+        final int fd=_fd;
+        _selectors[0].submit(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    _selectors[0].register(fd,EPoll.EPOLLIN|EPoll.EPOLLET,_acceptor);
+                }
+                catch (IOException x)
+                {
+                    LOG.warn(x);
+                }
+            }
+        });
+    }
+
+    @Override
+    public boolean isOpen()
+    {
+        return _fd>=0;
+    }
+
+    @Override
+    public void open() throws IOException
+    {
+        if (_fd>=0)
+            return;
+
+        EPoll.ensureAvailable();
+
+        String host=getHost();
+        InetSocketAddress bindAddress;
+        int fd;
+        if (host==null || host.isEmpty() || "0.0.0.0".equals(host))
+        {
+            // Listen on IPv4 and IPv6 when the system supports IPv6.
+            fd=EPoll.LIBC.socket(EPoll.AF_INET6,EPoll.SOCK_STREAM|EPoll.SOCK_NONBLOCK|EPoll.SOCK_CLOEXEC,0);
+            if (fd>=0)
+            {
+                bindAddress=new InetSocketAddress(InetAddress.getByName("::"),getPort());
+                try
+                {
+                    EPoll.setOption(fd,EPoll.IPPROTO_IPV6,EPoll.IPV6_V6ONLY,0);
+                }
+                catch (IOException x)
+                {
+                    EPoll.LIBC.close(fd);
+                    throw x;
+                }
+            }
+            else
+            {
+                bindAddress=new InetSocketAddress(InetAddress.getByName("0.0.0.0"),getPort());
+            }
+        }
+        else
+        {
+            bindAddress=new InetSocketAddress(InetAddress.getByName(host),getPort());
+            fd=-1;
+        }
+
+        if (fd<0)
+        {
+            int family=bindAddress.getAddress().getAddress().length==4?EPoll.AF_INET:EPoll.AF_INET6;
+            fd=EPoll.LIBC.socket(family,EPoll.SOCK_STREAM|EPoll.SOCK_NONBLOCK|EPoll.SOCK_CLOEXEC,0);
+            if (fd<0)
+                throw EPoll.newIOException("socket",EPoll.errno());
+        }
+
+        try
+        {
+            if (getReuseAddress())
+                EPoll.setOption(fd,EPoll.SOL_SOCKET,EPoll.SO_REUSEADDR,1);
+
+            byte[] sockaddr=EPoll.toSockAddr(bindAddress);
+            if (EPoll.LIBC.bind(fd,sockaddr,sockaddr.length)<0)
+            {
+                BindException failure=new BindException("Failed to bind to "+bindAddress);
+                failure.initCause(EPoll.newIOException("bind",EPoll.errno()));
+                throw failure;
+            }
+
+            if (EPoll.LIBC.listen(fd,getAcceptQueueSize()>0?getAcceptQueueSize():50)<0)
+                throw EPoll.newIOException("listen",EPoll.errno());
+
+            _localPort=EPoll.getLocalAddress(fd).getPort();
+            if (_localPort<=0)
+                throw new IOException("Server socket not bound");
+        }
+        catch (IOException x)
+        {
+            EPoll.LIBC.close(fd);
+            throw x;
+        }
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("opened fd={} on {}",fd,bindAddress);
+        _fd=fd;
+    }
+
+    @Override
+    public void close()
+    {
+        final int fd=_fd;
+        _fd=-1;
+        if (fd>=0)
+        {
+            // Wake up the acceptor, if it is waiting for connections.
+            EPoll.LIBC.shutdown(fd,EPoll.SHUT_RDWR);
+
+            final EPollSelector selector=_selectors[0];
+            if (selector.isRunning())
+            {
+                // Closes the socket in the selector thread, so that it
+                // cannot be reused while the acceptor still uses it.
+                selector.submit(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        selector.unregister(fd,_acceptor);
+                        EPoll.LIBC.close(fd);
+                    }
+                });
+            }
+            else
+            {
+                EPoll.LIBC.close(fd);
+            }
+        }
+        _localPort=-2;
+        super.close();
+    }
+
+    @Override
+    protected void accept(int acceptorID) throws IOException
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    protected void accepted(int fd, InetSocketAddress remote) throws IOException
+    {
+        EPoll.setOption(fd,EPoll.IPPROTO_TCP,EPoll.TCP_NODELAY,1);
+        InetSocketAddress local=EPoll.getLocalAddress(fd);
+        chooseSelector().accept(fd,local,remote);
+    }
+
+    private EPollSelector chooseSelector()
+    {
+        // Only the thread of the first selector accepts connections.
+        return _selectors[(int)(_selectorIndex++ % _selectors.length)];
+    }
+
+    @Override
+    public int getLocalPort()
+    {
+        return _localPort;
+    }
+
+    @Override
+    public Object getTransport()
+    {
+        return _fd;
+    }
+
+    protected EPollEndPoint newEndPoint(int fd, EPollSelector selector, InetSocketAddress local, InetSocketAddress remote) throws IOException
+    {
+        EPollEndPoint endPoint=new EPollEndPoint(fd,selector,local,remote,getScheduler());
+        endPoint.setIdleTimeout(getIdleTimeout());
+        return endPoint;
+    }
+
+    Connection newConnection(EndPoint endPoint) throws IOException
+    {
+        return getDefaultConnectionFactory().newConnection(this,endPoint);
+    }
+
+    void endPointOpened(EndPoint endPoint)
+    {
+        endPoint.onOpen();
+        onEndPointOpened(endPoint);
+    }
+
+    void endPointClosed(EndPoint endPoint)
+    {
+        onEndPointClosed(endPoint);
+    }
+
+    void connectionOpened(Connection connection)
+    {
+        try
+        {
+            connection.onOpen();
+        }
+        catch (Throwable x)
+        {
+            if (isRunning())
+                LOG.warn("Exception while notifying connection " + connection, x);
+            else
+                LOG.debug("Exception while notifying connection " + connection, x);
+        }
+    }
+
+    void connectionClosed(Connection connection)
+    {
+        try
+        {
+            connection.onClose();
+        }
+        catch (Throwable x)
+        {
+            LOG.debug("Exception while notifying connection " + connection, x);
+        }
+    }
+
+    /**
+     * @return the accept queue size
+     */
+    @ManagedAttribute("Accept Queue size")
+    public int getAcceptQueueSize()
+    {
+        return _acceptQueueSize;
+    }
+
+    /**
+     * @param acceptQueueSize the accept queue size (also known as accept backlog)
+     */
+    public void setAcceptQueueSize(int acceptQueueSize)
+    {
+        _acceptQueueSize = acceptQueueSize;
+    }
+
+    /**
+     * @return whether the server socket reuses addresses
+     * @see ServerSocket#getReuseAddress()
+     */
+    public boolean getReuseAddress()
+    {
+        return _reuseAddress;
+    }
+
+    /**
+     * @param reuseAddress whether the server socket reuses addresses
+     * @see ServerSocket#setReuseAddress(boolean)
+     */
+    public void setReuseAddress(boolean reuseAddress)
+    {
+        _reuseAddress = reuseAddress;
+    }
+
+    /**
+     * Accepts the connections of the listening socket, in the thread of the first selector.
+     */
+    private class Acceptor implements EPollSelector.Selectable
+    {
+        private final byte[] _sockaddr = new byte[28];
+        private final int[] _length = new int[1];
+
+        @Override
+        public Runnable onSelected(int events)
+        {
+            // Edge-triggered, so accept until there is no pending connection.
+            while (true)
+            {
+                int fd=_fd;
+                if (fd<0)
+                    return null;
+
+                _length[0]=_sockaddr.length;
+                int accepted=EPoll.LIBC.accept4(fd,_sockaddr,_length,EPoll.SOCK_NONBLOCK|EPoll.SOCK_CLOEXEC);
+                if (accepted<0)
+                {
+                    int errno=EPoll.errno();
+                    if (errno==EPoll.EINTR || errno==EPoll.ECONNABORTED)
+                        continue;
+                    if (errno!=EPoll.EAGAIN && isAccepting())
+                        LOG.warn(EPoll.newIOException("accept4",errno));
+                    return null;
+                }
+
+                try
+                {
+                    InetSocketAddress remote=EPoll.fromSockAddr(_sockaddr);
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("accepted fd={} from {}",accepted,remote);
+                    accepted(accepted,remote);
+                }
+                catch (Throwable x)
+                {
+                    LOG.warn(x);
+                    EPoll.LIBC.close(accepted);
+                }
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x{fd=%d}",getClass().getSimpleName(),hashCode(),_fd);
+        }
+    }
+}
@@ -0,0 +1,575 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.epoll;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.io.AbstractEndPoint;
+import org.eclipse.jetty.io.EofException;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.thread.ExecutionStrategy;
+import org.eclipse.jetty.util.thread.Locker;
+import org.eclipse.jetty.util.thread.Scheduler;
+
+/**
+ * <p>An {@link org.eclipse.jetty.io.EndPoint} that reads and writes a socket with
+ * system calls, notified by an {@link EPollSelector}.</p>
+ * <p>The socket is registered edge-triggered, so epoll reports a read or write event
+ * only when the socket becomes readable or writable. The endpoint remembers such an
+ * edge until a read or write is attempted, so that an interest registered after the
+ * edge is satisfied at once, and otherwise waits for the next edge. Changes of
+ * interest therefore never call into the selector or the kernel.</p>
+ * <p>The descriptor is closed only when no read or write is in progress, so that
+ * it cannot be reused by another socket while a concurrent call still refers to it.</p>
+ */
+public class EPollEndPoint extends AbstractEndPoint implements EPollSelector.Selectable
+{
+    private static final Logger LOG = Log.getLogger(EPollEndPoint.class);
+    /**
+     * The maximum number of buffers written by a single {@code writev}.
+     */
+    private static final int MAX_GATHER = 64;
+    /**
+     * The size of the direct buffer that heap buffers are copied to and from,
+     * as the system calls can only read and write native memory.
+     */
+    private static final int STAGING_SIZE = 64 * 1024;
+    private static final ThreadLocal<ByteBuffer> __iovec = new ThreadLocal<ByteBuffer>()
+    {
+        @Override
+        protected ByteBuffer initialValue()
+        {
+            return EPoll.allocate(MAX_GATHER * EPoll.IOVEC_SIZE);
+        }
+    };
+    private static final ThreadLocal<ByteBuffer> __staging = new ThreadLocal<ByteBuffer>()
+    {
+        @Override
+        protected ByteBuffer initialValue()
+        {
+            return EPoll.allocate(STAGING_SIZE);
+        }
+    };
+
+    private final Locker _locker = new Locker();
+    /**
+     * One reference for the endpoint being open, plus one for each read or write in progress.
+     */
+    private final AtomicInteger _references = new AtomicInteger(1);
+    private final int _fd;
+    private final EPollSelector _selector;
+    private final InetSocketAddress _local;
+    private final InetSocketAddress _remote;
+
+    /**
+     * Whether the socket may be readable, that is whether a read edge has been
+     * reported or data has been read since the last read that found no data.
+     */
+    private volatile boolean _readable;
+    /**
+     * Whether the socket may be writable, that is whether a write edge has been
+     * reported or data has been written since the last incomplete write.
+     */
+    private volatile boolean _writable;
+    private boolean _fillInterested;
+    private boolean _flushInterested;
+
+    private abstract class RunnableTask implements ExecutionStrategy.Task, EPollSelector.Product
+    {
+        final String _operation;
+
+        RunnableTask(String op)
+        {
+            _operation=op;
+        }
+
+        @Override
+        public String toString()
+        {
+            return EPollEndPoint.this.toString()+":"+_operation;
+        }
+    }
+
+    private final Runnable _runFillable = new RunnableTask("runFillable")
+    {
+        @Override
+        public boolean isNonBlocking()
+        {
+            return getFillInterest().isCallbackNonBlocking();
+        }
+
+        @Override
+        public void run()
+        {
+            getFillInterest().fillable();
+        }
+    };
+
+    private final Runnable _runCompleteWrite = new RunnableTask("runCompleteWrite")
+    {
+        @Override
+        public boolean isNonBlocking()
+        {
+            return getWriteFlusher().isCallbackNonBlocking();
+        }
+
+        @Override
+        public void run()
+        {
+            getWriteFlusher().completeWrite();
+        }
+    };
+
+    private final Runnable _runFillableCompleteWrite = new RunnableTask("runFillableCompleteWrite")
+    {
+        @Override
+        public boolean isNonBlocking()
+        {
+            return getFillInterest().isCallbackNonBlocking() && getWriteFlusher().isCallbackNonBlocking();
+        }
+
+        @Override
+        public void run()
+        {
+            getFillInterest().fillable();
+            getWriteFlusher().completeWrite();
+        }
+    };
+
+    public EPollEndPoint(int fd, EPollSelector selector, InetSocketAddress local, InetSocketAddress remote, Scheduler scheduler)
+    {
+        super(scheduler);
+        _fd=fd;
+        _selector=selector;
+        _local=local;
+        _remote=remote;
+    }
+
+    /**
+     * @return the file descriptor of the socket
+     */
+    public int getFileDescriptor()
+    {
+        return _fd;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress()
+    {
+        return _local;
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress()
+    {
+        return _remote;
+    }
+
+    @Override
+    public Object getTransport()
+    {
+        return _fd;
+    }
+
+    @Override
+    public boolean isOptimizedForDirectBuffers()
+    {
+        return true;
+    }
+
+    private boolean acquire()
+    {
+        while (true)
+        {
+            int references = _references.get();
+            if (references == 0)
+                return false;
+            if (_references.compareAndSet(references, references + 1))
+                return true;
+        }
+    }
+
+    private void release()
+    {
+        if (_references.decrementAndGet() == 0)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("close fd={} {}", _fd, this);
+            if (EPoll.LIBC.close(_fd) < 0)
+                LOG.debug(EPoll.newIOException("close", EPoll.errno()));
+        }
+    }
+
+    @Override
+    protected void doShutdownOutput()
+    {
+        if (acquire())
+        {
+            try
+            {
+                if (EPoll.LIBC.shutdown(_fd, EPoll.SHUT_WR) < 0)
+                    LOG.debug(EPoll.newIOException("shutdown", EPoll.errno()));
+            }
+            finally
+            {
+                release();
+            }
+        }
+    }
+
+    @Override
+    public void doClose()
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("doClose {}", this);
+        try
+        {
+            // Releases the reference of the open endpoint.
+            release();
+        }
+        finally
+        {
+            super.doClose();
+        }
+    }
+
+    @Override
+    public void onClose()
+    {
+        try
+        {
+            super.onClose();
+        }
+        finally
+        {
+            _selector.onClose(this);
+        }
+    }
+
+    @Override
+    public int fill(ByteBuffer buffer) throws IOException
+    {
+        if (isInputShutdown())
+            return -1;
+        if (!acquire())
+            return -1;
+
+        int pos=BufferUtil.flipToFill(buffer);
+        try
+        {
+            int space=buffer.remaining();
+            if (space==0)
+                return 0;
+
+            // Cleared before reading, so that a read edge reported
+            // after a read that finds no data cannot be lost.
+            _readable=false;
+            ByteBuffer staging=buffer.isDirect()?null:__staging.get();
+            long filled=staging==null
+                    ?EPoll.LIBC.read(_fd,EPoll.address(buffer)+buffer.position(),space)
+                    :EPoll.LIBC.read(_fd,EPoll.address(staging),Math.min(space,STAGING_SIZE));
+            int errno=filled<0?EPoll.errno():0;
+
+            if (LOG.isDebugEnabled()) // Avoid boxing of variable 'filled'
+                LOG.debug("filled {} {}", filled, this);
+
+            if (filled>0)
+            {
+                // There may be more data, but no edge will tell.
+                _readable=true;
+                if (staging==null)
+                {
+                    buffer.position(buffer.position()+(int)filled);
+                }
+                else
+                {
+                    staging.clear();
+                    staging.limit((int)filled);
+                    buffer.put(staging);
+                }
+                notIdle();
+                return (int)filled;
+            }
+
+            if (filled==0)
+            {
+                shutdownInput();
+                return -1;
+            }
+
+            if (errno==EPoll.EAGAIN)
+                return 0;
+
+            if (errno==EPoll.EINTR)
+            {
+                _readable=true;
+                return 0;
+            }
+
+            LOG.debug(EPoll.newIOException("read", errno));
+            shutdownInput();
+            return -1;
+        }
+        finally
+        {
+            BufferUtil.flipToFlush(buffer,pos);
+            release();
+        }
+    }
+
+    @Override
+    public boolean flush(ByteBuffer... buffers) throws IOException
+    {
+        if (!acquire())
+            throw new EofException("Closed");
+
+        long flushed=0;
+        boolean complete;
+        try
+        {
+            // Cleared before writing, so that a write edge reported
+            // after an incomplete write cannot be lost.
+            _writable=false;
+            // Write until the socket would block, as only then
+            // is a write edge reported once it can be written.
+            while (true)
+            {
+                complete=isEmpty(buffers);
+                if (complete)
+                    break;
+                long written=gather(buffers);
+                if (written<0)
+                    break;
+                flushed+=written;
+            }
+            if (LOG.isDebugEnabled())
+                LOG.debug("flushed {} {}", flushed, this);
+        }
+        finally
+        {
+            release();
+        }
+
+        if (flushed>0)
+            notIdle();
+
+        if (complete)
+            _writable=true;
+        return complete;
+    }
+
+    private boolean isEmpty(ByteBuffer[] buffers)
+    {
+        for (ByteBuffer b : buffers)
+            if (!BufferUtil.isEmpty(b))
+                return false;
+        return true;
+    }
+
+    /**
+     * <p>Writes the buffers with a single system call, copying the
+     * heap buffers to a direct buffer, as NIO channels do.</p>
+     *
+     * @param buffers the buffers to write
+     * @return the number of bytes written, or -1 if the socket would block
+     * @throws IOException if the buffers cannot be written
+     */
+    private long gather(ByteBuffer[] buffers) throws IOException
+    {
+        ByteBuffer iovec=__iovec.get();
+        ByteBuffer staging=null;
+        int count=0;
+        for (ByteBuffer b : buffers)
+        {
+            int remaining=b.remaining();
+            if (remaining==0)
+                continue;
+            if (count==MAX_GATHER)
+                break;
+
+            long address;
+            if (b.isDirect())
+            {
+                address=EPoll.address(b)+b.position();
+            }
+            else
+            {
+                if (staging==null)
+                {
+                    staging=__staging.get();
+                    staging.clear();
+                }
+                remaining=Math.min(remaining,staging.remaining());
+                if (remaining==0)
+                    break;
+                address=EPoll.address(staging)+staging.position();
+                ByteBuffer slice=b.duplicate();
+                slice.limit(slice.position()+remaining);
+                staging.put(slice);
+            }
+            iovec.putLong(count*EPoll.IOVEC_SIZE,address);
+            iovec.putLong(count*EPoll.IOVEC_SIZE+8,remaining);
+            ++count;
+        }
+
+        long written=count==1
+                ?EPoll.LIBC.write(_fd,iovec.getLong(0),iovec.getLong(8))
+                :EPoll.LIBC.writev(_fd,EPoll.address(iovec),count);
+        if (written<0)
+        {
+            int errno=EPoll.errno();
+            if (errno==EPoll.EAGAIN)
+                return -1;
+            if (errno==EPoll.EINTR)
+                return 0;
+            throw new EofException(EPoll.newIOException("write",errno));
+        }
+
+        long consumed=written;
+        for (ByteBuffer b : buffers)
+        {
+            if (consumed==0)
+                break;
+            int n=(int)Math.min(consumed,b.remaining());
+            b.position(b.position()+n);
+            consumed-=n;
+        }
+        return written;
+    }
+
+    @Override
+    protected void needsFillInterest()
+    {
+        boolean readable;
+        try (Locker.Lock lock = _locker.lock())
+        {
+            readable=_readable;
+            if (readable)
+                _readable=false;
+            else
+                _fillInterested=true;
+        }
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("needsFillInterest r={} {}", readable, this);
+
+        // No edge will be reported for data that has already arrived.
+        if (readable)
+            _selector.submit(_runFillable);
+    }
+
+    @Override
+    protected void onIncompleteFlush()
+    {
+        boolean writable;
+        try (Locker.Lock lock = _locker.lock())
+        {
+            writable=_writable;
+            if (writable)
+                _writable=false;
+            else
+                _flushInterested=true;
+        }
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("onIncompleteFlush w={} {}", writable, this);
+
+        // No edge will be reported for space that has already been freed.
+        if (writable)
+            _selector.submit(_runCompleteWrite);
+    }
+
+    @Override
+    public Runnable onSelected(int events)
+    {
+        boolean readable=false;
+        boolean writable=false;
+        try (Locker.Lock lock = _locker.lock())
+        {
+            if ((events&(EPoll.EPOLLIN|EPoll.EPOLLRDHUP|EPoll.EPOLLHUP|EPoll.EPOLLERR))!=0)
+            {
+                if (_fillInterested)
+                {
+                    _fillInterested=false;
+                    readable=true;
+                }
+                else
+                {
+                    _readable=true;
+                }
+            }
+            if ((events&(EPoll.EPOLLOUT|EPoll.EPOLLHUP|EPoll.EPOLLERR))!=0)
+            {
+                if (_flushInterested)
+                {
+                    _flushInterested=false;
+                    writable=true;
+                }
+                else
+                {
+                    _writable=true;
+                }
+            }
+        }
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("onSelected {} r={} w={} for {}", Integer.toHexString(events), readable, writable, this);
+
+        // Non-blocking tasks are run by the selector thread and not fed to
+        // the ExecutionStrategy, which could not have any thread to run
+        // them (or it may starve forever just after having run them).
+        // When only one of read or write is non-blocking, run it now
+        // and return the other as a task that may block.
+        if (readable && writable)
+        {
+            boolean fillNonBlocking = getFillInterest().isCallbackNonBlocking();
+            boolean writeNonBlocking = getWriteFlusher().isCallbackNonBlocking();
+            if (fillNonBlocking && !writeNonBlocking)
+            {
+                _selector.runInline(_runFillable);
+                readable = false;
+            }
+            else if (writeNonBlocking && !fillNonBlocking)
+            {
+                _selector.runInline(_runCompleteWrite);
+                writable = false;
+            }
+        }
+
+        return readable ? (writable ? _runFillableCompleteWrite : _runFillable)
+                : (writable ? _runCompleteWrite : null);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s{fd=%d,r=%b/%b,w=%b/%b}",
+                super.toString(),
+                _fd,
+                _readable,
+                _fillInterested,
+                _writable,
+                _flushInterested);
+    }
+}
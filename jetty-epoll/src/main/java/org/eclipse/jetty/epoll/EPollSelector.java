@@ -0,0 +1,711 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.epoll;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.util.ConcurrentArrayQueue;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.component.Dumpable;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.statistic.SampleStatistic;
+import org.eclipse.jetty.util.thread.ExecutionStrategy;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+/**
+ * <p>{@link EPollSelector} is the epoll counterpart of {@link org.eclipse.jetty.io.ManagedSelector}:
+ * it runs a select loop on an epoll instance and notifies the {@link EPollEndPoint}s of the
+ * events of their sockets.</p>
+ * <p>Sockets are registered once, edge-triggered, for both read and write events, so
+ * that changes of interest do not need any {@code epoll_ctl} call; instead each endpoint
+ * remembers the edges that it has not yet consumed. The registrations of accepted sockets
+ * are submitted as actions, which are run in a batch before each call to {@code epoll_wait}.
+ * The selector is woken up through an {@code eventfd} and the ready events are read from a
+ * native array, so that the select loop does not produce garbage.</p>
+ */
+@ManagedObject("An epoll selector")
+public class EPollSelector extends AbstractLifeCycle implements ThreadPool.LongLived, Dumpable
+{
+    private static final Logger LOG = Log.getLogger(EPollSelector.class);
+    private static final int SOCKET_EVENTS = EPoll.EPOLLIN | EPoll.EPOLLOUT | EPoll.EPOLLRDHUP | EPoll.EPOLLET;
+
+    private final AtomicBoolean _selecting = new AtomicBoolean();
+    private final Queue<Runnable> _actions = new ConcurrentArrayQueue<>();
+    private final LongAdder _wakeupsIssued = new LongAdder();
+    private final LongAdder _wakeupsAvoided = new LongAdder();
+    private final LongAdder _tasksInline = new LongAdder();
+    private final LongAdder _tasksDispatched = new LongAdder();
+    private final SampleStatistic _selectedEvents = new SampleStatistic();
+    private final EPollConnector _connector;
+    private final int _id;
+    private final int _maxEvents;
+    private final ExecutionStrategy _strategy;
+    private final ByteBuffer _wakeup = EPoll.allocate(8);
+    private final ByteBuffer _drain = EPoll.allocate(8);
+    private final ByteBuffer _control = EPoll.allocate(EPoll.EVENT_SIZE);
+    private ByteBuffer _events;
+    private Selectable[] _selectables = new Selectable[256];
+    private volatile int _size;
+    private volatile CloseEndPoints _closeEndPoints;
+    private volatile int _epfd = -1;
+    private volatile int _eventfd = -1;
+
+    public EPollSelector(EPollConnector connector, int id, int maxEvents)
+    {
+        _connector = connector;
+        _id = id;
+        _maxEvents = maxEvents;
+        _strategy = ExecutionStrategy.Factory.instanceFor(new SelectorProducer(), connector.getExecutor());
+        _wakeup.putLong(0, 1);
+        setStopTimeout(5000);
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        super.doStart();
+        EPoll.ensureAvailable();
+        int epfd = EPoll.LIBC.epoll_create1(EPoll.EPOLL_CLOEXEC);
+        if (epfd < 0)
+            throw EPoll.newIOException("epoll_create1", EPoll.errno());
+        int eventfd = EPoll.LIBC.eventfd(0, EPoll.EFD_NONBLOCK | EPoll.EFD_CLOEXEC);
+        if (eventfd < 0)
+        {
+            int errno = EPoll.errno();
+            EPoll.LIBC.close(epfd);
+            throw EPoll.newIOException("eventfd", errno);
+        }
+        _events = EPoll.allocate(_maxEvents * EPoll.EVENT_SIZE);
+        _epfd = epfd;
+        _eventfd = eventfd;
+        try
+        {
+            control(eventfd, EPoll.EPOLLIN | EPoll.EPOLLET);
+        }
+        catch (IOException x)
+        {
+            closeNative();
+            throw x;
+        }
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("Stopping {}", this);
+        CloseEndPoints closeEndPoints = new CloseEndPoints();
+        submit(closeEndPoints);
+        closeEndPoints.await(getStopTimeout());
+        _closeEndPoints = null;
+        super.doStop();
+        CloseSelector closeSelector = new CloseSelector();
+        submit(closeSelector);
+        closeSelector.await(getStopTimeout());
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("Stopped {}", this);
+    }
+
+    /**
+     * @return the number of sockets registered with this selector
+     */
+    @ManagedAttribute("The number of sockets registered with this selector")
+    public int size()
+    {
+        return _size;
+    }
+
+    public void submit(Runnable change)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("Queued change {} on {}", change, this);
+
+        _actions.offer(change);
+
+        // Only the first submitter after the selector started
+        // selecting wakes it up, the others find it already woken.
+        if (_selecting.compareAndSet(true, false))
+        {
+            int eventfd = _eventfd;
+            if (eventfd >= 0)
+                EPoll.LIBC.write(eventfd, EPoll.address(_wakeup), 8);
+            _wakeupsIssued.increment();
+        }
+        else
+        {
+            _wakeupsAvoided.increment();
+        }
+    }
+
+    /**
+     * <p>Registers an accepted socket, creating its {@link EPollEndPoint} and {@link Connection}.</p>
+     *
+     * @param fd the accepted socket
+     * @param local the local address of the socket
+     * @param remote the remote address of the socket
+     */
+    public void accept(int fd, InetSocketAddress local, InetSocketAddress remote)
+    {
+        submit(new Accept(fd, local, remote));
+    }
+
+    /**
+     * <p>Registers a socket with the epoll instance, edge-triggered.</p>
+     * <p>Must be called by the selector thread, from a submitted action.</p>
+     *
+     * @param fd the socket
+     * @param events the epoll events to register for
+     * @param selectable the object to notify of the events
+     * @throws IOException if the socket cannot be registered
+     */
+    void register(int fd, int events, Selectable selectable) throws IOException
+    {
+        if (fd >= _selectables.length)
+            _selectables = Arrays.copyOf(_selectables, Math.max(fd + 1, _selectables.length * 2));
+        control(fd, events);
+        // A descriptor closed by a previous registration may have been reused.
+        if (_selectables[fd] == null)
+            ++_size;
+        _selectables[fd] = selectable;
+    }
+
+    /**
+     * <p>Forgets a socket that has been closed, which also removed it from the epoll instance.</p>
+     * <p>Must be called by the selector thread, from a submitted action.</p>
+     *
+     * @param fd the socket
+     * @param selectable the object notified of the events of the socket
+     */
+    void unregister(int fd, Selectable selectable)
+    {
+        // The descriptor may have been reused by a later registration.
+        if (fd < _selectables.length && _selectables[fd] == selectable)
+        {
+            _selectables[fd] = null;
+            --_size;
+        }
+    }
+
+    private void control(int fd, int events) throws IOException
+    {
+        _control.putInt(0, events);
+        _control.putLong(EPoll.EVENT_DATA_OFFSET, fd);
+        if (EPoll.LIBC.epoll_ctl(_epfd, EPoll.EPOLL_CTL_ADD, fd, EPoll.address(_control)) < 0)
+            throw EPoll.newIOException("epoll_ctl", EPoll.errno());
+    }
+
+    private void closeNative()
+    {
+        int eventfd = _eventfd;
+        _eventfd = -1;
+        if (eventfd >= 0)
+            EPoll.LIBC.close(eventfd);
+        int epfd = _epfd;
+        _epfd = -1;
+        if (epfd >= 0)
+            EPoll.LIBC.close(epfd);
+    }
+
+    @ManagedAttribute("The number of selector wakeups issued by submitted actions")
+    public long getWakeupsIssued()
+    {
+        return _wakeupsIssued.sum();
+    }
+
+    @ManagedAttribute("The number of submitted actions that did not need to wake up the selector")
+    public long getWakeupsAvoided()
+    {
+        return _wakeupsAvoided.sum();
+    }
+
+    @ManagedAttribute("The number of non-blocking tasks run by the selector thread")
+    public long getTasksInline()
+    {
+        return _tasksInline.sum();
+    }
+
+    @ManagedAttribute("The number of tasks dispatched to the execution strategy")
+    public long getTasksDispatched()
+    {
+        return _tasksDispatched.sum();
+    }
+
+    @ManagedAttribute("The number of select passes")
+    public long getSelectCount()
+    {
+        return _selectedEvents.getCount();
+    }
+
+    @ManagedAttribute("The max number of events selected per select pass")
+    public long getSelectedEventsMax()
+    {
+        return _selectedEvents.getMax();
+    }
+
+    @ManagedAttribute("The mean number of events selected per select pass")
+    public double getSelectedEventsMean()
+    {
+        return _selectedEvents.getMean();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStatistics()
+    {
+        _wakeupsIssued.reset();
+        _wakeupsAvoided.reset();
+        _tasksInline.reset();
+        _tasksDispatched.reset();
+        _selectedEvents.reset();
+    }
+
+    @Override
+    public void run()
+    {
+        _strategy.execute();
+    }
+
+    /**
+     * A {@link Selectable} is notified of the epoll events of its socket.
+     */
+    interface Selectable
+    {
+        /**
+         * Callback method invoked by the selector thread when epoll
+         * has reported events for the socket.
+         *
+         * @param events the epoll events
+         * @return a job that may block or null
+         */
+        Runnable onSelected(int events);
+    }
+
+    /**
+     * A submitted action that is not run by the selector thread, but produced
+     * as a task for the {@link ExecutionStrategy}.
+     */
+    interface Product extends Runnable
+    {
+    }
+
+    private class SelectorProducer implements ExecutionStrategy.Producer
+    {
+        private int _selected;
+        private int _cursor;
+
+        @Override
+        public Runnable produce()
+        {
+            while (true)
+            {
+                Runnable task = processSelected();
+                if (task != null)
+                    return task;
+
+                Runnable action = runActions();
+                if (action != null)
+                    return action;
+
+                if (!select())
+                    return null;
+            }
+        }
+
+        private Runnable runActions()
+        {
+            while (true)
+            {
+                Runnable action = _actions.poll();
+                if (action == null)
+                {
+                    // No more actions, so we need to select.
+                    _selecting.set(true);
+                    // Actions submitted before the flag was set did not
+                    // wake up the selector, so we must run them now.
+                    if (_actions.isEmpty() || !_selecting.compareAndSet(true, false))
+                        return null;
+                    continue;
+                }
+
+                if (action instanceof Product)
+                    return action;
+
+                // Running the change may queue another action.
+                runChange(action);
+            }
+        }
+
+        private void runChange(Runnable change)
+        {
+            try
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Running change {}", change);
+                change.run();
+            }
+            catch (Throwable x)
+            {
+                LOG.debug("Could not run change " + change, x);
+            }
+        }
+
+        private boolean select()
+        {
+            int epfd = _epfd;
+            if (epfd < 0)
+                return false;
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("Selector loop waiting on epoll_wait");
+            int selected = EPoll.LIBC.epoll_wait(epfd, EPoll.address(_events), _maxEvents, -1);
+            int errno = selected < 0 ? EPoll.errno() : 0;
+
+            // Finished selecting.
+            _selecting.set(false);
+
+            if (selected < 0)
+            {
+                if (errno == EPoll.EINTR)
+                    return true;
+                IOException failure = EPoll.newIOException("epoll_wait", errno);
+                closeNative();
+                if (isRunning())
+                    LOG.warn(failure);
+                else
+                    LOG.debug(failure);
+                return false;
+            }
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("Selector loop woken up from epoll_wait, {}/{} selected", selected, _size);
+            _selected = selected;
+            _cursor = 0;
+            _selectedEvents.set(selected);
+            return true;
+        }
+
+        private Runnable processSelected()
+        {
+            while (_cursor < _selected)
+            {
+                int offset = EPoll.EVENT_SIZE * _cursor++;
+                int events = _events.getInt(offset);
+                int fd = (int)_events.getLong(offset + EPoll.EVENT_DATA_OFFSET);
+
+                if (fd == _eventfd)
+                {
+                    // Reset the counter of the wakeups.
+                    EPoll.LIBC.read(fd, EPoll.address(_drain), 8);
+                    continue;
+                }
+
+                Selectable selectable = fd < _selectables.length ? _selectables[fd] : null;
+                if (LOG.isDebugEnabled())
+                    LOG.debug("selected fd={} events={} {}", fd, Integer.toHexString(events), selectable);
+                if (selectable == null)
+                    continue;
+
+                try
+                {
+                    Runnable task = selectable.onSelected(events);
+                    if (task != null)
+                    {
+                        if (!isNonBlocking(task))
+                            return dispatched(task);
+                        runInline(task);
+                    }
+                }
+                catch (Throwable x)
+                {
+                    LOG.warn("Could not process events for " + selectable, x);
+                    if (selectable instanceof EndPoint)
+                        closeNoExceptions((EndPoint)selectable);
+                }
+            }
+            return null;
+        }
+
+        private boolean isNonBlocking(Runnable task)
+        {
+            return task instanceof ExecutionStrategy.Task && ((ExecutionStrategy.Task)task).isNonBlocking();
+        }
+
+        private Runnable dispatched(Runnable task)
+        {
+            _tasksDispatched.increment();
+            return task;
+        }
+    }
+
+    /**
+     * <p>Runs a non-blocking task in the selector thread.</p>
+     *
+     * @param task the non-blocking task to run
+     */
+    void runInline(Runnable task)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("Running inline {}", task);
+        _tasksInline.increment();
+        task.run();
+    }
+
+    private void closeNoExceptions(Closeable closeable)
+    {
+        try
+        {
+            if (closeable != null)
+                closeable.close();
+        }
+        catch (Throwable x)
+        {
+            LOG.ignore(x);
+        }
+    }
+
+    public void onClose(final EPollEndPoint endPoint)
+    {
+        submit(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                unregister(endPoint.getFileDescriptor(), endPoint);
+                submit(new Product()
+                {
+                    @Override
+                    public void run()
+                    {
+                        if (LOG.isDebugEnabled())
+                            LOG.debug("Destroyed {}", endPoint);
+                        Connection connection = endPoint.getConnection();
+                        if (connection != null)
+                            _connector.connectionClosed(connection);
+                        _connector.endPointClosed(endPoint);
+                        CloseEndPoints closeEndPoints = _closeEndPoints;
+                        if (closeEndPoints != null)
+                            closeEndPoints.destroyed(endPoint);
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public String dump()
+    {
+        return ContainerLifeCycle.dump(this);
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        out.append(String.valueOf(this))
+                .append(" wakeups=").append(String.valueOf(getWakeupsIssued()))
+                .append("/").append(String.valueOf(getWakeupsAvoided()))
+                .append(" selects=").append(String.valueOf(getSelectCount()))
+                .append(String.format(" events=%.1f/%d", getSelectedEventsMean(), getSelectedEventsMax()))
+                .append(" tasks=").append(String.valueOf(getTasksInline()))
+                .append("/").append(String.valueOf(getTasksDispatched()))
+                .append(System.lineSeparator());
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s id=%s epfd=%d size=%d",
+                super.toString(),
+                _id,
+                _epfd,
+                _size);
+    }
+
+    private class Accept implements Runnable
+    {
+        private final int fd;
+        private final InetSocketAddress local;
+        private final InetSocketAddress remote;
+
+        private Accept(int fd, InetSocketAddress local, InetSocketAddress remote)
+        {
+            this.fd = fd;
+            this.local = local;
+            this.remote = remote;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                EPollEndPoint endPoint = _connector.newEndPoint(fd, EPollSelector.this, local, remote);
+                register(fd, SOCKET_EVENTS, endPoint);
+                submit(new CreateConnection(endPoint));
+            }
+            catch (Throwable x)
+            {
+                EPoll.LIBC.close(fd);
+                LOG.debug(x);
+            }
+        }
+    }
+
+    private class CreateConnection implements Product
+    {
+        private final EPollEndPoint endPoint;
+
+        private CreateConnection(EPollEndPoint endPoint)
+        {
+            this.endPoint = endPoint;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                _connector.endPointOpened(endPoint);
+                Connection connection = _connector.newConnection(endPoint);
+                endPoint.setConnection(connection);
+                _connector.connectionOpened(connection);
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Created {}", endPoint);
+            }
+            catch (Throwable x)
+            {
+                LOG.debug(x);
+                closeNoExceptions(endPoint);
+            }
+        }
+    }
+
+    private class CloseEndPoints implements Runnable
+    {
+        private final CountDownLatch _latch = new CountDownLatch(1);
+        private final Set<EPollEndPoint> _endPoints = ConcurrentHashMap.newKeySet();
+        private CountDownLatch _allClosed;
+
+        @Override
+        public void run()
+        {
+            for (Selectable selectable : _selectables)
+            {
+                if (selectable instanceof EPollEndPoint)
+                    _endPoints.add((EPollEndPoint)selectable);
+            }
+
+            int size = _endPoints.size();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Closing {} endPoints on {}", size, EPollSelector.this);
+
+            _allClosed = new CountDownLatch(size);
+            _closeEndPoints = this;
+            _latch.countDown();
+
+            for (EPollEndPoint endPoint : _endPoints)
+                submit(new EndPointCloser(endPoint));
+        }
+
+        /**
+         * Called once an endpoint has been destroyed, so that the selector
+         * is not closed while it still has tasks to produce for the endpoints.
+         *
+         * @param endPoint the destroyed endpoint
+         */
+        private void destroyed(EPollEndPoint endPoint)
+        {
+            if (_endPoints.remove(endPoint))
+                _allClosed.countDown();
+        }
+
+        public boolean await(long timeout)
+        {
+            try
+            {
+                return _latch.await(timeout, TimeUnit.MILLISECONDS) &&
+                        _allClosed.await(timeout, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException x)
+            {
+                return false;
+            }
+        }
+    }
+
+    private class EndPointCloser implements Product
+    {
+        private final EndPoint _endPoint;
+
+        private EndPointCloser(EndPoint endPoint)
+        {
+            _endPoint = endPoint;
+        }
+
+        @Override
+        public void run()
+        {
+            Connection connection = _endPoint.getConnection();
+            closeNoExceptions(connection != null ? connection : _endPoint);
+        }
+    }
+
+    private class CloseSelector implements Runnable
+    {
+        private CountDownLatch _latch = new CountDownLatch(1);
+
+        @Override
+        public void run()
+        {
+            closeNative();
+            Arrays.fill(_selectables, null);
+            _size = 0;
+            _latch.countDown();
+        }
+
+        public boolean await(long timeout)
+        {
+            try
+            {
+                return _latch.await(timeout, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException x)
+            {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,257 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.epoll;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EPollConnectorTest
+{
+    private Server _server;
+    private EPollConnector _connector;
+
+    @Before
+    public void prepare() throws Exception
+    {
+        Assume.assumeTrue(EPoll.isAvailable());
+
+        QueuedThreadPool threadPool = new QueuedThreadPool();
+        threadPool.setName("server");
+        _server = new Server(threadPool);
+        _connector = new EPollConnector(_server, 2);
+        _connector.setHost("localhost");
+        _server.addConnector(_connector);
+        _server.setHandler(new EchoHandler());
+        _server.start();
+    }
+
+    @After
+    public void dispose() throws Exception
+    {
+        if (_server != null)
+            _server.stop();
+    }
+
+    @Test
+    public void testGET() throws Exception
+    {
+        try (Socket client = newClient())
+        {
+            send(client, "GET /hello HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+            String response = IO.toString(client.getInputStream());
+            assertThat(response, containsString("HTTP/1.1 200 "));
+            assertThat(response, containsString("/hello"));
+        }
+    }
+
+    @Test
+    public void testKeepAlive() throws Exception
+    {
+        try (Socket client = newClient())
+        {
+            for (int i = 0; i < 10; ++i)
+            {
+                send(client, "GET /" + i + " HTTP/1.1\r\nHost: localhost\r\n\r\n");
+                assertEquals("/" + i, new String(readResponse(client.getInputStream()), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    public void testPipelined() throws Exception
+    {
+        try (Socket client = newClient())
+        {
+            StringBuilder requests = new StringBuilder();
+            for (int i = 0; i < 10; ++i)
+                requests.append("GET /").append(i).append(" HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            send(client, requests.toString());
+            for (int i = 0; i < 10; ++i)
+                assertEquals("/" + i, new String(readResponse(client.getInputStream()), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testLargeContent() throws Exception
+    {
+        // Larger than the socket buffers, so that both the request
+        // and the response need to wait for the socket to be ready.
+        byte[] content = new byte[8 * 1024 * 1024];
+        for (int i = 0; i < content.length; ++i)
+            content[i] = (byte)('a' + i % 26);
+
+        try (Socket client = newClient())
+        {
+            final OutputStream output = client.getOutputStream();
+            output.write(("POST /echo HTTP/1.1\r\nHost: localhost\r\nContent-Length: " + content.length + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            output.flush();
+            // Write the content while reading the response, which
+            // is echoed back before the request content is all read.
+            Thread writer = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        output.write(content);
+                        output.flush();
+                    }
+                    catch (IOException x)
+                    {
+                        x.printStackTrace();
+                    }
+                }
+            };
+            writer.start();
+            byte[] echoed = readResponse(client.getInputStream());
+            writer.join();
+            assertTrue(Arrays.equals(content, echoed));
+        }
+    }
+
+    @Test
+    public void testClientCloseReleasesEndPoint() throws Exception
+    {
+        try (Socket client = newClient())
+        {
+            send(client, "GET / HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            readResponse(client.getInputStream());
+            assertEquals(1, _connector.getConnectedEndPoints().size());
+        }
+
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!_connector.getConnectedEndPoints().isEmpty() && System.nanoTime() < end)
+            Thread.sleep(10);
+        assertThat(_connector.getConnectedEndPoints().size(), is(0));
+    }
+
+    @Test
+    public void testStopClosesConnections() throws Exception
+    {
+        try (Socket client = newClient())
+        {
+            send(client, "GET / HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            readResponse(client.getInputStream());
+
+            _server.stop();
+
+            client.setSoTimeout(5000);
+            assertEquals(-1, client.getInputStream().read());
+            assertTrue(!_connector.isOpen());
+        }
+    }
+
+    private Socket newClient() throws IOException
+    {
+        Socket client = new Socket("localhost", _connector.getLocalPort());
+        client.setSoTimeout(10000);
+        return client;
+    }
+
+    private void send(Socket client, String request) throws IOException
+    {
+        OutputStream output = client.getOutputStream();
+        output.write(request.getBytes(StandardCharsets.UTF_8));
+        output.flush();
+    }
+
+    /**
+     * @return the content of a response with a Content-Length
+     */
+    private byte[] readResponse(InputStream input) throws IOException
+    {
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        int state = 0;
+        while (state < 4)
+        {
+            int b = input.read();
+            if (b < 0)
+                throw new IOException("Unexpected EOF");
+            head.write(b);
+            state = (b == (state % 2 == 0 ? '\r' : '\n')) ? state + 1 : (b == '\r' ? 1 : 0);
+        }
+
+        String headers = new String(head.toByteArray(), StandardCharsets.UTF_8);
+        assertThat(headers, containsString("HTTP/1.1 200 "));
+        int length = -1;
+        for (String line : headers.split("\r\n"))
+        {
+            if (line.toLowerCase().startsWith("content-length:"))
+                length = Integer.parseInt(line.substring(15).trim());
+        }
+
+        byte[] content = new byte[length];
+        int read = 0;
+        while (read < length)
+        {
+            int n = input.read(content, read, length - read);
+            if (n < 0)
+                throw new IOException("Unexpected EOF");
+            read += n;
+        }
+        return content;
+    }
+
+    private static class EchoHandler extends AbstractHandler
+    {
+        @Override
+        public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+        {
+            baseRequest.setHandled(true);
+            if ("POST".equals(request.getMethod()))
+            {
+                response.setContentLength(request.getContentLength());
+                IO.copy(request.getInputStream(), response.getOutputStream());
+            }
+            else
+            {
+                byte[] content = target.getBytes(StandardCharsets.UTF_8);
+                response.setContentLength(content.length);
+                response.getOutputStream().write(content);
+            }
+        }
+    }
+}
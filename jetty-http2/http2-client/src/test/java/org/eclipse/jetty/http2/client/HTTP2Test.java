@@ -19,10 +19,14 @@
 package org.eclipse.jetty.http2.client;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.WritePendingException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.CountDownLatch;
@@ -137,6 +141,73 @@ public class HTTP2Test extends AbstractTest
         Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
     }
 
+    @Test
+    public void testResponseContentRetainedUntilCallbackCompleted() throws Exception
+    {
+        final byte[][] chunks = new byte[3][];
+        for (int i = 0; i < chunks.length; ++i)
+        {
+            chunks[i] = new byte[1024];
+            Arrays.fill(chunks[i], (byte)('a' + i));
+        }
+        start(new HttpServlet()
+        {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException
+            {
+                try
+                {
+                    for (byte[] chunk : chunks)
+                    {
+                        resp.getOutputStream().write(chunk);
+                        resp.flushBuffer();
+                        // Let the client read each chunk separately.
+                        Thread.sleep(100);
+                    }
+                }
+                catch (InterruptedException x)
+                {
+                    throw new InterruptedIOException();
+                }
+            }
+        });
+
+        Session session = newClient(new Session.Listener.Adapter());
+
+        MetaData.Request metaData = newRequest("GET", new HttpFields());
+        HeadersFrame frame = new HeadersFrame(metaData, null, true);
+        final List<DataFrame> frames = new ArrayList<>();
+        final List<Callback> callbacks = new ArrayList<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        session.newStream(frame, new Promise.Adapter<>(), new Stream.Listener.Adapter()
+        {
+            @Override
+            public void onData(Stream stream, DataFrame frame, Callback callback)
+            {
+                // Do not consume the data until the whole content has arrived.
+                frames.add(frame);
+                callbacks.add(callback);
+                if (frame.isEndStream())
+                    latch.countDown();
+            }
+        });
+
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+        ByteBuffer content = ByteBuffer.allocate(chunks.length * 1024);
+        for (DataFrame data : frames)
+            content.put(data.getData());
+        content.flip();
+        for (byte[] chunk : chunks)
+        {
+            byte[] bytes = new byte[chunk.length];
+            content.get(bytes);
+            Assert.assertArrayEquals(chunk, bytes);
+        }
+        for (Callback callback : callbacks)
+            callback.succeeded();
+    }
+
     @Test
     public void testMultipleRequests() throws Exception
     {
@@ -23,10 +23,12 @@ import java.nio.ByteBuffer;
 import java.util.Queue;
 import java.util.concurrent.Executor;
 
+import org.eclipse.jetty.http2.frames.DataFrame;
 import org.eclipse.jetty.http2.parser.Parser;
 import org.eclipse.jetty.io.AbstractConnection;
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.io.RetainableByteBuffer;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.ConcurrentArrayQueue;
@@ -54,6 +56,7 @@ public class HTTP2Connection extends AbstractConnection
         this.session = session;
         this.bufferSize = bufferSize;
         this.executionStrategy = ExecutionStrategy.Factory.instanceFor(producer, executor);
+        parser.init(ParserListener::new);
     }
 
     public ISession getSession()
@@ -69,7 +72,8 @@ public class HTTP2Connection extends AbstractConnection
 
     protected void setInputBuffer(ByteBuffer buffer)
     {
-        producer.buffer = buffer;
+        if (buffer != null)
+            producer.networkBuffer = new NetworkBuffer(buffer);
     }
 
     @Override
@@ -141,7 +145,7 @@ public class HTTP2Connection extends AbstractConnection
 
     protected class HTTP2Producer implements ExecutionStrategy.Producer
     {
-        private ByteBuffer buffer;
+        private NetworkBuffer networkBuffer;
 
         @Override
         public Runnable produce()
@@ -155,16 +159,26 @@ public class HTTP2Connection extends AbstractConnection
             if (isFillInterested())
                 return null;
 
-            if (buffer == null)
-                buffer = byteBufferPool.acquire(bufferSize, false); // TODO: make directness customizable
-            boolean looping = BufferUtil.hasContent(buffer);
+            if (networkBuffer == null)
+                networkBuffer = new NetworkBuffer();
+            boolean looping = networkBuffer.hasRemaining();
             while (true)
             {
                 if (looping)
                 {
+                    ByteBuffer buffer = networkBuffer.getBuffer();
                     while (buffer.hasRemaining())
                         parser.parse(buffer);
 
+                    // DATA frames may have retained the buffer, so that
+                    // their data is not copied; the buffer cannot be
+                    // filled again until they have released it.
+                    if (networkBuffer.isRetained())
+                    {
+                        networkBuffer.release();
+                        networkBuffer = null;
+                    }
+
                     task = tasks.poll();
                     if (LOG.isDebugEnabled())
                         LOG.debug("Dequeued task {}", task);
@@ -173,9 +187,12 @@ public class HTTP2Connection extends AbstractConnection
                         release();
                         return task;
                     }
+
+                    if (networkBuffer == null)
+                        networkBuffer = new NetworkBuffer();
                 }
 
-                int filled = fill(getEndPoint(), buffer);
+                int filled = fill(getEndPoint(), networkBuffer.getBuffer());
                 if (LOG.isDebugEnabled())
                     LOG.debug("Filled {} bytes", filled);
 
@@ -198,11 +215,60 @@ public class HTTP2Connection extends AbstractConnection
 
         private void release()
         {
-            if (buffer != null && !buffer.hasRemaining())
+            if (networkBuffer != null && !networkBuffer.hasRemaining())
             {
-                byteBufferPool.release(buffer);
-                buffer = null;
+                networkBuffer.release();
+                networkBuffer = null;
             }
         }
     }
+
+    private class ParserListener extends Parser.Listener.Wrapper
+    {
+        private ParserListener(Parser.Listener listener)
+        {
+            super(listener);
+        }
+
+        @Override
+        public void onData(DataFrame frame)
+        {
+            // The frame data is a slice of the network buffer:
+            // retain the buffer until the data has been consumed.
+            NetworkBuffer buffer = producer.networkBuffer;
+            buffer.retain();
+            session.onData(frame, buffer);
+        }
+    }
+
+    private class NetworkBuffer extends RetainableByteBuffer implements Callback
+    {
+        private NetworkBuffer()
+        {
+            super(byteBufferPool, bufferSize, false); // TODO: make directness customizable
+        }
+
+        private NetworkBuffer(ByteBuffer buffer)
+        {
+            super(byteBufferPool, buffer);
+        }
+
+        @Override
+        public void succeeded()
+        {
+            release();
+        }
+
+        @Override
+        public void failed(Throwable x)
+        {
+            release();
+        }
+
+        @Override
+        public boolean isNonBlocking()
+        {
+            return true;
+        }
+    }
 }
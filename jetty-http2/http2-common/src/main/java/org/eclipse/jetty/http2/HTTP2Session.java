@@ -157,7 +157,13 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
     }
 
     @Override
-    public void onData(final DataFrame frame)
+    public void onData(DataFrame frame)
+    {
+        onData(frame, Callback.NOOP);
+    }
+
+    @Override
+    public void onData(final DataFrame frame, final Callback callback)
     {
         if (LOG.isDebugEnabled())
             LOG.debug("Received {}", frame);
@@ -175,6 +181,7 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
             if (getRecvWindow() < 0)
             {
                 close(ErrorCode.FLOW_CONTROL_ERROR.code, "session_window_exceeded", Callback.NOOP);
+                callback.failed(new IOException("session_window_exceeded"));
             }
             else
             {
@@ -184,6 +191,7 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
                     public void succeeded()
                     {
                         flowControl.onDataConsumed(HTTP2Session.this, stream, flowControlLength);
+                        callback.succeeded();
                     }
 
                     @Override
@@ -192,6 +200,7 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
                         // Consume also in case of failures, to free the
                         // session flow control window for other streams.
                         flowControl.onDataConsumed(HTTP2Session.this, stream, flowControlLength);
+                        callback.failed(x);
                     }
                 });
             }
@@ -203,6 +212,7 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
             // We must enlarge the session flow control window,
             // otherwise other requests will be stalled.
             flowControl.onDataConsumed(this, null, flowControlLength);
+            callback.succeeded();
         }
     }
 
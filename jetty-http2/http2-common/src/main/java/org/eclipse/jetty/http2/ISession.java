@@ -120,6 +120,16 @@ public interface ISession extends Session
      */
     public boolean onIdleTimeout();
 
+    /**
+     * <p>Callback method invoked when a DATA frame has been received.</p>
+     * <p>The given {@code callback} is completed when the frame data has been
+     * consumed, so that the buffer that contains the data can be recycled.</p>
+     *
+     * @param frame    the DATA frame received
+     * @param callback the callback to complete when the frame data has been consumed
+     */
+    public void onData(DataFrame frame, Callback callback);
+
     /**
      * <p>Callback method invoked during an HTTP/1.1 to HTTP/2 upgrade requests
      * to process the given synthetic frame.</p>
@@ -19,6 +19,7 @@
 package org.eclipse.jetty.http2.parser;
 
 import java.nio.ByteBuffer;
+import java.util.function.UnaryOperator;
 
 import org.eclipse.jetty.http2.ErrorCode;
 import org.eclipse.jetty.http2.Flags;
@@ -47,19 +48,40 @@ public class Parser
 {
     private static final Logger LOG = Log.getLogger(Parser.class);
 
-    private final Listener listener;
+    private final ByteBufferPool byteBufferPool;
+    private final HpackDecoder hpackDecoder;
     private final HeaderParser headerParser;
     private final BodyParser[] bodyParsers;
+    private Listener listener;
     private boolean continuation;
     private State state = State.HEADER;
 
     public Parser(ByteBufferPool byteBufferPool, Listener listener, int maxDynamicTableSize, int maxHeaderSize)
     {
-        this.listener = listener;
+        this.byteBufferPool = byteBufferPool;
+        this.hpackDecoder = new HpackDecoder(maxDynamicTableSize, maxHeaderSize);
         this.headerParser = new HeaderParser();
         this.bodyParsers = new BodyParser[FrameType.values().length];
+        initBodyParsers(listener);
+    }
+
+    /**
+     * <p>Wraps the listener passed to the constructor, so that frame
+     * events are notified to the listener returned by the given wrapper.</p>
+     * <p>This method must be called before any parsing takes place.</p>
+     *
+     * @param wrapper the function that wraps the current listener
+     */
+    public void init(UnaryOperator<Listener> wrapper)
+    {
+        initBodyParsers(wrapper.apply(listener));
+    }
+
+    private void initBodyParsers(Listener listener)
+    {
+        this.listener = listener;
 
-        HeaderBlockParser headerBlockParser = new HeaderBlockParser(byteBufferPool, new HpackDecoder(maxDynamicTableSize, maxHeaderSize));
+        HeaderBlockParser headerBlockParser = new HeaderBlockParser(byteBufferPool, hpackDecoder);
         HeaderBlockFragments headerBlockFragments = new HeaderBlockFragments();
 
         bodyParsers[FrameType.DATA.getType()] = new DataBodyParser(headerParser, listener);
@@ -285,6 +307,81 @@ public class Parser
                 LOG.warn("Connection failure: {}/{}", error, reason);
             }
         }
+
+        public static class Wrapper implements Listener
+        {
+            private final Parser.Listener listener;
+
+            public Wrapper(Parser.Listener listener)
+            {
+                this.listener = listener;
+            }
+
+            public Parser.Listener getParserListener()
+            {
+                return listener;
+            }
+
+            @Override
+            public void onData(DataFrame frame)
+            {
+                listener.onData(frame);
+            }
+
+            @Override
+            public void onHeaders(HeadersFrame frame)
+            {
+                listener.onHeaders(frame);
+            }
+
+            @Override
+            public void onPriority(PriorityFrame frame)
+            {
+                listener.onPriority(frame);
+            }
+
+            @Override
+            public void onReset(ResetFrame frame)
+            {
+                listener.onReset(frame);
+            }
+
+            @Override
+            public void onSettings(SettingsFrame frame)
+            {
+                listener.onSettings(frame);
+            }
+
+            @Override
+            public void onPushPromise(PushPromiseFrame frame)
+            {
+                listener.onPushPromise(frame);
+            }
+
+            @Override
+            public void onPing(PingFrame frame)
+            {
+                listener.onPing(frame);
+            }
+
+            @Override
+            public void onGoAway(GoAwayFrame frame)
+            {
+                listener.onGoAway(frame);
+            }
+
+            @Override
+            public void onWindowUpdate(WindowUpdateFrame frame)
+            {
+                listener.onWindowUpdate(frame);
+            }
+
+            @Override
+            public void onConnectionFailure(int error, String reason)
+            {
+                listener.onConnectionFailure(error, reason);
+            }
+        }
     }
 
     private enum State
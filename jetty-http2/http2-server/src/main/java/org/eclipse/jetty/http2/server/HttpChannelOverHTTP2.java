@@ -32,13 +32,11 @@ import org.eclipse.jetty.http2.IStream;
 import org.eclipse.jetty.http2.api.Stream;
 import org.eclipse.jetty.http2.frames.DataFrame;
 import org.eclipse.jetty.http2.frames.HeadersFrame;
-import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.HttpChannel;
 import org.eclipse.jetty.server.HttpConfiguration;
 import org.eclipse.jetty.server.HttpInput;
-import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
@@ -163,18 +161,14 @@ public class HttpChannelOverHTTP2 extends HttpChannel
 
     public Runnable requestContent(DataFrame frame, final Callback callback)
     {
-        // We must copy the data since we do not know when the
-        // application will consume its bytes (we queue them by
-        // calling onContent()), and we cannot stop the parsing
-        // since there may be frames for other streams.
-        final ByteBufferPool byteBufferPool = getByteBufferPool();
-        ByteBuffer original = frame.getData();
-        int length = original.remaining();
-        final ByteBuffer copy = byteBufferPool.acquire(length, original.isDirect());
-        BufferUtil.clearToFill(copy);
-        copy.put(original).flip();
-
-        boolean handle = onContent(new HttpInput.Content(copy)
+        // The data is a slice of the network buffer, which is
+        // retained until the callback is completed, so there is
+        // no need to copy it even if the application does not
+        // consume its bytes immediately (we queue them by
+        // calling onContent()).
+        ByteBuffer buffer = frame.getData();
+        int length = buffer.remaining();
+        boolean handle = onContent(new HttpInput.Content(buffer)
         {
             @Override
             public boolean isNonBlocking()
@@ -185,14 +179,12 @@ public class HttpChannelOverHTTP2 extends HttpChannel
             @Override
             public void succeeded()
             {
-                byteBufferPool.release(copy);
                 callback.succeeded();
             }
 
             @Override
             public void failed(Throwable x)
             {
-                byteBufferPool.release(copy);
                 callback.failed(x);
             }
         });
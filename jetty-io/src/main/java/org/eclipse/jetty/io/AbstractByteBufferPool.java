@@ -0,0 +1,130 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+
+/**
+ * <p>Base class for {@link ByteBufferPool}s that account for the memory
+ * retained by the buffers they pool.</p>
+ * <p>Subclasses must call {@link #incrementMemory(ByteBuffer)} when a buffer is
+ * retained by the pool and {@link #decrementMemory(ByteBuffer)} when it leaves
+ * the pool, either because it is acquired or because it is evicted.
+ * When the retained memory exceeds {@link #getMaxHeapMemory()} or
+ * {@link #getMaxDirectMemory()}, {@link #releaseMemory(boolean)} is called
+ * until the retained memory is back within the limit.</p>
+ */
+@ManagedObject
+public abstract class AbstractByteBufferPool implements ByteBufferPool
+{
+    private final long _maxHeapMemory;
+    private final long _maxDirectMemory;
+    private final AtomicLong _heapMemory = new AtomicLong();
+    private final AtomicLong _directMemory = new AtomicLong();
+
+    /**
+     * @param maxHeapMemory the max number of bytes retained by heap buffers, or a value &lt;= 0 for unlimited
+     * @param maxDirectMemory the max number of bytes retained by direct buffers, or a value &lt;= 0 for unlimited
+     */
+    protected AbstractByteBufferPool(long maxHeapMemory, long maxDirectMemory)
+    {
+        _maxHeapMemory = maxHeapMemory;
+        _maxDirectMemory = maxDirectMemory;
+    }
+
+    protected void incrementMemory(ByteBuffer buffer)
+    {
+        memoryFor(buffer.isDirect()).addAndGet(buffer.capacity());
+    }
+
+    protected void decrementMemory(ByteBuffer buffer)
+    {
+        memoryFor(buffer.isDirect()).addAndGet(-buffer.capacity());
+    }
+
+    /**
+     * <p>Evicts buffers until the memory retained by buffers of the given kind
+     * is within the configured limit.</p>
+     *
+     * @param direct whether to check direct or heap memory
+     */
+    protected void releaseExcessMemory(boolean direct)
+    {
+        long maxMemory = direct ? _maxDirectMemory : _maxHeapMemory;
+        if (maxMemory > 0)
+        {
+            while (getMemory(direct) > maxMemory)
+            {
+                if (!releaseMemory(direct))
+                    break;
+            }
+        }
+    }
+
+    /**
+     * <p>Evicts at least one buffer of the given kind from this pool,
+     * calling {@link #decrementMemory(ByteBuffer)} for every evicted buffer.</p>
+     *
+     * @param direct whether to evict a direct or heap buffer
+     * @return whether a buffer was evicted
+     */
+    protected abstract boolean releaseMemory(boolean direct);
+
+    private AtomicLong memoryFor(boolean direct)
+    {
+        return direct ? _directMemory : _heapMemory;
+    }
+
+    public long getMemory(boolean direct)
+    {
+        return memoryFor(direct).get();
+    }
+
+    @ManagedAttribute("The bytes retained by heap ByteBuffers")
+    public long getHeapMemory()
+    {
+        return getMemory(false);
+    }
+
+    @ManagedAttribute("The bytes retained by direct ByteBuffers")
+    public long getDirectMemory()
+    {
+        return getMemory(true);
+    }
+
+    @ManagedAttribute("The max bytes retained by heap ByteBuffers, <= 0 for unlimited")
+    public long getMaxHeapMemory()
+    {
+        return _maxHeapMemory;
+    }
+
+    @ManagedAttribute("The max bytes retained by direct ByteBuffers, <= 0 for unlimited")
+    public long getMaxDirectMemory()
+    {
+        return _maxDirectMemory;
+    }
+
+    @ManagedOperation(value = "Clears this ByteBufferPool", impact = "ACTION")
+    public abstract void clear();
+}
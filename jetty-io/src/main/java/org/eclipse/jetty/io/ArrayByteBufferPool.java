@@ -23,8 +23,17 @@ import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.eclipse.jetty.util.BufferUtil;
-
-public class ArrayByteBufferPool implements ByteBufferPool
+import org.eclipse.jetty.util.annotation.ManagedObject;
+
+/**
+ * <p>A {@link ByteBufferPool} with buckets of buffers whose capacity is a
+ * multiple of a fixed increment.</p>
+ * <p>When the memory retained by the pooled buffers exceeds the configured
+ * max heap or direct memory, buffers are evicted from the buckets that have
+ * been retaining buffers for the longest time.</p>
+ */
+@ManagedObject
+public class ArrayByteBufferPool extends AbstractByteBufferPool
 {
     private final int _min;
     private final Bucket[] _direct;
@@ -38,6 +47,19 @@ public class ArrayByteBufferPool implements ByteBufferPool
 
     public ArrayByteBufferPool(int minSize, int increment, int maxSize)
     {
+        this(minSize,increment,maxSize,-1,-1);
+    }
+
+    /**
+     * @param minSize the min size of pooled buffers
+     * @param increment the capacity increment between buckets
+     * @param maxSize the max size of pooled buffers
+     * @param maxHeapMemory the max number of bytes retained by heap buffers, or a value &lt;= 0 for unlimited
+     * @param maxDirectMemory the max number of bytes retained by direct buffers, or a value &lt;= 0 for unlimited
+     */
+    public ArrayByteBufferPool(int minSize, int increment, int maxSize, long maxHeapMemory, long maxDirectMemory)
+    {
+        super(maxHeapMemory,maxDirectMemory);
         if (minSize>=increment)
             throw new IllegalArgumentException("minSize >= increment");
         if ((maxSize%increment)!=0 || increment>=maxSize)
@@ -68,6 +90,10 @@ public class ArrayByteBufferPool implements ByteBufferPool
             int capacity = bucket==null?size:bucket._size;
             buffer = direct ? BufferUtil.allocateDirect(capacity) : BufferUtil.allocate(capacity);
         }
+        else
+        {
+            decrementMemory(buffer);
+        }
 
         return buffer;
     }
@@ -77,21 +103,65 @@ public class ArrayByteBufferPool implements ByteBufferPool
     {
         if (buffer!=null)
         {    
-            Bucket bucket = bucketFor(buffer.capacity(),buffer.isDirect());
+            boolean direct=buffer.isDirect();
+            Bucket bucket = bucketFor(buffer.capacity(),direct);
             if (bucket!=null)
             {
                 BufferUtil.clear(buffer);
+                // Only record when an empty bucket starts retaining buffers, rather than
+                // writing the shared timestamp on every acquire and release.
+                if (bucket._queue.isEmpty())
+                    bucket.touch();
                 bucket._queue.offer(buffer);
+                incrementMemory(buffer);
+                releaseExcessMemory(direct);
             }
         }
     }
 
+    @Override
     public void clear()
     {
         for (int i=0;i<_direct.length;i++)
         {
-            _direct[i]._queue.clear();
-            _indirect[i]._queue.clear();
+            clear(_direct[i]);
+            clear(_indirect[i]);
+        }
+    }
+
+    private void clear(Bucket bucket)
+    {
+        while (true)
+        {
+            ByteBuffer buffer = bucket._queue.poll();
+            if (buffer==null)
+                break;
+            decrementMemory(buffer);
+        }
+    }
+
+    @Override
+    protected boolean releaseMemory(boolean direct)
+    {
+        Bucket[] buckets = bucketsFor(direct);
+        while (true)
+        {
+            Bucket oldest = null;
+            for (Bucket bucket : buckets)
+            {
+                if (bucket._queue.isEmpty())
+                    continue;
+                if (oldest==null || bucket._lastUpdate-oldest._lastUpdate<0)
+                    oldest=bucket;
+            }
+            if (oldest==null)
+                return false;
+            ByteBuffer buffer = oldest._queue.poll();
+            if (buffer!=null)
+            {
+                decrementMemory(buffer);
+                return true;
+            }
         }
     }
 
@@ -111,11 +181,17 @@ public class ArrayByteBufferPool implements ByteBufferPool
     {
         public final int _size;
         public final Queue<ByteBuffer> _queue= new ConcurrentLinkedQueue<>();
+        private volatile long _lastUpdate = System.nanoTime();
 
         Bucket(int size)
         {
             _size=size;
         }
+
+        void touch()
+        {
+            _lastUpdate = System.nanoTime();
+        }
         
         @Override
         public String toString()
@@ -28,6 +28,7 @@ import java.nio.channels.SelectionKey;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.thread.ExecutionStrategy;
 import org.eclipse.jetty.util.thread.Locker;
 import org.eclipse.jetty.util.thread.Scheduler;
 
@@ -46,6 +47,7 @@ public abstract class ChannelEndPoint extends AbstractEndPoint implements Manage
     protected final SelectionKey _key;
 
     private boolean _updatePending;
+    private volatile long _writes; // Only modified by the thread that flushes
 
     /**
      * The current value for {@link SelectionKey#interestOps()}.
@@ -58,7 +60,7 @@ public abstract class ChannelEndPoint extends AbstractEndPoint implements Manage
     protected int _desiredInterestOps;
 
     
-    private abstract class RunnableTask  implements Runnable
+    private abstract class RunnableTask implements ExecutionStrategy.Task
     {
         final String _operation;
         RunnableTask(String op)
@@ -75,6 +77,12 @@ public abstract class ChannelEndPoint extends AbstractEndPoint implements Manage
     
     private final Runnable _runUpdateKey = new RunnableTask("runUpdateKey")
     {
+        @Override
+        public boolean isNonBlocking()
+        {
+            return true;
+        }
+
         @Override
         public void run()
         {
@@ -84,6 +92,12 @@ public abstract class ChannelEndPoint extends AbstractEndPoint implements Manage
 
     private final Runnable _runFillable = new RunnableTask("runFillable")
     {
+        @Override
+        public boolean isNonBlocking()
+        {
+            return getFillInterest().isCallbackNonBlocking();
+        }
+
         @Override
         public void run()
         {
@@ -93,6 +107,12 @@ public abstract class ChannelEndPoint extends AbstractEndPoint implements Manage
 
     private final Runnable _runCompleteWrite = new RunnableTask("runCompleteWrite")
     {
+        @Override
+        public boolean isNonBlocking()
+        {
+            return getWriteFlusher().isCallbackNonBlocking();
+        }
+
         @Override
         public void run()
         {
@@ -102,6 +122,12 @@ public abstract class ChannelEndPoint extends AbstractEndPoint implements Manage
 
     private final Runnable _runFillableCompleteWrite = new RunnableTask("runFillableCompleteWrite")
     {
+        @Override
+        public boolean isNonBlocking()
+        {
+            return getFillInterest().isCallbackNonBlocking() && getWriteFlusher().isCallbackNonBlocking();
+        }
+
         @Override
         public void run()
         {
@@ -204,15 +230,22 @@ public abstract class ChannelEndPoint extends AbstractEndPoint implements Manage
         try
         {
             if (buffers.length==1)
+            {
+                ++_writes;
                 flushed=_channel.write(buffers[0]);
+            }
             else if (_gather!=null && buffers.length>1)
+            {
+                ++_writes;
                 flushed=_gather.write(buffers,0,buffers.length);
+            }
             else
             {
                 for (ByteBuffer b : buffers)
                 {
                     if (b.hasRemaining())
                     {
+                        ++_writes;
                         int l=_channel.write(b);
                         if (l>0)
                             flushed+=l;
@@ -239,6 +272,14 @@ public abstract class ChannelEndPoint extends AbstractEndPoint implements Manage
         return true;
     }
 
+    /**
+     * @return the number of writes to the channel, that is of write system calls
+     */
+    public long getWrites()
+    {
+        return _writes;
+    }
+
     public ByteChannel getChannel()
     {
         return _channel;
@@ -290,24 +331,29 @@ public abstract class ChannelEndPoint extends AbstractEndPoint implements Manage
         if (LOG.isDebugEnabled())
             LOG.debug("onSelected {}->{} r={} w={} for {}", oldInterestOps, newInterestOps, readable, writable, this);
         
-        // Run non-blocking code immediately.
-        // This producer knows that this non-blocking code is special
-        // and that it must be run in this thread and not fed to the
-        // ExecutionStrategy, which could not have any thread to run these
-        // tasks (or it may starve forever just after having run them).
-        if (readable && getFillInterest().isCallbackNonBlocking())
+        // Non-blocking tasks are run by the selector thread and not fed to
+        // the ExecutionStrategy, which could not have any thread to run
+        // them (or it may starve forever just after having run them).
+        // When only one of read or write is non-blocking, run it now
+        // and return the other as a task that may block.
+        if (readable && writable)
         {
-            if (LOG.isDebugEnabled())
-                LOG.debug("Direct readable run {}",this);
-            _runFillable.run();
-            readable = false;
-        }
-        if (writable && getWriteFlusher().isCallbackNonBlocking())
-        {
-            if (LOG.isDebugEnabled())
-                LOG.debug("Direct writable run {}",this);
-            _runCompleteWrite.run();
-            writable = false;
+            boolean fillNonBlocking = getFillInterest().isCallbackNonBlocking();
+            boolean writeNonBlocking = getWriteFlusher().isCallbackNonBlocking();
+            if (fillNonBlocking && !writeNonBlocking)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Direct readable run {}",this);
+                _selector.runInline(_runFillable);
+                readable = false;
+            }
+            else if (writeNonBlocking && !fillNonBlocking)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Direct writable run {}",this);
+                _selector.runInline(_runCompleteWrite);
+                writable = false;
+            }
         }
     
         // return task to complete the job
@@ -26,7 +26,6 @@ import java.nio.channels.CancelledKeyException;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
@@ -36,29 +35,52 @@ import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
+import org.eclipse.jetty.util.ConcurrentArrayQueue;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.component.AbstractLifeCycle;
 import org.eclipse.jetty.util.component.ContainerLifeCycle;
 import org.eclipse.jetty.util.component.Dumpable;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.statistic.SampleStatistic;
 import org.eclipse.jetty.util.thread.ExecutionStrategy;
-import org.eclipse.jetty.util.thread.Locker;
 import org.eclipse.jetty.util.thread.Scheduler;
+import org.eclipse.jetty.util.thread.ThreadPool;
 
 /**
  * <p>{@link ManagedSelector} wraps a {@link Selector} simplifying non-blocking operations on channels.</p>
  * <p>{@link ManagedSelector} runs the select loop, which waits on {@link Selector#select()} until events
  * happen for registered channels. When events happen, it notifies the {@link EndPoint} associated
  * with the channel.</p>
+ * <p>The select loop records the time spent blocked in {@link Selector#select()}, the number of keys
+ * selected per pass, the time spent running submitted actions and the time from a key being selected
+ * to its task being dispatched, to help detecting saturated or imbalanced selectors.</p>
+ * <p>Tasks produced for selected keys that declare themselves
+ * {@link ExecutionStrategy.Task#isNonBlocking() non-blocking}, such as completing a write
+ * callback or waking up a flusher, are run directly by the selector thread rather than
+ * being handed to the {@link ExecutionStrategy}, which avoids a thread handoff; only the
+ * other tasks are dispatched.</p>
  */
-public class ManagedSelector extends AbstractLifeCycle implements Runnable, Dumpable
+@ManagedObject("A NIO Selector")
+public class ManagedSelector extends AbstractLifeCycle implements ThreadPool.LongLived, Dumpable
 {
     private static final Logger LOG = Log.getLogger(ManagedSelector.class);
 
-    private final Locker _locker = new Locker();
-    private boolean _selecting = false;
-    private final Queue<Runnable> _actions = new ArrayDeque<>();
+    private final AtomicBoolean _selecting = new AtomicBoolean();
+    private final Queue<Runnable> _actions = new ConcurrentArrayQueue<>();
+    private final LongAdder _actionsSubmitted = new LongAdder();
+    private final LongAdder _wakeupsIssued = new LongAdder();
+    private final LongAdder _wakeupsAvoided = new LongAdder();
+    private final LongAdder _tasksInline = new LongAdder();
+    private final LongAdder _tasksDispatched = new LongAdder();
+    private final SampleStatistic _selectTime = new SampleStatistic();
+    private final SampleStatistic _selectedKeys = new SampleStatistic();
+    private final SampleStatistic _actionsTime = new SampleStatistic();
+    private final SampleStatistic _dispatchLatency = new SampleStatistic();
     private final SelectorManager _selectorManager;
     private final int _id;
     private final ExecutionStrategy _strategy;
@@ -109,19 +131,120 @@ public class ManagedSelector extends AbstractLifeCycle implements Runnable, Dump
         if (LOG.isDebugEnabled())
             LOG.debug("Queued change {} on {}", change, this);
 
-        Selector selector = null;
-        try (Locker.Lock lock = _locker.lock())
+        _actions.offer(change);
+        _actionsSubmitted.increment();
+
+        // Only the first submitter after the selector started
+        // selecting wakes it up, the others find it already woken.
+        if (_selecting.compareAndSet(true, false))
         {
-            _actions.offer(change);
-            if (_selecting)
-            {
-                selector = _selector;
-                // To avoid the extra select wakeup.
-                _selecting = false;
-            }
+            Selector selector = _selector;
+            if (selector != null)
+                selector.wakeup();
+            _wakeupsIssued.increment();
+        }
+        else
+        {
+            _wakeupsAvoided.increment();
         }
-        if (selector != null)
-            selector.wakeup();
+    }
+
+    @ManagedAttribute("The number of actions submitted to this selector")
+    public long getActionsSubmitted()
+    {
+        return _actionsSubmitted.sum();
+    }
+
+    @ManagedAttribute("The number of selector wakeups issued by submitted actions")
+    public long getWakeupsIssued()
+    {
+        return _wakeupsIssued.sum();
+    }
+
+    @ManagedAttribute("The number of submitted actions that did not need to wake up the selector")
+    public long getWakeupsAvoided()
+    {
+        return _wakeupsAvoided.sum();
+    }
+
+    @ManagedAttribute("The number of non-blocking tasks run by the selector thread")
+    public long getTasksInline()
+    {
+        return _tasksInline.sum();
+    }
+
+    @ManagedAttribute("The number of tasks dispatched to the execution strategy")
+    public long getTasksDispatched()
+    {
+        return _tasksDispatched.sum();
+    }
+
+    @ManagedAttribute("The number of select passes")
+    public long getSelectCount()
+    {
+        return _selectTime.getCount();
+    }
+
+    @ManagedAttribute("The max time in ns blocked in select()")
+    public long getSelectTimeMax()
+    {
+        return _selectTime.getMax();
+    }
+
+    @ManagedAttribute("The mean time in ns blocked in select()")
+    public double getSelectTimeMean()
+    {
+        return _selectTime.getMean();
+    }
+
+    @ManagedAttribute("The max number of keys selected per select pass")
+    public long getSelectedKeysMax()
+    {
+        return _selectedKeys.getMax();
+    }
+
+    @ManagedAttribute("The mean number of keys selected per select pass")
+    public double getSelectedKeysMean()
+    {
+        return _selectedKeys.getMean();
+    }
+
+    @ManagedAttribute("The max time in ns spent running actions between select passes")
+    public long getActionsTimeMax()
+    {
+        return _actionsTime.getMax();
+    }
+
+    @ManagedAttribute("The mean time in ns spent running actions between select passes")
+    public double getActionsTimeMean()
+    {
+        return _actionsTime.getMean();
+    }
+
+    @ManagedAttribute("The max time in ns from a key being selected to its task being handed to the execution strategy")
+    public long getDispatchLatencyMax()
+    {
+        return _dispatchLatency.getMax();
+    }
+
+    @ManagedAttribute("The mean time in ns from a key being selected to its task being handed to the execution strategy")
+    public double getDispatchLatencyMean()
+    {
+        return _dispatchLatency.getMean();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStatistics()
+    {
+        _actionsSubmitted.reset();
+        _wakeupsIssued.reset();
+        _wakeupsAvoided.reset();
+        _tasksInline.reset();
+        _tasksDispatched.reset();
+        _selectTime.reset();
+        _selectedKeys.reset();
+        _actionsTime.reset();
+        _dispatchLatency.reset();
     }
 
     @Override
@@ -155,6 +278,7 @@ public class ManagedSelector extends AbstractLifeCycle implements Runnable, Dump
     {
         private Set<SelectionKey> _keys = Collections.emptySet();
         private Iterator<SelectionKey> _cursor = Collections.emptyIterator();
+        private long _selectedNanos;
 
         @Override
         public Runnable produce()
@@ -178,22 +302,34 @@ public class ManagedSelector extends AbstractLifeCycle implements Runnable, Dump
 
         private Runnable runActions()
         {
+            long begin = 0;
             while (true)
             {
-                Runnable action;
-                try (Locker.Lock lock = _locker.lock())
+                Runnable action = _actions.poll();
+                if (action == null)
                 {
-                    action = _actions.poll();
-                    if (action == null)
+                    // No more actions, so we need to select.
+                    _selecting.set(true);
+                    // Actions submitted before the flag was set did not
+                    // wake up the selector, so we must run them now.
+                    if (_actions.isEmpty() || !_selecting.compareAndSet(true, false))
                     {
-                        // No more actions, so we need to select
-                        _selecting = true;
+                        if (begin != 0)
+                            _actionsTime.set(System.nanoTime() - begin);
                         return null;
                     }
+                    continue;
                 }
 
                 if (action instanceof Product)
+                {
+                    if (begin != 0)
+                        _actionsTime.set(System.nanoTime() - begin);
                     return action;
+                }
+
+                if (begin == 0)
+                    begin = System.nanoTime();
 
                 // Running the change may queue another action.
                 runChange(action);
@@ -223,19 +359,21 @@ public class ManagedSelector extends AbstractLifeCycle implements Runnable, Dump
                 {
                     if (LOG.isDebugEnabled())
                         LOG.debug("Selector loop waiting on select");
+                    long begin = System.nanoTime();
                     int selected = selector.select();
+                    _selectedNanos = System.nanoTime();
                     if (LOG.isDebugEnabled())
                         LOG.debug("Selector loop woken up from select, {}/{} selected", selected, selector.keys().size());
 
-                    try (Locker.Lock lock = _locker.lock())
-                    {
-                        // finished selecting
-                        _selecting = false;
-                    }
+                    // Finished selecting.
+                    _selecting.set(false);
 
                     _keys = selector.selectedKeys();
                     _cursor = _keys.iterator();
 
+                    _selectTime.set(_selectedNanos - begin);
+                    _selectedKeys.set(_keys.size());
+
                     return true;
                 }
             }
@@ -267,13 +405,17 @@ public class ManagedSelector extends AbstractLifeCycle implements Runnable, Dump
                             // Try to produce a task
                             Runnable task = ((Selectable)attachment).onSelected();
                             if (task != null)
-                                return task;
+                            {
+                                if (!isNonBlocking(task))
+                                    return dispatched(task);
+                                runInline(task);
+                            }
                         }
                         else if (key.isConnectable())
                         {
                             Runnable task = processConnect(key, (Connect)attachment);
                             if (task != null)
-                                return task;
+                                return dispatched(task);
                         }
                         else if (key.isAcceptable())
                         {
@@ -309,6 +451,18 @@ public class ManagedSelector extends AbstractLifeCycle implements Runnable, Dump
             return null;
         }
 
+        private boolean isNonBlocking(Runnable task)
+        {
+            return task instanceof ExecutionStrategy.Task && ((ExecutionStrategy.Task)task).isNonBlocking();
+        }
+
+        private Runnable dispatched(Runnable task)
+        {
+            _dispatchLatency.set(System.nanoTime() - _selectedNanos);
+            _tasksDispatched.increment();
+            return task;
+        }
+
         private void update()
         {
             for (SelectionKey key : _keys)
@@ -324,6 +478,19 @@ public class ManagedSelector extends AbstractLifeCycle implements Runnable, Dump
         }
     }
 
+    /**
+     * <p>Runs a non-blocking task in the selector thread.</p>
+     *
+     * @param task the non-blocking task to run
+     */
+    void runInline(Runnable task)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("Running inline {}", task);
+        _tasksInline.increment();
+        task.run();
+    }
+
     private interface Product extends Runnable
     {
     }
@@ -377,7 +544,13 @@ public class ManagedSelector extends AbstractLifeCycle implements Runnable, Dump
         {
             channel = _selectorManager.doAccept(server);
             if (channel!=null)
-                _selectorManager.accepted(channel);
+            {
+                Object attachment = key.attachment();
+                if (attachment instanceof Acceptor && ((Acceptor)attachment)._affine)
+                    _selectorManager.accepted(channel, this);
+                else
+                    _selectorManager.accepted(channel);
+            }
         }
         catch (Throwable x)
         {
@@ -438,7 +611,16 @@ public class ManagedSelector extends AbstractLifeCycle implements Runnable, Dump
     @Override
     public void dump(Appendable out, String indent) throws IOException
     {
-        out.append(String.valueOf(this)).append(" id=").append(String.valueOf(_id)).append(System.lineSeparator());
+        out.append(String.valueOf(this)).append(" id=").append(String.valueOf(_id))
+                .append(" actions=").append(String.valueOf(getActionsSubmitted()))
+                .append(" wakeups=").append(String.valueOf(getWakeupsIssued()))
+                .append("/").append(String.valueOf(getWakeupsAvoided()))
+                .append(" selects=").append(String.valueOf(getSelectCount()))
+                .append(String.format(" select=%.0f/%dns", getSelectTimeMean(), getSelectTimeMax()))
+                .append(String.format(" keys=%.1f/%d", getSelectedKeysMean(), getSelectedKeysMax()))
+                .append(String.format(" run=%.0f/%dns", getActionsTimeMean(), getActionsTimeMax()))
+                .append(String.format(" dispatch=%.0f/%dns", getDispatchLatencyMean(), getDispatchLatencyMax()))
+                .append(System.lineSeparator());
 
         Selector selector = _selector;
         if (selector != null && selector.isOpen())
@@ -513,10 +695,17 @@ public class ManagedSelector extends AbstractLifeCycle implements Runnable, Dump
     class Acceptor implements Runnable
     {
         private final SelectableChannel _channel;
+        private final boolean _affine;
 
         public Acceptor(SelectableChannel channel)
+        {
+            this(channel, false);
+        }
+
+        public Acceptor(SelectableChannel channel, boolean affine)
         {
             this._channel = channel;
+            this._affine = affine;
         }
 
         @Override
@@ -524,7 +713,7 @@ public class ManagedSelector extends AbstractLifeCycle implements Runnable, Dump
         {
             try
             {
-                SelectionKey key = _channel.register(_selector, SelectionKey.OP_ACCEPT, null);
+                SelectionKey key = _channel.register(_selector, SelectionKey.OP_ACCEPT, this);
                 if (LOG.isDebugEnabled())
                     LOG.debug("{} acceptor={}", this, key);
             }
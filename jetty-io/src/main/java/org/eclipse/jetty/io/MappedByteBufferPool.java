@@ -19,6 +19,7 @@
 package org.eclipse.jetty.io;
 
 import java.nio.ByteBuffer;
+import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -26,8 +27,16 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.jetty.util.BufferUtil;
-
-public class MappedByteBufferPool implements ByteBufferPool
+import org.eclipse.jetty.util.annotation.ManagedObject;
+
+/**
+ * <p>A {@link ByteBufferPool} with buckets of buffers whose capacity is a
+ * multiple of a factor, created on demand.</p>
+ * <p>When the memory retained by the pooled buffers exceeds the configured
+ * max heap or direct memory, buffers are evicted from the largest buckets.</p>
+ */
+@ManagedObject
+public class MappedByteBufferPool extends AbstractByteBufferPool
 {
     private final ConcurrentMap<Integer, Queue<ByteBuffer>> directBuffers = new ConcurrentHashMap<>();
     private final ConcurrentMap<Integer, Queue<ByteBuffer>> heapBuffers = new ConcurrentHashMap<>();
@@ -40,6 +49,17 @@ public class MappedByteBufferPool implements ByteBufferPool
 
     public MappedByteBufferPool(int factor)
     {
+        this(factor,-1,-1);
+    }
+
+    /**
+     * @param factor the capacity factor of the buckets
+     * @param maxHeapMemory the max number of bytes retained by heap buffers, or a value &lt;= 0 for unlimited
+     * @param maxDirectMemory the max number of bytes retained by direct buffers, or a value &lt;= 0 for unlimited
+     */
+    public MappedByteBufferPool(int factor, long maxHeapMemory, long maxDirectMemory)
+    {
+        super(maxHeapMemory,maxDirectMemory);
         this.factor = factor;
     }
 
@@ -59,6 +79,10 @@ public class MappedByteBufferPool implements ByteBufferPool
             int capacity = bucket * factor;
             result = newByteBuffer(capacity, direct);
         }
+        else
+        {
+            decrementMemory(result);
+        }
 
         BufferUtil.clear(result);
         return result;
@@ -94,12 +118,67 @@ public class MappedByteBufferPool implements ByteBufferPool
 
         BufferUtil.clear(buffer);
         byteBuffers.offer(buffer);
+        incrementMemory(buffer);
+
+        // If clear() has removed the queue meanwhile, drop the buffers released into it.
+        if (buffers.get(bucket) != byteBuffers)
+            drain(byteBuffers);
+
+        releaseExcessMemory(buffer.isDirect());
     }
 
+    @Override
     public void clear()
     {
-        directBuffers.clear();
-        heapBuffers.clear();
+        clear(directBuffers);
+        clear(heapBuffers);
+    }
+
+    private void clear(ConcurrentMap<Integer, Queue<ByteBuffer>> buffers)
+    {
+        // Remove each queue before draining it, so that the buffers released into
+        // a removed queue are either drained here or by release().
+        for (Integer bucket : buffers.keySet())
+        {
+            Queue<ByteBuffer> byteBuffers = buffers.remove(bucket);
+            if (byteBuffers != null)
+                drain(byteBuffers);
+        }
+    }
+
+    private void drain(Queue<ByteBuffer> byteBuffers)
+    {
+        while (true)
+        {
+            ByteBuffer buffer = byteBuffers.poll();
+            if (buffer == null)
+                break;
+            decrementMemory(buffer);
+        }
+    }
+
+    @Override
+    protected boolean releaseMemory(boolean direct)
+    {
+        ConcurrentMap<Integer, Queue<ByteBuffer>> buffers = buffersFor(direct);
+        while (true)
+        {
+            int largest = -1;
+            for (Map.Entry<Integer, Queue<ByteBuffer>> entry : buffers.entrySet())
+            {
+                if (entry.getKey() > largest && !entry.getValue().isEmpty())
+                    largest = entry.getKey();
+            }
+            if (largest < 0)
+                return false;
+            Queue<ByteBuffer> byteBuffers = buffers.get(largest);
+            ByteBuffer buffer = byteBuffers == null ? null : byteBuffers.poll();
+            if (buffer != null)
+            {
+                decrementMemory(buffer);
+                return true;
+            }
+        }
     }
 
     private int bucketFor(int size)
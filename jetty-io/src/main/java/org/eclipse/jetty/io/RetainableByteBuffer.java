@@ -0,0 +1,120 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Retainable;
+
+/**
+ * <p>A pooled {@link ByteBuffer} with a reference count.</p>
+ * <p>A newly created instance has a reference count of 1, owned by its creator.
+ * Consumers that need the buffer bytes (or slices of them) beyond the scope in
+ * which they were handed the buffer {@link #retain() retain} it and
+ * {@link #release() release} it when done, avoiding a copy of the bytes.
+ * When the reference count drops to zero, the buffer is returned to its
+ * {@link ByteBufferPool}.</p>
+ */
+public class RetainableByteBuffer implements Retainable
+{
+    private final ByteBufferPool pool;
+    private final ByteBuffer buffer;
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    public RetainableByteBuffer(ByteBufferPool pool, int size, boolean direct)
+    {
+        this(pool, pool.acquire(size, direct));
+    }
+
+    public RetainableByteBuffer(ByteBufferPool pool, ByteBuffer buffer)
+    {
+        this.pool = pool;
+        this.buffer = buffer;
+    }
+
+    public ByteBuffer getBuffer()
+    {
+        return buffer;
+    }
+
+    public int getReferences()
+    {
+        return references.get();
+    }
+
+    @Override
+    public void retain()
+    {
+        while (true)
+        {
+            int r = references.get();
+            if (r == 0)
+                throw new IllegalStateException("released " + this);
+            if (references.compareAndSet(r, r + 1))
+                break;
+        }
+    }
+
+    /**
+     * <p>Releases a reference to this buffer, returning the buffer to
+     * the pool when the last reference is released.</p>
+     *
+     * @return the reference count after the release
+     */
+    public int release()
+    {
+        int ref = references.decrementAndGet();
+        if (ref == 0)
+            pool.release(buffer);
+        else if (ref < 0)
+            throw new IllegalStateException("already released " + this);
+        return ref;
+    }
+
+    /**
+     * @return whether references other than the creator's one exist
+     */
+    public boolean isRetained()
+    {
+        return references.get() > 1;
+    }
+
+    public int remaining()
+    {
+        return buffer.remaining();
+    }
+
+    public boolean hasRemaining()
+    {
+        return buffer.hasRemaining();
+    }
+
+    public boolean isEmpty()
+    {
+        return !buffer.hasRemaining();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,r=%d}", getClass().getSimpleName(), hashCode(), BufferUtil.toDetailString(buffer), getReferences());
+    }
+}
@@ -27,12 +27,10 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.nio.channels.spi.SelectorProvider;
 import java.util.concurrent.Executor;
 
-import org.eclipse.jetty.util.TypeUtil;
-import org.eclipse.jetty.util.component.AbstractLifeCycle;
 import org.eclipse.jetty.util.component.ContainerLifeCycle;
-import org.eclipse.jetty.util.component.Dumpable;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.thread.Scheduler;
@@ -43,7 +41,7 @@ import org.eclipse.jetty.util.thread.Scheduler;
  * <p>{@link SelectorManager} subclasses implement methods to return protocol-specific
  * {@link EndPoint}s and {@link Connection}s.</p>
  */
-public abstract class SelectorManager extends AbstractLifeCycle implements Dumpable
+public abstract class SelectorManager extends ContainerLifeCycle
 {
     public static final int DEFAULT_CONNECT_TIMEOUT = 15000;
     protected static final Logger LOG = Log.getLogger(SelectorManager.class);
@@ -51,6 +49,7 @@ public abstract class SelectorManager extends AbstractLifeCycle implements Dumpa
     private final Executor executor;
     private final Scheduler scheduler;
     private final ManagedSelector[] _selectors;
+    private SelectorProvider _selectorProvider = SelectorProvider.provider();
     private long _connectTimeout = DEFAULT_CONNECT_TIMEOUT;
     private long _selectorIndex;
 
@@ -78,6 +77,29 @@ public abstract class SelectorManager extends AbstractLifeCycle implements Dumpa
         return scheduler;
     }
 
+    /**
+     * @return the {@link SelectorProvider} used to open the selectors
+     */
+    public SelectorProvider getSelectorProvider()
+    {
+        return _selectorProvider;
+    }
+
+    /**
+     * <p>Sets the {@link SelectorProvider} used to open the selectors.</p>
+     * <p>Channels registered with this {@link SelectorManager} must be
+     * created by the same provider; this allows alternative transports,
+     * for example a native provider, to be plugged in without subclassing.</p>
+     *
+     * @param selectorProvider the {@link SelectorProvider} used to open the selectors
+     */
+    public void setSelectorProvider(SelectorProvider selectorProvider)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+        _selectorProvider = selectorProvider == null ? SelectorProvider.provider() : selectorProvider;
+    }
+
     /**
      * Get the connect timeout
      *
@@ -220,6 +242,20 @@ public abstract class SelectorManager extends AbstractLifeCycle implements Dumpa
         selector.submit(selector.new Accept(channel, attachment));
     }
 
+    /**
+     * <p>Registers a channel to perform non-blocking read/write operations
+     * with the given {@link ManagedSelector}.</p>
+     *
+     * @param channel    the channel to register
+     * @param attachment the attachment object
+     * @param selector   the selector to register the channel with
+     * @see #accept(SelectableChannel, Object)
+     */
+    public void accept(SelectableChannel channel, Object attachment, ManagedSelector selector)
+    {
+        selector.submit(selector.new Accept(channel, attachment));
+    }
+
     /**
      * <p>Registers a server channel for accept operations.
      * When a {@link SocketChannel} is accepted from the given {@link ServerSocketChannel}
@@ -234,6 +270,23 @@ public abstract class SelectorManager extends AbstractLifeCycle implements Dumpa
         selector.submit(selector.new Acceptor(server));
     }
 
+    /**
+     * <p>Registers a server channel for accept operations with the given selector.</p>
+     * <p>Channels accepted from the given {@link ServerSocketChannel} are passed to
+     * {@link #accepted(SelectableChannel, ManagedSelector)} together with the selector
+     * that accepted them, so that they may be registered with the same selector.
+     * This allows each of several listening sockets bound to the same port to be
+     * served by its own selector.</p>
+     *
+     * @param server   the server channel to register
+     * @param selector the index of the selector, modulo the number of selectors
+     */
+    public void acceptor(SelectableChannel server, int selector)
+    {
+        final ManagedSelector managed = _selectors[selector % getSelectorCount()];
+        managed.submit(managed.new Acceptor(server, true));
+    }
+
     /**
      * Callback method when a channel is accepted from the {@link ServerSocketChannel}
      * passed to {@link #acceptor(SelectableChannel)}.
@@ -248,17 +301,34 @@ public abstract class SelectorManager extends AbstractLifeCycle implements Dumpa
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Callback method when a channel is accepted from a {@link ServerSocketChannel}
+     * passed to {@link #acceptor(SelectableChannel, int)}.
+     * The default impl calls {@link #accepted(SelectableChannel)}; subclasses may
+     * override it to register the channel with the accepting selector via
+     * {@link #accept(SelectableChannel, Object, ManagedSelector)}.
+     *
+     * @param channel  the accepted channel
+     * @param selector the selector that accepted the channel
+     * @throws IOException if unable to accept channel
+     */
+    protected void accepted(SelectableChannel channel, ManagedSelector selector) throws IOException
+    {
+        accepted(channel);
+    }
+
     @Override
     protected void doStart() throws Exception
     {
-        super.doStart();
         for (int i = 0; i < _selectors.length; i++)
         {
             ManagedSelector selector = newSelector(i);
             _selectors[i] = selector;
-            selector.start();
-            execute(selector);
+            addBean(selector);
         }
+        super.doStart();
+        for (ManagedSelector selector : _selectors)
+            execute(selector);
     }
 
     /**
@@ -275,9 +345,9 @@ public abstract class SelectorManager extends AbstractLifeCycle implements Dumpa
     @Override
     protected void doStop() throws Exception
     {
-        for (ManagedSelector selector : _selectors)
-            selector.stop();
         super.doStop();
+        for (ManagedSelector selector : _selectors)
+            removeBean(selector);
     }
 
     /**
@@ -367,7 +437,7 @@ public abstract class SelectorManager extends AbstractLifeCycle implements Dumpa
 
     protected Selector newSelector() throws IOException
     {
-        return Selector.open();
+        return getSelectorProvider().openSelector();
     }
     
     /**
@@ -394,18 +464,5 @@ public abstract class SelectorManager extends AbstractLifeCycle implements Dumpa
      * @throws IOException if unable to create new connection
      */
     public abstract Connection newConnection(SelectableChannel channel, EndPoint endpoint, Object attachment) throws IOException;
-
-    @Override
-    public String dump()
-    {
-        return ContainerLifeCycle.dump(this);
-    }
-
-    @Override
-    public void dump(Appendable out, String indent) throws IOException
-    {
-        ContainerLifeCycle.dumpObject(out, this);
-        ContainerLifeCycle.dump(out, indent, TypeUtil.asList(_selectors));
-    }
     
 }
@@ -0,0 +1,326 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+
+/**
+ * <p>A {@link ByteBufferPool} that carves its buffers out of large slabs.</p>
+ * <p>Rather than allocating every pooled buffer separately, with its own native
+ * allocation and {@code Cleaner} for direct buffers, this pool allocates slabs
+ * of {@code slabSize} bytes and hands out slices of the slabs, sized like the
+ * buckets of {@link ArrayByteBufferPool}. A slice belongs to its bucket for the
+ * lifetime of the pool.</p>
+ * <p>At most {@code maxSlabs} slabs are allocated for direct and for heap buffers.
+ * When the slabs are exhausted, buffers are acquired from a fallback pool, by default
+ * an {@link ArrayByteBufferPool} that retains at most as much memory as the slabs.
+ * Fallback buffers are released to the fallback pool, never to the buckets, so that
+ * every slice can always be returned to its bucket.</p>
+ */
+@ManagedObject
+public class SlabByteBufferPool implements ByteBufferPool
+{
+    private final int _min;
+    private final int _inc;
+    private final Slabs _direct;
+    private final Slabs _indirect;
+    private final ByteBufferPool _fallback;
+
+    public SlabByteBufferPool()
+    {
+        this(0,1024,64*1024,1024*1024,64);
+    }
+
+    /**
+     * @param minSize the min size of pooled buffers
+     * @param increment the capacity increment between buckets
+     * @param maxSize the max size of pooled buffers
+     * @param slabSize the size of each slab
+     * @param maxSlabs the max number of direct slabs and of heap slabs
+     */
+    public SlabByteBufferPool(int minSize, int increment, int maxSize, int slabSize, int maxSlabs)
+    {
+        this(minSize,increment,maxSize,slabSize,maxSlabs,new ArrayByteBufferPool(minSize,increment,maxSize,(long)slabSize*maxSlabs,(long)slabSize*maxSlabs));
+    }
+
+    /**
+     * @param minSize the min size of pooled buffers
+     * @param increment the capacity increment between buckets
+     * @param maxSize the max size of pooled buffers
+     * @param slabSize the size of each slab
+     * @param maxSlabs the max number of direct slabs and of heap slabs
+     * @param fallback the pool of the buffers acquired once the slabs are exhausted
+     */
+    public SlabByteBufferPool(int minSize, int increment, int maxSize, int slabSize, int maxSlabs, ByteBufferPool fallback)
+    {
+        if (minSize>=increment)
+            throw new IllegalArgumentException("minSize >= increment");
+        if ((maxSize%increment)!=0 || increment>=maxSize)
+            throw new IllegalArgumentException("increment must be a divisor of maxSize");
+        if (slabSize<maxSize)
+            throw new IllegalArgumentException("slabSize < maxSize");
+        _min=minSize;
+        _inc=increment;
+        _direct=new Slabs(true,increment,maxSize/increment,slabSize,maxSlabs);
+        _indirect=new Slabs(false,increment,maxSize/increment,slabSize,maxSlabs);
+        _fallback=fallback;
+    }
+
+    @Override
+    public ByteBuffer acquire(int size, boolean direct)
+    {
+        int b=bucketFor(size);
+        if (b<0)
+            return direct?BufferUtil.allocateDirect(size):BufferUtil.allocate(size);
+        Slabs slabs=slabsFor(direct);
+        ByteBuffer buffer=slabs.acquire(b);
+        if (buffer==null)
+        {
+            slabs._fallbacks.incrementAndGet();
+            buffer=_fallback.acquire(size,direct);
+        }
+        return buffer;
+    }
+
+    @Override
+    public void release(ByteBuffer buffer)
+    {
+        if (buffer!=null)
+        {
+            int b=bucketFor(buffer.capacity());
+            Slabs slabs=slabsFor(buffer.isDirect());
+            if (b>=0 && slabs._slices.contains(buffer))
+            {
+                BufferUtil.clear(buffer);
+                slabs.release(b,buffer);
+            }
+            else
+            {
+                _fallback.release(buffer);
+            }
+        }
+    }
+
+    private int bucketFor(int size)
+    {
+        if (size<=_min)
+            return -1;
+        int b=(size-1)/_inc;
+        if (b>=_direct._buckets.length)
+            return -1;
+        return b;
+    }
+
+    private Slabs slabsFor(boolean direct)
+    {
+        return direct?_direct:_indirect;
+    }
+
+    @ManagedAttribute("The number of direct slabs allocated")
+    public int getDirectSlabs()
+    {
+        return _direct.getSlabCount();
+    }
+
+    @ManagedAttribute("The number of heap slabs allocated")
+    public int getHeapSlabs()
+    {
+        return _indirect.getSlabCount();
+    }
+
+    @ManagedAttribute("The number of direct buffers acquired from the fallback pool")
+    public long getDirectFallbacks()
+    {
+        return _direct._fallbacks.get();
+    }
+
+    @ManagedAttribute("The number of heap buffers acquired from the fallback pool")
+    public long getHeapFallbacks()
+    {
+        return _indirect._fallbacks.get();
+    }
+
+    // Package local for testing
+    Bucket[] bucketsFor(boolean direct)
+    {
+        return slabsFor(direct)._buckets;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{direct=%d/%d,heap=%d/%d}",getClass().getSimpleName(),hashCode(),
+                _direct.getSlabCount(),_direct._maxSlabs,_indirect.getSlabCount(),_indirect._maxSlabs);
+    }
+
+    static class Bucket
+    {
+        final int _size;
+        final Queue<ByteBuffer> _queue=new ConcurrentLinkedQueue<>();
+        final AtomicInteger _available=new AtomicInteger();
+        final AtomicInteger _carved=new AtomicInteger();
+
+        Bucket(int size)
+        {
+            _size=size;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("Bucket@%x{%d,%d/%d}",hashCode(),_size,_available.get(),_carved.get());
+        }
+    }
+
+    /**
+     * <p>The slabs and buckets for either direct or heap buffers.</p>
+     */
+    private static class Slabs
+    {
+        private final boolean _isDirect;
+        private final Bucket[] _buckets;
+        private final int _slabSize;
+        private final int _maxSlabs;
+        private final AtomicLong _fallbacks=new AtomicLong();
+        private final Slices _slices=new Slices();
+        private ByteBuffer _slab;
+        private int _slabCount;
+
+        private Slabs(boolean direct, int increment, int buckets, int slabSize, int maxSlabs)
+        {
+            _isDirect=direct;
+            _buckets=new Bucket[buckets];
+            for (int i=0;i<buckets;i++)
+                _buckets[i]=new Bucket((i+1)*increment);
+            _slabSize=slabSize;
+            _maxSlabs=maxSlabs;
+        }
+
+        private ByteBuffer acquire(int b)
+        {
+            Bucket bucket=_buckets[b];
+            ByteBuffer buffer=bucket._queue.poll();
+            if (buffer!=null)
+            {
+                bucket._available.decrementAndGet();
+                return buffer;
+            }
+
+            return carve(bucket);
+        }
+
+        private void release(int b, ByteBuffer buffer)
+        {
+            Bucket bucket=_buckets[b];
+            bucket._available.incrementAndGet();
+            bucket._queue.offer(buffer);
+        }
+
+        private synchronized ByteBuffer carve(Bucket bucket)
+        {
+            int size=bucket._size;
+            if (_slab==null || _slab.remaining()<size)
+            {
+                if (_slabCount>=_maxSlabs)
+                    return null;
+                _slab=_isDirect?ByteBuffer.allocateDirect(_slabSize):ByteBuffer.allocate(_slabSize);
+                ++_slabCount;
+            }
+
+            int position=_slab.position();
+            _slab.limit(position+size);
+            ByteBuffer slice=_slab.slice();
+            _slab.position(position+size);
+            _slab.limit(_slab.capacity());
+            _slices.add(slice);
+            bucket._carved.incrementAndGet();
+            BufferUtil.clear(slice);
+            return slice;
+        }
+
+        private synchronized int getSlabCount()
+        {
+            return _slabCount;
+        }
+    }
+
+    /**
+     * <p>The slices carved from the slabs, by identity since {@link ByteBuffer}
+     * equality depends on the buffer content.</p>
+     * <p>The slices are kept in an open addressing hash table, so that they can be
+     * looked up without locking. Slices are only added, while holding the lock of
+     * the {@link Slabs}, and the table is published through a volatile field.</p>
+     */
+    private static class Slices
+    {
+        private volatile ByteBuffer[] _table=new ByteBuffer[64];
+        private int _size;
+
+        private void add(ByteBuffer slice)
+        {
+            ByteBuffer[] table=_table;
+            if (2*(_size+1)>table.length)
+            {
+                ByteBuffer[] grown=new ByteBuffer[2*table.length];
+                for (ByteBuffer s : table)
+                {
+                    if (s!=null)
+                        insert(grown,s);
+                }
+                table=grown;
+            }
+            insert(table,slice);
+            ++_size;
+            _table=table;
+        }
+
+        private static void insert(ByteBuffer[] table, ByteBuffer slice)
+        {
+            int mask=table.length-1;
+            int i=System.identityHashCode(slice)&mask;
+            while (table[i]!=null)
+                i=(i+1)&mask;
+            table[i]=slice;
+        }
+
+        private boolean contains(ByteBuffer buffer)
+        {
+            ByteBuffer[] table=_table;
+            int mask=table.length-1;
+            int i=System.identityHashCode(buffer)&mask;
+            while (true)
+            {
+                ByteBuffer slice=table[i];
+                if (slice==null)
+                    return false;
+                if (slice==buffer)
+                    return true;
+                i=(i+1)&mask;
+            }
+        }
+    }
+}
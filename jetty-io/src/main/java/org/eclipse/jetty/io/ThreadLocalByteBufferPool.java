@@ -0,0 +1,308 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.eclipse.jetty.util.BufferUtil;
+
+/**
+ * <p>A {@link ByteBufferPool} that keeps a per-thread cache of buffers in front
+ * of shared buckets, to avoid contention on the shared buckets.</p>
+ * <p>Buckets are sized like in {@link ArrayByteBufferPool}. For every bucket,
+ * each thread keeps two <em>magazines</em>, small arrays of buffers. Buffers are
+ * acquired from and released to the thread magazines without any synchronization.
+ * Only when both thread magazines are empty (on acquire) or full (on release) a
+ * whole magazine is exchanged with the shared depot of the bucket, so that
+ * a thread touches the shared depot at most once every {@code magazineSize}
+ * operations.</p>
+ * <p>Buffers cached by a thread are not visible to other threads, so this pool
+ * retains more buffers than {@link ArrayByteBufferPool}; it is best suited to
+ * a bounded set of long lived threads such as selector and worker threads.</p>
+ */
+public class ThreadLocalByteBufferPool implements ByteBufferPool
+{
+    private final int _min;
+    private final int _inc;
+    private final int _magazineSize;
+    private final Depot[] _direct;
+    private final Depot[] _indirect;
+    private final ThreadLocal<Cache> _cache = new ThreadLocal<Cache>()
+    {
+        @Override
+        protected Cache initialValue()
+        {
+            return new Cache(_direct.length);
+        }
+    };
+
+    public ThreadLocalByteBufferPool()
+    {
+        this(0,1024,64*1024,16);
+    }
+
+    public ThreadLocalByteBufferPool(int minSize, int increment, int maxSize, int magazineSize)
+    {
+        if (minSize>=increment)
+            throw new IllegalArgumentException("minSize >= increment");
+        if ((maxSize%increment)!=0 || increment>=maxSize)
+            throw new IllegalArgumentException("increment must be a divisor of maxSize");
+        if (magazineSize<=0)
+            throw new IllegalArgumentException("magazineSize <= 0");
+        _min=minSize;
+        _inc=increment;
+        _magazineSize=magazineSize;
+
+        _direct=new Depot[maxSize/increment];
+        _indirect=new Depot[maxSize/increment];
+
+        int size=0;
+        for (int i=0;i<_direct.length;i++)
+        {
+            size+=_inc;
+            _direct[i]=new Depot(size);
+            _indirect[i]=new Depot(size);
+        }
+    }
+
+    public int getMagazineSize()
+    {
+        return _magazineSize;
+    }
+
+    @Override
+    public ByteBuffer acquire(int size, boolean direct)
+    {
+        int b=bucketFor(size);
+        ByteBuffer buffer=null;
+        if (b>=0)
+        {
+            Depot depot=direct?_direct[b]:_indirect[b];
+            buffer=_cache.get().slot(b,direct).pop(depot);
+            size=depot._size;
+        }
+
+        if (buffer==null)
+            buffer=direct?BufferUtil.allocateDirect(size):BufferUtil.allocate(size);
+
+        return buffer;
+    }
+
+    @Override
+    public void release(ByteBuffer buffer)
+    {
+        if (buffer!=null)
+        {
+            int b=bucketFor(buffer.capacity());
+            if (b>=0)
+            {
+                boolean direct=buffer.isDirect();
+                BufferUtil.clear(buffer);
+                _cache.get().slot(b,direct).push(direct?_direct[b]:_indirect[b],buffer);
+            }
+        }
+    }
+
+    /**
+     * <p>Clears the shared depots and the magazines of the calling thread.</p>
+     * <p>Magazines cached by other threads are not cleared, since they are
+     * only ever accessed by their owner thread.</p>
+     */
+    public void clear()
+    {
+        _cache.remove();
+        for (int i=0;i<_direct.length;i++)
+        {
+            _direct[i]._full.clear();
+            _indirect[i]._full.clear();
+        }
+    }
+
+    private int bucketFor(int size)
+    {
+        if (size<=_min)
+            return -1;
+        int b=(size-1)/_inc;
+        if (b>=_direct.length)
+            return -1;
+        return b;
+    }
+
+    // Package local for testing
+    Depot[] depotsFor(boolean direct)
+    {
+        return direct?_direct:_indirect;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{min=%d,inc=%d,buckets=%d,magazine=%d}",getClass().getSimpleName(),hashCode(),_min,_inc,_direct.length,_magazineSize);
+    }
+
+    /**
+     * <p>The shared store of full magazines for a bucket size.</p>
+     */
+    static class Depot
+    {
+        final int _size;
+        final Queue<Magazine> _full=new ConcurrentLinkedQueue<>();
+        final Queue<Magazine> _empty=new ConcurrentLinkedQueue<>();
+
+        Depot(int size)
+        {
+            _size=size;
+        }
+
+        int getBufferCount()
+        {
+            int count=0;
+            for (Magazine magazine : _full)
+                count+=magazine._count;
+            return count;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("Depot@%x{%d,%d}",hashCode(),_size,_full.size());
+        }
+    }
+
+    /**
+     * <p>A fixed size array of buffers, owned by one thread at a time.</p>
+     */
+    static class Magazine
+    {
+        final ByteBuffer[] _buffers;
+        int _count;
+
+        Magazine(int size)
+        {
+            _buffers=new ByteBuffer[size];
+        }
+
+        boolean isEmpty()
+        {
+            return _count==0;
+        }
+
+        boolean isFull()
+        {
+            return _count==_buffers.length;
+        }
+
+        ByteBuffer pop()
+        {
+            ByteBuffer buffer=_buffers[--_count];
+            _buffers[_count]=null;
+            return buffer;
+        }
+
+        void push(ByteBuffer buffer)
+        {
+            _buffers[_count++]=buffer;
+        }
+    }
+
+    /**
+     * <p>The loaded and previous magazines of one thread for one bucket.</p>
+     * <p>Keeping two magazines avoids exchanging a magazine with the depot
+     * on every operation when a thread alternates acquires and releases
+     * around a magazine boundary.</p>
+     */
+    private class Slot
+    {
+        private Magazine _loaded=new Magazine(_magazineSize);
+        private Magazine _previous=new Magazine(_magazineSize);
+
+        private ByteBuffer pop(Depot depot)
+        {
+            if (_loaded.isEmpty())
+            {
+                if (_previous.isEmpty())
+                {
+                    Magazine full=depot._full.poll();
+                    if (full==null)
+                        return null;
+                    depot._empty.offer(_previous);
+                    _previous=_loaded;
+                    _loaded=full;
+                }
+                else
+                {
+                    swap();
+                }
+            }
+            return _loaded.pop();
+        }
+
+        private void push(Depot depot, ByteBuffer buffer)
+        {
+            if (_loaded.isFull())
+            {
+                if (_previous.isFull())
+                {
+                    depot._full.offer(_previous);
+                    _previous=_loaded;
+                    Magazine empty=depot._empty.poll();
+                    _loaded=empty==null?new Magazine(_magazineSize):empty;
+                }
+                else
+                {
+                    swap();
+                }
+            }
+            _loaded.push(buffer);
+        }
+
+        private void swap()
+        {
+            Magazine magazine=_loaded;
+            _loaded=_previous;
+            _previous=magazine;
+        }
+    }
+
+    /**
+     * <p>The per-thread cache, with a lazily created {@link Slot} per bucket.</p>
+     */
+    private class Cache
+    {
+        private final Slot[] _direct;
+        private final Slot[] _indirect;
+
+        private Cache(int buckets)
+        {
+            _direct=new Slot[buckets];
+            _indirect=new Slot[buckets];
+        }
+
+        private Slot slot(int bucket, boolean direct)
+        {
+            Slot[] slots=direct?_direct:_indirect;
+            Slot slot=slots[bucket];
+            if (slot==null)
+                slots[bucket]=slot=new Slot();
+            return slot;
+        }
+    }
+}
@@ -60,6 +60,7 @@ public class SslClientConnectionFactory implements ClientConnectionFactory
 
         SslConnection sslConnection = newSslConnection(byteBufferPool, executor, endPoint, engine);
         sslConnection.setRenegotiationAllowed(sslContextFactory.isRenegotiationAllowed());
+        sslConnection.setDynamicRecordSizing(sslContextFactory);
         endPoint.setConnection(sslConnection);
         EndPoint appEndPoint = sslConnection.getDecryptedEndPoint();
         appEndPoint.setConnection(connectionFactory.newConnection(appEndPoint, context));
@@ -22,7 +22,12 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLEngineResult;
@@ -36,6 +41,7 @@ import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.io.EofException;
+import org.eclipse.jetty.io.FillInterest;
 import org.eclipse.jetty.io.RuntimeIOException;
 import org.eclipse.jetty.io.SelectChannelEndPoint;
 import org.eclipse.jetty.io.WriteFlusher;
@@ -43,6 +49,7 @@ import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
 
 /**
  * A Connection that acts as an interceptor between an EndPoint providing SSL encrypted data
@@ -90,6 +97,13 @@ public class SslConnection extends AbstractConnection
     private final boolean _encryptedDirectBuffers = true;
     private final boolean _decryptedDirectBuffers = false;
     private boolean _renegotiationAllowed;
+    private final List<SslHandshakeListener> handshakeListeners = new ArrayList<>();
+    private volatile Executor _handshakeExecutor;
+    private long _handshakeBeginNanos;
+    private boolean _dynamicRecordSizingEnabled;
+    private int _smallRecordSize = 1369;
+    private long _dynamicRecordSizeThreshold = 1024 * 1024;
+    private long _dynamicRecordSizeIdleTimeout = 1000;
     private final Runnable _runCompletWrite = new Runnable()
     {
         @Override
@@ -142,12 +156,118 @@ public class SslConnection extends AbstractConnection
         this._renegotiationAllowed = renegotiationAllowed;
     }
 
+    /**
+     * @return the executor that runs the {@link SSLEngine} delegated tasks, or null
+     * if the delegated tasks are run by the thread that fills or flushes
+     */
+    public Executor getHandshakeExecutor()
+    {
+        return _handshakeExecutor;
+    }
+
+    /**
+     * <p>Sets the executor that runs the {@link SSLEngine} delegated tasks.</p>
+     * <p>The delegated tasks perform the expensive operations of the TLS handshake,
+     * such as the key exchange. When an executor is set, they are offloaded to it
+     * and the fill or flush that needed them returns without progress, to be
+     * woken up when the tasks complete; this avoids that a burst of handshakes
+     * occupies the threads that fill and flush established connections.</p>
+     * <p>If the executor rejects a task, for example a thread pool with a bounded
+     * queue that is saturated, the task is run by the calling thread, which slows
+     * down the processing of new connections.</p>
+     *
+     * @param handshakeExecutor the executor for delegated tasks, or null to run them in the calling thread
+     */
+    public void setHandshakeExecutor(Executor handshakeExecutor)
+    {
+        _handshakeExecutor = handshakeExecutor;
+    }
+
+    public boolean isDynamicRecordSizingEnabled()
+    {
+        return _dynamicRecordSizingEnabled;
+    }
+
+    /**
+     * <p>Enables dynamic TLS record sizing.</p>
+     * <p>When enabled, application data is wrapped in records of at most
+     * {@link #getSmallRecordSize()} plaintext bytes, so that each record fits
+     * a TCP segment and can be decrypted as soon as it arrives; the small records
+     * are flushed in batches that fill the encrypted output buffer, until
+     * {@link #getDynamicRecordSizeThreshold()} bytes have been written.
+     * Then application data is wrapped in full size records, until the connection
+     * does not write for {@link #getDynamicRecordSizeIdleTimeout()} ms, when
+     * the TCP congestion window is likely to be reset.</p>
+     *
+     * @param dynamicRecordSizingEnabled whether dynamic TLS record sizing is enabled
+     * @see org.eclipse.jetty.util.ssl.SslContextFactory#setDynamicRecordSizingEnabled(boolean)
+     */
+    public void setDynamicRecordSizingEnabled(boolean dynamicRecordSizingEnabled)
+    {
+        _dynamicRecordSizingEnabled = dynamicRecordSizingEnabled;
+    }
+
+    /**
+     * <p>Configures dynamic TLS record sizing as configured on the given factory.</p>
+     *
+     * @param sslContextFactory the factory to read the dynamic record sizing configuration from
+     * @see #setDynamicRecordSizingEnabled(boolean)
+     */
+    public void setDynamicRecordSizing(SslContextFactory sslContextFactory)
+    {
+        setDynamicRecordSizingEnabled(sslContextFactory.isDynamicRecordSizingEnabled());
+        setSmallRecordSize(sslContextFactory.getSmallRecordSize());
+        setDynamicRecordSizeThreshold(sslContextFactory.getDynamicRecordSizeThreshold());
+        setDynamicRecordSizeIdleTimeout(sslContextFactory.getDynamicRecordSizeIdleTimeout());
+    }
+
+    public int getSmallRecordSize()
+    {
+        return _smallRecordSize;
+    }
+
+    public void setSmallRecordSize(int smallRecordSize)
+    {
+        _smallRecordSize = smallRecordSize;
+    }
+
+    public long getDynamicRecordSizeThreshold()
+    {
+        return _dynamicRecordSizeThreshold;
+    }
+
+    public void setDynamicRecordSizeThreshold(long dynamicRecordSizeThreshold)
+    {
+        _dynamicRecordSizeThreshold = dynamicRecordSizeThreshold;
+    }
+
+    public long getDynamicRecordSizeIdleTimeout()
+    {
+        return _dynamicRecordSizeIdleTimeout;
+    }
+
+    public void setDynamicRecordSizeIdleTimeout(long dynamicRecordSizeIdleTimeout)
+    {
+        _dynamicRecordSizeIdleTimeout = dynamicRecordSizeIdleTimeout;
+    }
+
+    public void addHandshakeListener(SslHandshakeListener listener)
+    {
+        handshakeListeners.add(listener);
+    }
+
+    public boolean removeHandshakeListener(SslHandshakeListener listener)
+    {
+        return handshakeListeners.remove(listener);
+    }
+
     @Override
     public void onOpen()
     {
         try
         {
             // Begin the handshake
+            _handshakeBeginNanos = System.nanoTime();
             _sslEngine.beginHandshake();
             super.onOpen();
             getDecryptedEndPoint().getConnection().onOpen();
@@ -256,12 +376,34 @@ public class SslConnection extends AbstractConnection
     {
         private boolean _fillRequiresFlushToProgress;
         private boolean _flushRequiresFillToProgress;
+        private boolean _fillRequiresTaskToProgress;
+        private boolean _flushRequiresTaskToProgress;
+        private boolean _delegatedTaskPending;
+        private boolean _delegatedTaskCompleted;
         private boolean _cannotAcceptMoreAppDataToFlush;
         private boolean _handshaken;
+        private boolean _handshakeFailed;
         private boolean _underFlown;
+        private long _bytesSinceIdle;
+        private long _lastWrapNanos;
+        private int[] _appOutLimits;
+        private boolean _hellosParsed;
+        private Hello _clientHello;
+        private Hello _serverHello;
 
         private final Callback _writeCallback = new Callback()
         {
+            @Override
+            public boolean isNonBlocking()
+            {
+                // Completing a write of encrypted data only wakes up the
+                // decrypted flusher and filler, so it may block only if
+                // their callbacks may block.
+                FillInterest fillInterest = getFillInterest();
+                return getWriteFlusher().isCallbackNonBlocking() &&
+                        (!fillInterest.isInterested() || fillInterest.isCallbackNonBlocking());
+            }
+
             @Override
             public void succeeded()
             {
@@ -395,6 +537,12 @@ public class SslConnection extends AbstractConnection
                     _cannotAcceptMoreAppDataToFlush = true;
                     getEndPoint().write(_writeCallback, _encryptedOutput);
                 }
+                // If we are waiting for a delegated task,
+                else if (_delegatedTaskPending)
+                {
+                    // the task completion will complete the write
+                    _flushRequiresTaskToProgress = true;
+                }
                 // If we are handshaking and need to read,
                 else if (_sslEngine.getHandshakeStatus() == HandshakeStatus.NEED_UNWRAP)
                 {
@@ -443,10 +591,19 @@ public class SslConnection extends AbstractConnection
 
             synchronized (DecryptedEndPoint.this)
             {
+                // If we are waiting for a delegated task, the task completion will call fillable
+                if (_delegatedTaskPending)
+                {
+                    _fillRequiresTaskToProgress = true;
+                    return;
+                }
+
                 // Do we already have some app data, then app can fill now so return true
                 boolean fillable = (BufferUtil.hasContent(_decryptedInput))
                         // or if we have encryptedInput and have not underflowed yet, the it is worth trying a fill
-                        || BufferUtil.hasContent(_encryptedInput) && !_underFlown;
+                        || BufferUtil.hasContent(_encryptedInput) && !_underFlown
+                        // or if a delegated task completed since the last fill, the handshake can progress
+                        || _delegatedTaskCompleted;
 
                 // If we have no encrypted data to decrypt OR we have some, but it is not enough
                 if (!fillable)
@@ -502,6 +659,9 @@ public class SslConnection extends AbstractConnection
         @Override
         public synchronized int fill(ByteBuffer buffer) throws IOException
         {
+            // If a delegated task completed, the handshake may progress without more network data
+            boolean delegatedTaskCompleted = _delegatedTaskCompleted;
+            _delegatedTaskCompleted = false;
             try
             {
                 // Do we already have some decrypted data?
@@ -528,6 +688,8 @@ public class SslConnection extends AbstractConnection
                 {
                     // Let's try reading some encrypted data... even if we have some already.
                     int net_filled = getEndPoint().fill(_encryptedInput);
+                    if (!_hellosParsed)
+                        parseHello(_encryptedInput, !_sslEngine.getUseClientMode());
 
                     decryption: while (true)
                     {
@@ -561,9 +723,10 @@ public class SslConnection extends AbstractConnection
                         {
                             if (net_filled < 0)
                                 closeInbound();
-                            if (net_filled <= 0)
+                            if (net_filled < 0 || net_filled == 0 && !delegatedTaskCompleted)
                                 return net_filled;
                         }
+                        delegatedTaskCompleted = false;
 
                         switch (unwrapResultStatus)
                         {
@@ -578,8 +741,9 @@ public class SslConnection extends AbstractConnection
                                     }
                                     case NEED_TASK:
                                     {
-                                        _sslEngine.getDelegatedTask().run();
-                                        continue;
+                                        if (runDelegatedTask())
+                                            continue;
+                                        return 0;
                                     }
                                     case NEED_WRAP:
                                     {
@@ -605,7 +769,7 @@ public class SslConnection extends AbstractConnection
                             {
                                 if (unwrapHandshakeStatus == HandshakeStatus.FINISHED && !_handshaken)
                                 {
-                                    _handshaken = true;
+                                    handshakeSucceeded();
                                     if (DEBUG)
                                         LOG.debug("{} {} handshook {}/{}", SslConnection.this,
                                                 _sslEngine.getUseClientMode() ? "client" : "resumed server",
@@ -641,8 +805,9 @@ public class SslConnection extends AbstractConnection
                                     }
                                     case NEED_TASK:
                                     {
-                                        _sslEngine.getDelegatedTask().run();
-                                        continue;
+                                        if (runDelegatedTask())
+                                            continue;
+                                        return 0;
                                     }
                                     case NEED_WRAP:
                                     {
@@ -690,11 +855,13 @@ public class SslConnection extends AbstractConnection
             {
                 // Some internal error in SSLEngine
                 LOG.debug(e);
+                handshakeFailed(e);
                 getEndPoint().close();
                 throw new EofException(e);
             }
             catch (Exception e)
             {
+                handshakeFailed(e);
                 getEndPoint().close();
                 throw e;
             }
@@ -757,24 +924,36 @@ public class SslConnection extends AbstractConnection
                     return false;
                 }
 
-                // We will need a network buffer
+                // We will need a network buffer, with room for a batch of small records if dynamic record sizing is enabled
+                int packetBufferSize = _sslEngine.getSession().getPacketBufferSize();
                 if (_encryptedOutput == null)
-                    _encryptedOutput = _bufferPool.acquire(_sslEngine.getSession().getPacketBufferSize(), _encryptedDirectBuffers);
+                    _encryptedOutput = _bufferPool.acquire(_dynamicRecordSizingEnabled ? 2 * packetBufferSize : packetBufferSize, _encryptedDirectBuffers);
 
                 while (true)
                 {
                     // We call sslEngine.wrap to try to take bytes from appOut buffers and encrypt them into the _netOut buffer
                     BufferUtil.compact(_encryptedOutput);
                     int pos = BufferUtil.flipToFill(_encryptedOutput);
+                    int recordSize = smallRecordSize(appOuts);
                     SSLEngineResult wrapResult;
                     try
                     {
-                        wrapResult = _sslEngine.wrap(appOuts, _encryptedOutput);
+                        if (recordSize > 0)
+                            wrapResult = wrapSmallRecord(appOuts, recordSize);
+                        else
+                            wrapResult = _sslEngine.wrap(appOuts, _encryptedOutput);
                     }
                     finally
                     {
                         BufferUtil.flipToFlush(_encryptedOutput, pos);
                     }
+                    if (!_hellosParsed)
+                        parseHello(_encryptedOutput, _sslEngine.getUseClientMode());
+                    if (_dynamicRecordSizingEnabled && _handshaken && wrapResult.bytesConsumed() > 0)
+                    {
+                        _bytesSinceIdle += wrapResult.bytesConsumed();
+                        _lastWrapNanos = System.nanoTime();
+                    }
                     if (DEBUG)
                         LOG.debug("{} wrap {}", SslConnection.this, wrapResult.toString().replace('\n',' '));
 
@@ -818,13 +997,20 @@ public class SslConnection extends AbstractConnection
 
                             if (wrapResult.getHandshakeStatus() == HandshakeStatus.FINISHED && !_handshaken)
                             {
-                                _handshaken = true;
+                                handshakeSucceeded();
                                 if (DEBUG)
                                     LOG.debug("{} server handshook complete {}/{}", SslConnection.this, _sslEngine.getSession().getProtocol(),_sslEngine.getSession().getCipherSuite());
                             }
 
                             HandshakeStatus handshakeStatus = _sslEngine.getHandshakeStatus();
 
+                            // Wrap more small records before flushing, while there is room for a packet,
+                            // as the SSLEngine requires, so that they are written at once.
+                            if (!allConsumed && recordSize > 0 && wrapResult.bytesConsumed() > 0 &&
+                                handshakeStatus == HandshakeStatus.NOT_HANDSHAKING &&
+                                BufferUtil.space(_encryptedOutput) >= packetBufferSize)
+                                continue;
+
                             // Check whether renegotiation is allowed
                             if (_handshaken && handshakeStatus != HandshakeStatus.NOT_HANDSHAKING && !isRenegotiationAllowed())
                             {
@@ -849,13 +1035,18 @@ public class SslConnection extends AbstractConnection
                                     if (!allConsumed && wrapResult.getHandshakeStatus()==HandshakeStatus.FINISHED && BufferUtil.isEmpty(_encryptedOutput))
                                         continue;
 
+                                    // If we have flushed the small records, then wrap the next ones.
+                                    if (!allConsumed && recordSize > 0 && wrapResult.bytesConsumed() > 0 && BufferUtil.isEmpty(_encryptedOutput))
+                                        continue;
+
                                     // Return true if we consumed all the bytes and encrypted are all flushed
                                     return allConsumed && BufferUtil.isEmpty(_encryptedOutput);
 
                                 case NEED_TASK:
-                                    // run the task and continue
-                                    _sslEngine.getDelegatedTask().run();
-                                    continue;
+                                    // run the task and continue, or wait for the offloaded task to complete
+                                    if (runDelegatedTask())
+                                        continue;
+                                    return false;
 
                                 case NEED_WRAP:
                                     // Hey we just wrapped! Oh well who knows what the sslEngine is thinking, so continue and we will wrap again
@@ -881,12 +1072,233 @@ public class SslConnection extends AbstractConnection
                     }
                 }
             }
+            catch (IOException | RuntimeException x)
+            {
+                handshakeFailed(x);
+                throw x;
+            }
             finally
             {
                 releaseEncryptedOutputBuffer();
             }
         }
 
+        /**
+         * <p>Looks at the ClientHello and at the ServerHello, in the encrypted input
+         * or output, to record whether the client offers to resume a session and
+         * whether the server accepts, for the handshake listeners.</p>
+         *
+         * @param encrypted the encrypted input or output, in flush mode
+         * @param clientHello whether the buffer carries the ClientHello or the ServerHello
+         */
+        private void parseHello(ByteBuffer encrypted, boolean clientHello)
+        {
+            if (_handshaken || handshakeListeners.isEmpty())
+            {
+                _hellosParsed = true;
+                return;
+            }
+            if (clientHello ? _clientHello != null : _serverHello != null)
+                return;
+            Hello hello = Hello.parse(encrypted, clientHello);
+            if (clientHello)
+                _clientHello = hello;
+            else
+                _serverHello = hello;
+            _hellosParsed = _clientHello != null && _serverHello != null;
+        }
+
+        /**
+         * @return the max plaintext bytes of the next record, or 0 if the
+         * next record is not limited by dynamic record sizing
+         */
+        private int smallRecordSize(ByteBuffer[] appOuts)
+        {
+            if (!_dynamicRecordSizingEnabled || !_handshaken)
+                return 0;
+
+            long idle = System.nanoTime() - _lastWrapNanos;
+            if (TimeUnit.NANOSECONDS.toMillis(idle) >= _dynamicRecordSizeIdleTimeout)
+                _bytesSinceIdle = 0;
+            if (_bytesSinceIdle >= _dynamicRecordSizeThreshold)
+                return 0;
+
+            long remaining = 0;
+            for (ByteBuffer b : appOuts)
+                remaining += b.remaining();
+            return remaining > _smallRecordSize ? _smallRecordSize : 0;
+        }
+
+        /**
+         * <p>Wraps at most {@code recordSize} bytes of the application buffers, by
+         * temporarily lowering their limits, so that the {@link SSLEngine} produces
+         * a single small record.</p>
+         */
+        private SSLEngineResult wrapSmallRecord(ByteBuffer[] appOuts, int recordSize) throws SSLException
+        {
+            if (_appOutLimits == null || _appOutLimits.length < appOuts.length)
+                _appOutLimits = new int[appOuts.length];
+            int remaining = recordSize;
+            for (int i = 0; i < appOuts.length; ++i)
+            {
+                ByteBuffer b = appOuts[i];
+                _appOutLimits[i] = b.limit();
+                int length = Math.min(b.remaining(), remaining);
+                b.limit(b.position() + length);
+                remaining -= length;
+            }
+            try
+            {
+                return _sslEngine.wrap(appOuts, _encryptedOutput);
+            }
+            finally
+            {
+                for (int i = 0; i < appOuts.length; ++i)
+                    appOuts[i].limit(_appOutLimits[i]);
+            }
+        }
+
+        /**
+         * <p>Runs or offloads the next {@link SSLEngine} delegated task.</p>
+         * <p>Must be called with the lock held, when the handshake status is {@link HandshakeStatus#NEED_TASK}.</p>
+         *
+         * @return true if the task was run and the handshake can proceed, false if
+         * the task was offloaded to the handshake executor and has not completed yet
+         */
+        private boolean runDelegatedTask()
+        {
+            if (_delegatedTaskPending)
+                return false;
+
+            Runnable task = _sslEngine.getDelegatedTask();
+            if (task == null)
+                return true;
+
+            Executor executor = _handshakeExecutor;
+            if (executor == null)
+            {
+                task.run();
+                return true;
+            }
+
+            _delegatedTaskPending = true;
+            try
+            {
+                executor.execute(new DelegatedTask(task));
+                return false;
+            }
+            catch (RejectedExecutionException x)
+            {
+                if (DEBUG)
+                    LOG.debug("{} delegated task rejected, running it in the calling thread", SslConnection.this);
+                _delegatedTaskPending = false;
+                task.run();
+                return true;
+            }
+        }
+
+        private void delegatedTaskCompleted()
+        {
+            boolean fillable;
+            boolean completeWrite;
+            synchronized (DecryptedEndPoint.this)
+            {
+                _delegatedTaskPending = false;
+                fillable = _fillRequiresTaskToProgress;
+                completeWrite = _flushRequiresTaskToProgress;
+                _fillRequiresTaskToProgress = false;
+                _flushRequiresTaskToProgress = false;
+                // Remember the completion for the next fill() or needsFillInterest()
+                _delegatedTaskCompleted = true;
+            }
+
+            if (DEBUG)
+                LOG.debug("{} delegated task completed, fillable={}, completeWrite={}", SslConnection.this, fillable, completeWrite);
+
+            // Do not run the callbacks in the handshake executor
+            if (fillable)
+                getExecutor().execute(_runFillable);
+            if (completeWrite)
+                getExecutor().execute(_runCompletWrite);
+        }
+
+        private void handshakeSucceeded()
+        {
+            _handshaken = true;
+            if (handshakeListeners.isEmpty())
+                return;
+            long duration = System.nanoTime() - _handshakeBeginNanos;
+            boolean resumed = Hello.isResumed(_clientHello, _serverHello);
+            boolean attempted = _clientHello != null && _clientHello.isResumptionAttempted();
+            SslHandshakeListener.Event event = new SslHandshakeListener.Event(_sslEngine, duration, resumed, attempted);
+            for (SslHandshakeListener listener : handshakeListeners)
+            {
+                try
+                {
+                    listener.handshakeSucceeded(event);
+                }
+                catch (Throwable x)
+                {
+                    LOG.info("Exception while notifying listener " + listener, x);
+                }
+            }
+        }
+
+        private void handshakeFailed(Throwable failure)
+        {
+            if (_handshaken || _handshakeFailed)
+                return;
+            _handshakeFailed = true;
+            if (handshakeListeners.isEmpty())
+                return;
+            long duration = System.nanoTime() - _handshakeBeginNanos;
+            SslHandshakeListener.Event event = new SslHandshakeListener.Event(_sslEngine, duration, false);
+            for (SslHandshakeListener listener : handshakeListeners)
+            {
+                try
+                {
+                    listener.handshakeFailed(event, failure);
+                }
+                catch (Throwable x)
+                {
+                    LOG.info("Exception while notifying listener " + listener, x);
+                }
+            }
+        }
+
+        private class DelegatedTask implements Runnable
+        {
+            private final Runnable _task;
+
+            private DelegatedTask(Runnable task)
+            {
+                _task = task;
+            }
+
+            @Override
+            public void run()
+            {
+                try
+                {
+                    _task.run();
+                }
+                catch (Throwable x)
+                {
+                    LOG.warn("Exception while running delegated task " + _task, x);
+                }
+                finally
+                {
+                    delegatedTaskCompleted();
+                }
+            }
+
+            @Override
+            public String toString()
+            {
+                return String.format("%s@%x{%s}", DelegatedTask.class.getSimpleName(), hashCode(), SslConnection.this);
+            }
+        }
+
         private void releaseEncryptedOutputBuffer()
         {
             if (!Thread.holdsLock(DecryptedEndPoint.this))
@@ -985,4 +1397,166 @@ public class SslConnection extends AbstractConnection
             return super.toString()+"->"+getEndPoint().toString();
         }
     }
+
+    /**
+     * <p>The parts of a ClientHello or of a ServerHello that tell whether
+     * a session resumption is attempted and whether it is accepted.</p>
+     */
+    private static class Hello
+    {
+        private static final Hello NONE = new Hello(new byte[0]);
+        // The random of a ServerHello that is a TLS 1.3 HelloRetryRequest
+        private static final byte[] HELLO_RETRY_REQUEST = new byte[]
+        {
+            (byte)0xCF, 0x21, (byte)0xAD, 0x74, (byte)0xE5, (byte)0x9A, 0x61, 0x11, (byte)0xBE, 0x1D, (byte)0x8C, 0x02, 0x1E, 0x65, (byte)0xB8, (byte)0x91,
+            (byte)0xC2, (byte)0xA2, 0x11, 0x16, 0x7A, (byte)0xBB, (byte)0x8C, 0x5E, 0x07, (byte)0x9E, 0x09, (byte)0xE2, (byte)0xC8, (byte)0xA8, 0x33, (byte)0x9C
+        };
+
+        private final byte[] sessionId;
+        private boolean sessionTicket;
+        private boolean preSharedKey;
+        private boolean supportedVersions;
+
+        private Hello(byte[] sessionId)
+        {
+            this.sessionId = sessionId;
+        }
+
+        /**
+         * @return whether a ClientHello offers to resume a session, with a non empty
+         * session ticket, a pre-shared key or, for clients that do not support TLS 1.3,
+         * a session ID
+         */
+        private boolean isResumptionAttempted()
+        {
+            // TLS 1.3 clients send a random session ID for middlebox compatibility.
+            return sessionTicket || preSharedKey || (sessionId.length > 0 && !supportedVersions);
+        }
+
+        /**
+         * <p>A TLS 1.3 server accepts a resumption by selecting a pre-shared key, while
+         * a TLS 1.2 server echoes the session ID that the client found in its cache.</p>
+         *
+         * @param clientHello the ClientHello, or null if it was not parsed
+         * @param serverHello the ServerHello, or null if it was not parsed
+         * @return whether the handshake resumes a session
+         */
+        private static boolean isResumed(Hello clientHello, Hello serverHello)
+        {
+            if (clientHello == null || serverHello == null || serverHello == NONE)
+                return false;
+            if (serverHello.supportedVersions)
+                return serverHello.preSharedKey;
+            return clientHello.sessionId.length > 0 && Arrays.equals(clientHello.sessionId, serverHello.sessionId);
+        }
+
+        /**
+         * <p>Parses the TLS records at the beginning of the given buffer, without
+         * consuming them, skipping ChangeCipherSpec records and HelloRetryRequests,
+         * to find the ClientHello or the ServerHello.</p>
+         *
+         * @param buffer the encrypted input or output, in flush mode
+         * @param clientHello whether to parse a ClientHello or a ServerHello
+         * @return the hello, {@link #NONE} if the first handshake record is not
+         * the expected hello, or null if the buffer does not contain it whole yet
+         */
+        private static Hello parse(ByteBuffer buffer, boolean clientHello)
+        {
+            int start = buffer.position();
+            int limit = buffer.limit();
+            while (true)
+            {
+                if (limit - start < 5)
+                    return null;
+                int end = start + 5 + getUnsignedShort(buffer, start + 3);
+                if (end > limit)
+                    return null;
+                byte type = buffer.get(start);
+                // Handshake record, after the ChangeCipherSpec records of the TLS 1.3 middlebox compatibility mode
+                if (type == 20)
+                {
+                    start = end;
+                    continue;
+                }
+                if (type != 22)
+                    return NONE;
+                Hello hello = parse(buffer, start + 5, end, clientHello);
+                if (hello != null)
+                    return hello;
+                // A HelloRetryRequest, the ServerHello follows the second ClientHello
+                start = end;
+            }
+        }
+
+        private static Hello parse(ByteBuffer buffer, int i, int end, boolean clientHello)
+        {
+            // ClientHello or ServerHello message
+            if (i + 4 > end || buffer.get(i) != (clientHello ? 1 : 2))
+                return NONE;
+            // Skip the message length and the version
+            i += 4 + 2;
+            if (i + 32 > end)
+                return NONE;
+            if (!clientHello)
+            {
+                boolean retry = true;
+                for (int r = 0; retry && r < HELLO_RETRY_REQUEST.length; ++r)
+                    retry = buffer.get(i + r) == HELLO_RETRY_REQUEST[r];
+                if (retry)
+                    return null;
+            }
+            // Skip the random
+            i += 32;
+            if (i >= end)
+                return NONE;
+            int sessionIdLength = buffer.get(i) & 0xFF;
+            if (i + 1 + sessionIdLength > end)
+                return NONE;
+            byte[] sessionId = new byte[sessionIdLength];
+            for (int b = 0; b < sessionIdLength; ++b)
+                sessionId[b] = buffer.get(i + 1 + b);
+            Hello hello = new Hello(sessionId);
+            i += 1 + sessionIdLength;
+
+            if (clientHello)
+            {
+                // Skip the cipher suites and the compression methods
+                if (i + 2 > end)
+                    return hello;
+                i += 2 + getUnsignedShort(buffer, i);
+                if (i + 1 > end)
+                    return hello;
+                i += 1 + (buffer.get(i) & 0xFF);
+            }
+            else
+            {
+                // Skip the cipher suite and the compression method
+                i += 2 + 1;
+            }
+
+            if (i + 2 <= end)
+            {
+                int extensionsEnd = Math.min(end, i + 2 + getUnsignedShort(buffer, i));
+                i += 2;
+                while (i + 4 <= extensionsEnd)
+                {
+                    int type = getUnsignedShort(buffer, i);
+                    int length = getUnsignedShort(buffer, i + 2);
+                    if (type == 35) // session_ticket
+                        hello.sessionTicket = length > 0;
+                    else if (type == 41) // pre_shared_key
+                        hello.preSharedKey = true;
+                    else if (type == 43) // supported_versions
+                        hello.supportedVersions = true;
+                    i += 4 + length;
+                }
+            }
+            return hello;
+        }
+    }
+
+    private static int getUnsignedShort(ByteBuffer buffer, int index)
+    {
+        return ((buffer.get(index) & 0xFF) << 8) | (buffer.get(index + 1) & 0xFF);
+    }
 }
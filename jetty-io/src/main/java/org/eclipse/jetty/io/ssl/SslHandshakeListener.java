@@ -0,0 +1,114 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.io.ssl;
+
+import java.util.EventListener;
+import java.util.EventObject;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLEngine;
+
+/**
+ * <p>Implementations of this interface are notified of TLS handshake events.</p>
+ * <p>Similarly to {@link org.eclipse.jetty.io.Connection.Listener}, implementations
+ * of this interface may be added as beans to a connector or a connection factory,
+ * so that they are added as listeners to all new {@link SslConnection}s.</p>
+ */
+public interface SslHandshakeListener extends EventListener
+{
+    /**
+     * <p>Callback method invoked when the TLS handshake succeeds.</p>
+     *
+     * @param event the event object carrying information about the TLS handshake event
+     */
+    default void handshakeSucceeded(Event event)
+    {
+    }
+
+    /**
+     * <p>Callback method invoked when the TLS handshake fails.</p>
+     *
+     * @param event the event object carrying information about the TLS handshake event
+     * @param failure the failure that caused the TLS handshake to fail
+     */
+    default void handshakeFailed(Event event, Throwable failure)
+    {
+    }
+
+    /**
+     * <p>The event object carrying information about TLS handshake events.</p>
+     */
+    public static class Event extends EventObject
+    {
+        private final long duration;
+        private final boolean resumed;
+        private final boolean resumptionAttempted;
+
+        public Event(Object source, long duration, boolean resumed)
+        {
+            this(source, duration, resumed, resumed);
+        }
+
+        public Event(Object source, long duration, boolean resumed, boolean resumptionAttempted)
+        {
+            super(source);
+            this.duration = duration;
+            this.resumed = resumed;
+            this.resumptionAttempted = resumptionAttempted;
+        }
+
+        /**
+         * @return the SSLEngine associated to the TLS handshake event
+         */
+        public SSLEngine getSSLEngine()
+        {
+            return (SSLEngine)getSource();
+        }
+
+        /**
+         * @param unit the unit of the returned duration
+         * @return the time elapsed from the beginning of the TLS handshake to this event
+         */
+        public long getDuration(TimeUnit unit)
+        {
+            return unit.convert(duration, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * @return whether the TLS handshake resumed a previous TLS session
+         */
+        public boolean isResumed()
+        {
+            return resumed;
+        }
+
+        /**
+         * <p>Whether the client offered to resume a previous TLS session,
+         * with a session ID, a session ticket or a pre-shared key.</p>
+         * <p>A handshake where the resumption was attempted but that is not
+         * {@link #isResumed() resumed} is a miss of the server session cache.</p>
+         *
+         * @return whether the peer attempted to resume a previous TLS session
+         */
+        public boolean isResumptionAttempted()
+        {
+            return resumptionAttempted;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.io.ssl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.statistic.SampleStatistic;
+
+/**
+ * <p>A {@link SslHandshakeListener} that collects statistics about TLS handshakes:
+ * the number of full, resumed and failed handshakes, the handshake rate and the
+ * handshake time.</p>
+ * <p>On the server, resumed handshakes are hits of the TLS session cache (or of
+ * the session tickets), while full handshakes where the client offered to resume
+ * a session are misses, because the session expired or was evicted.</p>
+ * <p>Add an instance of this class as a bean to a connector or to a
+ * {@code SslConnectionFactory} to collect statistics for its connections.</p>
+ */
+@ManagedObject("TLS handshake statistics")
+public class SslHandshakeStatistics implements SslHandshakeListener
+{
+    private final LongAdder _full = new LongAdder();
+    private final LongAdder _resumed = new LongAdder();
+    private final LongAdder _failed = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final SampleStatistic _handshakeTime = new SampleStatistic();
+    private volatile long _resetNanos = System.nanoTime();
+
+    @Override
+    public void handshakeSucceeded(Event event)
+    {
+        if (event.isResumed())
+            _resumed.increment();
+        else
+            _full.increment();
+        if (event.isResumptionAttempted() && !event.isResumed())
+            _misses.increment();
+        _handshakeTime.set(event.getDuration(TimeUnit.NANOSECONDS));
+    }
+
+    @Override
+    public void handshakeFailed(Event event, Throwable failure)
+    {
+        _failed.increment();
+    }
+
+    @ManagedAttribute("Number of full TLS handshakes")
+    public long getFullHandshakes()
+    {
+        return _full.sum();
+    }
+
+    @ManagedAttribute("Number of resumed TLS handshakes")
+    public long getResumedHandshakes()
+    {
+        return _resumed.sum();
+    }
+
+    @ManagedAttribute("Number of failed TLS handshakes")
+    public long getFailedHandshakes()
+    {
+        return _failed.sum();
+    }
+
+    @ManagedAttribute("Number of full TLS handshakes where the peer offered to resume a session")
+    public long getSessionCacheMisses()
+    {
+        return _misses.sum();
+    }
+
+    @ManagedAttribute("Ratio of resumed TLS handshakes to resumption attempts")
+    public double getSessionCacheHitRatio()
+    {
+        long hits = getResumedHandshakes();
+        long attempts = hits + getSessionCacheMisses();
+        return attempts == 0 ? 0 : (double)hits / attempts;
+    }
+
+    @ManagedAttribute("Successful TLS handshakes per second since the statistics were reset")
+    public double getHandshakeRate()
+    {
+        double seconds = Math.max(1, System.nanoTime() - _resetNanos) / (double)TimeUnit.SECONDS.toNanos(1);
+        return (getFullHandshakes() + getResumedHandshakes()) / seconds;
+    }
+
+    @ManagedAttribute("TLS handshake time maximum in ms")
+    public long getHandshakeTimeMax()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(_handshakeTime.getMax());
+    }
+
+    @ManagedAttribute("TLS handshake time mean in ms")
+    public double getHandshakeTimeMean()
+    {
+        return _handshakeTime.getMean() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @ManagedOperation("Resets the TLS handshake statistics")
+    public void reset()
+    {
+        _full.reset();
+        _resumed.reset();
+        _failed.reset();
+        _misses.reset();
+        _handshakeTime.reset();
+        _resetNanos = System.nanoTime();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{full=%d,resumed=%d,misses=%d,failed=%d,time=%d/%.3fms}",
+                getClass().getSimpleName(),
+                hashCode(),
+                getFullHandshakes(),
+                getResumedHandshakes(),
+                getSessionCacheMisses(),
+                getFailedHandshakes(),
+                getHandshakeTimeMax(),
+                getHandshakeTimeMean());
+    }
+}
@@ -144,4 +144,36 @@ public class ArrayByteBufferPoolTest
         }
     }
 
+    @Test
+    public void testMaxMemory() throws Exception
+    {
+        int maxMemory = 1000;
+        ArrayByteBufferPool bufferPool = new ArrayByteBufferPool(10,100,1000,-1,maxMemory);
+        ArrayByteBufferPool.Bucket[] buckets = bufferPool.bucketsFor(true);
+
+        ByteBuffer oldest = bufferPool.acquire(200, true);
+        ByteBuffer newest = bufferPool.acquire(800, true);
+        ByteBuffer extra = bufferPool.acquire(100, true);
+
+        bufferPool.release(oldest);
+        assertEquals(200,bufferPool.getDirectMemory());
+        Thread.sleep(1);
+        bufferPool.release(newest);
+        assertEquals(1000,bufferPool.getDirectMemory());
+
+        // Exceeding the limit evicts from the bucket retaining buffers for the longest time.
+        Thread.sleep(1);
+        bufferPool.release(extra);
+        assertEquals(900,bufferPool.getDirectMemory());
+        assertTrue(buckets[1]._queue.isEmpty());
+        assertEquals(1,buckets[7]._queue.size());
+        assertEquals(1,buckets[0]._queue.size());
+        assertEquals(0,bufferPool.getHeapMemory());
+
+        bufferPool.acquire(800, true);
+        assertEquals(100,bufferPool.getDirectMemory());
+
+        bufferPool.clear();
+        assertEquals(0,bufferPool.getDirectMemory());
+    }
 }
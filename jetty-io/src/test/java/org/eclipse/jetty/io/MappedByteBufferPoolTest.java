@@ -128,4 +128,30 @@ public class MappedByteBufferPoolTest
         buffer = pool.acquire(1024,false);
         assertThat(BufferUtil.toDetailString(buffer),containsString("@T00000002"));
     }
+
+    @Test
+    public void testMaxMemory() throws Exception
+    {
+        int factor = 1024;
+        MappedByteBufferPool bufferPool = new MappedByteBufferPool(factor,3*factor,-1);
+        ConcurrentMap<Integer,Queue<ByteBuffer>> buffers = bufferPool.buffersFor(false);
+
+        ByteBuffer small = bufferPool.acquire(factor, false);
+        ByteBuffer large = bufferPool.acquire(2*factor, false);
+        ByteBuffer medium = bufferPool.acquire(factor, false);
+
+        bufferPool.release(small);
+        bufferPool.release(large);
+        assertEquals(3*factor,bufferPool.getHeapMemory());
+
+        // Exceeding the limit evicts from the largest bucket.
+        bufferPool.release(medium);
+        assertEquals(2*factor,bufferPool.getHeapMemory());
+        assertEquals(2,buffers.get(1).size());
+        assertTrue(buffers.get(2).isEmpty());
+        assertEquals(0,bufferPool.getDirectMemory());
+
+        bufferPool.clear();
+        assertEquals(0,bufferPool.getHeapMemory());
+    }
 }
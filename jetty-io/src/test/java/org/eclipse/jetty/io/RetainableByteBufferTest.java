@@ -0,0 +1,65 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class RetainableByteBufferTest
+{
+    @Test
+    public void testReleasedToPoolOnLastRelease() throws Exception
+    {
+        ArrayByteBufferPool pool = new ArrayByteBufferPool(10,100,1000);
+        RetainableByteBuffer buffer = new RetainableByteBuffer(pool, 500, false);
+        assertEquals(1, buffer.getReferences());
+        assertFalse(buffer.isRetained());
+
+        buffer.retain();
+        assertTrue(buffer.isRetained());
+        assertEquals(1, buffer.release());
+        assertFalse(buffer.isRetained());
+        assertTrue(pool.bucketsFor(false)[4]._queue.isEmpty());
+
+        assertEquals(0, buffer.release());
+        assertSame(buffer.getBuffer(), pool.bucketsFor(false)[4]._queue.peek());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRetainAfterRelease() throws Exception
+    {
+        RetainableByteBuffer buffer = new RetainableByteBuffer(new MappedByteBufferPool(), ByteBuffer.allocate(1024));
+        buffer.release();
+        buffer.retain();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDoubleRelease() throws Exception
+    {
+        RetainableByteBuffer buffer = new RetainableByteBuffer(new MappedByteBufferPool(), ByteBuffer.allocate(1024));
+        buffer.release();
+        buffer.release();
+    }
+}
@@ -21,6 +21,7 @@ package org.eclipse.jetty.io;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.nio.ByteBuffer;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
@@ -28,6 +29,7 @@ import java.nio.channels.SocketChannel;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.jetty.toolchain.test.annotation.Slow;
 import org.eclipse.jetty.util.Callback;
@@ -161,4 +163,176 @@ public class SelectorManagerTest
             selectorManager.stop();
         }
     }
+
+    @Test
+    public void testSubmitCountsWakeups() throws Exception
+    {
+        final AtomicReference<ManagedSelector> selectorRef = new AtomicReference<>();
+        SelectorManager selectorManager = new SelectorManager(executor, scheduler, 1)
+        {
+            @Override
+            protected ManagedSelector newSelector(int id)
+            {
+                ManagedSelector selector = super.newSelector(id);
+                selectorRef.set(selector);
+                return selector;
+            }
+
+            @Override
+            protected EndPoint newEndPoint(SelectableChannel channel, ManagedSelector selector, SelectionKey key) throws IOException
+            {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Connection newConnection(SelectableChannel channel, EndPoint endpoint, Object attachment) throws IOException
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+        selectorManager.start();
+
+        try
+        {
+            ManagedSelector selector = selectorRef.get();
+            long submitted = selector.getActionsSubmitted();
+
+            int actions = 64;
+            final CountDownLatch latch = new CountDownLatch(actions);
+            for (int i = 0; i < actions; ++i)
+            {
+                selector.submit(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        latch.countDown();
+                    }
+                });
+            }
+
+            Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(submitted + actions, selector.getActionsSubmitted());
+            Assert.assertEquals(selector.getActionsSubmitted(), selector.getWakeupsIssued() + selector.getWakeupsAvoided());
+            Assert.assertTrue(selector.getWakeupsIssued() <= selector.getActionsSubmitted());
+
+            // The actions may all have run before the first select returned,
+            // so wake up the selector until a select pass is recorded.
+            for (int i = 0; i < 100 && selector.getSelectCount() == 0; ++i)
+            {
+                Thread.sleep(10);
+                final CountDownLatch wakeup = new CountDownLatch(1);
+                selector.submit(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        wakeup.countDown();
+                    }
+                });
+                Assert.assertTrue(wakeup.await(5, TimeUnit.SECONDS));
+            }
+            Assert.assertTrue(selector.getSelectCount() > 0);
+            Assert.assertTrue(selectorManager.getBeans(ManagedSelector.class).contains(selector));
+        }
+        finally
+        {
+            selectorManager.stop();
+        }
+    }
+
+    @Test
+    public void testNonBlockingTasksRunInline() throws Exception
+    {
+        final AtomicReference<ManagedSelector> selectorRef = new AtomicReference<>();
+        final AtomicReference<Callback> callbackRef = new AtomicReference<>();
+        SelectorManager selectorManager = new SelectorManager(executor, scheduler, 1)
+        {
+            @Override
+            protected ManagedSelector newSelector(int id)
+            {
+                ManagedSelector selector = super.newSelector(id);
+                selectorRef.set(selector);
+                return selector;
+            }
+
+            @Override
+            protected EndPoint newEndPoint(SelectableChannel channel, ManagedSelector selector, SelectionKey key) throws IOException
+            {
+                return new SocketChannelEndPoint(channel, selector, key, getScheduler());
+            }
+
+            @Override
+            public Connection newConnection(SelectableChannel channel, EndPoint endpoint, Object attachment) throws IOException
+            {
+                return new AbstractConnection(endpoint, executor)
+                {
+                    @Override
+                    public void onOpen()
+                    {
+                        super.onOpen();
+                        getEndPoint().fillInterested(callbackRef.get());
+                    }
+
+                    @Override
+                    public void onFillable()
+                    {
+                    }
+                };
+            }
+        };
+        selectorManager.start();
+
+        try (ServerSocketChannel server = ServerSocketChannel.open())
+        {
+            server.bind(new InetSocketAddress("localhost", 0));
+            ManagedSelector selector = selectorRef.get();
+
+            // A non-blocking read callback is run by the selector thread.
+            final CountDownLatch nonBlockingLatch = new CountDownLatch(1);
+            callbackRef.set(new Callback.NonBlocking()
+            {
+                @Override
+                public void succeeded()
+                {
+                    nonBlockingLatch.countDown();
+                }
+            });
+            try (SocketChannel client = SocketChannel.open(server.getLocalAddress()))
+            {
+                SocketChannel channel = server.accept();
+                channel.configureBlocking(false);
+                selectorManager.accept(channel);
+                client.write(ByteBuffer.wrap(new byte[]{1}));
+                Assert.assertTrue(nonBlockingLatch.await(5, TimeUnit.SECONDS));
+            }
+            Assert.assertEquals(1, selector.getTasksInline());
+            Assert.assertEquals(0, selector.getTasksDispatched());
+
+            // A read callback that may block is dispatched.
+            final CountDownLatch blockingLatch = new CountDownLatch(1);
+            callbackRef.set(new Callback()
+            {
+                @Override
+                public void succeeded()
+                {
+                    blockingLatch.countDown();
+                }
+            });
+            try (SocketChannel client = SocketChannel.open(server.getLocalAddress()))
+            {
+                SocketChannel channel = server.accept();
+                channel.configureBlocking(false);
+                selectorManager.accept(channel);
+                client.write(ByteBuffer.wrap(new byte[]{1}));
+                Assert.assertTrue(blockingLatch.await(5, TimeUnit.SECONDS));
+            }
+            Assert.assertEquals(1, selector.getTasksInline());
+            Assert.assertEquals(1, selector.getTasksDispatched());
+        }
+        finally
+        {
+            selectorManager.stop();
+        }
+    }
 }
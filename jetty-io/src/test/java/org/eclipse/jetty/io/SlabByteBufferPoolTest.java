@@ -0,0 +1,129 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.eclipse.jetty.util.BufferUtil;
+import org.junit.Test;
+
+public class SlabByteBufferPoolTest
+{
+    @Test
+    public void testSlicesFromSlab() throws Exception
+    {
+        SlabByteBufferPool bufferPool = new SlabByteBufferPool(10,100,1000,1000,1);
+
+        ByteBuffer buffer1 = bufferPool.acquire(450, true);
+        ByteBuffer buffer2 = bufferPool.acquire(450, true);
+        assertTrue(buffer1.isDirect());
+        assertEquals(500,buffer1.capacity());
+        assertEquals(0,buffer1.remaining());
+        assertEquals(1,bufferPool.getDirectSlabs());
+        assertEquals(0,bufferPool.getDirectFallbacks());
+
+        // Slices must not overlap.
+        BufferUtil.append(buffer1,new byte[]{1},0,1);
+        BufferUtil.append(buffer2,new byte[]{2},0,1);
+        assertEquals(1,buffer1.get(0));
+        assertEquals(2,buffer2.get(0));
+
+        // The slab is exhausted.
+        ByteBuffer buffer3 = bufferPool.acquire(450, true);
+        assertEquals(500,buffer3.capacity());
+        assertEquals(1,bufferPool.getDirectSlabs());
+        assertEquals(1,bufferPool.getDirectFallbacks());
+
+        bufferPool.release(buffer1);
+        assertSame(buffer1,bufferPool.acquire(450, true));
+        assertEquals(0,bufferPool.getHeapSlabs());
+    }
+
+    @Test
+    public void testRetainsAtMostCarvedBuffers() throws Exception
+    {
+        SlabByteBufferPool bufferPool = new SlabByteBufferPool(10,100,1000,1000,1);
+        SlabByteBufferPool.Bucket bucket = bufferPool.bucketsFor(false)[4];
+
+        ByteBuffer buffer1 = bufferPool.acquire(500, false);
+        ByteBuffer buffer2 = bufferPool.acquire(500, false);
+        ByteBuffer fallback = bufferPool.acquire(500, false);
+        assertEquals(2,bucket._carved.get());
+
+        // The fallback buffer is released first, but must not
+        // take the place of the slices in the bucket.
+        bufferPool.release(fallback);
+        bufferPool.release(buffer1);
+        bufferPool.release(buffer2);
+        assertEquals(2,bucket._queue.size());
+        assertEquals(2,bucket._available.get());
+        assertSame(buffer1,bucket._queue.poll());
+        assertSame(buffer2,bucket._queue.poll());
+    }
+
+    @Test
+    public void testFallbackBuffersPooled() throws Exception
+    {
+        SlabByteBufferPool bufferPool = new SlabByteBufferPool(10,100,1000,1000,1);
+
+        bufferPool.acquire(500, true);
+        bufferPool.acquire(500, true);
+        ByteBuffer fallback = bufferPool.acquire(500, true);
+        assertEquals(1,bufferPool.getDirectFallbacks());
+
+        // The fallback buffer is reused rather than allocated again.
+        bufferPool.release(fallback);
+        assertSame(fallback,bufferPool.acquire(500, true));
+        assertEquals(2,bufferPool.getDirectFallbacks());
+    }
+
+    @Test
+    public void testManySlices() throws Exception
+    {
+        SlabByteBufferPool bufferPool = new SlabByteBufferPool(0,10,100,100000,1);
+        SlabByteBufferPool.Bucket bucket = bufferPool.bucketsFor(false)[0];
+
+        // Enough slices to grow the table of slices several times.
+        ByteBuffer[] buffers = new ByteBuffer[1000];
+        for (int i=0;i<buffers.length;i++)
+            buffers[i] = bufferPool.acquire(10, false);
+        assertEquals(0,bufferPool.getHeapFallbacks());
+        for (ByteBuffer buffer : buffers)
+            bufferPool.release(buffer);
+        assertEquals(buffers.length,bucket._available.get());
+    }
+
+    @Test
+    public void testNotPooledSizes() throws Exception
+    {
+        SlabByteBufferPool bufferPool = new SlabByteBufferPool(10,100,1000,1000,1);
+
+        ByteBuffer small = bufferPool.acquire(5, true);
+        assertEquals(5,small.capacity());
+        ByteBuffer large = bufferPool.acquire(2000, true);
+        assertEquals(2000,large.capacity());
+        bufferPool.release(small);
+        bufferPool.release(large);
+        assertEquals(0,bufferPool.getDirectSlabs());
+    }
+}
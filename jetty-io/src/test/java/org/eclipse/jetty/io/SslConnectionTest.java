@@ -29,6 +29,9 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -59,6 +62,7 @@ public class SslConnectionTest
 
     protected volatile EndPoint _lastEndp;
     private volatile boolean _testFill=true;
+    private volatile boolean _dynamicRecordSizing;
     private volatile FutureCallback _writeCallback;
     protected ServerSocketChannel _connector;
     final AtomicInteger _dispatches = new AtomicInteger();
@@ -82,6 +86,12 @@ public class SslConnectionTest
             engine.setUseClientMode(false);
             SslConnection sslConnection = new SslConnection(__byteBufferPool, getExecutor(), endpoint, engine);
             sslConnection.setRenegotiationAllowed(__sslCtxFactory.isRenegotiationAllowed());
+            if (_dynamicRecordSizing)
+            {
+                sslConnection.setDynamicRecordSizingEnabled(true);
+                sslConnection.setDynamicRecordSizeThreshold(16*1024);
+                sslConnection.setDynamicRecordSizeIdleTimeout(200);
+            }
             Connection appConnection = new TestConnection(sslConnection.getDecryptedEndPoint());
             sslConnection.getDecryptedEndPoint().setConnection(appConnection);
             return sslConnection;
@@ -100,6 +110,7 @@ public class SslConnectionTest
 
     static final AtomicInteger __startBlocking = new AtomicInteger();
     static final AtomicInteger __blockFor = new AtomicInteger();
+    static volatile RecordParser __records;
     private static class TestEP extends SocketChannelEndPoint
     {
         public TestEP(SelectableChannel channel, ManagedSelector selector, SelectionKey key, Scheduler scheduler)
@@ -124,8 +135,111 @@ public class SslConnectionTest
                     return false;
                 }
             }
-            boolean flushed=super.flush(buffers);
-            return flushed;
+            RecordParser records=__records;
+            if (records==null)
+                return super.flush(buffers);
+
+            int[] positions=new int[buffers.length];
+            for (int i=0;i<buffers.length;i++)
+                positions[i]=buffers[i].position();
+            // The peer may read the bytes as soon as they are written,
+            // so tell the parser that they are in flight beforehand.
+            records.flushing();
+            try
+            {
+                boolean flushed=super.flush(buffers);
+                for (int i=0;i<buffers.length;i++)
+                {
+                    ByteBuffer written=buffers[i].duplicate();
+                    written.limit(written.position());
+                    written.position(positions[i]);
+                    records.parse(written);
+                }
+                return flushed;
+            }
+            finally
+            {
+                records.flushed();
+            }
+        }
+    }
+
+    /**
+     * Collects the lengths of the TLS application data records written by the server.
+     */
+    static class RecordParser
+    {
+        final List<Integer> _lengths = new ArrayList<>();
+        int _flushes;
+        int _flushing;
+        private final byte[] _header = new byte[5];
+        private int _headerBytes;
+        private int _skip;
+
+        synchronized void parse(ByteBuffer buffer)
+        {
+            while (buffer.hasRemaining())
+            {
+                if (_skip>0)
+                {
+                    int skip=Math.min(_skip,buffer.remaining());
+                    buffer.position(buffer.position()+skip);
+                    _skip-=skip;
+                }
+                else
+                {
+                    _header[_headerBytes++]=buffer.get();
+                    if (_headerBytes==_header.length)
+                    {
+                        _headerBytes=0;
+                        _skip=((_header[3]&0xFF)<<8)+(_header[4]&0xFF);
+                        if (_header[0]==23)
+                            _lengths.add(_skip);
+                    }
+                }
+            }
+        }
+
+        synchronized void flushing()
+        {
+            _flushing++;
+        }
+
+        synchronized void flushed()
+        {
+            _flushes++;
+            _flushing--;
+            notifyAll();
+        }
+
+        /**
+         * Waits for the bytes being flushed, which the peer may have read already, to be parsed.
+         */
+        synchronized void awaitFlushed() throws InterruptedException
+        {
+            long end=System.nanoTime()+TimeUnit.SECONDS.toNanos(5);
+            while (_flushing>0)
+            {
+                long ms=TimeUnit.NANOSECONDS.toMillis(end-System.nanoTime());
+                Assert.assertTrue("flushing",ms>0);
+                wait(ms);
+            }
+        }
+
+        synchronized int flushes()
+        {
+            return _flushes;
+        }
+
+        synchronized List<Integer> lengths()
+        {
+            return new ArrayList<>(_lengths);
+        }
+
+        synchronized void clear()
+        {
+            _flushes=0;
+            _lengths.clear();
         }
     }
     
@@ -144,6 +258,8 @@ public class SslConnectionTest
     public void startManager() throws Exception
     {
         _testFill=true;
+        _dynamicRecordSizing=false;
+        __records=null;
         _writeCallback=null;
         _lastEndp=null;
         _connector = ServerSocketChannel.open();
@@ -305,6 +421,65 @@ public class SslConnectionTest
     
 
 
+    @Test
+    public void testDynamicRecordSizing() throws Exception
+    {
+        _dynamicRecordSizing=true;
+        __records=new RecordParser();
+        // The encrypted length of a small record, allowing for the MAC and padding.
+        int smallRecordLength=1369+256;
+
+        Socket client = newClient();
+        client.setSoTimeout(10000);
+
+        SocketChannel server = _connector.accept();
+        server.configureBlocking(false);
+        _manager.accept(server);
+
+        // Before the threshold records are small, after it they are full size.
+        echo(client,64*1024);
+        __records.awaitFlushed();
+        List<Integer> lengths=__records.lengths();
+        int small=0;
+        while (small<lengths.size() && lengths.get(small)<=smallRecordLength)
+            small++;
+        Assert.assertTrue(lengths.toString(),small>=(16*1024)/1369);
+        int max=0;
+        for (int length : lengths)
+            max=Math.max(max,length);
+        Assert.assertTrue(lengths.toString(),max>4096);
+
+        // After the idle timeout records are small again.
+        Thread.sleep(500);
+        __records.clear();
+        echo(client,8*1024);
+        __records.awaitFlushed();
+        lengths=__records.lengths();
+        Assert.assertTrue(lengths.toString(),lengths.size()>=(8*1024)/1369);
+        for (int length : lengths)
+            Assert.assertTrue(lengths.toString(),length<=smallRecordLength);
+        // The small records are flushed in batches rather than one by one.
+        Assert.assertTrue(lengths.toString(),__records.flushes()<lengths.size());
+
+        client.close();
+    }
+
+    private void echo(Socket client, int size) throws IOException
+    {
+        byte[] content=new byte[size];
+        Arrays.fill(content,(byte)'x');
+        client.getOutputStream().write(content);
+        client.getOutputStream().flush();
+        byte[] buffer=new byte[size];
+        int read=0;
+        while (read<size)
+        {
+            int len=client.getInputStream().read(buffer,read,size-read);
+            Assert.assertTrue(len>0);
+            read+=len;
+        }
+    }
+
     @Test
     public void testBlockedWrite() throws Exception
     {
@@ -0,0 +1,200 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jetty.toolchain.test.AdvancedRunner;
+import org.eclipse.jetty.toolchain.test.annotation.Stress;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AdvancedRunner.class)
+public class ThreadLocalByteBufferPoolTest
+{
+    private static final Logger LOG = Log.getLogger(ThreadLocalByteBufferPoolTest.class);
+
+    @Test
+    public void testMinimumAndMaximumNotPooled() throws Exception
+    {
+        ThreadLocalByteBufferPool bufferPool = new ThreadLocalByteBufferPool(10,100,1000,4);
+
+        ByteBuffer small = bufferPool.acquire(9, true);
+        assertEquals(9,small.capacity());
+        bufferPool.release(small);
+        assertTrue(small!=bufferPool.acquire(9, true));
+
+        ByteBuffer large = bufferPool.acquire(1001, false);
+        assertEquals(1001,large.capacity());
+        bufferPool.release(large);
+        assertTrue(large!=bufferPool.acquire(1001, false));
+    }
+
+    @Test
+    public void testAcquireReleaseAcquire() throws Exception
+    {
+        ThreadLocalByteBufferPool bufferPool = new ThreadLocalByteBufferPool(10,100,1000,4);
+
+        for (int size=390;size<=510;size++)
+        {
+            bufferPool.clear();
+            ByteBuffer buffer1 = bufferPool.acquire(size, true);
+            assertTrue(buffer1.isDirect());
+            assertThat(buffer1.capacity(), greaterThanOrEqualTo(size));
+            bufferPool.release(buffer1);
+            ByteBuffer buffer2 = bufferPool.acquire(size, true);
+            bufferPool.release(buffer2);
+            ByteBuffer buffer3 = bufferPool.acquire(size, false);
+            bufferPool.release(buffer3);
+
+            assertSame(buffer1,buffer2);
+            assertTrue(buffer1!=buffer3);
+            assertTrue(!buffer3.isDirect());
+        }
+    }
+
+    @Test
+    public void testFullMagazinesMoveToDepot() throws Exception
+    {
+        int magazine = 4;
+        ThreadLocalByteBufferPool bufferPool = new ThreadLocalByteBufferPool(10,100,1000,magazine);
+        ThreadLocalByteBufferPool.Depot depot = bufferPool.depotsFor(true)[4];
+
+        List<ByteBuffer> buffers = new ArrayList<>();
+        for (int i=0;i<3*magazine;i++)
+            buffers.add(bufferPool.acquire(500, true));
+        for (ByteBuffer buffer : buffers)
+            bufferPool.release(buffer);
+
+        // Two magazines stay with the thread, the third full one goes to the depot.
+        assertEquals(1,depot._full.size());
+        assertEquals(magazine,depot.getBufferCount());
+    }
+
+    @Test
+    public void testDepotSharedAcrossThreads() throws Exception
+    {
+        int magazine = 4;
+        final ThreadLocalByteBufferPool bufferPool = new ThreadLocalByteBufferPool(10,100,1000,magazine);
+        ThreadLocalByteBufferPool.Depot depot = bufferPool.depotsFor(false)[4];
+
+        final List<ByteBuffer> buffers = new ArrayList<>();
+        for (int i=0;i<3*magazine;i++)
+            buffers.add(bufferPool.acquire(500, false));
+        for (ByteBuffer buffer : buffers)
+            bufferPool.release(buffer);
+        assertEquals(1,depot._full.size());
+
+        final AtomicReference<ByteBuffer> acquired = new AtomicReference<>();
+        Thread thread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                acquired.set(bufferPool.acquire(500, false));
+            }
+        };
+        thread.start();
+        thread.join();
+
+        assertTrue(buffers.contains(acquired.get()));
+        assertEquals(0,depot._full.size());
+    }
+
+    @Stress("High CPU")
+    @Test
+    public void testBenchmark() throws Exception
+    {
+        int cores = Runtime.getRuntime().availableProcessors();
+        Assume.assumeTrue(cores > 1);
+
+        List<ByteBufferPool> pools = new ArrayList<>();
+        pools.add(new ArrayByteBufferPool());
+        pools.add(new ThreadLocalByteBufferPool());
+
+        int iterations = 4 * 1024 * 1024;
+        for (ByteBufferPool pool : pools)
+        {
+            for (int r = 0; r < 4; ++r)
+            {
+                long elapsed = benchmark(pool, cores, iterations);
+                LOG.info("{} threads: {} => {} ms", pool.getClass().getSimpleName(), cores, elapsed);
+            }
+        }
+    }
+
+    private long benchmark(final ByteBufferPool pool, int threads, final int iterations) throws Exception
+    {
+        final CyclicBarrier barrier = new CyclicBarrier(threads + 1);
+        for (int t = 0; t < threads; ++t)
+        {
+            new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    await(barrier);
+                    ByteBuffer[] held = new ByteBuffer[4];
+                    for (int i = 0; i < iterations; ++i)
+                    {
+                        int size = 4096 << (i & 2);
+                        int slot = i & 3;
+                        if (held[slot] != null)
+                            pool.release(held[slot]);
+                        held[slot] = pool.acquire(size, true);
+                    }
+                    for (ByteBuffer buffer : held)
+                        pool.release(buffer);
+                    await(barrier);
+                }
+            }.start();
+        }
+
+        await(barrier);
+        long begin = System.nanoTime();
+        await(barrier);
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+    }
+
+    private static void await(CyclicBarrier barrier)
+    {
+        try
+        {
+            barrier.await();
+        }
+        catch (Exception x)
+        {
+            throw new RuntimeException(x);
+        }
+    }
+}
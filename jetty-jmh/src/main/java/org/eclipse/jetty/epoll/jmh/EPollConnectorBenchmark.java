@@ -0,0 +1,167 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.epoll.jmh;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.epoll.EPollConnector;
+import org.eclipse.jetty.server.AbstractNetworkConnector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Runs HTTP/1.1 requests over persistent connections, one per benchmark
+ * thread, against a server listening with the NIO {@link ServerConnector}
+ * or the {@link EPollConnector}.</p>
+ * <p>The epoll connector is only available on 64 bit Linux.</p>
+ */
+@State(Scope.Benchmark)
+@Threads(8)
+@Fork(1)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EPollConnectorBenchmark
+{
+    private static final byte[] REQUEST = "GET / HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CONTENT = "Hello".getBytes(StandardCharsets.US_ASCII);
+
+    @Param({"nio", "epoll"})
+    public String connector;
+
+    private Server _server;
+    private AbstractNetworkConnector _connector;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        _server = new Server();
+        switch (connector)
+        {
+            case "nio":
+                _connector = new ServerConnector(_server, 1, 2);
+                break;
+            case "epoll":
+                _connector = new EPollConnector(_server, 2);
+                break;
+            default:
+                throw new IllegalArgumentException(connector);
+        }
+        _connector.setHost("localhost");
+        _server.addConnector(_connector);
+        _server.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+            {
+                baseRequest.setHandled(true);
+                response.setContentLength(CONTENT.length);
+                response.getOutputStream().write(CONTENT);
+            }
+        });
+        _server.start();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        _server.stop();
+    }
+
+    @State(Scope.Thread)
+    public static class Client
+    {
+        private final byte[] _buffer = new byte[1024];
+        private Socket _socket;
+        private InputStream _input;
+        private OutputStream _output;
+
+        @Setup
+        public void setUp(EPollConnectorBenchmark benchmark) throws IOException
+        {
+            _socket = new Socket("localhost", benchmark._connector.getLocalPort());
+            _socket.setTcpNoDelay(true);
+            _input = _socket.getInputStream();
+            _output = _socket.getOutputStream();
+        }
+
+        @TearDown
+        public void tearDown() throws IOException
+        {
+            _socket.close();
+        }
+    }
+
+    @Benchmark
+    public int request(Client client) throws IOException
+    {
+        client._output.write(REQUEST);
+        client._output.flush();
+
+        // The response is small and has a fixed length, so it is
+        // complete once its content has been read.
+        int read = 0;
+        while (true)
+        {
+            int n = client._input.read(client._buffer, read, client._buffer.length - read);
+            if (n < 0)
+                throw new IOException("Unexpected EOF");
+            read += n;
+            if (endsWith(client._buffer, read, CONTENT))
+                return read;
+        }
+    }
+
+    private static boolean endsWith(byte[] buffer, int length, byte[] suffix)
+    {
+        if (length < suffix.length)
+            return false;
+        for (int i = 0; i < suffix.length; ++i)
+        {
+            if (buffer[length - suffix.length + i] != suffix[i])
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,111 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.http.jmh;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpGenerator;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.util.BufferUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * <p>Generates a small response, either with a known content length
+ * or with chunked content, the way {@code HttpConnection} drives the generator.</p>
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HttpGeneratorBenchmark
+{
+    @Param({"false", "true"})
+    public boolean chunked;
+
+    private final HttpGenerator _generator = new HttpGenerator();
+    private final ByteBuffer _header = BufferUtil.allocate(4096);
+    private final ByteBuffer _chunk = BufferUtil.allocate(HttpGenerator.CHUNK_SIZE);
+    private ByteBuffer _content;
+    private MetaData.Response _response;
+
+    @Setup
+    public void setUp()
+    {
+        byte[] content = new byte[1024];
+        _content = BufferUtil.toBuffer(content);
+
+        HttpFields fields = new HttpFields();
+        fields.put(HttpHeader.CONTENT_TYPE, "text/html;charset=utf-8");
+        fields.put(HttpHeader.CACHE_CONTROL, "no-cache");
+        fields.put(HttpHeader.SET_COOKIE, "JSESSIONID=node01abcdefghijklmnopqrstuvwxyz0.node0;Path=/");
+        fields.putDateField(HttpHeader.LAST_MODIFIED, 0);
+        _response = new MetaData.Response(HttpVersion.HTTP_1_1, 200, fields, chunked ? -1 : content.length);
+    }
+
+    @Benchmark
+    public void generateResponse(Blackhole blackhole) throws IOException
+    {
+        ByteBuffer content = _content.slice();
+        long bytes = 0;
+        while (true)
+        {
+            HttpGenerator.Result result = _generator.generateResponse(_response, _header, _chunk, content, true);
+            switch (result)
+            {
+                case NEED_HEADER:
+                case NEED_CHUNK:
+                case CONTINUE:
+                    break;
+                case FLUSH:
+                    // Simulates the write to the network.
+                    bytes += _header.remaining() + _chunk.remaining() + content.remaining();
+                    BufferUtil.clear(_header);
+                    BufferUtil.clear(_chunk);
+                    BufferUtil.clear(content);
+                    break;
+                case SHUTDOWN_OUT:
+                case DONE:
+                    _generator.reset();
+                    blackhole.consume(bytes);
+                    return;
+                default:
+                    throw new IllegalStateException(result.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.http.jmh;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpParser;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.util.BufferUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * <p>Parses a typical browser request on a persistent connection, with and
+ * without the per connection header cache.</p>
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HttpParserBenchmark
+{
+    private static final String REQUEST =
+            "GET /context/path/resource.html?query=value&other=value HTTP/1.1\r\n" +
+            "Host: www.example.com\r\n" +
+            "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:45.0) Gecko/20100101 Firefox/45.0\r\n" +
+            "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8\r\n" +
+            "Accept-Language: en-US,en;q=0.5\r\n" +
+            "Accept-Encoding: gzip, deflate\r\n" +
+            "Referer: http://www.example.com/context/path/index.html\r\n" +
+            "Cookie: JSESSIONID=node01abcdefghijklmnopqrstuvwxyz0.node0; theme=dark\r\n" +
+            "Connection: keep-alive\r\n" +
+            "Cache-Control: max-age=0\r\n" +
+            "\r\n";
+
+    @Param({"0", "4096"})
+    public int headerCacheSize;
+
+    private ByteBuffer _request;
+    private Handler _handler;
+    private HttpParser _parser;
+
+    @Setup
+    public void setUp()
+    {
+        _request = BufferUtil.toBuffer(REQUEST);
+        _handler = new Handler(headerCacheSize);
+        _parser = new HttpParser(_handler);
+    }
+
+    @Benchmark
+    public void parseRequest(Blackhole blackhole)
+    {
+        ByteBuffer buffer = _request.slice();
+        while (!_parser.isComplete() && buffer.hasRemaining())
+            _parser.parseNext(buffer);
+        _parser.reset();
+        blackhole.consume(_handler._fields);
+        _handler._fields = 0;
+    }
+
+    private static class Handler implements HttpParser.RequestHandler
+    {
+        private final int _headerCacheSize;
+        private int _fields;
+
+        private Handler(int headerCacheSize)
+        {
+            _headerCacheSize = headerCacheSize;
+        }
+
+        @Override
+        public boolean startRequest(String method, String uri, HttpVersion version)
+        {
+            return false;
+        }
+
+        @Override
+        public void parsedHeader(HttpField field)
+        {
+            ++_fields;
+        }
+
+        @Override
+        public boolean headerComplete()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean content(ByteBuffer item)
+        {
+            return false;
+        }
+
+        @Override
+        public boolean messageComplete()
+        {
+            return true;
+        }
+
+        @Override
+        public void earlyEOF()
+        {
+        }
+
+        @Override
+        public void badMessage(int status, String reason)
+        {
+            throw new IllegalStateException(status + " " + reason);
+        }
+
+        @Override
+        public int getHeaderCacheSize()
+        {
+            return _headerCacheSize;
+        }
+    }
+}
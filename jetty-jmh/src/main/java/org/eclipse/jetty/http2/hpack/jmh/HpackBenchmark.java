@@ -0,0 +1,105 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.http2.hpack.jmh;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HostPortHttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpScheme;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.hpack.HpackDecoder;
+import org.eclipse.jetty.http2.hpack.HpackEncoder;
+import org.eclipse.jetty.util.BufferUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * <p>Encodes and decodes the headers of a typical request on an established
+ * connection, so that most fields are found in the dynamic tables.</p>
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HpackBenchmark
+{
+    private final ByteBuffer _buffer = BufferUtil.allocate(8192);
+    private MetaData.Request _request;
+    private HpackEncoder _encoder;
+    private HpackDecoder _decoder;
+    private ByteBuffer _encoded;
+
+    @Setup
+    public void setUp()
+    {
+        HttpFields fields = new HttpFields();
+        fields.put(HttpHeader.USER_AGENT, "Mozilla/5.0 (X11; Linux x86_64; rv:45.0) Gecko/20100101 Firefox/45.0");
+        fields.put(HttpHeader.ACCEPT, "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8");
+        fields.put(HttpHeader.ACCEPT_LANGUAGE, "en-US,en;q=0.5");
+        fields.put(HttpHeader.ACCEPT_ENCODING, "gzip, deflate");
+        fields.put(HttpHeader.REFERER, "https://www.example.com/context/path/index.html");
+        fields.put(HttpHeader.COOKIE, "JSESSIONID=node01abcdefghijklmnopqrstuvwxyz0.node0; theme=dark");
+        _request = new MetaData.Request("GET", HttpScheme.HTTPS, new HostPortHttpField("www.example.com"),
+                "/context/path/resource.html?query=value", HttpVersion.HTTP_2, fields);
+
+        _encoder = new HpackEncoder(4096);
+        _decoder = new HpackDecoder(4096, 8192);
+
+        // The first encoding adds the fields to the dynamic tables,
+        // the second only refers to the entries of the dynamic tables.
+        _decoder.decode(encode());
+        _encoded = BufferUtil.toBuffer(BufferUtil.toArray(encode()));
+    }
+
+    private ByteBuffer encode()
+    {
+        BufferUtil.clearToFill(_buffer);
+        _encoder.encode(_buffer, _request);
+        BufferUtil.flipToFlush(_buffer, 0);
+        return _buffer;
+    }
+
+    @Benchmark
+    public void encode(Blackhole blackhole)
+    {
+        blackhole.consume(encode());
+    }
+
+    @Benchmark
+    public void decode(Blackhole blackhole)
+    {
+        blackhole.consume(_decoder.decode(_encoded.slice()));
+    }
+}
@@ -0,0 +1,112 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.io.jmh;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.io.ArrayByteBufferPool;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.MappedByteBufferPool;
+import org.eclipse.jetty.io.SlabByteBufferPool;
+import org.eclipse.jetty.io.ThreadLocalByteBufferPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * <p>Acquires and releases buffers from a {@link ByteBufferPool} shared by
+ * several threads, as the selector and worker threads do.</p>
+ */
+@State(Scope.Benchmark)
+@Threads(4)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ByteBufferPoolBenchmark
+{
+    @Param({"ArrayByteBufferPool", "MappedByteBufferPool", "SlabByteBufferPool", "ThreadLocalByteBufferPool"})
+    public String type;
+
+    @Param({"false", "true"})
+    public boolean direct;
+
+    @Param({"1024", "16384"})
+    public int size;
+
+    private ByteBufferPool _pool;
+
+    @Setup
+    public void setUp()
+    {
+        switch (type)
+        {
+            case "ArrayByteBufferPool":
+                _pool = new ArrayByteBufferPool();
+                break;
+            case "MappedByteBufferPool":
+                _pool = new MappedByteBufferPool();
+                break;
+            case "SlabByteBufferPool":
+                _pool = new SlabByteBufferPool();
+                break;
+            case "ThreadLocalByteBufferPool":
+                _pool = new ThreadLocalByteBufferPool();
+                break;
+            default:
+                throw new IllegalArgumentException(type);
+        }
+    }
+
+    @Benchmark
+    public void acquireRelease(Blackhole blackhole)
+    {
+        ByteBuffer buffer = _pool.acquire(size, direct);
+        blackhole.consume(buffer);
+        _pool.release(buffer);
+    }
+
+    @Benchmark
+    public void acquireReleaseMany(Blackhole blackhole)
+    {
+        // Several buffers in use at once, like header, content and output buffers.
+        ByteBuffer header = _pool.acquire(size, direct);
+        ByteBuffer content = _pool.acquire(size, direct);
+        ByteBuffer output = _pool.acquire(size, direct);
+        blackhole.consume(header);
+        blackhole.consume(content);
+        blackhole.consume(output);
+        _pool.release(content);
+        _pool.release(header);
+        _pool.release(output);
+    }
+}
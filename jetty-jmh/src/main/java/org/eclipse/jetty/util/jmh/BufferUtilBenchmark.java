@@ -0,0 +1,99 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.util.jmh;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.BufferUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * <p>Benchmarks the {@link BufferUtil} methods used on every request and response.</p>
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BufferUtilBenchmark
+{
+    @Param({"false", "true"})
+    public boolean direct;
+
+    @Param({"64", "4096"})
+    public int size;
+
+    private ByteBuffer _from;
+    private ByteBuffer _to;
+
+    @Setup
+    public void setUp()
+    {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < bytes.length; ++i)
+            bytes[i] = (byte)('a' + i % 26);
+        _from = direct ? BufferUtil.allocateDirect(size) : BufferUtil.allocate(size);
+        BufferUtil.append(_from, bytes, 0, bytes.length);
+        _to = direct ? BufferUtil.allocateDirect(size) : BufferUtil.allocate(size);
+    }
+
+    @Benchmark
+    public void append(Blackhole blackhole)
+    {
+        BufferUtil.clear(_to);
+        blackhole.consume(BufferUtil.append(_to, _from.slice()));
+    }
+
+    @Benchmark
+    public void putInt(Blackhole blackhole)
+    {
+        BufferUtil.clearToFill(_to);
+        BufferUtil.putDecInt(_to, 1234567);
+        BufferUtil.putHexInt(_to, 0xCAFE);
+        BufferUtil.flipToFlush(_to, 0);
+        blackhole.consume(_to);
+    }
+
+    @Benchmark
+    public void toISO88591String(Blackhole blackhole)
+    {
+        blackhole.consume(BufferUtil.toString(_from, StandardCharsets.ISO_8859_1));
+    }
+
+    @Benchmark
+    public void toUTF8String(Blackhole blackhole)
+    {
+        blackhole.consume(BufferUtil.toUTF8String(_from));
+    }
+}
@@ -0,0 +1,136 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.util.jmh;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.MultiPartParser;
+import org.eclipse.jetty.util.SearchPattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Benchmarks the search of multipart delimiters in a large upload, with a
+ * {@link SearchPattern} and byte by byte, and the parsing of the upload with
+ * {@link MultiPartParser}.</p>
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MultiPartBenchmark
+{
+    private static final String BOUNDARY = "----WebKitFormBoundary7MA4YWxkTrZu0gW";
+
+    @Param({"65536", "1048576"})
+    public int size;
+
+    private final SearchPattern _pattern = SearchPattern.compile("--" + BOUNDARY);
+    private final byte[] _delimiter = ("--" + BOUNDARY).getBytes(StandardCharsets.US_ASCII);
+    private byte[] _content;
+
+    @Setup
+    public void setUp()
+    {
+        byte[] file = new byte[size];
+        new Random(42).nextBytes(file);
+        String head = "--" + BOUNDARY + "\r\n" +
+                "Content-Disposition: form-data; name=\"upload\"; filename=\"file.bin\"\r\n" +
+                "Content-Type: application/octet-stream\r\n" +
+                "\r\n";
+        String tail = "\r\n--" + BOUNDARY + "--\r\n";
+        ByteBuffer content = ByteBuffer.allocate(head.length() + size + tail.length());
+        content.put(head.getBytes(StandardCharsets.US_ASCII)).put(file).put(tail.getBytes(StandardCharsets.US_ASCII));
+        _content = content.array();
+    }
+
+    @Benchmark
+    public int searchPattern()
+    {
+        int count = 0;
+        int offset = 0;
+        while (true)
+        {
+            int index = _pattern.match(_content, offset, _content.length - offset);
+            if (index < 0)
+                return count;
+            ++count;
+            offset = index + 1;
+        }
+    }
+
+    @Benchmark
+    public int searchByteByByte()
+    {
+        // Compare every byte, like a parser matching the delimiter one byte at a time.
+        int count = 0;
+        int matched = 0;
+        for (byte b : _content)
+        {
+            if (b == _delimiter[matched])
+            {
+                if (++matched == _delimiter.length)
+                {
+                    ++count;
+                    matched = 0;
+                }
+            }
+            else
+            {
+                matched = b == _delimiter[0] ? 1 : 0;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public long parse() throws IOException
+    {
+        final long[] length = new long[1];
+        MultiPartParser parser = new MultiPartParser(new MultiPartParser.Handler()
+        {
+            @Override
+            public void content(ByteBuffer buffer, boolean last)
+            {
+                length[0] += buffer.remaining();
+            }
+        }, BOUNDARY);
+        // Deliver the content in chunks, like a connection would.
+        for (int offset = 0; offset < _content.length; offset += 16384)
+            parser.parse(ByteBuffer.wrap(_content, offset, Math.min(16384, _content.length - offset)), false);
+        parser.parse(ByteBuffer.allocate(0), true);
+        return length[0];
+    }
+}
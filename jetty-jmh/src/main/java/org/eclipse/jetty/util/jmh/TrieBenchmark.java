@@ -0,0 +1,112 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.util.jmh;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.ArrayTernaryTrie;
+import org.eclipse.jetty.util.ArrayTrie;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.TreeTrie;
+import org.eclipse.jetty.util.Trie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * <p>Looks up header names in the {@link Trie} implementations, by exact
+ * match from a String and by best match from a buffer, as the parser does.</p>
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TrieBenchmark
+{
+    private static final String[] KEYS = new String[]
+    {
+        "Accept", "Accept-Charset", "Accept-Encoding", "Accept-Language", "Accept-Ranges",
+        "Authorization", "Cache-Control", "Connection", "Content-Encoding", "Content-Length",
+        "Content-Type", "Cookie", "Date", "ETag", "Expect", "Host", "If-Match",
+        "If-Modified-Since", "If-None-Match", "Last-Modified", "Location", "Pragma",
+        "Range", "Referer", "Server", "Set-Cookie", "Transfer-Encoding", "Upgrade",
+        "User-Agent", "Vary", "Via", "X-Forwarded-For", "X-Forwarded-Proto"
+    };
+
+    @Param({"ArrayTrie", "ArrayTernaryTrie", "TreeTrie"})
+    public String type;
+
+    private Trie<String> _trie;
+    private ByteBuffer[] _lines;
+
+    @Setup
+    public void setUp()
+    {
+        switch (type)
+        {
+            case "ArrayTrie":
+                _trie = new ArrayTrie<>(1024);
+                break;
+            case "ArrayTernaryTrie":
+                _trie = new ArrayTernaryTrie<>(1024);
+                break;
+            case "TreeTrie":
+                _trie = new TreeTrie<>();
+                break;
+            default:
+                throw new IllegalArgumentException(type);
+        }
+        for (String key : KEYS)
+        {
+            if (!_trie.put(key, key))
+                throw new IllegalStateException("Trie full: " + _trie);
+        }
+
+        _lines = new ByteBuffer[KEYS.length];
+        for (int i = 0; i < KEYS.length; ++i)
+            _lines[i] = BufferUtil.toBuffer(KEYS[i] + ": value\r\n");
+    }
+
+    @Benchmark
+    public void getString(Blackhole blackhole)
+    {
+        for (String key : KEYS)
+            blackhole.consume(_trie.get(key));
+    }
+
+    @Benchmark
+    public void getBestBuffer(Blackhole blackhole)
+    {
+        for (ByteBuffer line : _lines)
+            blackhole.consume(_trie.getBest(line, 0, line.remaining()));
+    }
+}
@@ -0,0 +1,82 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.util.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.MultiMap;
+import org.eclipse.jetty.util.URIUtil;
+import org.eclipse.jetty.util.UrlEncoded;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * <p>Benchmarks the URI path canonicalization and the decoding of
+ * query strings and form contents.</p>
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class URIBenchmark
+{
+    private static final String CANONICAL_PATH = "/context/path/to/some/resource.html";
+    private static final String DOTTED_PATH = "/context/./path/to/../to/some/./resource.html";
+    private static final String ASCII_QUERY = "name=value&page=2&sort=desc&filter=active&q=jetty+server&lang=en";
+    private static final String ENCODED_QUERY = "name=J%C3%BCrgen&city=M%C3%BCnchen&q=caf%C3%A9+cr%C3%A8me&tag=%E2%82%AC&x=%2F%3F%26";
+
+    @Benchmark
+    public void canonicalPath(Blackhole blackhole)
+    {
+        blackhole.consume(URIUtil.canonicalPath(CANONICAL_PATH));
+    }
+
+    @Benchmark
+    public void canonicalPathWithDots(Blackhole blackhole)
+    {
+        blackhole.consume(URIUtil.canonicalPath(DOTTED_PATH));
+    }
+
+    @Benchmark
+    public void decodeAsciiQuery(Blackhole blackhole)
+    {
+        MultiMap<String> map = new MultiMap<>();
+        UrlEncoded.decodeUtf8To(ASCII_QUERY, map);
+        blackhole.consume(map);
+    }
+
+    @Benchmark
+    public void decodeEncodedQuery(Blackhole blackhole)
+    {
+        MultiMap<String> map = new MultiMap<>();
+        UrlEncoded.decodeUtf8To(ENCODED_QUERY, map);
+        blackhole.consume(map);
+    }
+}
@@ -0,0 +1,94 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.util.jmh;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.MultiMap;
+import org.eclipse.jetty.util.UrlEncoded;
+import org.eclipse.jetty.util.UrlEncodedDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Benchmarks the decoding of large form bodies from an {@link java.io.InputStream}
+ * and from {@link ByteBuffer}s, as they are delivered by the connection.</p>
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class UrlEncodedBenchmark
+{
+    @Param({"100", "1000"})
+    public int fields;
+
+    private final UrlEncodedDecoder.KeyCache _keys = new UrlEncodedDecoder.KeyCache();
+    private byte[] _content;
+
+    @Setup
+    public void setUp()
+    {
+        StringBuilder form = new StringBuilder();
+        for (int i = 0; i < fields; ++i)
+        {
+            if (i > 0)
+                form.append('&');
+            form.append("field").append(i % 20).append('=');
+            form.append(i % 4 == 0 ? "caf%C3%A9+cr%C3%A8me+br%C3%BBl%C3%A9e" : "some+plain+value+number+" + i);
+        }
+        _content = form.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    @Benchmark
+    public MultiMap<String> decodeStream() throws IOException
+    {
+        MultiMap<String> map = new MultiMap<>();
+        UrlEncoded.decodeUtf8To(new ByteArrayInputStream(_content), map, -1, -1);
+        return map;
+    }
+
+    @Benchmark
+    public MultiMap<String> decodeBuffers()
+    {
+        MultiMap<String> map = new MultiMap<>();
+        UrlEncodedDecoder decoder = new UrlEncodedDecoder(map, StandardCharsets.UTF_8, -1, -1, _keys);
+        // Deliver the content in chunks, like a connection would.
+        for (int offset = 0; offset < _content.length; offset += 4096)
+            decoder.decode(ByteBuffer.wrap(_content, offset, Math.min(4096, _content.length - offset)));
+        decoder.end();
+        return map;
+    }
+}
@@ -0,0 +1,129 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.util.jmh;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Utf8StringBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Benchmarks the UTF-8 decoding of {@link Utf8StringBuilder} on corpora from pure
+ * ASCII (URIs, JSON) to mostly multibyte text, comparing the bulk appends with the
+ * byte by byte decoding and with the JDK decoder.</p>
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class Utf8Benchmark
+{
+    @Param({"uri", "json", "latin", "cjk"})
+    public String corpus;
+
+    private final Utf8StringBuilder _builder = new Utf8StringBuilder(4096);
+    private byte[] _bytes;
+    private ByteBuffer _heap;
+    private ByteBuffer _direct;
+
+    @Setup
+    public void setUp()
+    {
+        String text;
+        switch (corpus)
+        {
+            case "uri":
+                text = "/context/path/to/some/resource.html?query=value&other=1234567890&flag";
+                break;
+            case "json":
+                text = "{\"id\":1234,\"name\":\"jetty\",\"tags\":[\"http\",\"websocket\"],\"enabled\":true,\"ratio\":0.75}";
+                break;
+            case "latin":
+                text = "Les d\u00e9veloppeurs pr\u00e9f\u00e8rent un d\u00e9codage tr\u00e8s rapide, m\u00eame pour les cha\u00eenes accentu\u00e9es.";
+                break;
+            case "cjk":
+                text = "\u30a6\u30a7\u30d6\u30b5\u30fc\u30d0\u30fc\u306f\u9ad8\u901f\u306a\u30c7\u30b3\u30fc\u30c9\u304c\u5fc5\u8981\u3067\u3059 jetty \u6d4b\u8bd5\u6587\u672c";
+                break;
+            default:
+                throw new IllegalArgumentException(corpus);
+        }
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < 1024)
+            builder.append(text);
+        _bytes = builder.toString().getBytes(StandardCharsets.UTF_8);
+        _heap = BufferUtil.toBuffer(_bytes);
+        _direct = BufferUtil.allocateDirect(_bytes.length);
+        BufferUtil.append(_direct, _bytes, 0, _bytes.length);
+    }
+
+    @Benchmark
+    public String appendBytes()
+    {
+        _builder.reset();
+        _builder.append(_bytes, 0, _bytes.length);
+        return _builder.toString();
+    }
+
+    @Benchmark
+    public String appendHeapBuffer()
+    {
+        _builder.reset();
+        _builder.append(_heap.slice());
+        return _builder.toString();
+    }
+
+    @Benchmark
+    public String appendDirectBuffer()
+    {
+        _builder.reset();
+        _builder.append(_direct.slice());
+        return _builder.toString();
+    }
+
+    @Benchmark
+    public String appendByteByByte()
+    {
+        _builder.reset();
+        for (byte b : _bytes)
+            _builder.append(b);
+        return _builder.toString();
+    }
+
+    @Benchmark
+    public String jdkDecoder()
+    {
+        return new String(_bytes, StandardCharsets.UTF_8);
+    }
+}
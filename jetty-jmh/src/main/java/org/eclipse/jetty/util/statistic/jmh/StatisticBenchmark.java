@@ -0,0 +1,92 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.util.statistic.jmh;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.util.Atomics;
+import org.eclipse.jetty.util.statistic.CounterStatistic;
+import org.eclipse.jetty.util.statistic.SampleStatistic;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Benchmarks statistics updated concurrently by all the threads, as
+ * {@code StatisticsHandler} and {@code ConnectorStatistics} do for every request.</p>
+ * <p>The {@code shared} benchmarks update single atomics like the previous
+ * implementation of the statistics did, for comparison.
+ * Run with {@code -t 1}, {@code -t 4}, etc. to measure the scaling.</p>
+ */
+@State(Scope.Benchmark)
+@Threads(Threads.MAX)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StatisticBenchmark
+{
+    private final CounterStatistic _counter = new CounterStatistic();
+    private final SampleStatistic _sample = new SampleStatistic();
+    private final AtomicLong _sharedCurrent = new AtomicLong();
+    private final AtomicLong _sharedTotal = new AtomicLong();
+    private final AtomicLong _sharedMax = new AtomicLong();
+    private final AtomicLong _sharedCount = new AtomicLong();
+
+    @Benchmark
+    public long counter()
+    {
+        _counter.increment();
+        return _counter.decrement();
+    }
+
+    @Benchmark
+    public void sample()
+    {
+        _sample.set(System.nanoTime() & 0xFFFF);
+    }
+
+    @Benchmark
+    public long sharedCounter()
+    {
+        long value = _sharedCurrent.incrementAndGet();
+        _sharedTotal.incrementAndGet();
+        Atomics.updateMax(_sharedMax, value);
+        return _sharedCurrent.decrementAndGet();
+    }
+
+    @Benchmark
+    public void sharedSample()
+    {
+        long sample = System.nanoTime() & 0xFFFF;
+        _sharedTotal.addAndGet(sample);
+        _sharedCount.incrementAndGet();
+        Atomics.updateMax(_sharedMax, sample);
+    }
+}
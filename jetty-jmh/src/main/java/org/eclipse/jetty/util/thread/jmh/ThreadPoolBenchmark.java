@@ -0,0 +1,117 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.util.thread.jmh;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.ConcurrentArrayBlockingQueue;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * <p>Dispatches batches of short tasks to a {@link QueuedThreadPool} from
+ * several producer threads, and waits for the tasks to complete.</p>
+ * <p>The number of producers defaults to 4, and can be changed with the JMH
+ * {@code -t} option, for example to compare the job queues with 1, 8 and 64 producers.</p>
+ */
+@State(Scope.Benchmark)
+@Threads(4)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ThreadPoolBenchmark
+{
+    private static final int BATCH = 100;
+
+    @Param({"BlockingArrayQueue", "ConcurrentArrayBlockingQueue"})
+    public String queue;
+
+    @Param({"8", "200"})
+    public int maxThreads;
+
+    @Param({"0", "100"})
+    public int work;
+
+    private QueuedThreadPool _pool;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        int minThreads = Math.min(8, maxThreads);
+        BlockingQueue<Runnable> jobs;
+        switch (queue)
+        {
+            case "BlockingArrayQueue":
+                jobs = new BlockingArrayQueue<>(minThreads, minThreads);
+                break;
+            case "ConcurrentArrayBlockingQueue":
+                jobs = new ConcurrentArrayBlockingQueue<>();
+                break;
+            default:
+                throw new IllegalArgumentException(queue);
+        }
+        _pool = new QueuedThreadPool(maxThreads, minThreads, 60000, jobs);
+        _pool.start();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        _pool.stop();
+    }
+
+    @Benchmark
+    public void dispatch(Blackhole blackhole) throws Exception
+    {
+        final CountDownLatch latch = new CountDownLatch(BATCH);
+        for (int i = 0; i < BATCH; ++i)
+        {
+            _pool.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    Blackhole.consumeCPU(work);
+                    latch.countDown();
+                }
+            });
+        }
+        latch.await();
+        blackhole.consume(latch);
+    }
+}
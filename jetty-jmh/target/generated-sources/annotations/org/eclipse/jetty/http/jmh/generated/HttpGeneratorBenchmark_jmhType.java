@@ -0,0 +1,4 @@
+package org.eclipse.jetty.http.jmh.generated;
+public class HttpGeneratorBenchmark_jmhType extends HttpGeneratorBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package org.eclipse.jetty.http.jmh.generated;
+public class HttpParserBenchmark_jmhType extends HttpParserBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package org.eclipse.jetty.http2.hpack.jmh.generated;
+public class HpackBenchmark_jmhType extends HpackBenchmark_jmhType_B3 {
+}
+
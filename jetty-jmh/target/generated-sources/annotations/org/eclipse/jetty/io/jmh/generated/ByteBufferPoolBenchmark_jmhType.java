@@ -0,0 +1,4 @@
+package org.eclipse.jetty.io.jmh.generated;
+public class ByteBufferPoolBenchmark_jmhType extends ByteBufferPoolBenchmark_jmhType_B3 {
+}
+
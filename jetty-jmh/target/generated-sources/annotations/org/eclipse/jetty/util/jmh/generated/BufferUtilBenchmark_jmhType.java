@@ -0,0 +1,4 @@
+package org.eclipse.jetty.util.jmh.generated;
+public class BufferUtilBenchmark_jmhType extends BufferUtilBenchmark_jmhType_B3 {
+}
+
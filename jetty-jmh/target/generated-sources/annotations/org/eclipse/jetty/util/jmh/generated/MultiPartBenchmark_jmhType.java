@@ -0,0 +1,4 @@
+package org.eclipse.jetty.util.jmh.generated;
+public class MultiPartBenchmark_jmhType extends MultiPartBenchmark_jmhType_B3 {
+}
+
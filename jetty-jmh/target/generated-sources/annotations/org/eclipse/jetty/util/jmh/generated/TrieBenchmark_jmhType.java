@@ -0,0 +1,4 @@
+package org.eclipse.jetty.util.jmh.generated;
+public class TrieBenchmark_jmhType extends TrieBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package org.eclipse.jetty.util.jmh.generated;
+public class URIBenchmark_jmhType extends URIBenchmark_jmhType_B3 {
+}
+
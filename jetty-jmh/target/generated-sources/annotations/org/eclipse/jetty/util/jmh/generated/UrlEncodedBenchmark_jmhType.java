@@ -0,0 +1,4 @@
+package org.eclipse.jetty.util.jmh.generated;
+public class UrlEncodedBenchmark_jmhType extends UrlEncodedBenchmark_jmhType_B3 {
+}
+
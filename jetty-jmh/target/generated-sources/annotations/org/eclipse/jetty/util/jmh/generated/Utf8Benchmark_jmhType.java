@@ -0,0 +1,4 @@
+package org.eclipse.jetty.util.jmh.generated;
+public class Utf8Benchmark_jmhType extends Utf8Benchmark_jmhType_B3 {
+}
+
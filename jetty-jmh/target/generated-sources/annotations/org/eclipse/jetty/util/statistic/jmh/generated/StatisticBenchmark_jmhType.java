@@ -0,0 +1,4 @@
+package org.eclipse.jetty.util.statistic.jmh.generated;
+public class StatisticBenchmark_jmhType extends StatisticBenchmark_jmhType_B3 {
+}
+
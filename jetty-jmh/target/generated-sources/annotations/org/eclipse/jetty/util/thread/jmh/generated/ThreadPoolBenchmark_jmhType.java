@@ -0,0 +1,4 @@
+package org.eclipse.jetty.util.thread.jmh.generated;
+public class ThreadPoolBenchmark_jmhType extends ThreadPoolBenchmark_jmhType_B3 {
+}
+
@@ -29,6 +29,9 @@ etc/jetty.xml
 ## Thread idle timeout (in milliseconds)
 # jetty.threadPool.idleTimeout=60000
 
+## Number of threads reserved to take over production by direct handoff
+# jetty.threadPool.reservedThreads=0
+
 ### Common HTTP configuration
 ## Scheme to use to build URIs for secure redirects
 # jetty.httpConfig.secureScheme=https
@@ -26,8 +26,11 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+import org.eclipse.jetty.io.ChannelEndPoint;
 import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.annotation.ManagedOperation;
@@ -36,6 +39,7 @@ import org.eclipse.jetty.util.component.Container;
 import org.eclipse.jetty.util.component.ContainerLifeCycle;
 import org.eclipse.jetty.util.component.Dumpable;
 import org.eclipse.jetty.util.statistic.CounterStatistic;
+import org.eclipse.jetty.util.statistic.HistogramStatistic;
 import org.eclipse.jetty.util.statistic.SampleStatistic;
 
 
@@ -53,9 +57,14 @@ public class ConnectorStatistics extends AbstractLifeCycle implements Dumpable,
     private final SampleStatistic _messagesIn = new SampleStatistic();
     private final SampleStatistic _messagesOut = new SampleStatistic();
     private final SampleStatistic _connectionDurationStats = new SampleStatistic();
+    private final HistogramStatistic _messagesInHistogram = new HistogramStatistic();
+    private final HistogramStatistic _messagesOutHistogram = new HistogramStatistic();
+    private final HistogramStatistic _connectionDurationHistogram = new HistogramStatistic();
     private final ConcurrentMap<Connection, Sample> _samples = new ConcurrentHashMap<>();
     private final AtomicInteger _closedIn = new AtomicInteger();
     private final AtomicInteger _closedOut = new AtomicInteger();
+    private final LongAdder _writes = new LongAdder();
+    private final LongAdder _writtenMessages = new LongAdder();
     private AtomicLong _nanoStamp=new AtomicLong();
     private volatile int _messagesInPerSecond;
     private volatile int _messagesOutPerSecond;
@@ -77,10 +86,22 @@ public class ConnectorStatistics extends AbstractLifeCycle implements Dumpable,
         {
             int msgsIn=connection.getMessagesIn();
             int msgsOut=connection.getMessagesOut();
+            long duration=System.currentTimeMillis()-connection.getCreatedTimeStamp();
             _messagesIn.set(msgsIn);
             _messagesOut.set(msgsOut);
+            _messagesInHistogram.record(msgsIn);
+            _messagesOutHistogram.record(msgsOut);
             _connectionStats.decrement();
-            _connectionDurationStats.set(System.currentTimeMillis()-connection.getCreatedTimeStamp());
+            _connectionDurationStats.set(duration);
+            _connectionDurationHistogram.record(duration);
+
+            // With TLS, the writes are counted on the encrypted connection
+            // and the messages on the decrypted one.
+            EndPoint endPoint=connection.getEndPoint();
+            if (endPoint instanceof ChannelEndPoint)
+                _writes.add(((ChannelEndPoint)endPoint).getWrites());
+            if (msgsOut>0)
+                _writtenMessages.add(msgsOut);
 
             Sample sample=_samples.remove(connection);
             if (sample!=null)
@@ -129,6 +150,29 @@ public class ConnectorStatistics extends AbstractLifeCycle implements Dumpable,
         return _connectionDurationStats.getStdDev();
     }
 
+    @ManagedAttribute("Connection duration median in ms")
+    public long getConnectionDurationP50()
+    {
+        return _connectionDurationHistogram.getValueAtPercentile(50);
+    }
+
+    @ManagedAttribute("Connection duration 99th percentile in ms")
+    public long getConnectionDurationP99()
+    {
+        return _connectionDurationHistogram.getValueAtPercentile(99);
+    }
+
+    @ManagedAttribute("Connection duration 99.9th percentile in ms")
+    public long getConnectionDurationP999()
+    {
+        return _connectionDurationHistogram.getValueAtPercentile(99.9);
+    }
+
+    public HistogramStatistic getConnectionDurationHistogram()
+    {
+        return _connectionDurationHistogram;
+    }
+
     @ManagedAttribute("Messages In for all connections")
     public int getMessagesIn()
     {
@@ -153,6 +197,29 @@ public class ConnectorStatistics extends AbstractLifeCycle implements Dumpable,
         return _messagesIn.getStdDev();
     }
 
+    @ManagedAttribute("Messages In per connection median")
+    public long getMessagesInPerConnectionP50()
+    {
+        return _messagesInHistogram.getValueAtPercentile(50);
+    }
+
+    @ManagedAttribute("Messages In per connection 99th percentile")
+    public long getMessagesInPerConnectionP99()
+    {
+        return _messagesInHistogram.getValueAtPercentile(99);
+    }
+
+    @ManagedAttribute("Messages In per connection 99.9th percentile")
+    public long getMessagesInPerConnectionP999()
+    {
+        return _messagesInHistogram.getValueAtPercentile(99.9);
+    }
+
+    public HistogramStatistic getMessagesInHistogram()
+    {
+        return _messagesInHistogram;
+    }
+
     @ManagedAttribute("Connections open")
     public int getConnectionsOpen()
     {
@@ -168,25 +235,61 @@ public class ConnectorStatistics extends AbstractLifeCycle implements Dumpable,
     @ManagedAttribute("Messages Out for all connections")
     public int getMessagesOut()
     {
-        return (int)_messagesIn.getTotal();
+        return (int)_messagesOut.getTotal();
     }
 
-    @ManagedAttribute("Messages In per connection maximum")
+    @ManagedAttribute("Messages Out per connection maximum")
     public int getMessagesOutPerConnectionMax()
     {
-        return (int)_messagesIn.getMax();
+        return (int)_messagesOut.getMax();
     }
 
-    @ManagedAttribute("Messages In per connection mean")
+    @ManagedAttribute("Messages Out per connection mean")
     public double getMessagesOutPerConnectionMean()
     {
-        return _messagesIn.getMean();
+        return _messagesOut.getMean();
     }
 
-    @ManagedAttribute("Messages In per connection standard deviation")
+    @ManagedAttribute("Messages Out per connection standard deviation")
     public double getMessagesOutPerConnectionStdDev()
     {
-        return _messagesIn.getStdDev();
+        return _messagesOut.getStdDev();
+    }
+
+    @ManagedAttribute("Messages Out per connection median")
+    public long getMessagesOutPerConnectionP50()
+    {
+        return _messagesOutHistogram.getValueAtPercentile(50);
+    }
+
+    @ManagedAttribute("Messages Out per connection 99th percentile")
+    public long getMessagesOutPerConnectionP99()
+    {
+        return _messagesOutHistogram.getValueAtPercentile(99);
+    }
+
+    @ManagedAttribute("Messages Out per connection 99.9th percentile")
+    public long getMessagesOutPerConnectionP999()
+    {
+        return _messagesOutHistogram.getValueAtPercentile(99.9);
+    }
+
+    public HistogramStatistic getMessagesOutHistogram()
+    {
+        return _messagesOutHistogram;
+    }
+
+    @ManagedAttribute("Network writes (system calls) of closed connections")
+    public long getWrites()
+    {
+        return _writes.sum();
+    }
+
+    @ManagedAttribute("Network writes (system calls) per message out, for closed connections")
+    public double getWritesPerMessageOut()
+    {
+        long messages=_writtenMessages.sum();
+        return messages==0?0:(double)getWrites()/messages;
     }
 
     @ManagedAttribute("Connection statistics started ms since epoch")
@@ -230,6 +333,11 @@ public class ConnectorStatistics extends AbstractLifeCycle implements Dumpable,
         _messagesOut.reset();
         _connectionStats.reset();
         _connectionDurationStats.reset();
+        _messagesInHistogram.reset();
+        _messagesOutHistogram.reset();
+        _connectionDurationHistogram.reset();
+        _writes.reset();
+        _writtenMessages.reset();
         _samples.clear();
     }
 
@@ -244,7 +352,7 @@ public class ConnectorStatistics extends AbstractLifeCycle implements Dumpable,
     public void dump(Appendable out, String indent) throws IOException
     {
         ContainerLifeCycle.dumpObject(out,this);
-        ContainerLifeCycle.dump(out,indent,Arrays.asList(new String[]{"connections="+_connectionStats,"duration="+_connectionDurationStats,"in="+_messagesIn,"out="+_messagesOut}));
+        ContainerLifeCycle.dump(out,indent,Arrays.asList(new String[]{"connections="+_connectionStats,"duration="+_connectionDurationStats,"durationHistogram="+_connectionDurationHistogram,"in="+_messagesIn,"out="+_messagesOut}));
     }
     
     public static void addToAllConnectors(Server server)
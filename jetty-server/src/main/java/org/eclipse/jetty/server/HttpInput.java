@@ -25,6 +25,7 @@ import java.util.ArrayDeque;
 import java.util.Objects;
 import java.util.Queue;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 import javax.servlet.ReadListener;
 import javax.servlet.ServletInputStream;
@@ -136,27 +137,92 @@ public class HttpInput extends ServletInputStream implements Runnable
     {
         synchronized (_inputQ)
         {
-            if (_blockingTimeoutAt>=0 && !isAsync())
-                _blockingTimeoutAt=System.currentTimeMillis()+getHttpChannelState().getHttpChannel().getHttpConfiguration().getBlockingTimeout();
+            Content item = nextReadableContent();
+            if (item==null)
+                return _state.noContent();
 
-            while(true)
-            {
-                Content item = nextContent();
-                if (item!=null)
-                {
-                    if (LOG.isDebugEnabled())
-                        LOG.debug("{} read {} from {}",this,len,item);
-                    int l = get(item, b, off, len);
+            if (LOG.isDebugEnabled())
+                LOG.debug("{} read {} from {}",this,len,item);
+            int l = get(item, b, off, len);
 
-                    consumeNonContent();
+            consumeNonContent();
 
-                    return l;
-                }
+            return l;
+        }
+    }
+
+    /**
+     * <p>Blocking read of the next content buffer, which is passed to the
+     * given consumer instead of being copied.</p>
+     * <p>The consumer is called without holding the input lock, so that it
+     * does not prevent the arrival of more content, but it must consume the
+     * buffer before returning, since the buffer is released once consumed;
+     * any bytes left are discarded.</p>
+     *
+     * @param consumer the consumer of the content buffer
+     * @return the number of bytes passed to the consumer, or -1 at EOF
+     * @throws IOException if the read fails
+     */
+    public int read(Consumer<ByteBuffer> consumer) throws IOException
+    {
+        Content item;
+        ByteBuffer buffer;
+        int l;
+        synchronized (_inputQ)
+        {
+            item = nextReadableContent();
+            if (item==null)
+            {
+                l = _state.noContent();
+                if (l==0)
+                    throw new IllegalStateException("unready read=0");
+                return l;
+            }
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("{} read buffer from {}",this,item);
+            l = remaining(item);
+            // A view, so that the consumer does not move the content position.
+            buffer = item.getContent().slice();
+        }
 
-                if (!_state.blockForContent(this))
-                    return _state.noContent();
+        try
+        {
+            consumer.accept(buffer);
+        }
+        finally
+        {
+            synchronized (_inputQ)
+            {
+                // Account for the whole buffer as consumed.
+                skip(item,l);
+                consumeNonContent();
             }
         }
+        return l;
+    }
+
+    /**
+     * <p>Waits, if the read is blocking, for the next content to read.</p>
+     * <p>Must be called while holding the input lock.</p>
+     *
+     * @return the next content, or null if there is no content to read
+     * @throws IOException if retrieving the content fails
+     */
+    private Content nextReadableContent() throws IOException
+    {
+        if (_blockingTimeoutAt>=0 && !isAsync())
+            _blockingTimeoutAt=System.currentTimeMillis()+getHttpChannelState().getHttpChannel().getHttpConfiguration().getBlockingTimeout();
+
+        while(true)
+        {
+            Content item = nextContent();
+            if (item!=null)
+                return item;
+
+            if (!_state.blockForContent(this))
+                return null;
+        }
     }
 
     /**
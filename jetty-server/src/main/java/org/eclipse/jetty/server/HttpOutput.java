@@ -428,6 +428,13 @@ public class HttpOutput extends ServletOutputStream implements Runnable
             off+=filled;
             len-=filled;
         }
+        else if (len>0 && BufferUtil.hasContent(_aggregate) && len<=BufferUtil.space(_aggregate))
+        {
+            // Too large to aggregate on its own, but fits after the aggregated content:
+            // append it, so that both are written with one write rather than two.
+            BufferUtil.append(_aggregate, b, off, len);
+            len=0;
+        }
 
         // flush any content from the aggregate
         if (BufferUtil.hasContent(_aggregate))
@@ -0,0 +1,732 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import javax.servlet.MultipartConfigElement;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.MultiMap;
+import org.eclipse.jetty.util.MultiPartInputStreamParser;
+import org.eclipse.jetty.util.MultiPartParser;
+import org.eclipse.jetty.util.QuotedStringTokenizer;
+import org.eclipse.jetty.util.TypeUtil;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * <p>A "multipart/form-data" parser based on the non-blocking {@link MultiPartParser}.</p>
+ * <p>The content is either read and parsed by {@link #getParts()}, which blocks like
+ * {@link MultiPartInputStreamParser} does, or parsed asynchronously by {@link #parse(Callback)},
+ * which reads the content from a {@link ReadListener} as it arrives and completes the callback
+ * once all the parts are parsed. When reading from a {@link HttpInput}, the content buffers
+ * are parsed in place rather than copied into a stream.</p>
+ * <p>The content of a part is kept in buffers acquired from the {@link ByteBufferPool} until
+ * the {@link MultipartConfigElement#getFileSizeThreshold() file size threshold} is exceeded,
+ * then it is written to a temporary file through a {@link FileChannel}, as it arrives.</p>
+ * <p>Like {@link MultiPartInputStreamParser}, parts without a "form-data" content disposition
+ * or without a name are skipped, and "base64" and "quoted-printable" Content-Transfer-Encodings
+ * are decoded. In {@link #setStrict(boolean) strict mode}, parts without a name are rejected,
+ * as required by RFC 7578.</p>
+ * <p>The content of a part that is kept in memory is released to the pool by
+ * {@link MultiPart#cleanUp()} and {@link MultiPart#delete()}, after which it cannot be read;
+ * input streams obtained before then read a copy of the content.</p>
+ */
+public class MultiPartFormDataParser extends MultiPartInputStreamParser implements MultiPartParser.Handler
+{
+    private static final Logger LOG = Log.getLogger(MultiPartFormDataParser.class);
+
+    private final InputStream _input;
+    private final ByteBufferPool _bufferPool;
+    private MultiPartParser _parser;
+    private long _total;
+    private boolean _complete;
+    private Throwable _failure;
+    private MultiMap<String> _headers;
+    private String _contentDisposition;
+    private String _partContentType;
+    private String _partTransferEncoding;
+    private FormPart _part;
+    private boolean _skipped;
+    private boolean _strict;
+
+    /**
+     * @param in the request input stream
+     * @param contentType the Content-Type header
+     * @param config the multipart configuration
+     * @param contextTmpDir the javax.servlet.context.tempdir directory
+     * @param bufferPool the pool of the buffers holding small parts, or null to allocate them
+     */
+    public MultiPartFormDataParser(InputStream in, String contentType, MultipartConfigElement config, File contextTmpDir, ByteBufferPool bufferPool)
+    {
+        super(in, contentType, config, contextTmpDir);
+        _input = in;
+        _bufferPool = bufferPool;
+    }
+
+    /**
+     * @return whether parts without a name are rejected rather than skipped
+     */
+    public boolean isStrict()
+    {
+        return _strict;
+    }
+
+    /**
+     * @param strict whether parts without a name are rejected rather than skipped
+     */
+    public void setStrict(boolean strict)
+    {
+        _strict = strict;
+    }
+
+    /**
+     * @return whether all the parts have been parsed
+     */
+    public boolean isComplete()
+    {
+        return _complete;
+    }
+
+    @Override
+    protected void parse() throws IOException
+    {
+        if (!start())
+        {
+            if (_failure != null)
+                throw new IOException(_failure);
+            if (_parser != null && !_complete)
+                throw new IllegalStateException("Multipart parsing in progress");
+            return;
+        }
+
+        if (_input instanceof HttpInput)
+        {
+            HttpInput input = (HttpInput)_input;
+            int read = 0;
+            while (read >= 0 && !_complete)
+            {
+                read = read(input);
+                if (read < 0)
+                    parse(BufferUtil.EMPTY_BUFFER, true);
+            }
+        }
+        else
+        {
+            byte[] bytes = new byte[4096];
+            int read = 0;
+            while (read >= 0 && !_complete)
+            {
+                read = _input.read(bytes);
+                if (read < 0)
+                    parse(BufferUtil.EMPTY_BUFFER, true);
+                else
+                    parse(ByteBuffer.wrap(bytes, 0, read), false);
+            }
+        }
+    }
+
+    /**
+     * <p>Parses the content asynchronously.</p>
+     * <p>The input stream must be a {@link ServletInputStream} of a request in async mode,
+     * and the callback is completed when all the parts have been parsed, or when the
+     * parsing fails.</p>
+     *
+     * @param callback the callback to complete when the parsing is done
+     */
+    public void parse(final Callback callback)
+    {
+        try
+        {
+            if (!start())
+            {
+                if (_failure != null)
+                    callback.failed(_failure);
+                else
+                    callback.succeeded();
+                return;
+            }
+        }
+        catch (Throwable x)
+        {
+            callback.failed(x);
+            return;
+        }
+
+        final ServletInputStream input = (ServletInputStream)_input;
+        input.setReadListener(new ReadListener()
+        {
+            private final byte[] _bytes = input instanceof HttpInput ? null : new byte[4096];
+
+            @Override
+            public void onDataAvailable() throws IOException
+            {
+                // Keep reading after the close delimiter, discarding any epilogue,
+                // until the end of the content is reached and onAllDataRead() is called.
+                while (input.isReady())
+                {
+                    if (_bytes == null)
+                    {
+                        int read = read((HttpInput)input);
+                        if (read < 0)
+                            return;
+                    }
+                    else
+                    {
+                        int read = input.read(_bytes);
+                        if (read < 0)
+                            return;
+                        parse(ByteBuffer.wrap(_bytes, 0, read), false);
+                    }
+                }
+            }
+
+            @Override
+            public void onAllDataRead() throws IOException
+            {
+                parse(BufferUtil.EMPTY_BUFFER, true);
+                callback.succeeded();
+            }
+
+            @Override
+            public void onError(Throwable failure)
+            {
+                if (_failure == null)
+                    _failure = failure;
+                try
+                {
+                    deleteParts();
+                }
+                catch (Throwable x)
+                {
+                    LOG.ignore(x);
+                }
+                callback.failed(failure);
+            }
+        });
+    }
+
+    /**
+     * <p>Reads the next content buffer from the given input and parses it in place.</p>
+     */
+    private int read(HttpInput input) throws IOException
+    {
+        try
+        {
+            return input.read(buffer ->
+            {
+                try
+                {
+                    parse(buffer, false);
+                }
+                catch (IOException x)
+                {
+                    throw new ParseException(x);
+                }
+            });
+        }
+        catch (ParseException x)
+        {
+            throw x.getCause();
+        }
+    }
+
+    /**
+     * <p>Parses the given content buffer.</p>
+     *
+     * @param buffer the content to parse
+     * @param last whether the buffer is the last of the content
+     * @return whether all the parts have been parsed
+     * @throws IOException if the content is not valid multipart content, or if the parts cannot be stored
+     */
+    public boolean parse(ByteBuffer buffer, boolean last) throws IOException
+    {
+        if (_failure != null)
+            throw new IOException(_failure);
+        if (_complete)
+            return true;
+        if (_parser == null)
+            start();
+
+        try
+        {
+            _total += buffer.remaining();
+            if (_config.getMaxRequestSize() > 0 && _total > _config.getMaxRequestSize())
+                throw new IllegalStateException("Request exceeds maxRequestSize (" + _config.getMaxRequestSize() + ")");
+
+            return _parser.parse(buffer, last);
+        }
+        catch (Throwable x)
+        {
+            _failure = x;
+            if (_part != null)
+                _part.abort();
+            if (x instanceof IOException)
+                throw (IOException)x;
+            if (x instanceof RuntimeException)
+                throw (RuntimeException)x;
+            throw new IOException(x);
+        }
+    }
+
+    /**
+     * @return true if the parsing must start, false if it has already started
+     * or there is nothing to parse
+     */
+    private boolean start()
+    {
+        if (_parts != null)
+            return false;
+
+        _parts = new MultiMap<>();
+
+        //if its not a multipart request, don't parse it
+        if (_contentType == null || !_contentType.startsWith("multipart/form-data"))
+        {
+            _complete = true;
+            return false;
+        }
+
+        initTmpDir();
+        _parser = new MultiPartParser(this, getBoundary());
+        return true;
+    }
+
+    @Override
+    public void startPart()
+    {
+        _headers = new MultiMap<>();
+        _contentDisposition = null;
+        _partContentType = null;
+        _partTransferEncoding = null;
+        _part = null;
+        _skipped = false;
+    }
+
+    @Override
+    public void parsedField(String name, String value)
+    {
+        String key = name.toLowerCase(Locale.ENGLISH);
+        _headers.put(key, value);
+        if (key.equals("content-disposition"))
+            _contentDisposition = value;
+        else if (key.equals("content-type"))
+            _partContentType = value;
+        else if (key.equals("content-transfer-encoding"))
+            _partTransferEncoding = value;
+    }
+
+    @Override
+    public void headerComplete() throws IOException
+    {
+        if (_contentDisposition == null)
+            throw new IOException("Missing content-disposition");
+
+        boolean formData = false;
+        String name = null;
+        String filename = null;
+        QuotedStringTokenizer tok = new QuotedStringTokenizer(_contentDisposition, ";", false, true);
+        while (tok.hasMoreTokens())
+        {
+            String t = tok.nextToken().trim();
+            String tl = t.toLowerCase(Locale.ENGLISH);
+            if (t.startsWith("form-data"))
+                formData = true;
+            else if (tl.startsWith("name="))
+                name = value(t);
+            else if (tl.startsWith("filename="))
+                filename = filenameValue(t);
+        }
+
+        // An empty name is valid, but a missing one is only skipped if not strict.
+        if (formData && name == null && isStrict())
+            throw new IOException("Missing name in content-disposition");
+
+        // Parts other than named form data are skipped.
+        if (!formData || name == null)
+        {
+            _skipped = true;
+            return;
+        }
+
+        FormPart part = new FormPart(name, filename, _headers, _partContentType, _partTransferEncoding);
+        _parts.add(name, part);
+        part.open();
+        _part = part;
+    }
+
+    @Override
+    public void content(ByteBuffer buffer, boolean last) throws IOException
+    {
+        if (_part != null)
+        {
+            _part.decode(buffer);
+            if (last)
+            {
+                _part.close();
+                _part = null;
+            }
+        }
+    }
+
+    @Override
+    public void messageComplete() throws IOException
+    {
+        // MultiPartInputStreamParser reads the content of a skipped part as headers
+        // until the next part, so it fails a message ending with a skipped part.
+        if (_skipped && !isStrict())
+            throw new IOException("Incomplete parts");
+        _complete = true;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,complete=%b,parts=%d}", getClass().getSimpleName(), hashCode(), _parser, _complete, _parts == null ? 0 : _parts.size());
+    }
+
+    /**
+     * <p>A part that keeps its content in pooled buffers until it exceeds
+     * the file size threshold, then in a file written through a {@link FileChannel}.</p>
+     */
+    public class FormPart extends MultiPart
+    {
+        private final List<ByteBuffer> _buffers = new ArrayList<>();
+        private final String _transferEncoding;
+        private FileChannel _channel;
+        private boolean _released;
+        private byte[] _decoded;
+        private int _bits;
+        private int _state;
+
+        public FormPart(String name, String filename, MultiMap<String> headers, String contentType, String transferEncoding) throws IOException
+        {
+            super(name, filename);
+            setHeaders(headers);
+            setContentType(contentType);
+            _transferEncoding = transferEncoding == null ? null : transferEncoding.trim().toLowerCase(Locale.ENGLISH);
+        }
+
+        @Override
+        protected void open() throws IOException
+        {
+            // The content is written to pooled buffers until the file size threshold is exceeded.
+        }
+
+        @Override
+        protected void close() throws IOException
+        {
+            // A quoted-printable escape must be complete; a soft line break may end the content.
+            if ("quoted-printable".equals(_transferEncoding) && (_state == 1 || _state == 2))
+                throw new IOException("Unexpected end to quoted-printable byte");
+            if (_channel != null)
+            {
+                _channel.close();
+                _channel = null;
+            }
+        }
+
+        private void abort()
+        {
+            try
+            {
+                close();
+            }
+            catch (IOException x)
+            {
+                LOG.ignore(x);
+            }
+        }
+
+        @Override
+        protected void write(int b) throws IOException
+        {
+            write(ByteBuffer.wrap(new byte[]{(byte)b}));
+        }
+
+        @Override
+        protected void write(byte[] bytes, int offset, int length) throws IOException
+        {
+            write(ByteBuffer.wrap(bytes, offset, length));
+        }
+
+        /**
+         * <p>Decodes the given content according to the Content-Transfer-Encoding of this part,
+         * then writes it.</p>
+         *
+         * @param buffer the encoded content
+         * @throws IOException if the content cannot be decoded or written
+         */
+        protected void decode(ByteBuffer buffer) throws IOException
+        {
+            if ("base64".equals(_transferEncoding))
+                write(decodeBase64(buffer));
+            else if ("quoted-printable".equals(_transferEncoding))
+                write(decodeQuotedPrintable(buffer));
+            else
+                write(buffer);
+        }
+
+        private ByteBuffer decodeBase64(ByteBuffer buffer) throws IOException
+        {
+            byte[] decoded = decodeBuffer(buffer.remaining());
+            int length = 0;
+            while (buffer.hasRemaining())
+            {
+                byte b = buffer.get();
+                int value;
+                if (b >= 'A' && b <= 'Z')
+                    value = b - 'A';
+                else if (b >= 'a' && b <= 'z')
+                    value = b - 'a' + 26;
+                else if (b >= '0' && b <= '9')
+                    value = b - '0' + 52;
+                else if (b == '+')
+                    value = 62;
+                else if (b == '/')
+                    value = 63;
+                else if (b == '=')
+                {
+                    // Padding discards the bits left over from the last quantum.
+                    _state = 0;
+                    continue;
+                }
+                else if (b == '\r' || b == '\n' || b == ' ' || b == '\t')
+                    continue;
+                else
+                    throw new IOException("Bad base64 content in part " + _name);
+
+                // _state counts the bits accumulated in _bits.
+                _bits = (_bits << 6) | value;
+                _state += 6;
+                if (_state >= 8)
+                {
+                    _state -= 8;
+                    decoded[length++] = (byte)(_bits >> _state);
+                }
+            }
+            return ByteBuffer.wrap(decoded, 0, length);
+        }
+
+        private ByteBuffer decodeQuotedPrintable(ByteBuffer buffer)
+        {
+            byte[] decoded = decodeBuffer(buffer.remaining());
+            int length = 0;
+            while (buffer.hasRemaining())
+            {
+                byte b = buffer.get();
+                switch (_state)
+                {
+                    case 3:
+                        // After a soft line break "=CR", skip the LF.
+                        _state = 0;
+                        if (b == '\n')
+                            break;
+                        // fall through
+                    case 0:
+                        if (b == '=')
+                            _state = 1;
+                        else
+                            decoded[length++] = b;
+                        break;
+                    case 1:
+                        if (b == '\r')
+                            _state = 3;
+                        else if (b == '\n')
+                            _state = 0;
+                        else
+                        {
+                            _bits = TypeUtil.convertHexDigit(b);
+                            _state = 2;
+                        }
+                        break;
+                    case 2:
+                        decoded[length++] = (byte)((_bits << 4) + TypeUtil.convertHexDigit(b));
+                        _state = 0;
+                        break;
+                    default:
+                        throw new IllegalStateException();
+                }
+            }
+            return ByteBuffer.wrap(decoded, 0, length);
+        }
+
+        private byte[] decodeBuffer(int size)
+        {
+            if (_decoded == null || _decoded.length < size)
+                _decoded = new byte[Math.max(size, 1024)];
+            return _decoded;
+        }
+
+        protected void write(ByteBuffer buffer) throws IOException
+        {
+            int length = buffer.remaining();
+            if (_config.getMaxFileSize() > 0 && _size + length > _config.getMaxFileSize())
+                throw new IllegalStateException("Multipart Mime part " + _name + " exceeds max filesize");
+
+            if (_config.getFileSizeThreshold() > 0 && _size + length > _config.getFileSizeThreshold() && _file == null)
+                createFile();
+
+            if (_channel != null)
+            {
+                while (buffer.hasRemaining())
+                    _channel.write(buffer);
+            }
+            else
+            {
+                while (buffer.hasRemaining())
+                {
+                    ByteBuffer last = _buffers.isEmpty() ? null : _buffers.get(_buffers.size() - 1);
+                    if (last == null || BufferUtil.space(last) == 0)
+                    {
+                        int size = Math.max(buffer.remaining(), 4096);
+                        last = _bufferPool == null ? BufferUtil.allocate(size) : _bufferPool.acquire(size, false);
+                        _buffers.add(last);
+                    }
+                    BufferUtil.append(last, buffer);
+                }
+            }
+            _size += length;
+        }
+
+        @Override
+        protected void createFile() throws IOException
+        {
+            _file = File.createTempFile("MultiPart", "", _tmpDir);
+            _file.setReadable(false, false);
+            _file.setReadable(true, true);
+            if (isDeleteOnExit())
+                _file.deleteOnExit();
+            _channel = FileChannel.open(_file.toPath(), StandardOpenOption.WRITE);
+            writeBuffers(_channel);
+        }
+
+        private void writeBuffers(FileChannel channel) throws IOException
+        {
+            for (ByteBuffer buffer : _buffers)
+            {
+                ByteBuffer content = buffer.slice();
+                while (content.hasRemaining())
+                    channel.write(content);
+            }
+            release();
+        }
+
+        private void release()
+        {
+            _released = _file == null;
+            if (_bufferPool != null)
+            {
+                for (ByteBuffer buffer : _buffers)
+                    _bufferPool.release(buffer);
+            }
+            _buffers.clear();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException
+        {
+            if (_file != null)
+                return super.getInputStream();
+
+            // Copy the content, as the buffers are released to the pool when the part is cleaned up.
+            return new ByteArrayInputStream(getBytes());
+        }
+
+        @Override
+        public byte[] getBytes()
+        {
+            if (_file != null)
+                return null;
+            if (_released)
+                throw new IllegalStateException("Content of part " + _name + " released");
+
+            byte[] bytes = new byte[(int)_size];
+            int offset = 0;
+            for (ByteBuffer buffer : _buffers)
+            {
+                int length = buffer.remaining();
+                buffer.slice().get(bytes, offset, length);
+                offset += length;
+            }
+            return bytes;
+        }
+
+        @Override
+        public void write(String fileName) throws IOException
+        {
+            if (_file == null)
+            {
+                _temporary = false;
+                _file = new File(_tmpDir, fileName);
+                try (FileChannel channel = FileChannel.open(_file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+                {
+                    writeBuffers(channel);
+                }
+            }
+            else
+            {
+                super.write(fileName);
+            }
+        }
+
+        @Override
+        public void delete() throws IOException
+        {
+            release();
+            super.delete();
+        }
+
+        @Override
+        public void cleanUp() throws IOException
+        {
+            release();
+            super.cleanUp();
+        }
+    }
+
+    private static class ParseException extends RuntimeException
+    {
+        private ParseException(IOException cause)
+        {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause()
+        {
+            return (IOException)super.getCause();
+        }
+    }
+}
@@ -85,6 +85,7 @@ import org.eclipse.jetty.util.MultiPartInputStreamParser;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.URIUtil;
 import org.eclipse.jetty.util.UrlEncoded;
+import org.eclipse.jetty.util.UrlEncodedDecoder;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 
@@ -183,6 +184,7 @@ public class Request implements HttpServletRequest
     private int _inputState = __NONE;
     private MultiMap<String> _queryParameters;
     private MultiMap<String> _contentParameters;
+    private UrlEncodedDecoder.KeyCache _formKeys;
     private MultiMap<String> _parameters;
     private String _queryEncoding;
     private BufferedReader _reader;
@@ -477,7 +479,24 @@ public class Request implements HttpServletRequest
             if (_input.isAsync())
                 throw new IllegalStateException("Cannot extract parameters with async IO");
 
-            UrlEncoded.decodeTo(in,params,getCharacterEncoding(),contentLength<0?maxFormContentSize:-1,maxFormKeys);
+            int maxLength = contentLength<0?maxFormContentSize:-1;
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding==null?UrlEncoded.ENCODING:Charset.forName(encoding);
+            if (StandardCharsets.UTF_16.equals(charset))
+            {
+                UrlEncoded.decodeUtf16To(in,params,maxLength,maxFormKeys);
+            }
+            else
+            {
+                // Decode the content buffers as they are delivered, without copying them.
+                if (_formKeys == null)
+                    _formKeys = new UrlEncodedDecoder.KeyCache();
+                UrlEncodedDecoder decoder = new UrlEncodedDecoder(params,charset,maxLength,maxFormKeys,_formKeys);
+                int read = 0;
+                while (read>=0)
+                    read = _input.read(decoder::decode);
+                decoder.end();
+            }
         }
         catch (IOException e)
         {
@@ -2317,9 +2336,10 @@ public class Request implements HttpServletRequest
             if (config == null)
                 throw new IllegalStateException("No multipart config for servlet");
 
-            _multiPartInputStream = new MultiPartInputStreamParser(getInputStream(),
+            _multiPartInputStream = new MultiPartFormDataParser(getInputStream(),
                                                              getContentType(), config,
-                                                             (_context != null?(File)_context.getAttribute("javax.servlet.context.tempdir"):null));
+                                                             (_context != null?(File)_context.getAttribute("javax.servlet.context.tempdir"):null),
+                                                             _channel.getByteBufferPool());
 
             setAttribute(__MULTIPART_INPUT_STREAM, _multiPartInputStream);
             setAttribute(__MULTIPART_CONTEXT, _context);
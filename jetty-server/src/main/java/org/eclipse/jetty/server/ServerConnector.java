@@ -23,6 +23,7 @@ import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
+import java.net.SocketOption;
 import java.nio.channels.Channel;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
@@ -31,6 +32,8 @@ import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.ChannelEndPoint;
@@ -42,6 +45,7 @@ import org.eclipse.jetty.io.SelectorManager;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.annotation.Name;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
 import org.eclipse.jetty.util.thread.Scheduler;
@@ -74,6 +78,13 @@ import org.eclipse.jetty.util.thread.Scheduler;
  * The default number of selectors is equal to the number of processors available to the JVM,
  * which should allow optimal performance even if all the connections used are performing
  * significant non-blocking work in the callback tasks.
+ * <h2>Listeners</h2>
+ * By default the connector accepts connections from a single listening socket.
+ * If {@link #setReusePortListeners(int)} is used, then the connector opens that number
+ * of listening sockets bound to the same port with the {@code SO_REUSEPORT} option,
+ * so that the operating system load balances new connections between them.
+ * When accepting with the selectors, each listening socket is served by its own
+ * selector, which also handles the connections accepted from that socket.
  *
  */
 @ManagedObject("HTTP connector using NIO ByteChannels and Selectors")
@@ -81,6 +92,10 @@ public class ServerConnector extends AbstractNetworkConnector
 {
     private final SelectorManager _manager;
     private volatile ServerSocketChannel _acceptChannel;
+    private volatile ServerSocketChannel[] _acceptChannels;
+    private volatile AtomicLong[] _listenerAccepts = new AtomicLong[0];
+    private volatile long _listenerStatsStarted = System.nanoTime();
+    private volatile int _reusePortListeners = 0;
     private volatile boolean _inheritChannel = false;
     private volatile int _localPort = -1;
     private volatile int _acceptQueueSize = 0;
@@ -246,8 +261,20 @@ public class ServerConnector extends AbstractNetworkConnector
 
         if (getAcceptors()==0)
         {
-            _acceptChannel.configureBlocking(false);
-            _manager.acceptor(_acceptChannel);
+            ServerSocketChannel[] channels = _acceptChannels;
+            if (channels.length == 1)
+            {
+                _acceptChannel.configureBlocking(false);
+                _manager.acceptor(_acceptChannel);
+            }
+            else
+            {
+                for (int i = 0; i < channels.length; i++)
+                {
+                    channels[i].configureBlocking(false);
+                    _manager.acceptor(channels[i], i);
+                }
+            }
         }
     }
 
@@ -308,6 +335,10 @@ public class ServerConnector extends AbstractNetworkConnector
     {
         if (_acceptChannel == null)
         {
+            int listeners = getReusePortListeners();
+            if (listeners > 1 && getAcceptors() > 0 && getAcceptors() < listeners)
+                throw new IllegalStateException("Acceptors must be 0 or at least the number of listeners: " + this);
+
             ServerSocketChannel serverChannel = null;
             if (isInheritChannel())
             {
@@ -316,15 +347,17 @@ public class ServerConnector extends AbstractNetworkConnector
                     serverChannel = (ServerSocketChannel)channel;
                 else
                     LOG.warn("Unable to use System.inheritedChannel() [{}]. Trying a new ServerSocketChannel at {}:{}", channel, getHost(), getPort());
+
+                if (serverChannel != null && listeners > 0)
+                {
+                    LOG.warn("Unable to use SO_REUSEPORT listeners with System.inheritedChannel() [{}]", serverChannel);
+                    listeners = 0;
+                }
             }
 
             if (serverChannel == null)
             {
-                serverChannel = ServerSocketChannel.open();
-
-                InetSocketAddress bindAddress = getHost() == null ? new InetSocketAddress(getPort()) : new InetSocketAddress(getHost(), getPort());
-                serverChannel.socket().setReuseAddress(getReuseAddress());
-                serverChannel.socket().bind(bindAddress, getAcceptQueueSize());
+                serverChannel = openServerChannel(getPort(), listeners > 0);
 
                 _localPort = serverChannel.socket().getLocalPort();
                 if (_localPort <= 0)
@@ -336,10 +369,78 @@ public class ServerConnector extends AbstractNetworkConnector
             serverChannel.configureBlocking(true);
             addBean(serverChannel);
 
+            ServerSocketChannel[] channels = new ServerSocketChannel[Math.max(1, listeners)];
+            channels[0] = serverChannel;
+            try
+            {
+                for (int i = 1; i < channels.length; i++)
+                {
+                    channels[i] = openServerChannel(_localPort, true);
+                    channels[i].configureBlocking(true);
+                    addBean(channels[i]);
+                }
+            }
+            catch (IOException x)
+            {
+                for (ServerSocketChannel c : channels)
+                {
+                    if (c != null)
+                    {
+                        removeBean(c);
+                        c.close();
+                    }
+                }
+                throw x;
+            }
+
+            AtomicLong[] accepts = new AtomicLong[channels.length];
+            for (int i = 0; i < accepts.length; i++)
+                accepts[i] = new AtomicLong();
+            _listenerAccepts = accepts;
+            _listenerStatsStarted = System.nanoTime();
+
+            _acceptChannels = channels;
             _acceptChannel = serverChannel;
         }
     }
 
+    private ServerSocketChannel openServerChannel(int port, boolean reusePort) throws IOException
+    {
+        ServerSocketChannel serverChannel = _manager.getSelectorProvider().openServerSocketChannel();
+        try
+        {
+            if (reusePort)
+            {
+                SocketOption<Boolean> option = reusePortOption(serverChannel);
+                if (option == null)
+                    throw new IOException("SO_REUSEPORT not supported");
+                serverChannel.setOption(option, true);
+            }
+
+            InetSocketAddress bindAddress = getHost() == null ? new InetSocketAddress(port) : new InetSocketAddress(getHost(), port);
+            serverChannel.socket().setReuseAddress(getReuseAddress());
+            serverChannel.socket().bind(bindAddress, getAcceptQueueSize());
+            return serverChannel;
+        }
+        catch (IOException x)
+        {
+            serverChannel.close();
+            throw x;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SocketOption<Boolean> reusePortOption(ServerSocketChannel channel)
+    {
+        // Looked up by name, as StandardSocketOptions.SO_REUSEPORT is not available in all JVMs.
+        for (SocketOption<?> option : channel.supportedOptions())
+        {
+            if ("SO_REUSEPORT".equals(option.name()) && option.type() == Boolean.class)
+                return (SocketOption<Boolean>)option;
+        }
+        return null;
+    }
+
     @Override
     public Future<Void> shutdown()
     {
@@ -350,6 +451,24 @@ public class ServerConnector extends AbstractNetworkConnector
     @Override
     public void close()
     {
+        ServerSocketChannel[] channels = _acceptChannels;
+        _acceptChannels = null;
+        if (channels != null)
+        {
+            for (int i = 1; i < channels.length; i++)
+            {
+                removeBean(channels[i]);
+                try
+                {
+                    channels[i].close();
+                }
+                catch (IOException e)
+                {
+                    LOG.warn(e);
+                }
+            }
+        }
+
         ServerSocketChannel serverChannel = _acceptChannel;
         _acceptChannel = null;
 
@@ -377,20 +496,45 @@ public class ServerConnector extends AbstractNetworkConnector
     @Override
     public void accept(int acceptorID) throws IOException
     {
-        ServerSocketChannel serverChannel = _acceptChannel;
-        if (serverChannel != null && serverChannel.isOpen())
+        ServerSocketChannel[] channels = _acceptChannels;
+        if (channels == null)
+            return;
+        int listener = acceptorID % channels.length;
+        ServerSocketChannel serverChannel = channels[listener];
+        if (serverChannel.isOpen())
         {
             SocketChannel channel = serverChannel.accept();
-            accepted(channel);
+            _listenerAccepts[listener].incrementAndGet();
+            accepted(channel, null);
         }
     }
     
-    private void accepted(SocketChannel channel) throws IOException
+    private void accepted(SocketChannel channel, ManagedSelector selector) throws IOException
     {
         channel.configureBlocking(false);
         Socket socket = channel.socket();
         configure(socket);
-        _manager.accept(channel);
+        if (selector == null)
+            _manager.accept(channel);
+        else
+            _manager.accept(channel, null, selector);
+    }
+
+    private void onAccepted(SelectableChannel server)
+    {
+        ServerSocketChannel[] channels = _acceptChannels;
+        AtomicLong[] accepts = _listenerAccepts;
+        if (channels != null)
+        {
+            for (int i = 0; i < channels.length && i < accepts.length; i++)
+            {
+                if (channels[i] == server)
+                {
+                    accepts[i].incrementAndGet();
+                    break;
+                }
+            }
+        }
     }
 
     protected void configure(Socket socket)
@@ -486,6 +630,68 @@ public class ServerConnector extends AbstractNetworkConnector
         _reuseAddress = reuseAddress;
     }
 
+    /**
+     * @return the number of listening sockets bound with {@code SO_REUSEPORT}, or 0 for a single listening socket
+     */
+    @ManagedAttribute("Number of listening sockets bound with SO_REUSEPORT")
+    public int getReusePortListeners()
+    {
+        return _reusePortListeners;
+    }
+
+    /**
+     * <p>Sets the number of listening sockets to open with the {@code SO_REUSEPORT} option.</p>
+     * <p>If greater than 0, the connector opens that number of listening sockets bound to the
+     * same port, so that the operating system load balances new connections between them.
+     * When there are no acceptor threads, each listening socket is served by its own selector
+     * (modulo the number of selectors); otherwise the number of acceptor threads must be at
+     * least the number of listening sockets.</p>
+     *
+     * @param listeners the number of listening sockets, or 0 for a single listening socket without {@code SO_REUSEPORT}
+     */
+    public void setReusePortListeners(int listeners)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+        _reusePortListeners = Math.max(0, listeners);
+    }
+
+    /**
+     * @return the number of connections accepted by each listening socket
+     */
+    @ManagedAttribute("Number of connections accepted by each listening socket")
+    public long[] getListenerAccepts()
+    {
+        AtomicLong[] accepts = _listenerAccepts;
+        long[] result = new long[accepts.length];
+        for (int i = 0; i < accepts.length; i++)
+            result[i] = accepts[i].get();
+        return result;
+    }
+
+    /**
+     * @return the number of connections accepted per second by each listening socket,
+     * since the statistics were last reset
+     */
+    @ManagedAttribute("Connections accepted per second by each listening socket")
+    public double[] getListenerAcceptRates()
+    {
+        long[] accepts = getListenerAccepts();
+        double seconds = Math.max(1, System.nanoTime() - _listenerStatsStarted) / (double)TimeUnit.SECONDS.toNanos(1);
+        double[] result = new double[accepts.length];
+        for (int i = 0; i < accepts.length; i++)
+            result[i] = accepts[i] / seconds;
+        return result;
+    }
+
+    @ManagedOperation("Resets the listening sockets statistics")
+    public void resetListenerStatistics()
+    {
+        for (AtomicLong accepts : _listenerAccepts)
+            accepts.set(0);
+        _listenerStatsStarted = System.nanoTime();
+    }
+
     protected class ServerConnectorManager extends SelectorManager
     {
         public ServerConnectorManager(Executor executor, Scheduler scheduler, int selectors)
@@ -496,7 +702,22 @@ public class ServerConnector extends AbstractNetworkConnector
         @Override
         protected void accepted(SelectableChannel channel) throws IOException
         {
-            ServerConnector.this.accepted((SocketChannel)channel);
+            ServerConnector.this.accepted((SocketChannel)channel, null);
+        }
+
+        @Override
+        protected void accepted(SelectableChannel channel, ManagedSelector selector) throws IOException
+        {
+            ServerConnector.this.accepted((SocketChannel)channel, selector);
+        }
+
+        @Override
+        protected SelectableChannel doAccept(SelectableChannel server) throws IOException
+        {
+            SelectableChannel channel = super.doAccept(server);
+            if (channel != null)
+                onAccepted(server);
+            return channel;
         }
 
         @Override
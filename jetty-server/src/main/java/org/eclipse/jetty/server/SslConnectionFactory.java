@@ -20,6 +20,8 @@
 package org.eclipse.jetty.server;
 
 
+import java.util.concurrent.Executor;
+
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLSession;
 
@@ -27,13 +29,16 @@ import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.io.ssl.SslConnection;
+import org.eclipse.jetty.io.ssl.SslHandshakeListener;
 import org.eclipse.jetty.util.annotation.Name;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
 
 public class SslConnectionFactory extends AbstractConnectionFactory
 {
     private final SslContextFactory _sslContextFactory;
     private final String _nextProtocol;
+    private Executor _handshakeExecutor;
 
     public SslConnectionFactory()
     {
@@ -58,6 +63,30 @@ public class SslConnectionFactory extends AbstractConnectionFactory
         return _sslContextFactory;
     }
 
+    /**
+     * @return the executor that runs the TLS handshake delegated tasks, or null to run them in the connection threads
+     * @see SslConnection#setHandshakeExecutor(Executor)
+     */
+    public Executor getHandshakeExecutor()
+    {
+        return _handshakeExecutor;
+    }
+
+    /**
+     * <p>Sets the executor that runs the TLS handshake delegated tasks.</p>
+     * <p>A bounded executor, such as a {@link org.eclipse.jetty.util.thread.QueuedThreadPool}
+     * with a bounded queue, limits the resources used by a burst of new connections;
+     * when it is saturated the delegated tasks are run by the connection threads.</p>
+     *
+     * @param handshakeExecutor the executor that runs the TLS handshake delegated tasks
+     * @see SslConnection#setHandshakeExecutor(Executor)
+     */
+    public void setHandshakeExecutor(Executor handshakeExecutor)
+    {
+        updateBean(_handshakeExecutor, handshakeExecutor);
+        _handshakeExecutor = handshakeExecutor;
+    }
+
     @Override
     protected void doStart() throws Exception
     {
@@ -79,8 +108,19 @@ public class SslConnectionFactory extends AbstractConnectionFactory
 
         SslConnection sslConnection = newSslConnection(connector, endPoint, engine);
         sslConnection.setRenegotiationAllowed(_sslContextFactory.isRenegotiationAllowed());
+        sslConnection.setDynamicRecordSizing(_sslContextFactory);
+        sslConnection.setHandshakeExecutor(_handshakeExecutor);
         configure(sslConnection, connector, endPoint);
 
+        // Add SslHandshakeListeners from Connector and from this factory
+        if (connector instanceof ContainerLifeCycle)
+        {
+            for (SslHandshakeListener listener : ((ContainerLifeCycle)connector).getBeans(SslHandshakeListener.class))
+                sslConnection.addHandshakeListener(listener);
+        }
+        for (SslHandshakeListener listener : getBeans(SslHandshakeListener.class))
+            sslConnection.addHandshakeListener(listener);
+
         ConnectionFactory next = connector.getConnectionFactory(_nextProtocol);
         EndPoint decryptedEndPoint = sslConnection.getDecryptedEndPoint();
         Connection connection = next.newConnection(connector, decryptedEndPoint);
@@ -46,6 +46,7 @@ import org.eclipse.jetty.util.component.Graceful;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.statistic.CounterStatistic;
+import org.eclipse.jetty.util.statistic.HistogramStatistic;
 import org.eclipse.jetty.util.statistic.SampleStatistic;
 
 @ManagedObject("Request Statistics Gathering")
@@ -59,6 +60,9 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
     private final CounterStatistic _dispatchedStats = new CounterStatistic();
     private final SampleStatistic _dispatchedTimeStats = new SampleStatistic();
     private final CounterStatistic _asyncWaitStats = new CounterStatistic();
+    private final HistogramStatistic _requestTimeHistogram = new HistogramStatistic();
+    private final HistogramStatistic _dispatchedTimeHistogram = new HistogramStatistic();
+    private final HistogramStatistic _asyncWaitTimeHistogram = new HistogramStatistic();
 
     private final AtomicInteger _asyncDispatches = new AtomicInteger();
     private final AtomicInteger _expires = new AtomicInteger();
@@ -74,8 +78,19 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
     
     private final AtomicBoolean _wrapWarning = new AtomicBoolean();
     
-    private final AsyncListener _onCompletion = new AsyncListener()
+    /**
+     * <p>Listens to the completion of a suspended request, to record
+     * the time the request waited since it was first suspended.</p>
+     */
+    private class OnCompletion implements AsyncListener
     {
+        private final long _suspended;
+
+        private OnCompletion(long suspended)
+        {
+            _suspended = suspended;
+        }
+
         @Override
         public void onTimeout(AsyncEvent event) throws IOException
         {
@@ -99,14 +114,17 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
             HttpChannelState state = ((AsyncContextEvent)event).getHttpChannelState();
 
             Request request = state.getBaseRequest();
-            final long elapsed = System.currentTimeMillis()-request.getTimeStamp();
+            final long now = System.currentTimeMillis();
+            final long elapsed = now-request.getTimeStamp();
 
             long d=_requestStats.decrement();
             _requestTimeStats.set(elapsed);
+            _requestTimeHistogram.record(elapsed);
 
             updateResponse(request);
 
             _asyncWaitStats.decrement();
+            _asyncWaitTimeHistogram.record(now-_suspended);
             
             // If we have no more dispatches, should we signal shutdown?
             if (d==0)
@@ -116,7 +134,7 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
                     shutdown.succeeded();
             }   
         }
-    };
+    }
 
     /**
      * Resets the current request statistics.
@@ -131,6 +149,9 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
         _dispatchedStats.reset();
         _dispatchedTimeStats.reset();
         _asyncWaitStats.reset();
+        _requestTimeHistogram.reset();
+        _dispatchedTimeHistogram.reset();
+        _asyncWaitTimeHistogram.reset();
 
         _asyncDispatches.set(0);
         _expires.set(0);
@@ -185,12 +206,13 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
 
             _dispatchedStats.decrement();
             _dispatchedTimeStats.set(dispatched);
+            _dispatchedTimeHistogram.record(dispatched);
 
             if (state.isSuspended())
             {
                 if (state.isInitial())
                 {
-                    state.addListener(_onCompletion);
+                    state.addListener(new OnCompletion(now));
                     _asyncWaitStats.increment();
                 }
             }
@@ -198,6 +220,7 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
             {
                 long d=_requestStats.decrement();
                 _requestTimeStats.set(dispatched);
+                _requestTimeHistogram.record(dispatched);
                 updateResponse(baseRequest);
                 
                 // If we have no more dispatches, should we signal shutdown?
@@ -339,6 +362,45 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
         return _requestTimeStats.getStdDev();
     }
 
+    /**
+     * @return the median time (in milliseconds) of request handling
+     * since {@link #statsReset()} was last called.
+     */
+    @ManagedAttribute("median time spent handling requests (in ms)")
+    public long getRequestTimeP50()
+    {
+        return _requestTimeHistogram.getValueAtPercentile(50);
+    }
+
+    /**
+     * @return the 99th percentile of the time (in milliseconds) of request handling
+     * since {@link #statsReset()} was last called.
+     */
+    @ManagedAttribute("99th percentile of time spent handling requests (in ms)")
+    public long getRequestTimeP99()
+    {
+        return _requestTimeHistogram.getValueAtPercentile(99);
+    }
+
+    /**
+     * @return the 99.9th percentile of the time (in milliseconds) of request handling
+     * since {@link #statsReset()} was last called.
+     */
+    @ManagedAttribute("99.9th percentile of time spent handling requests (in ms)")
+    public long getRequestTimeP999()
+    {
+        return _requestTimeHistogram.getValueAtPercentile(99.9);
+    }
+
+    /**
+     * @return the histogram of the time (in milliseconds) of request handling,
+     * for example to take interval snapshots with {@link HistogramStatistic#snapshotAndReset()}
+     */
+    public HistogramStatistic getRequestTimeHistogram()
+    {
+        return _requestTimeHistogram;
+    }
+
     /**
      * @return the number of dispatches seen by this handler
      * since {@link #statsReset()} was last called, excluding
@@ -416,6 +478,44 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
         return _dispatchedTimeStats.getStdDev();
     }
 
+    /**
+     * @return the median time (in milliseconds) of request dispatch
+     * since {@link #statsReset()} was last called.
+     */
+    @ManagedAttribute("median time spent in dispatch handling (in ms)")
+    public long getDispatchedTimeP50()
+    {
+        return _dispatchedTimeHistogram.getValueAtPercentile(50);
+    }
+
+    /**
+     * @return the 99th percentile of the time (in milliseconds) of request dispatch
+     * since {@link #statsReset()} was last called.
+     */
+    @ManagedAttribute("99th percentile of time spent in dispatch handling (in ms)")
+    public long getDispatchedTimeP99()
+    {
+        return _dispatchedTimeHistogram.getValueAtPercentile(99);
+    }
+
+    /**
+     * @return the 99.9th percentile of the time (in milliseconds) of request dispatch
+     * since {@link #statsReset()} was last called.
+     */
+    @ManagedAttribute("99.9th percentile of time spent in dispatch handling (in ms)")
+    public long getDispatchedTimeP999()
+    {
+        return _dispatchedTimeHistogram.getValueAtPercentile(99.9);
+    }
+
+    /**
+     * @return the histogram of the time (in milliseconds) of request dispatch
+     */
+    public HistogramStatistic getDispatchedTimeHistogram()
+    {
+        return _dispatchedTimeHistogram;
+    }
+
     /**
      * @return the number of requests handled by this handler
      * since {@link #statsReset()} was last called, including
@@ -448,6 +548,48 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
         return (int)_asyncWaitStats.getMax();
     }
 
+    /**
+     * @return the median time (in milliseconds) async requests waited from
+     * being first suspended to being completed
+     * since {@link #statsReset()} was last called.
+     */
+    @ManagedAttribute("median time async requests waited until completion (in ms)")
+    public long getAsyncWaitTimeP50()
+    {
+        return _asyncWaitTimeHistogram.getValueAtPercentile(50);
+    }
+
+    /**
+     * @return the 99th percentile of the time (in milliseconds) async requests
+     * waited from being first suspended to being completed
+     * since {@link #statsReset()} was last called.
+     */
+    @ManagedAttribute("99th percentile of time async requests waited until completion (in ms)")
+    public long getAsyncWaitTimeP99()
+    {
+        return _asyncWaitTimeHistogram.getValueAtPercentile(99);
+    }
+
+    /**
+     * @return the 99.9th percentile of the time (in milliseconds) async requests
+     * waited from being first suspended to being completed
+     * since {@link #statsReset()} was last called.
+     */
+    @ManagedAttribute("99.9th percentile of time async requests waited until completion (in ms)")
+    public long getAsyncWaitTimeP999()
+    {
+        return _asyncWaitTimeHistogram.getValueAtPercentile(99.9);
+    }
+
+    /**
+     * @return the histogram of the time (in milliseconds) async requests
+     * waited from being first suspended to being completed
+     */
+    public HistogramStatistic getAsyncWaitTimeHistogram()
+    {
+        return _asyncWaitTimeHistogram;
+    }
+
     /**
      * @return the number of requests that have been asynchronously dispatched
      */
@@ -550,6 +692,7 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
         sb.append("Mean request time: ").append(getRequestTimeMean()).append("<br />\n");
         sb.append("Max request time: ").append(getRequestTimeMax()).append("<br />\n");
         sb.append("Request time standard deviation: ").append(getRequestTimeStdDev()).append("<br />\n");
+        sb.append("Request time p50/p99/p999: ").append(getRequestTimeP50()).append('/').append(getRequestTimeP99()).append('/').append(getRequestTimeP999()).append("<br />\n");
 
 
         sb.append("<h2>Dispatches:</h2>\n");
@@ -560,11 +703,13 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
         sb.append("Mean dispatched time: ").append(getDispatchedTimeMean()).append("<br />\n");
         sb.append("Max dispatched time: ").append(getDispatchedTimeMax()).append("<br />\n");
         sb.append("Dispatched time standard deviation: ").append(getDispatchedTimeStdDev()).append("<br />\n");
+        sb.append("Dispatched time p50/p99/p999: ").append(getDispatchedTimeP50()).append('/').append(getDispatchedTimeP99()).append('/').append(getDispatchedTimeP999()).append("<br />\n");
 
 
         sb.append("Total requests suspended: ").append(getAsyncRequests()).append("<br />\n");
         sb.append("Total requests expired: ").append(getExpires()).append("<br />\n");
         sb.append("Total requests resumed: ").append(getAsyncDispatches()).append("<br />\n");
+        sb.append("Async wait time p50/p99/p999: ").append(getAsyncWaitTimeP50()).append('/').append(getAsyncWaitTimeP99()).append('/').append(getAsyncWaitTimeP999()).append("<br />\n");
 
         sb.append("<h2>Responses:</h2>\n");
         sb.append("1xx responses: ").append(getResponses1xx()).append("<br />\n");
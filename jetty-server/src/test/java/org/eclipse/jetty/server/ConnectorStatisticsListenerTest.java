@@ -0,0 +1,148 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.server;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.eclipse.jetty.io.AbstractConnection;
+import org.eclipse.jetty.io.ByteArrayEndPoint;
+import org.eclipse.jetty.io.Connection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Drives the {@link Connection.Listener} methods of {@link ConnectorStatistics}
+ * directly, without a server.
+ */
+public class ConnectorStatisticsListenerTest
+{
+    private final Executor _executor = new Executor()
+    {
+        @Override
+        public void execute(Runnable task)
+        {
+            task.run();
+        }
+    };
+    private ConnectorStatistics _statistics;
+
+    @Before
+    public void init() throws Exception
+    {
+        _statistics = new ConnectorStatistics();
+        _statistics.start();
+    }
+
+    @After
+    public void tini() throws Exception
+    {
+        _statistics.stop();
+    }
+
+    @Test
+    public void testMessagesInAndOut() throws Exception
+    {
+        List<Connection> connections = new ArrayList<>();
+        for (int i = 1; i <= 3; ++i)
+        {
+            Connection connection = new TestConnection(i, 4 * i);
+            connections.add(connection);
+            _statistics.onOpened(connection);
+        }
+        assertEquals(3, _statistics.getConnectionsOpen());
+
+        for (Connection connection : connections)
+            _statistics.onClosed(connection);
+
+        assertEquals(3, _statistics.getConnections());
+        assertEquals(0, _statistics.getConnectionsOpen());
+        assertEquals(3, _statistics.getConnectionsOpenMax());
+
+        assertEquals(1 + 2 + 3, _statistics.getMessagesIn());
+        assertEquals(3, _statistics.getMessagesInPerConnectionMax());
+        assertEquals(2.0, _statistics.getMessagesInPerConnectionMean(), 0.0);
+
+        // The messages out are reported apart from the messages in.
+        assertEquals(4 + 8 + 12, _statistics.getMessagesOut());
+        assertEquals(12, _statistics.getMessagesOutPerConnectionMax());
+        assertEquals(8.0, _statistics.getMessagesOutPerConnectionMean(), 0.0);
+    }
+
+    @Test
+    public void testPercentiles() throws Exception
+    {
+        // Values below 2^precision of the histograms are recorded exactly.
+        for (int i = 1; i <= 10; ++i)
+        {
+            Connection connection = new TestConnection(i, 2 * i);
+            _statistics.onOpened(connection);
+            _statistics.onClosed(connection);
+        }
+
+        assertEquals(5, _statistics.getMessagesInPerConnectionP50());
+        assertEquals(10, _statistics.getMessagesInPerConnectionP99());
+        assertEquals(10, _statistics.getMessagesInPerConnectionP999());
+
+        assertEquals(10, _statistics.getMessagesOutPerConnectionP50());
+        assertEquals(20, _statistics.getMessagesOutPerConnectionP99());
+        assertEquals(20, _statistics.getMessagesOutPerConnectionP999());
+
+        assertEquals(10, _statistics.getConnectionDurationHistogram().getCount());
+
+        _statistics.reset();
+        assertEquals(0, _statistics.getMessagesOutPerConnectionP999());
+        assertEquals(0, _statistics.getConnectionDurationHistogram().getCount());
+    }
+
+    private class TestConnection extends AbstractConnection
+    {
+        private final int _messagesIn;
+        private final int _messagesOut;
+
+        private TestConnection(int messagesIn, int messagesOut)
+        {
+            super(new ByteArrayEndPoint(), _executor);
+            _messagesIn = messagesIn;
+            _messagesOut = messagesOut;
+        }
+
+        @Override
+        public void onFillable()
+        {
+        }
+
+        @Override
+        public int getMessagesIn()
+        {
+            return _messagesIn;
+        }
+
+        @Override
+        public int getMessagesOut()
+        {
+            return _messagesOut;
+        }
+    }
+}
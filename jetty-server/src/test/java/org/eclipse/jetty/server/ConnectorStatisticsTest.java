@@ -211,6 +211,11 @@ public class ConnectorStatisticsTest
         assertEquals(2.0, _statistics.getMessagesInPerConnectionMean(), 0.01);
         assertEquals(3, _statistics.getMessagesInPerConnectionMax());
         assertTrue(_statistics.getMessagesInPerConnectionMean() <= _statistics.getMessagesInPerConnectionMax());
+        assertEquals(3, _statistics.getMessagesInHistogram().getCount());
+        assertEquals(2, _statistics.getMessagesInPerConnectionP50());
+        assertEquals(3, _statistics.getMessagesInPerConnectionP99());
+        assertEquals(3, _statistics.getConnectionDurationHistogram().getCount());
+        assertTrue(_statistics.getConnectionDurationP99() >= _statistics.getConnectionDurationMax());
     }
 
     protected void doInit(int count)
@@ -27,8 +27,11 @@ import static org.junit.Assert.fail;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Queue;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 import javax.servlet.ReadListener;
 
@@ -281,6 +284,72 @@ public class HttpInputTest
         assertThat(_history.poll(),nullValue());
     }
 
+    @Test
+    public void testReadBuffers() throws Exception
+    {
+        _in.addContent(new TContent("AB"));
+        _in.addContent(new TContent("CD"));
+        _in.eof();
+
+        final StringBuilder content = new StringBuilder();
+        Consumer<ByteBuffer> consumer = new Consumer<ByteBuffer>()
+        {
+            @Override
+            public void accept(ByteBuffer buffer)
+            {
+                // Only consume part of the buffer, the rest is discarded.
+                content.append((char)buffer.get());
+            }
+        };
+
+        assertThat(_in.read(consumer),equalTo(2));
+        assertThat(content.toString(),equalTo("A"));
+        assertThat(_in.getContentConsumed(),equalTo(2L));
+        assertThat(_history.poll(),equalTo("Content succeeded AB"));
+        assertThat(_history.poll(),nullValue());
+
+        assertThat(_in.read(consumer),equalTo(2));
+        assertThat(content.toString(),equalTo("AC"));
+        assertThat(_history.poll(),equalTo("Content succeeded CD"));
+        assertThat(_history.poll(),nullValue());
+
+        assertThat(_in.read(consumer),equalTo(-1));
+        assertThat(_in.isFinished(),equalTo(true));
+        assertThat(_in.getContentConsumed(),equalTo(4L));
+        assertThat(_history.poll(),nullValue());
+    }
+
+    @Test
+    public void testReadBuffersConsumerDoesNotHoldLock() throws Exception
+    {
+        _in.addContent(new TContent("AB"));
+
+        final AtomicBoolean added = new AtomicBoolean();
+        assertThat(_in.read(new Consumer<ByteBuffer>()
+        {
+            @Override
+            public void accept(ByteBuffer buffer)
+            {
+                // Content must be able to arrive while the consumer runs.
+                Thread thread = new Thread(() -> _in.addContent(new TContent("CD")));
+                thread.start();
+                try
+                {
+                    thread.join(5000);
+                }
+                catch (InterruptedException x)
+                {
+                    throw new RuntimeException(x);
+                }
+                added.set(!thread.isAlive());
+            }
+        }),equalTo(2));
+        assertThat(added.get(),equalTo(true));
+        assertThat(_history.poll(),equalTo("Content succeeded AB"));
+
+        assertThat(_in.read(),equalTo((int)'C'));
+    }
+
     @Test
     public void testReadEarlyEOF() throws Exception
     {
@@ -25,6 +25,7 @@ import static org.junit.Assert.assertThat;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
 import java.util.Arrays;
@@ -293,6 +294,33 @@ public class HttpOutputTest
         assertThat(response,containsString("400\tThis is a big file"));
     }
     
+    @Test
+    public void testWriteMedAfterSmallIsAggregated() throws Exception
+    {
+        _server.stop();
+        _server.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+            {
+                baseRequest.setHandled(true);
+                OutputStream out = response.getOutputStream();
+                // Small enough to be aggregated, then too large to be aggregated on its own.
+                out.write(new byte[100]);
+                out.write(new byte[2000]);
+                out.flush();
+                out.write(new byte[3000]);
+            }
+        });
+        _server.start();
+
+        String response=_connector.getResponses("GET / HTTP/1.1\nHost: localhost:80\n\n");
+        assertThat(response,containsString("HTTP/1.1 200 OK"));
+        // The first two writes are sent as a single chunk.
+        assertThat(response,containsString("\r\n834\r\n"));
+        assertThat(response,containsString("\r\nBB8\r\n"));
+    }
+
     @Test
     public void testWriteLarge() throws Exception
     {
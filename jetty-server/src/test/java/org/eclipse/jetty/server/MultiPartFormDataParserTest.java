@@ -0,0 +1,482 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.server;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.MultipartConfigElement;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.Part;
+
+import org.eclipse.jetty.io.ArrayByteBufferPool;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.IO;
+import org.hamcrest.Matchers;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MultiPartFormDataParserTest
+{
+    private static final String CONTENT_TYPE = "multipart/form-data; boundary=AaB03x";
+
+    private File _tmpDir;
+    private CountingPool _pool;
+
+    @Before
+    public void init() throws Exception
+    {
+        _tmpDir = File.createTempFile("mpfdtest", null);
+        if (_tmpDir.exists())
+            _tmpDir.delete();
+        _tmpDir.mkdir();
+        _tmpDir.deleteOnExit();
+        _pool = new CountingPool();
+    }
+
+    @After
+    public void destroy() throws Exception
+    {
+        IO.delete(_tmpDir);
+    }
+
+    private static String form(byte[] file)
+    {
+        return "--AaB03x\r\n" +
+                "Content-Disposition: form-data; name=\"field1\"\r\n" +
+                "\r\n" +
+                "Joe Blow\r\n" +
+                "--AaB03x\r\n" +
+                "Content-Disposition: form-data; name=\"stuff\"; filename=\"foo.upload\"\r\n" +
+                "Content-Type: application/octet-stream\r\n" +
+                "\r\n" +
+                new String(file, StandardCharsets.ISO_8859_1) + "\r\n" +
+                "--AaB03x--\r\n";
+    }
+
+    private static byte[] file(int size)
+    {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; ++i)
+            bytes[i] = (byte)(i * 31);
+        return bytes;
+    }
+
+    private MultiPartFormDataParser newParser(String form, MultipartConfigElement config)
+    {
+        ByteArrayInputStream in = new ByteArrayInputStream(form.getBytes(StandardCharsets.ISO_8859_1));
+        return new MultiPartFormDataParser(in, CONTENT_TYPE, config, _tmpDir, _pool);
+    }
+
+    @Test
+    public void testSmallPartsInMemoryLargePartsInFile() throws Exception
+    {
+        byte[] file = file(10000);
+        MultipartConfigElement config = new MultipartConfigElement(_tmpDir.getAbsolutePath(), -1, -1, 1024);
+        MultiPartFormDataParser parser = newParser(form(file), config);
+
+        assertEquals(2, parser.getParts().size());
+        assertTrue(parser.isComplete());
+
+        MultiPartFormDataParser.FormPart field1 = (MultiPartFormDataParser.FormPart)parser.getPart("field1");
+        assertNull(field1.getFile());
+        assertEquals(8, field1.getSize());
+        assertEquals("Joe Blow", new String(field1.getBytes(), StandardCharsets.US_ASCII));
+        assertEquals("Joe Blow", IO.toString(field1.getInputStream()));
+
+        MultiPartFormDataParser.FormPart stuff = (MultiPartFormDataParser.FormPart)parser.getPart("stuff");
+        assertNotNull(stuff.getFile());
+        assertEquals("foo.upload", stuff.getSubmittedFileName());
+        assertEquals("application/octet-stream", stuff.getContentType());
+        assertEquals(file.length, stuff.getSize());
+        assertArrayEquals(file, IO.readBytes(stuff.getInputStream()));
+        assertEquals(1, _tmpDir.list().length);
+
+        parser.deleteParts();
+        assertEquals(0, _tmpDir.list().length);
+        assertEquals(_pool.acquired.get(), _pool.released.get());
+    }
+
+    @Test
+    public void testZeroThresholdKeepsPartsInMemory() throws Exception
+    {
+        byte[] file = file(10000);
+        MultipartConfigElement config = new MultipartConfigElement(_tmpDir.getAbsolutePath(), -1, -1, 0);
+        MultiPartFormDataParser parser = newParser(form(file), config);
+
+        Part stuff = parser.getPart("stuff");
+        assertNull(((MultiPartFormDataParser.FormPart)stuff).getFile());
+        assertArrayEquals(file, IO.readBytes(stuff.getInputStream()));
+
+        stuff.write("stuff.upload");
+        assertArrayEquals(file, IO.readBytes(stuff.getInputStream()));
+        assertTrue(new File(_tmpDir, "stuff.upload").exists());
+
+        parser.deleteParts();
+        assertTrue(new File(_tmpDir, "stuff.upload").exists());
+        assertEquals(_pool.acquired.get(), _pool.released.get());
+    }
+
+    @Test
+    public void testParseSplitBuffers() throws Exception
+    {
+        byte[] file = file(5000);
+        byte[] form = form(file).getBytes(StandardCharsets.ISO_8859_1);
+        MultipartConfigElement config = new MultipartConfigElement(_tmpDir.getAbsolutePath(), -1, -1, 2048);
+        MultiPartFormDataParser parser = new MultiPartFormDataParser(null, CONTENT_TYPE, config, _tmpDir, _pool);
+
+        boolean complete = false;
+        for (int offset = 0; offset < form.length; offset += 100)
+        {
+            assertFalse(complete);
+            complete = parser.parse(ByteBuffer.wrap(form, offset, Math.min(100, form.length - offset)), false);
+        }
+        assertTrue(complete);
+        assertTrue(parser.isComplete());
+
+        assertEquals("Joe Blow", new String(((MultiPartFormDataParser.FormPart)parser.getPart("field1")).getBytes(), StandardCharsets.US_ASCII));
+        assertArrayEquals(file, IO.readBytes(parser.getPart("stuff").getInputStream()));
+        parser.deleteParts();
+    }
+
+    @Test
+    public void testMaxFileSize() throws Exception
+    {
+        MultipartConfigElement config = new MultipartConfigElement(_tmpDir.getAbsolutePath(), 1024, -1, 0);
+        MultiPartFormDataParser parser = newParser(form(file(2048)), config);
+        try
+        {
+            parser.getParts();
+            fail();
+        }
+        catch (IllegalStateException x)
+        {
+            assertThat(x.getMessage(), Matchers.containsString("exceeds max filesize"));
+        }
+        parser.deleteParts();
+        assertEquals(_pool.acquired.get(), _pool.released.get());
+    }
+
+    @Test
+    public void testMaxRequestSize() throws Exception
+    {
+        MultipartConfigElement config = new MultipartConfigElement(_tmpDir.getAbsolutePath(), -1, 1024, 0);
+        MultiPartFormDataParser parser = newParser(form(file(2048)), config);
+        try
+        {
+            parser.getParts();
+            fail();
+        }
+        catch (IllegalStateException x)
+        {
+            assertThat(x.getMessage(), Matchers.containsString("exceeds maxRequestSize"));
+        }
+    }
+
+    @Test
+    public void testMissingNameSkipped() throws Exception
+    {
+        String form = "--AaB03x\r\n" +
+                "Content-Disposition: form-data; filename=\"foo.upload\"\r\n" +
+                "\r\n" +
+                "Joe Blow\r\n" +
+                "--AaB03x\r\n" +
+                "Content-Disposition: form-data; name=\"field1\"\r\n" +
+                "\r\n" +
+                "value1\r\n" +
+                "--AaB03x--\r\n";
+        MultiPartFormDataParser parser = newParser(form, new MultipartConfigElement(_tmpDir.getAbsolutePath()));
+
+        assertEquals(1, parser.getParts().size());
+        assertEquals("value1", IO.toString(parser.getPart("field1").getInputStream()));
+    }
+
+    @Test
+    public void testMissingNameStrict() throws Exception
+    {
+        String form = "--AaB03x\r\n" +
+                "Content-Disposition: form-data; filename=\"foo.upload\"\r\n" +
+                "\r\n" +
+                "Joe Blow\r\n" +
+                "--AaB03x--\r\n";
+        MultiPartFormDataParser parser = newParser(form, new MultipartConfigElement(_tmpDir.getAbsolutePath()));
+        parser.setStrict(true);
+        try
+        {
+            parser.getParts();
+            fail();
+        }
+        catch (IOException x)
+        {
+            assertThat(x.getMessage(), Matchers.containsString("Missing name"));
+        }
+
+        // The failure is remembered.
+        try
+        {
+            parser.getParts();
+            fail();
+        }
+        catch (IOException x)
+        {
+            assertThat(x.getMessage(), Matchers.containsString("Missing name"));
+        }
+    }
+
+    @Test
+    public void testContentTransferEncoding() throws Exception
+    {
+        String form = "--AaB03x\r\n" +
+                "Content-Disposition: form-data; name=\"base64\"\r\n" +
+                "Content-Transfer-Encoding: base64\r\n" +
+                "\r\n" +
+                "aGVsbG8g\r\namV0dHk=\r\n" +
+                "--AaB03x\r\n" +
+                "Content-Disposition: form-data; name=\"qp\"\r\n" +
+                "Content-Transfer-Encoding: Quoted-Printable\r\n" +
+                "\r\n" +
+                "truth=3Dbeauty=\r\n, beauty=3Dtruth\r\n" +
+                "--AaB03x--\r\n";
+        byte[] bytes = form.getBytes(StandardCharsets.ISO_8859_1);
+        MultiPartFormDataParser parser = new MultiPartFormDataParser(null, CONTENT_TYPE, new MultipartConfigElement(_tmpDir.getAbsolutePath()), _tmpDir, _pool);
+
+        // Split the content one byte at a time, to check the decoding state spans buffers.
+        for (int offset = 0; offset < bytes.length; ++offset)
+            parser.parse(ByteBuffer.wrap(bytes, offset, 1), false);
+        assertTrue(parser.isComplete());
+
+        Part base64 = parser.getPart("base64");
+        assertEquals(11, base64.getSize());
+        assertEquals("hello jetty", IO.toString(base64.getInputStream()));
+        assertEquals("truth=beauty, beauty=truth", IO.toString(parser.getPart("qp").getInputStream()));
+        parser.deleteParts();
+    }
+
+    @Test
+    public void testInputStreamOutlivesCleanUp() throws Exception
+    {
+        MultipartConfigElement config = new MultipartConfigElement(_tmpDir.getAbsolutePath());
+        MultiPartFormDataParser parser = newParser(form(file(16)), config);
+
+        MultiPartFormDataParser.FormPart field1 = (MultiPartFormDataParser.FormPart)parser.getPart("field1");
+        InputStream input = field1.getInputStream();
+        parser.deleteParts();
+        assertEquals(_pool.acquired.get(), _pool.released.get());
+
+        // The stream reads a copy of the content, but the part content itself is gone.
+        assertEquals("Joe Blow", IO.toString(input));
+        try
+        {
+            field1.getInputStream();
+            fail();
+        }
+        catch (IllegalStateException x)
+        {
+            assertThat(x.getMessage(), Matchers.containsString("released"));
+        }
+    }
+
+    @Test
+    public void testSkippedLastPart() throws Exception
+    {
+        String form = "--AaB03x\r\n" +
+                "Content-Disposition: form-data; name=\"field1\"\r\n" +
+                "\r\n" +
+                "value1\r\n" +
+                "--AaB03x\r\n" +
+                "Content-Disposition: form-data; filename=\"foo.upload\"\r\n" +
+                "\r\n" +
+                "Joe Blow\r\n" +
+                "--AaB03x--\r\n";
+        MultiPartFormDataParser parser = newParser(form, new MultipartConfigElement(_tmpDir.getAbsolutePath()));
+
+        // As MultiPartInputStreamParser, a message ending with a skipped part fails.
+        try
+        {
+            parser.getParts();
+            fail();
+        }
+        catch (IOException x)
+        {
+            assertThat(x.getMessage(), Matchers.containsString("Incomplete parts"));
+        }
+    }
+
+    private Server newAsyncServer(final MultipartConfigElement config, final byte[] file, final AtomicReference<MultiPartFormDataParser> parserRef)
+    {
+        Server server = new Server();
+        LocalConnector connector = new LocalConnector(server);
+        server.addConnector(connector);
+        server.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, final HttpServletResponse response) throws IOException, ServletException
+            {
+                baseRequest.setHandled(true);
+                final AsyncContext async = request.startAsync();
+                final MultiPartFormDataParser parser = new MultiPartFormDataParser(request.getInputStream(), request.getContentType(), config, _tmpDir, _pool);
+                parserRef.set(parser);
+                parser.parse(new Callback()
+                {
+                    @Override
+                    public void succeeded()
+                    {
+                        try
+                        {
+                            Part field1 = parser.getPart("field1");
+                            Part stuff = parser.getPart("stuff");
+                            boolean same = Arrays.equals(file, IO.readBytes(stuff.getInputStream()));
+                            response.getWriter().printf("field1=%s stuff=%b%n", IO.toString(field1.getInputStream()), same);
+                            parser.deleteParts();
+                        }
+                        catch (Exception x)
+                        {
+                            response.setStatus(500);
+                        }
+                        async.complete();
+                    }
+
+                    @Override
+                    public void failed(Throwable x)
+                    {
+                        response.setStatus(500);
+                        async.complete();
+                    }
+                });
+            }
+        });
+        return server;
+    }
+
+    @Test
+    public void testAsyncParse() throws Exception
+    {
+        byte[] file = file(10000);
+        MultipartConfigElement config = new MultipartConfigElement(_tmpDir.getAbsolutePath(), -1, -1, 1024);
+        Server server = newAsyncServer(config, file, new AtomicReference<>());
+        LocalConnector connector = (LocalConnector)server.getConnectors()[0];
+        server.start();
+        try
+        {
+            String form = form(file);
+            String request = "POST / HTTP/1.1\r\n" +
+                    "Host: localhost\r\n" +
+                    "Content-Type: " + CONTENT_TYPE + "\r\n" +
+                    "Content-Length: " + form.length() + "\r\n" +
+                    "Connection: close\r\n" +
+                    "\r\n" +
+                    form;
+
+            ByteBuffer response = connector.getResponses(StandardCharsets.ISO_8859_1.encode(request));
+            String responses = StandardCharsets.ISO_8859_1.decode(response).toString();
+            assertThat(responses, Matchers.startsWith("HTTP/1.1 200"));
+            assertThat(responses, Matchers.containsString("field1=Joe Blow stuff=true"));
+            assertEquals(0, _tmpDir.list().length);
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testAsyncParseChunkedTerminatorInLaterRead() throws Exception
+    {
+        byte[] file = "file content".getBytes(StandardCharsets.ISO_8859_1);
+        MultipartConfigElement config = new MultipartConfigElement(_tmpDir.getAbsolutePath());
+        AtomicReference<MultiPartFormDataParser> parserRef = new AtomicReference<>();
+        Server server = newAsyncServer(config, file, parserRef);
+        LocalConnector connector = (LocalConnector)server.getConnectors()[0];
+        server.start();
+        try
+        {
+            String form = form(file);
+            String request = "POST / HTTP/1.1\r\n" +
+                    "Host: localhost\r\n" +
+                    "Content-Type: " + CONTENT_TYPE + "\r\n" +
+                    "Transfer-Encoding: chunked\r\n" +
+                    "Connection: close\r\n" +
+                    "\r\n" +
+                    Integer.toHexString(form.length()) + "\r\n" +
+                    form + "\r\n";
+            LocalConnector.LocalEndPoint endPoint = connector.executeRequest(request);
+
+            // Wait for the close delimiter to be parsed before sending the epilogue and the terminal chunk.
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (parserRef.get() == null || !parserRef.get().isComplete())
+            {
+                assertTrue(System.nanoTime() < end);
+                Thread.sleep(10);
+            }
+            endPoint.addInput("7\r\nignored\r\n0\r\n\r\n");
+
+            endPoint.waitUntilClosed();
+            String responses = endPoint.takeOutputString();
+            assertThat(responses, Matchers.startsWith("HTTP/1.1 200"));
+            assertThat(responses, Matchers.containsString("field1=Joe Blow stuff=true"));
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    private static class CountingPool extends ArrayByteBufferPool
+    {
+        private final AtomicInteger acquired = new AtomicInteger();
+        private final AtomicInteger released = new AtomicInteger();
+
+        @Override
+        public ByteBuffer acquire(int size, boolean direct)
+        {
+            acquired.incrementAndGet();
+            return super.acquire(size, direct);
+        }
+
+        @Override
+        public void release(ByteBuffer buffer)
+        {
+            released.incrementAndGet();
+            super.release(buffer);
+        }
+    }
+}
@@ -32,11 +32,20 @@ import java.io.InputStream;
 import java.io.PrintWriter;
 import java.lang.reflect.Field;
 import java.net.HttpURLConnection;
+import java.net.ProtocolFamily;
 import java.net.Socket;
+import java.net.SocketOption;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.Pipe;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.spi.AbstractSelector;
+import java.nio.channels.spi.SelectorProvider;
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -49,6 +58,7 @@ import org.eclipse.jetty.server.handler.DefaultHandler;
 import org.eclipse.jetty.server.handler.HandlerList;
 import org.eclipse.jetty.toolchain.test.OS;
 import org.eclipse.jetty.util.IO;
+import org.junit.Assume;
 import org.junit.Test;
 
 public class ServerConnectorTest
@@ -235,4 +245,140 @@ public class ServerConnectorTest
         assertEquals(2, connector.getBeans(ConnectionFactory.class).size());
         assertEquals(proxy.getProtocol(), connector.getDefaultProtocol());
     }
+
+    @Test
+    public void testSelectorProvider() throws Exception
+    {
+        final SelectorProvider provider = SelectorProvider.provider();
+        final AtomicInteger selectors = new AtomicInteger();
+        final AtomicInteger serverChannels = new AtomicInteger();
+        SelectorProvider counting = new SelectorProvider()
+        {
+            @Override
+            public DatagramChannel openDatagramChannel() throws IOException
+            {
+                return provider.openDatagramChannel();
+            }
+
+            @Override
+            public DatagramChannel openDatagramChannel(ProtocolFamily family) throws IOException
+            {
+                return provider.openDatagramChannel(family);
+            }
+
+            @Override
+            public Pipe openPipe() throws IOException
+            {
+                return provider.openPipe();
+            }
+
+            @Override
+            public AbstractSelector openSelector() throws IOException
+            {
+                selectors.incrementAndGet();
+                return provider.openSelector();
+            }
+
+            @Override
+            public ServerSocketChannel openServerSocketChannel() throws IOException
+            {
+                serverChannels.incrementAndGet();
+                return provider.openServerSocketChannel();
+            }
+
+            @Override
+            public SocketChannel openSocketChannel() throws IOException
+            {
+                return provider.openSocketChannel();
+            }
+        };
+
+        Server server = new Server();
+        ServerConnector connector = new ServerConnector(server, 1, 2);
+        connector.setPort(0);
+        connector.getSelectorManager().setSelectorProvider(counting);
+        server.addConnector(connector);
+        server.setHandler(new ReuseInfoHandler());
+
+        try
+        {
+            server.start();
+
+            assertSame(counting, connector.getSelectorManager().getSelectorProvider());
+            assertEquals(2, selectors.get());
+            assertEquals(1, serverChannels.get());
+            assertThat("Response",getResponse(toServerURI(connector)),containsString("connector.getReuseAddress() = true"));
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    private static boolean isReusePortSupported() throws IOException
+    {
+        try (ServerSocketChannel channel = ServerSocketChannel.open())
+        {
+            for (SocketOption<?> option : channel.supportedOptions())
+            {
+                if ("SO_REUSEPORT".equals(option.name()))
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    @Test
+    public void testReusePortListeners_SelectorAccept() throws Exception
+    {
+        testReusePortListeners(0);
+    }
+
+    @Test
+    public void testReusePortListeners_AcceptorThreads() throws Exception
+    {
+        testReusePortListeners(2);
+    }
+
+    private void testReusePortListeners(int acceptors) throws Exception
+    {
+        Assume.assumeTrue(isReusePortSupported());
+
+        Server server = new Server();
+        ServerConnector connector = new ServerConnector(server, acceptors, 2);
+        connector.setPort(0);
+        connector.setReusePortListeners(2);
+        server.addConnector(connector);
+        server.setHandler(new ReuseInfoHandler());
+
+        try
+        {
+            server.start();
+
+            int requests = 10;
+            for (int i = 0; i < requests; i++)
+            {
+                try (Socket client = new Socket("localhost", connector.getLocalPort()))
+                {
+                    client.getOutputStream().write(("GET / HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+                    assertThat("Response",IO.toString(client.getInputStream()),containsString("connector.getReuseAddress() = true"));
+                }
+            }
+
+            long[] accepts = connector.getListenerAccepts();
+            assertEquals(2, accepts.length);
+            assertEquals(2, connector.getListenerAcceptRates().length);
+            long total = 0;
+            for (long accept : accepts)
+                total += accept;
+            assertEquals(requests, total);
+
+            connector.resetListenerStatistics();
+            assertEquals(0, connector.getListenerAccepts()[0]);
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
 }
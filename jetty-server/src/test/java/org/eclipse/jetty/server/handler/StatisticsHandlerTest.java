@@ -599,6 +599,14 @@ public class StatisticsHandlerTest
         assertTrue(_statsHandler.getDispatchedTimeTotal() < _statsHandler.getRequestTimeTotal());
         assertEquals(_statsHandler.getDispatchedTimeTotal(), _statsHandler.getDispatchedTimeMax());
         assertEquals(_statsHandler.getDispatchedTimeTotal(), _statsHandler.getDispatchedTimeMean(), 0.01);
+
+        // The percentiles are the largest values equivalent to the samples.
+        assertTrue(_statsHandler.getRequestTimeP50() >= _statsHandler.getRequestTimeMax());
+        assertEquals(_statsHandler.getRequestTimeP50(), _statsHandler.getRequestTimeP999());
+        assertTrue(_statsHandler.getDispatchedTimeP99() >= _statsHandler.getDispatchedTimeMax());
+        assertEquals(1, _statsHandler.getAsyncWaitTimeHistogram().getCount());
+        assertTrue(_statsHandler.getAsyncWaitTimeP50() >= requestTime * 3 / 4);
+        assertTrue(_statsHandler.getAsyncWaitTimeP50() <= _statsHandler.getRequestTimeP50());
     }
 
     /**
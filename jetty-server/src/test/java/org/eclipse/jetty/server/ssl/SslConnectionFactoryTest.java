@@ -26,11 +26,16 @@ import java.net.Socket;
 import java.nio.charset.StandardCharsets;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.net.ssl.SNIHostName;
 import javax.net.ssl.SNIServerName;
+import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLParameters;
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
@@ -40,6 +45,7 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.io.ssl.SslHandshakeStatistics;
 import org.eclipse.jetty.server.HttpConfiguration;
 import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.Request;
@@ -52,9 +58,11 @@ import org.eclipse.jetty.server.handler.AbstractHandler;
 import org.eclipse.jetty.util.ConcurrentArrayQueue;
 import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.hamcrest.Matchers;
 import org.junit.After;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -236,4 +244,114 @@ public class SslConnectionFactoryTest
         Assert.assertEquals(0,history.size());
     }
     
+
+    @Test
+    public void testHandshakeExecutorAndStatistics() throws Exception
+    {
+        SslHandshakeStatistics statistics = new SslHandshakeStatistics();
+        _connector.addBean(statistics);
+
+        final QueuedThreadPool handshakeThreads = new QueuedThreadPool(4, 1);
+        handshakeThreads.setName("handshake");
+        handshakeThreads.start();
+        final AtomicInteger offloaded = new AtomicInteger();
+        _connector.getBean(SslConnectionFactory.class).setHandshakeExecutor(new Executor()
+        {
+            @Override
+            public void execute(Runnable task)
+            {
+                offloaded.incrementAndGet();
+                handshakeThreads.execute(task);
+            }
+        });
+
+        try
+        {
+            int connections = 3;
+            for (int i = 0; i < connections; ++i)
+            {
+                String response = getResponse("127.0.0.1", null);
+                Assert.assertThat(response, Matchers.containsString("host=127.0.0.1"));
+            }
+
+            Assert.assertThat(offloaded.get(), Matchers.greaterThan(0));
+            Assert.assertEquals(connections, statistics.getFullHandshakes() + statistics.getResumedHandshakes());
+            Assert.assertEquals(0, statistics.getFailedHandshakes());
+            Assert.assertThat(statistics.getHandshakeRate(), Matchers.greaterThan(0.0));
+
+            try (Socket socket = new Socket("127.0.0.1", _port); OutputStream out = socket.getOutputStream())
+            {
+                out.write("Rubbish".getBytes());
+                out.flush();
+                Assert.assertThat(socket.getInputStream().read(), Matchers.equalTo(-1));
+            }
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (statistics.getFailedHandshakes() == 0 && System.nanoTime() < end)
+                Thread.sleep(10);
+            Assert.assertEquals(1, statistics.getFailedHandshakes());
+        }
+        finally
+        {
+            handshakeThreads.stop();
+        }
+    }
+
+    @Test
+    public void testResumedHandshakeStatistics() throws Exception
+    {
+        testResumedHandshakeStatistics("TLSv1.2");
+    }
+
+    @Test
+    public void testResumedTLS13HandshakeStatistics() throws Exception
+    {
+        // TLS 1.3 resumes with a pre-shared key, in a session with a new session ID.
+        Assume.assumeTrue(Arrays.asList(SSLContext.getDefault().getSupportedSSLParameters().getProtocols()).contains("TLSv1.3"));
+        testResumedHandshakeStatistics("TLSv1.3");
+    }
+
+    private void testResumedHandshakeStatistics(String protocol) throws Exception
+    {
+        SslHandshakeStatistics statistics = new SslHandshakeStatistics();
+        _connector.getBean(SslConnectionFactory.class).addBean(statistics);
+
+        SslContextFactory clientContextFactory = new SslContextFactory(true);
+        clientContextFactory.setProtocol(protocol);
+        clientContextFactory.start();
+        try
+        {
+            SSLSocketFactory factory = clientContextFactory.getSslContext().getSocketFactory();
+            for (int i = 0; i < 2; ++i)
+            {
+                try (SSLSocket sslSocket = (SSLSocket)factory.createSocket("127.0.0.1", _port))
+                {
+                    sslSocket.getOutputStream().write(("GET /ctx/path HTTP/1.0\r\nHost: localhost\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                    Assert.assertThat(IO.toString(sslSocket.getInputStream()), Matchers.startsWith("HTTP/1.1 200 OK"));
+                }
+            }
+
+            Assert.assertEquals(1, statistics.getFullHandshakes());
+            Assert.assertEquals(1, statistics.getResumedHandshakes());
+            Assert.assertEquals(0, statistics.getSessionCacheMisses());
+            Assert.assertEquals(1.0, statistics.getSessionCacheHitRatio(), 0.0);
+
+            // A new SSLContext does not know the session offered by the client.
+            SslContextFactory serverContextFactory = _connector.getBean(SslConnectionFactory.class).getSslContextFactory();
+            serverContextFactory.stop();
+            serverContextFactory.start();
+            try (SSLSocket sslSocket = (SSLSocket)factory.createSocket("127.0.0.1", _port))
+            {
+                sslSocket.getOutputStream().write(("GET /ctx/path HTTP/1.0\r\nHost: localhost\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                Assert.assertThat(IO.toString(sslSocket.getInputStream()), Matchers.startsWith("HTTP/1.1 200 OK"));
+            }
+
+            Assert.assertEquals(2, statistics.getFullHandshakes());
+            Assert.assertEquals(1, statistics.getSessionCacheMisses());
+            Assert.assertEquals(0.5, statistics.getSessionCacheHitRatio(), 0.0);
+        }
+        finally
+        {
+            clientContextFactory.stop();
+        }
+    }
 }
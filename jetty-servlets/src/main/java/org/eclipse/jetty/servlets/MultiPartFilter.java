@@ -18,7 +18,6 @@
 
 package org.eclipse.jetty.servlets;
 
-import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
@@ -48,6 +47,9 @@ import javax.servlet.http.HttpServletRequestWrapper;
 import javax.servlet.http.Part;
 
 import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.server.MultiPartFormDataParser;
+import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.LazyList;
 import org.eclipse.jetty.util.MultiMap;
@@ -147,7 +149,7 @@ public class MultiPartFilter implements Filter
             return;
         }
 
-        InputStream in = new BufferedInputStream(request.getInputStream());
+        InputStream in = request.getInputStream();
         String content_type=srequest.getContentType();
 
         //Get current parameters so we can merge into them
@@ -162,7 +164,9 @@ public class MultiPartFilter implements Filter
         }
 
         MultipartConfigElement config = new MultipartConfigElement(tempdir.getCanonicalPath(), _maxFileSize, _maxRequestSize, _fileOutputBuffer);
-        MultiPartInputStreamParser mpis = new MultiPartInputStreamParser(in, content_type, config, tempdir);
+        Request baseRequest = Request.getBaseRequest(request);
+        ByteBufferPool bufferPool = baseRequest == null || baseRequest.getHttpChannel() == null ? null : baseRequest.getHttpChannel().getByteBufferPool();
+        MultiPartInputStreamParser mpis = new MultiPartFormDataParser(in, content_type, config, tempdir, bufferPool);
         mpis.setDeleteOnExit(_deleteFiles);
         request.setAttribute(MULTIPART, mpis);
         try
@@ -769,14 +769,14 @@ public class MultipartFilterTest
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         baos.write(content.getBytes());
 
-        for (int i=0; i< 8500; i++) //create content that will overrun default buffer size of BufferedInputStream
+        for (int i=0; i< 8500; i++) //create a delimiter line without a line terminator
         {
             baos.write('a');
         }
         request.setContent(baos.toString());
 
         response = HttpTester.parseResponse(tester.getResponses(request.generate()));
-        assertTrue(response.getContent().contains("Buffer size exceeded"));
+        assertTrue(response.getContent().contains("Bad multipart delimiter"));
         assertEquals(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, response.getStatus());
     }
 
@@ -24,7 +24,6 @@ import java.net.ServerSocket;
 import java.net.SocketAddress;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 
@@ -370,6 +369,7 @@ public class UnixSocketConnector extends AbstractConnector
         public UnixSocketConnectorManager(Executor executor, Scheduler scheduler, int selectors)
         {
             super(executor, scheduler, selectors);
+            setSelectorProvider(NativeSelectorProvider.getInstance());
         }
 
         @Override
@@ -378,12 +378,6 @@ public class UnixSocketConnector extends AbstractConnector
             UnixSocketConnector.this.accepted((UnixSocketChannel)channel);
         }
 
-        @Override
-        protected Selector newSelector() throws IOException
-        {
-            return NativeSelectorProvider.getInstance().openSelector();
-        }
-        
         @Override
         protected EndPoint newEndPoint(SelectableChannel channel, ManagedSelector selector, SelectionKey selectionKey) throws IOException
         {
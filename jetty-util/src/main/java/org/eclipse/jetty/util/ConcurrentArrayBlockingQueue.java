@@ -0,0 +1,283 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.util;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>A lock-free, unbounded implementation of {@link BlockingQueue} based on
+ * {@link ConcurrentArrayQueue}.</p>
+ * <p>Offers and polls never take a lock, so that concurrent producers and consumers
+ * do not serialize as they do with {@link BlockingArrayQueue}.
+ * A consumer that finds the queue empty first spins, polling the queue for a
+ * short while, and only then parks; producers only pay the cost of waking up a
+ * consumer when a consumer is parked.</p>
+ * <p>Parked consumers are woken up in LIFO order, so that the most recently
+ * active threads, which are more likely to have a hot CPU cache, are reused
+ * first, while the other threads stay idle.</p>
+ *
+ * @param <E> the queue element type
+ */
+public class ConcurrentArrayBlockingQueue<E> extends ConcurrentArrayQueue<E> implements BlockingQueue<E>
+{
+    private static final int DEFAULT_SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 256 : 0;
+
+    private final ConcurrentLinkedDeque<Waiter> _waiters = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger _size = new AtomicInteger();
+    private final int _spins;
+
+    public ConcurrentArrayBlockingQueue()
+    {
+        this(DEFAULT_BLOCK_SIZE, DEFAULT_SPINS);
+    }
+
+    /**
+     * @param blockSize the number of elements of the array blocks
+     * @param spins the number of times an empty queue is polled before parking, or 0 to park immediately
+     */
+    public ConcurrentArrayBlockingQueue(int blockSize, int spins)
+    {
+        super(blockSize);
+        if (spins < 0)
+            throw new IllegalArgumentException("spins < 0");
+        _spins = spins;
+    }
+
+    /**
+     * @return the number of times an empty queue is polled before parking
+     */
+    public int getSpins()
+    {
+        return _spins;
+    }
+
+    @Override
+    public boolean offer(E item)
+    {
+        boolean result = super.offer(item);
+        if (result)
+        {
+            _size.incrementAndGet();
+            signal();
+        }
+        return result;
+    }
+
+    @Override
+    public E poll()
+    {
+        E item = super.poll();
+        if (item != null)
+            _size.decrementAndGet();
+        return item;
+    }
+
+    @Override
+    public boolean remove(Object o)
+    {
+        boolean result = super.remove(o);
+        if (result)
+            _size.decrementAndGet();
+        return result;
+    }
+
+    /**
+     * <p>Unlike {@link ConcurrentArrayQueue#size()}, this is a constant time operation,
+     * since the size is tracked by a counter, which may be transiently inaccurate
+     * while elements are concurrently offered and polled.</p>
+     *
+     * @return the number of elements in this queue
+     */
+    @Override
+    public int size()
+    {
+        return Math.max(0, _size.get());
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return peek() == null;
+    }
+
+    @Override
+    public void put(E item) throws InterruptedException
+    {
+        offer(item);
+    }
+
+    @Override
+    public boolean offer(E item, long timeout, TimeUnit unit) throws InterruptedException
+    {
+        return offer(item);
+    }
+
+    @Override
+    public E take() throws InterruptedException
+    {
+        return poll(-1);
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        return poll(unit.toNanos(timeout));
+    }
+
+    @Override
+    public int remainingCapacity()
+    {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c)
+    {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements)
+    {
+        Objects.requireNonNull(c);
+        if (c == this)
+            throw new IllegalArgumentException();
+        int count = 0;
+        while (count < maxElements)
+        {
+            E item = poll();
+            if (item == null)
+                break;
+            c.add(item);
+            ++count;
+        }
+        return count;
+    }
+
+    /**
+     * @param timeout the nanoseconds to wait for an element, or a negative value to wait forever
+     * @return the head element, or null if the timeout expired
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    private E poll(long timeout) throws InterruptedException
+    {
+        E item = poll();
+        if (item != null)
+            return item;
+
+        for (int i = 0; i < _spins; ++i)
+        {
+            item = poll();
+            if (item != null)
+                return item;
+        }
+
+        long deadline = timeout < 0 ? 0 : System.nanoTime() + timeout;
+        while (true)
+        {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+
+            // Register before checking the queue again, so that a producer
+            // that offers an element after the check will find the waiter.
+            Waiter waiter = new Waiter();
+            _waiters.offerFirst(waiter);
+
+            item = poll();
+            if (item != null)
+            {
+                leave(waiter);
+                return item;
+            }
+
+            if (timeout < 0)
+            {
+                LockSupport.park(this);
+            }
+            else
+            {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0)
+                {
+                    leave(waiter);
+                    return poll();
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+
+            if (!waiter.compareAndSet(Waiter.WAITING, Waiter.LEFT))
+            {
+                // Signalled, try to poll the element that was offered.
+                item = poll();
+                if (item != null)
+                    return item;
+            }
+            else
+            {
+                _waiters.remove(waiter);
+            }
+        }
+    }
+
+    /**
+     * <p>Removes a waiter that no longer needs to be signalled. If it has been
+     * signalled concurrently, the signal is passed on to another waiter,
+     * so that an offered element is not left in the queue while a consumer is parked.</p>
+     *
+     * @param waiter the waiter that leaves
+     */
+    private void leave(Waiter waiter)
+    {
+        if (waiter.compareAndSet(Waiter.WAITING, Waiter.LEFT))
+            _waiters.remove(waiter);
+        else if (!isEmpty())
+            signal();
+    }
+
+    private void signal()
+    {
+        while (true)
+        {
+            Waiter waiter = _waiters.pollFirst();
+            if (waiter == null)
+                return;
+            if (waiter.compareAndSet(Waiter.WAITING, Waiter.SIGNALLED))
+            {
+                LockSupport.unpark(waiter._thread);
+                return;
+            }
+        }
+    }
+
+    private static class Waiter extends AtomicInteger
+    {
+        private static final int WAITING = 0;
+        private static final int SIGNALLED = 1;
+        private static final int LEFT = 2;
+
+        private final Thread _thread = Thread.currentThread();
+    }
+}
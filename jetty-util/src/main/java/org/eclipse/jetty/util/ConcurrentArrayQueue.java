@@ -220,7 +220,10 @@ public class ConcurrentArrayQueue<T> extends AbstractQueue<T>
                         }
                         else
                         {
-                            // Concurrent remove, try next index
+                            // Concurrent remove, try next index.
+                            // The element has been removed by another thread,
+                            // so it must not be returned if the queue is now empty.
+                            result = null;
                             ++head;
                         }
                     }
@@ -456,34 +456,9 @@ public class MultiPartInputStreamParser
         if (_contentType == null || !_contentType.startsWith("multipart/form-data"))
             return;
 
-        //sort out the location to which to write the files
+        initTmpDir();
 
-        if (_config.getLocation() == null)
-            _tmpDir = _contextTmpDir;
-        else if ("".equals(_config.getLocation()))
-            _tmpDir = _contextTmpDir;
-        else
-        {
-            File f = new File (_config.getLocation());
-            if (f.isAbsolute())
-                _tmpDir = f;
-            else
-                _tmpDir = new File (_contextTmpDir, _config.getLocation());
-        }
-
-        if (!_tmpDir.exists())
-            _tmpDir.mkdirs();
-
-        String contentTypeBoundary = "";
-        int bstart = _contentType.indexOf("boundary=");
-        if (bstart >= 0)
-        {
-            int bend = _contentType.indexOf(";", bstart);
-            bend = (bend < 0? _contentType.length(): bend);
-            contentTypeBoundary = QuotedStringTokenizer.unquote(value(_contentType.substring(bstart,bend)).trim());
-        }
-
-        String boundary="--"+contentTypeBoundary;
+        String boundary="--"+getBoundary();
         String lastBoundary=boundary+"--";
         byte[] byteBoundary=lastBoundary.getBytes(StandardCharsets.ISO_8859_1);
 
@@ -746,6 +721,46 @@ public class MultiPartInputStreamParser
             throw new IOException("Incomplete parts");
     }
 
+    /**
+     * Sort out the location to which to write the files.
+     */
+    protected void initTmpDir()
+    {
+        if (_config.getLocation() == null)
+            _tmpDir = _contextTmpDir;
+        else if ("".equals(_config.getLocation()))
+            _tmpDir = _contextTmpDir;
+        else
+        {
+            File f = new File (_config.getLocation());
+            if (f.isAbsolute())
+                _tmpDir = f;
+            else
+                _tmpDir = new File (_contextTmpDir, _config.getLocation());
+        }
+
+        if (!_tmpDir.exists())
+            _tmpDir.mkdirs();
+    }
+
+
+    /**
+     * @return the boundary parameter of the content type, or the empty string if none
+     */
+    protected String getBoundary()
+    {
+        String contentTypeBoundary = "";
+        int bstart = _contentType.indexOf("boundary=");
+        if (bstart >= 0)
+        {
+            int bend = _contentType.indexOf(";", bstart);
+            bend = (bend < 0? _contentType.length(): bend);
+            contentTypeBoundary = QuotedStringTokenizer.unquote(value(_contentType.substring(bstart,bend)).trim());
+        }
+        return contentTypeBoundary;
+    }
+
+
     public void setDeleteOnExit(boolean deleteOnExit)
     {
         _deleteOnExit = deleteOnExit;
@@ -759,7 +774,7 @@ public class MultiPartInputStreamParser
 
 
     /* ------------------------------------------------------------ */
-    private String value(String nameEqualsValue)
+    protected String value(String nameEqualsValue)
     {
         int idx = nameEqualsValue.indexOf('=');
         String value = nameEqualsValue.substring(idx+1).trim();
@@ -768,7 +783,7 @@ public class MultiPartInputStreamParser
 
 
     /* ------------------------------------------------------------ */
-    private String filenameValue(String nameEqualsValue)
+    protected String filenameValue(String nameEqualsValue)
     {
         int idx = nameEqualsValue.indexOf('=');
         String value = nameEqualsValue.substring(idx+1).trim();
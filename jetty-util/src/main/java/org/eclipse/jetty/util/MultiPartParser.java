@@ -0,0 +1,451 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>A non-blocking parser of MIME multipart content, such as "multipart/form-data".</p>
+ * <p>Content is passed to {@link #parse(ByteBuffer, boolean)} in as many buffers as it
+ * arrives, and the parser notifies a {@link Handler} of the parts, of their headers and
+ * of their content. The content of a part is passed to the handler as slices of the
+ * parsed buffers, without copying, so that it can be stored in memory or written to a
+ * file as it arrives.</p>
+ * <p>Delimiters are searched with a {@link SearchPattern}, so that the bytes of the
+ * content are mostly skipped rather than compared one by one, and a delimiter that
+ * spans two buffers is withheld from the content until it is known whether it completes.</p>
+ * <p>A delimiter is "--" followed by the boundary at the start of a line; lines may end
+ * with CRLF, LF or CR, and the line ending that precedes a delimiter is not part of
+ * the content. As the content of a part may start with a LF, the CR that ends the part
+ * headers is only taken as part of a CRLF once a CRLF has been seen. A preamble before the first delimiter and an epilogue after the close
+ * delimiter are ignored.</p>
+ * <p>This class is not thread safe.</p>
+ */
+public class MultiPartParser
+{
+    /**
+     * <p>The listener of the parsing events.</p>
+     * <p>The buffers passed to {@link #content(ByteBuffer, boolean)} are only valid for the
+     * duration of the call, so the content must be consumed or copied before returning.</p>
+     */
+    public interface Handler
+    {
+        default void startPart() throws IOException
+        {
+        }
+
+        default void parsedField(String name, String value) throws IOException
+        {
+        }
+
+        default void headerComplete() throws IOException
+        {
+        }
+
+        default void content(ByteBuffer buffer, boolean last) throws IOException
+        {
+        }
+
+        default void messageComplete() throws IOException
+        {
+        }
+    }
+
+    private enum State
+    {
+        PREAMBLE, DELIMITER, HEADER, BODY, EPILOGUE
+    }
+
+    private static final int EOL_NONE = 0;
+    private static final int EOL_CR = 1;
+    private static final int EOL_LF = 2;
+    private static final int EOL_CRLF = 3;
+    private static final byte[][] EOL_BYTES = new byte[][]{{}, {'\r'}, {'\n'}, {'\r', '\n'}};
+
+    private final Handler _handler;
+    private final SearchPattern _delimiter;
+    private final int _maxHeaderSize;
+    private final ByteArrayOutputStream2 _line = new ByteArrayOutputStream2(128);
+    private State _state = State.PREAMBLE;
+    private byte[] _scratch;
+    private boolean _content;
+    private int _partial;
+    private int _eol;
+    private boolean _lineStart = true;
+    private int _dashes;
+    private boolean _skipLF;
+    private boolean _seenCRLF;
+    private int _headerSize;
+    private String _fieldName;
+    private String _fieldValue;
+
+    public MultiPartParser(Handler handler, String boundary)
+    {
+        this(handler, boundary, 16 * 1024);
+    }
+
+    /**
+     * @param handler the handler of the parsing events
+     * @param boundary the boundary parameter of the content type
+     * @param maxHeaderSize the maximum size in bytes of the headers of a part
+     */
+    public MultiPartParser(Handler handler, String boundary, int maxHeaderSize)
+    {
+        _handler = handler;
+        _delimiter = SearchPattern.compile("--" + boundary);
+        _maxHeaderSize = maxHeaderSize;
+    }
+
+    /**
+     * @return whether the close delimiter has been parsed
+     */
+    public boolean isComplete()
+    {
+        return _state == State.EPILOGUE;
+    }
+
+    /**
+     * <p>Parses all the remaining bytes of the given buffer.</p>
+     *
+     * @param buffer the content to parse
+     * @param last whether the buffer is the last of the content
+     * @return whether the close delimiter has been parsed
+     * @throws IOException if the content is not valid multipart content,
+     * or if the handler fails to process the content
+     */
+    public boolean parse(ByteBuffer buffer, boolean last) throws IOException
+    {
+        if (buffer.hasRemaining())
+        {
+            _content = true;
+            if (buffer.hasArray())
+            {
+                int offset = buffer.arrayOffset() + buffer.position();
+                int end = offset + buffer.remaining();
+                buffer.position(buffer.limit());
+                parse(buffer.array(), offset, end);
+            }
+            else
+            {
+                if (_scratch == null)
+                    _scratch = new byte[4096];
+                while (buffer.hasRemaining())
+                {
+                    int length = Math.min(buffer.remaining(), _scratch.length);
+                    buffer.get(_scratch, 0, length);
+                    parse(_scratch, 0, length);
+                }
+            }
+        }
+
+        if (last && _state != State.EPILOGUE)
+        {
+            if (!_content)
+                throw new IOException("Missing content for multipart request");
+            if (_state == State.PREAMBLE)
+                throw new IOException("Missing initial multi part boundary");
+            throw new IOException("Incomplete parts");
+        }
+
+        return isComplete();
+    }
+
+    private void parse(byte[] data, int offset, int end) throws IOException
+    {
+        while (offset < end)
+        {
+            switch (_state)
+            {
+                case PREAMBLE:
+                case BODY:
+                    offset = parseBody(data, offset, end);
+                    break;
+
+                case DELIMITER:
+                    offset = parseDelimiter(data, offset, end);
+                    break;
+
+                case HEADER:
+                    offset = parseHeader(data, offset, end);
+                    break;
+
+                case EPILOGUE:
+                    return;
+
+                default:
+                    throw new IllegalStateException(_state.toString());
+            }
+        }
+    }
+
+    private int parseBody(byte[] data, int offset, int end) throws IOException
+    {
+        int delimiterLength = _delimiter.getLength();
+
+        // Skip the LF of a CRLF that ended the part headers.
+        if (_skipLF)
+        {
+            _skipLF = false;
+            if (_seenCRLF && data[offset] == '\n')
+                return offset + 1;
+        }
+
+        // Complete a delimiter that was started at the end of the previous buffer.
+        if (_partial > 0)
+        {
+            int matched = _delimiter.startsWith(data, offset, end - offset, _partial);
+            if (matched == delimiterLength)
+            {
+                offset += delimiterLength - _partial;
+                delimiter(null, 0, 0);
+                return offset;
+            }
+            if (matched > 0)
+            {
+                _partial = matched;
+                return end;
+            }
+            // Not a delimiter, the withheld bytes are content.
+            content(EOL_BYTES[_eol], 0, EOL_BYTES[_eol].length, false);
+            byte[] withheld = new byte[_partial];
+            for (int i = 0; i < withheld.length; ++i)
+                withheld[i] = _delimiter.byteAt(i);
+            content(withheld, 0, withheld.length, false);
+            _partial = 0;
+            _eol = EOL_NONE;
+            _lineStart = false;
+        }
+        else if (_eol != EOL_NONE)
+        {
+            if (_eol == EOL_CR && data[offset] == '\n')
+            {
+                _eol = EOL_CRLF;
+                return offset + 1;
+            }
+            int matched = _delimiter.startsWith(data, offset, end - offset, 0);
+            if (matched == delimiterLength)
+            {
+                delimiter(null, 0, 0);
+                return offset + delimiterLength;
+            }
+            if (matched > 0 && offset + matched == end)
+            {
+                _partial = matched;
+                return end;
+            }
+            // Not a delimiter, the withheld line ending is content.
+            content(EOL_BYTES[_eol], 0, EOL_BYTES[_eol].length, false);
+            _eol = EOL_NONE;
+            _lineStart = true;
+        }
+
+        // Search for a complete delimiter at the start of a line.
+        int from = offset;
+        while (true)
+        {
+            int index = _delimiter.match(data, from, end - from);
+            if (index < 0)
+                break;
+            if (isLineStart(data, offset, index))
+            {
+                delimiter(data, offset, index);
+                return index + delimiterLength;
+            }
+            from = index + 1;
+        }
+
+        // Withhold a partial delimiter and the line ending before it,
+        // as they are not content if the delimiter completes.
+        int tail = end - _delimiter.endsWith(data, offset, end - offset);
+        if (tail < end && !isLineStart(data, offset, tail))
+            tail = end;
+        int contentEnd = tail;
+        int eol = EOL_NONE;
+        if (contentEnd > offset && data[contentEnd - 1] == '\n')
+        {
+            eol = EOL_LF;
+            --contentEnd;
+            if (contentEnd > offset && data[contentEnd - 1] == '\r')
+            {
+                eol = EOL_CRLF;
+                --contentEnd;
+            }
+        }
+        else if (contentEnd > offset && data[contentEnd - 1] == '\r')
+        {
+            eol = EOL_CR;
+            --contentEnd;
+        }
+
+        if (contentEnd > offset)
+        {
+            content(data, offset, contentEnd - offset, false);
+            _lineStart = false;
+        }
+        _partial = end - tail;
+        _eol = eol;
+        if (eol != EOL_NONE)
+            _lineStart = true;
+        return end;
+    }
+
+    private boolean isLineStart(byte[] data, int offset, int index)
+    {
+        if (index == offset)
+            return _lineStart;
+        byte previous = data[index - 1];
+        return previous == '\n' || previous == '\r';
+    }
+
+    private void delimiter(byte[] data, int offset, int index) throws IOException
+    {
+        if (data != null)
+        {
+            // Strip the line ending that is part of the delimiter.
+            int contentEnd = index;
+            if (contentEnd > offset && data[contentEnd - 1] == '\n')
+                --contentEnd;
+            if (contentEnd > offset && data[contentEnd - 1] == '\r')
+                --contentEnd;
+            if (contentEnd > offset)
+                content(data, offset, contentEnd - offset, false);
+        }
+        if (_state == State.BODY)
+            _handler.content(BufferUtil.EMPTY_BUFFER, true);
+        _partial = 0;
+        _eol = EOL_NONE;
+        _dashes = 0;
+        _state = State.DELIMITER;
+    }
+
+    private void content(byte[] data, int offset, int length, boolean last) throws IOException
+    {
+        if (_state == State.BODY && length > 0)
+            _handler.content(ByteBuffer.wrap(data, offset, length), last);
+    }
+
+    private int parseDelimiter(byte[] data, int offset, int end) throws IOException
+    {
+        while (offset < end)
+        {
+            byte b = data[offset++];
+            if (b == '-')
+            {
+                if (++_dashes == 2)
+                {
+                    _state = State.EPILOGUE;
+                    _handler.messageComplete();
+                    return end;
+                }
+            }
+            else if (_dashes > 0)
+            {
+                throw new IOException("Bad multipart close delimiter");
+            }
+            else if (b == '\r' || b == '\n')
+            {
+                _skipLF = b == '\r';
+                _state = State.HEADER;
+                _headerSize = 0;
+                _line.reset();
+                _handler.startPart();
+                return offset;
+            }
+            else if (b != ' ' && b != '\t')
+            {
+                throw new IOException("Bad multipart delimiter");
+            }
+        }
+        return offset;
+    }
+
+    private int parseHeader(byte[] data, int offset, int end) throws IOException
+    {
+        while (offset < end)
+        {
+            byte b = data[offset++];
+            if (_skipLF)
+            {
+                _skipLF = false;
+                if (b == '\n')
+                {
+                    _seenCRLF = true;
+                    continue;
+                }
+            }
+
+            if (++_headerSize > _maxHeaderSize)
+                throw new IOException("Multipart part headers too large");
+
+            if (b != '\r' && b != '\n')
+            {
+                _line.write(b);
+                continue;
+            }
+
+            _skipLF = b == '\r';
+            if (_line.size() == 0)
+            {
+                field();
+                _state = State.BODY;
+                _lineStart = true;
+                _handler.headerComplete();
+                return offset;
+            }
+
+            String line = _line.toString(StandardCharsets.UTF_8);
+            _line.reset();
+            char first = line.charAt(0);
+            if ((first == ' ' || first == '\t') && _fieldName != null)
+            {
+                // Folded header value.
+                _fieldValue = _fieldValue + ' ' + line.trim();
+                continue;
+            }
+
+            field();
+            int colon = line.indexOf(':');
+            if (colon > 0)
+            {
+                _fieldName = line.substring(0, colon).trim();
+                _fieldValue = line.substring(colon + 1).trim();
+            }
+        }
+        return offset;
+    }
+
+    private void field() throws IOException
+    {
+        if (_fieldName != null)
+        {
+            _handler.parsedField(_fieldName, _fieldValue);
+            _fieldName = null;
+            _fieldValue = null;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,partial=%d}", getClass().getSimpleName(), hashCode(), _state, _partial);
+    }
+}
@@ -0,0 +1,33 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+/**
+ * <p>A resource that can be retained, so that it is not disposed
+ * of until every retainer has released it.</p>
+ */
+public interface Retainable
+{
+    /**
+     * <p>Retains this resource, incrementing its reference count.</p>
+     * <p>Every call to this method must be paired with a call that
+     * releases the resource.</p>
+     */
+    public void retain();
+}
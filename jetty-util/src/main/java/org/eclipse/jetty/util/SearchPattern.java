@@ -0,0 +1,167 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>Searches for a fixed pattern of bytes using the Boyer-Moore-Horspool algorithm.</p>
+ * <p>The pattern is compiled once into a table of shifts, indexed by the value of the
+ * byte aligned with the last byte of the pattern, so that most bytes of the data are
+ * skipped rather than compared when the pattern is long.</p>
+ * <p>The {@link #endsWith(byte[], int, int)} and {@link #startsWith(byte[], int, int, int)}
+ * methods allow to find patterns that span the boundaries of several chunks of data.</p>
+ * <p>Instances are immutable and thread safe.</p>
+ */
+public class SearchPattern
+{
+    private final byte[] _pattern;
+    private final int[] _shifts = new int[256];
+
+    /**
+     * @param pattern the pattern to search for
+     * @return a compiled search pattern
+     */
+    public static SearchPattern compile(byte[] pattern)
+    {
+        return new SearchPattern(pattern.clone());
+    }
+
+    /**
+     * @param pattern the pattern to search for, encoded as ISO-8859-1
+     * @return a compiled search pattern
+     */
+    public static SearchPattern compile(String pattern)
+    {
+        return new SearchPattern(pattern.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private SearchPattern(byte[] pattern)
+    {
+        if (pattern.length == 0)
+            throw new IllegalArgumentException("Empty pattern");
+        _pattern = pattern;
+        int last = pattern.length - 1;
+        for (int i = 0; i < _shifts.length; ++i)
+            _shifts[i] = pattern.length;
+        for (int i = 0; i < last; ++i)
+            _shifts[pattern[i] & 0xFF] = last - i;
+    }
+
+    /**
+     * @return the length of the pattern
+     */
+    public int getLength()
+    {
+        return _pattern.length;
+    }
+
+    /**
+     * @param index the index of the byte
+     * @return the byte of the pattern at the given index
+     */
+    public byte byteAt(int index)
+    {
+        return _pattern[index];
+    }
+
+    /**
+     * <p>Searches the data for the first complete occurrence of the pattern.</p>
+     *
+     * @param data the data to search
+     * @param offset the index of the first byte to search
+     * @param length the number of bytes to search
+     * @return the index of the first occurrence of the pattern, or -1 if not found
+     */
+    public int match(byte[] data, int offset, int length)
+    {
+        checkBounds(data, offset, length);
+        int last = _pattern.length - 1;
+        int end = offset + length - _pattern.length;
+        int skip = offset;
+        while (skip <= end)
+        {
+            int i = last;
+            while (data[skip + i] == _pattern[i])
+            {
+                if (i == 0)
+                    return skip;
+                --i;
+            }
+            skip += _shifts[data[skip + last] & 0xFF];
+        }
+        return -1;
+    }
+
+    /**
+     * <p>Searches for the longest suffix of the data that is a proper prefix of the pattern,
+     * that is a partial occurrence of the pattern that may complete in the next chunk.</p>
+     *
+     * @param data the data to search
+     * @param offset the index of the first byte to search
+     * @param length the number of bytes to search
+     * @return the length of the partial occurrence at the end of the data, or 0 if none
+     */
+    public int endsWith(byte[] data, int offset, int length)
+    {
+        checkBounds(data, offset, length);
+        int end = offset + length;
+        int start = Math.max(offset, end - _pattern.length + 1);
+        for (int i = start; i < end; ++i)
+        {
+            int matched = end - i;
+            int j = 0;
+            while (j < matched && data[i + j] == _pattern[j])
+                ++j;
+            if (j == matched)
+                return matched;
+        }
+        return 0;
+    }
+
+    /**
+     * <p>Continues a partial occurrence of the pattern found at the end of the previous chunk.</p>
+     *
+     * @param data the data to search
+     * @param offset the index of the first byte to search
+     * @param length the number of bytes to search
+     * @param matched the number of bytes of the pattern already matched
+     * @return the number of bytes of the pattern matched after the data, which is
+     * the pattern length if the occurrence is complete, or 0 if the data does not
+     * continue the partial occurrence
+     */
+    public int startsWith(byte[] data, int offset, int length, int matched)
+    {
+        checkBounds(data, offset, length);
+        int count = Math.min(length, _pattern.length - matched);
+        for (int i = 0; i < count; ++i)
+        {
+            if (data[offset + i] != _pattern[matched + i])
+                return 0;
+        }
+        return matched + count;
+    }
+
+    private void checkBounds(byte[] data, int offset, int length)
+    {
+        if (offset < 0 || length < 0 || offset + length > data.length)
+            throw new IndexOutOfBoundsException("offset=" + offset + ",length=" + length + ",data.length=" + data.length);
+    }
+}
@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
@@ -645,6 +646,38 @@ public class UrlEncoded extends MultiMap<String> implements Cloneable
         }
     }
     
+    /* -------------------------------------------------------------- */
+    /** Decoded parameters to Map.
+     * <p>Runs of bytes that need no decoding are copied in bulk: see {@link UrlEncodedDecoder}
+     * to decode content that is received in several buffers.</p>
+     * @param buffer the buffer containing the encoded parameters, consumed by this method
+     * @param map the MultiMap to decode into
+     * @param charset the charset to use for decoding, or null for {@link #ENCODING}
+     * @param maxLength the maximum length of the form to decode, or -1 for no limit
+     * @param maxKeys the maximum number of keys to decode, or -1 for no limit
+     */
+    public static void decodeTo(ByteBuffer buffer, MultiMap<String> map, Charset charset, int maxLength, int maxKeys)
+    {
+        if (charset==null)
+            charset=ENCODING;
+
+        synchronized(map)
+        {
+            if (StandardCharsets.UTF_16.equals(charset))
+            {
+                if (maxLength>=0 && buffer.remaining()>maxLength)
+                    throw new IllegalStateException(String.format("Form too large: %d > %d",buffer.remaining(),maxLength));
+                decodeTo(BufferUtil.toString(buffer,charset),map,charset);
+                buffer.position(buffer.limit());
+                return;
+            }
+
+            UrlEncodedDecoder decoder = new UrlEncodedDecoder(map,charset,maxLength,maxKeys,new UrlEncodedDecoder.KeyCache());
+            decoder.decode(buffer);
+            decoder.end();
+        }
+    }
+
     /* -------------------------------------------------------------- */
     public static void decodeUtf16To(InputStream in, MultiMap<String> map, int maxLength, int maxKeys) throws IOException
     {
@@ -0,0 +1,405 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>A streaming decoder of MIME "x-www-form-urlencoded" content.</p>
+ * <p>Content is passed to {@link #decode(ByteBuffer)} in as many buffers as it arrives,
+ * and {@link #end()} must be called once all the content has been decoded.
+ * Unlike the {@link java.io.InputStream} based methods of {@link UrlEncoded}, runs of bytes
+ * that need no decoding are copied in bulk, and percent-escapes may span buffers.
+ * Names and values are only converted to strings once complete, and names are
+ * obtained from a {@link KeyCache} so that the names of repeated or recurring
+ * fields are not allocated again.</p>
+ * <p>The charset must be ASCII compatible, as the delimiters and escapes are
+ * looked for in the undecoded bytes: UTF-16 content must be decoded with
+ * {@link UrlEncoded#decodeUtf16To(java.io.InputStream, MultiMap, int, int)}.</p>
+ * <p>This class is not thread safe.</p>
+ */
+public class UrlEncodedDecoder
+{
+    private static final int TEXT = 0;
+    private static final int PERCENT = 1;
+    private static final int HEX = 2;
+    private static final int UNICODE = 3;
+
+    private final MultiMap<String> _map;
+    private final Charset _charset;
+    private final int _maxLength;
+    private final int _maxKeys;
+    private final KeyCache _keys;
+    private final byte[] _replacement;
+    private byte[] _bytes = new byte[64];
+    private byte[] _scratch;
+    private int _size;
+    private String _key;
+    private int _state = TEXT;
+    private int _code;
+    private int _digits;
+    private char _highSurrogate;
+    private long _length;
+
+    public UrlEncodedDecoder(MultiMap<String> map, Charset charset)
+    {
+        this(map, charset, -1, -1, new KeyCache());
+    }
+
+    /**
+     * @param map the map to add the decoded fields to
+     * @param charset the charset of the content, or null for {@link UrlEncoded#ENCODING}
+     * @param maxLength the maximum length of the content, or -1 for no limit
+     * @param maxKeys the maximum number of keys of the map, or -1 for no limit
+     * @param keys the cache of keys, which may be shared by decoders that are used by the same thread
+     */
+    public UrlEncodedDecoder(MultiMap<String> map, Charset charset, int maxLength, int maxKeys, KeyCache keys)
+    {
+        _map = map;
+        _charset = charset == null ? UrlEncoded.ENCODING : charset;
+        _maxLength = maxLength;
+        _maxKeys = maxKeys;
+        _keys = keys;
+        _replacement = StandardCharsets.UTF_8.equals(_charset) ? Utf8Appendable.REPLACEMENT_UTF8 : "?".getBytes(_charset);
+    }
+
+    /**
+     * <p>Decodes all the remaining bytes of the given buffer.</p>
+     *
+     * @param buffer the content to decode
+     * @throws IllegalStateException if the content is too large or has too many keys
+     */
+    public void decode(ByteBuffer buffer)
+    {
+        int remaining = buffer.remaining();
+        _length += remaining;
+        if (_maxLength >= 0 && _length > _maxLength)
+            throw new IllegalStateException(String.format("Form too large: %d > %d", _length, _maxLength));
+
+        if (buffer.hasArray())
+        {
+            int offset = buffer.arrayOffset() + buffer.position();
+            decode(buffer.array(), offset, offset + remaining);
+            buffer.position(buffer.limit());
+        }
+        else
+        {
+            if (_scratch == null)
+                _scratch = new byte[1024];
+            while (buffer.hasRemaining())
+            {
+                int length = Math.min(buffer.remaining(), _scratch.length);
+                buffer.get(_scratch, 0, length);
+                decode(_scratch, 0, length);
+            }
+        }
+    }
+
+    /**
+     * <p>Completes the decoding, adding the last field to the map.</p>
+     *
+     * @throws IllegalStateException if the content has too many keys
+     */
+    public void end()
+    {
+        if (_state != TEXT)
+        {
+            _state = TEXT;
+            append(_replacement, 0, _replacement.length);
+        }
+        field();
+    }
+
+    private void decode(byte[] bytes, int offset, int end)
+    {
+        int i = offset;
+        while (i < end)
+        {
+            byte b = bytes[i];
+            switch (_state)
+            {
+                case TEXT:
+                {
+                    int run = i;
+                    while (run < end && !isSpecial(bytes[run]))
+                        ++run;
+                    if (run > i)
+                    {
+                        append(bytes, i, run - i);
+                        i = run;
+                        continue;
+                    }
+
+                    switch (b)
+                    {
+                        case '&':
+                            field();
+                            break;
+                        case '=':
+                            if (_key == null)
+                            {
+                                flushSurrogate();
+                                _key = key();
+                                _size = 0;
+                            }
+                            else
+                            {
+                                append(b);
+                            }
+                            break;
+                        case '+':
+                            append((byte)' ');
+                            break;
+                        default:
+                            _state = PERCENT;
+                            break;
+                    }
+                    ++i;
+                    break;
+                }
+
+                case PERCENT:
+                {
+                    if (b == 'u')
+                    {
+                        _state = UNICODE;
+                        _code = 0;
+                        _digits = 4;
+                        ++i;
+                    }
+                    else if (hexDigit(b))
+                    {
+                        _state = HEX;
+                        _code = TypeUtil.convertHexDigit(b);
+                        ++i;
+                    }
+                    break;
+                }
+
+                case HEX:
+                {
+                    if (hexDigit(b))
+                    {
+                        _state = TEXT;
+                        append((byte)((_code << 4) + TypeUtil.convertHexDigit(b)));
+                        ++i;
+                    }
+                    break;
+                }
+
+                case UNICODE:
+                {
+                    if (hexDigit(b))
+                    {
+                        _code = (_code << 4) + TypeUtil.convertHexDigit(b);
+                        if (--_digits == 0)
+                        {
+                            _state = TEXT;
+                            unicode((char)_code);
+                        }
+                        ++i;
+                    }
+                    break;
+                }
+
+                default:
+                    throw new IllegalStateException();
+            }
+        }
+    }
+
+    private void unicode(char c)
+    {
+        if (Character.isLowSurrogate(c) && _highSurrogate != 0)
+        {
+            // Encode the surrogate pair as a single code point.
+            char[] pair = new char[]{_highSurrogate, c};
+            _highSurrogate = 0;
+            encode(pair);
+        }
+        else
+        {
+            flushSurrogate();
+            if (Character.isHighSurrogate(c))
+                _highSurrogate = c;
+            else
+                encode(new char[]{c});
+        }
+    }
+
+    private void flushSurrogate()
+    {
+        if (_highSurrogate != 0)
+        {
+            // A high surrogate without its low surrogate.
+            char[] lone = new char[]{_highSurrogate};
+            _highSurrogate = 0;
+            encode(lone);
+        }
+    }
+
+    private void encode(char[] chars)
+    {
+        byte[] encoded = new String(chars).getBytes(_charset);
+        append(encoded, 0, encoded.length);
+    }
+
+    private boolean hexDigit(byte b)
+    {
+        if ((b >= '0' && b <= '9') || (b >= 'a' && b <= 'f') || (b >= 'A' && b <= 'F'))
+            return true;
+        // Invalid escape: replace it, and decode the byte again as text.
+        _state = TEXT;
+        append(_replacement, 0, _replacement.length);
+        return false;
+    }
+
+    private static boolean isSpecial(byte b)
+    {
+        return b == '&' || b == '=' || b == '+' || b == '%';
+    }
+
+    private void field()
+    {
+        flushSurrogate();
+        if (_key != null)
+        {
+            _map.add(_key, _size == 0 ? "" : new String(_bytes, 0, _size, _charset));
+        }
+        else if (_size > 0)
+        {
+            _map.add(key(), "");
+        }
+        _key = null;
+        _size = 0;
+        if (_maxKeys > 0 && _map.size() > _maxKeys)
+            throw new IllegalStateException(String.format("Form with too many keys [%d > %d]", _map.size(), _maxKeys));
+    }
+
+    private String key()
+    {
+        return _keys.get(_bytes, _size, _charset);
+    }
+
+    private void append(byte b)
+    {
+        if (_highSurrogate != 0)
+            flushSurrogate();
+        if (_size == _bytes.length)
+            grow(1);
+        _bytes[_size++] = b;
+    }
+
+    private void append(byte[] bytes, int offset, int length)
+    {
+        if (_highSurrogate != 0)
+            flushSurrogate();
+        if (_size + length > _bytes.length)
+            grow(length);
+        System.arraycopy(bytes, offset, _bytes, _size, length);
+        _size += length;
+    }
+
+    private void grow(int length)
+    {
+        byte[] bytes = new byte[Math.max(_bytes.length * 2, _size + length)];
+        System.arraycopy(_bytes, 0, bytes, 0, _size);
+        _bytes = bytes;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,length=%d,key=%s}", getClass().getSimpleName(), hashCode(), _charset, _length, _key);
+    }
+
+    /**
+     * <p>A small, fixed size cache of decoded field names, indexed by the hash of their bytes.</p>
+     * <p>A cache may be reused across decoders, for example by all the requests of a connection,
+     * but is not thread safe.</p>
+     */
+    public static class KeyCache
+    {
+        private static final int MAX_KEY_LENGTH = 64;
+
+        private final byte[][] _bytes;
+        private final String[] _keys;
+        private final Charset[] _charsets;
+        private final int _mask;
+
+        public KeyCache()
+        {
+            this(64);
+        }
+
+        /**
+         * @param size the number of entries of the cache, rounded up to a power of 2
+         */
+        public KeyCache(int size)
+        {
+            int capacity = Integer.highestOneBit(Math.max(1, size));
+            if (capacity < size)
+                capacity <<= 1;
+            _bytes = new byte[capacity][];
+            _keys = new String[capacity];
+            _charsets = new Charset[capacity];
+            _mask = capacity - 1;
+        }
+
+        /**
+         * @param bytes the encoded name
+         * @param length the length of the encoded name
+         * @param charset the charset of the name
+         * @return a cached or a new string for the name
+         */
+        public String get(byte[] bytes, int length, Charset charset)
+        {
+            if (length == 0)
+                return "";
+            if (length > MAX_KEY_LENGTH)
+                return new String(bytes, 0, length, charset);
+
+            int hash = 0;
+            for (int i = 0; i < length; ++i)
+                hash = 31 * hash + bytes[i];
+            int index = (hash ^ (hash >>> 16)) & _mask;
+
+            byte[] cached = _bytes[index];
+            if (cached != null && cached.length == length && charset.equals(_charsets[index]))
+            {
+                int i = 0;
+                while (i < length && cached[i] == bytes[i])
+                    ++i;
+                if (i == length)
+                    return _keys[index];
+            }
+
+            String key = new String(bytes, 0, length, charset);
+            byte[] copy = new byte[length];
+            System.arraycopy(bytes, 0, copy, 0, length);
+            _bytes[index] = copy;
+            _keys[index] = key;
+            _charsets[index] = charset;
+            return key;
+        }
+    }
+}
@@ -20,6 +20,7 @@ package org.eclipse.jetty.util;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
@@ -35,6 +36,9 @@ import org.eclipse.jetty.util.log.Logger;
  * The UTF-8 decoding is done by this class and no additional buffers or Readers are used. The UTF-8 code was inspired by
  * http://bjoern.hoehrmann.de/utf-8/decoder/dfa/
  *
+ * The bulk append methods test 8 bytes at a time for the high bit, and append runs of ASCII
+ * bytes directly, so that only multibyte sequences go through the decoder state machine.
+ *
  * License information for Bjoern Hoehrmann's code:
  *
  * Copyright (c) 2008-2009 Bjoern Hoehrmann &lt;bjoern@hoehrmann.de&gt;
@@ -84,7 +88,11 @@ public abstract class Utf8Appendable
         12,36,12,12,12,12,12,12,12,12,12,12
     };
 
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final int MIN_ASCII_STRING = 8;
+
     private int _codep;
+    private AsciiView _asciiView;
 
     public Utf8Appendable(Appendable appendable)
     {
@@ -166,10 +174,47 @@ public abstract class Utf8Appendable
     {
         try
         {
-            while (buf.remaining() > 0)
+            // As for the byte by byte decoding, if a NotUtf8Exception
+            // is thrown the buffer is positioned after the invalid byte.
+            int end = buf.limit();
+            int i = buf.position();
+            if (buf.hasArray())
+            {
+                byte[] array = buf.array();
+                int offset = buf.arrayOffset();
+                while (i < end)
+                {
+                    if (_state == UTF8_ACCEPT && array[offset + i] >= 0)
+                    {
+                        int run = asciiRun(array, offset + i, offset + end);
+                        appendAscii(array, offset + i, run);
+                        i += run;
+                    }
+                    else
+                    {
+                        buf.position(i + 1);
+                        appendByte(array[offset + i++]);
+                    }
+                }
+            }
+            else
             {
-                appendByte(buf.get());
+                while (i < end)
+                {
+                    if (_state == UTF8_ACCEPT && buf.get(i) >= 0)
+                    {
+                        int run = asciiRun(buf, i, end);
+                        appendAscii(buf, i, run);
+                        i += run;
+                    }
+                    else
+                    {
+                        buf.position(i + 1);
+                        appendByte(buf.get(i++));
+                    }
+                }
             }
+            buf.position(end);
         }
         catch (IOException e)
         {
@@ -182,8 +227,20 @@ public abstract class Utf8Appendable
         try
         {
             int end = offset + length;
-            for (int i = offset; i < end; i++)
-                appendByte(b[i]);
+            int i = offset;
+            while (i < end)
+            {
+                if (_state == UTF8_ACCEPT && b[i] >= 0)
+                {
+                    int run = asciiRun(b, i, end);
+                    appendAscii(b, i, run);
+                    i += run;
+                }
+                else
+                {
+                    appendByte(b[i++]);
+                }
+            }
         }
         catch (IOException e)
         {
@@ -196,11 +253,26 @@ public abstract class Utf8Appendable
         try
         {
             int end = offset + length;
-            for (int i = offset; i < end; i++)
+            int i = offset;
+            while (i < end)
             {
-                if (length() > maxChars)
+                int chars = length();
+                if (chars > maxChars)
                     return false;
-                appendByte(b[i]);
+                if (_state == UTF8_ACCEPT && b[i] >= 0)
+                {
+                    // Each ASCII byte is a char, so append as many as
+                    // the byte by byte loop would have appended;
+                    // computed as a long since maxChars may be large.
+                    int limit = (int)Math.min(end, (long)i + maxChars - chars + 1);
+                    int run = asciiRun(b, i, limit);
+                    appendAscii(b, i, run);
+                    i += run;
+                }
+                else
+                {
+                    appendByte(b[i++]);
+                }
             }
             return true;
         }
@@ -210,6 +282,86 @@ public abstract class Utf8Appendable
         }
     }
 
+    /**
+     * @param b the bytes
+     * @param offset the offset of the first byte to test
+     * @param end the offset after the last byte to test
+     * @return the number of consecutive ASCII bytes from the offset
+     */
+    private static int asciiRun(byte[] b, int offset, int end)
+    {
+        int i = offset;
+        // Test 8 bytes at a time: their OR is negative if any has the high bit set.
+        while (i + 8 <= end)
+        {
+            if ((b[i] | b[i + 1] | b[i + 2] | b[i + 3] | b[i + 4] | b[i + 5] | b[i + 6] | b[i + 7]) < 0)
+                break;
+            i += 8;
+        }
+        while (i < end && b[i] >= 0)
+            ++i;
+        return i - offset;
+    }
+
+    private static int asciiRun(ByteBuffer buf, int offset, int end)
+    {
+        int i = offset;
+        // Test the high bit of 8 bytes at a time in a long word.
+        while (i + 8 <= end)
+        {
+            if ((buf.getLong(i) & HIGH_BITS) != 0)
+                break;
+            i += 8;
+        }
+        while (i < end && buf.get(i) >= 0)
+            ++i;
+        return i - offset;
+    }
+
+    private void appendAscii(ByteBuffer buf, int offset, int length) throws IOException
+    {
+        if (length < MIN_ASCII_STRING)
+        {
+            int end = offset + length;
+            for (int i = offset; i < end; ++i)
+                _appendable.append((char)buf.get(i));
+        }
+        else
+        {
+            // Append through a view of the buffer rather than copying the run
+            // to an array and then to a String.
+            AsciiView view = _asciiView;
+            if (view == null)
+                view = _asciiView = new AsciiView();
+            view._buffer = buf;
+            view._offset = offset;
+            view._length = length;
+            try
+            {
+                _appendable.append(view);
+            }
+            finally
+            {
+                view._buffer = null;
+            }
+        }
+    }
+
+    private void appendAscii(byte[] b, int offset, int length) throws IOException
+    {
+        if (length < MIN_ASCII_STRING)
+        {
+            int end = offset + length;
+            for (int i = offset; i < end; ++i)
+                _appendable.append((char)b[i]);
+        }
+        else
+        {
+            // Copying a whole run is much faster than appending char by char.
+            _appendable.append(new String(b, offset, length, StandardCharsets.ISO_8859_1));
+        }
+    }
+
     protected void appendByte(byte b) throws IOException
     {
 
@@ -305,4 +457,41 @@ public abstract class Utf8Appendable
         }
         return _appendable.toString();
     }
+
+    /**
+     * <p>A view of a run of ASCII bytes of a buffer as chars.</p>
+     */
+    private static class AsciiView implements CharSequence
+    {
+        private ByteBuffer _buffer;
+        private int _offset;
+        private int _length;
+
+        @Override
+        public int length()
+        {
+            return _length;
+        }
+
+        @Override
+        public char charAt(int index)
+        {
+            return (char)_buffer.get(_offset + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end)
+        {
+            return toString().subSequence(start, end);
+        }
+
+        @Override
+        public String toString()
+        {
+            char[] chars = new char[_length];
+            for (int i = 0; i < _length; ++i)
+                chars[i] = charAt(i);
+            return new String(chars);
+        }
+    }
 }
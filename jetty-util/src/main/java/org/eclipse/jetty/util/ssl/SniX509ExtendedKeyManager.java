@@ -24,6 +24,8 @@ import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.net.ssl.SNIMatcher;
 import javax.net.ssl.SSLEngine;
@@ -37,6 +39,10 @@ import org.eclipse.jetty.util.log.Logger;
 /**
  * <p>A {@link X509ExtendedKeyManager} that selects a key with an alias
  * retrieved from SNI information, delegating other processing to a nested X509ExtendedKeyManager.</p>
+ * <p>Keys and certificate chains added with {@link #addKey(String, PrivateKey, X509Certificate[])}
+ * are resolved directly from the SNI selected alias, without enumerating the aliases of the
+ * nested key manager, so that the cost of choosing a key does not depend on the number of
+ * certificates. Keys may be added and removed while the key manager is in use.</p>
  * <p>Can only be used on server side.</p>
  */
 public class SniX509ExtendedKeyManager extends X509ExtendedKeyManager
@@ -46,6 +52,7 @@ public class SniX509ExtendedKeyManager extends X509ExtendedKeyManager
     private static final Logger LOG = Log.getLogger(SniX509ExtendedKeyManager.class);
 
     private final X509ExtendedKeyManager _delegate;
+    private final Map<String,Key> _keys = new ConcurrentHashMap<>();
 
     public SniX509ExtendedKeyManager(X509ExtendedKeyManager keyManager)
     {
@@ -64,13 +71,31 @@ public class SniX509ExtendedKeyManager extends X509ExtendedKeyManager
         return _delegate.chooseEngineClientAlias(keyType,issuers,engine);
     }
 
-    protected String chooseServerAlias(String keyType, Principal[] issuers, Collection<SNIMatcher> matchers, SSLSession session)
+    /**
+     * <p>Adds a key and its certificate chain, to be chosen when the SNI information selects the given alias.</p>
+     *
+     * @param alias the alias of the key
+     * @param key the private key
+     * @param chain the certificate chain, starting with the certificate of the key
+     */
+    public void addKey(String alias, PrivateKey key, X509Certificate[] chain)
     {
-        // Look for the aliases that are suitable for the keytype and issuers
-        String[] aliases = _delegate.getServerAliases(keyType,issuers);
-        if (aliases==null || aliases.length==0)
-            return null;
+        if (key==null || chain==null || chain.length==0)
+            throw new IllegalArgumentException("No key or certificate chain for "+alias);
+        _keys.put(alias,new Key(key,chain));
+    }
+
+    /**
+     * @param alias the alias of the key to remove
+     * @return whether a key was removed
+     */
+    public boolean removeKey(String alias)
+    {
+        return _keys.remove(alias)!=null;
+    }
 
+    protected String chooseServerAlias(String keyType, Principal[] issuers, Collection<SNIMatcher> matchers, SSLSession session)
+    {
         // Look for the SNI information.
         String host=null;
         X509 x509=null;
@@ -88,23 +113,41 @@ public class SniX509ExtendedKeyManager extends X509ExtendedKeyManager
             }
         }
 
+        if (x509==null)
+            return NO_MATCHERS;
+
+        // Resolve directly a key added for the SNI selected alias
+        Key key = _keys.get(x509.getAlias());
+        if (key!=null && (issuers==null || issuers.length==0))
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Matched {} with {}",host,x509);
+            if (!key.matches(keyType))
+                return null;
+            if (session!=null)
+                session.putValue(SNI_X509,x509);
+            return x509.getAlias();
+        }
+
+        // Look for the aliases that are suitable for the keytype and issuers
+        String[] aliases = _delegate.getServerAliases(keyType,issuers);
+        if (aliases==null || aliases.length==0)
+            return null;
+
         if (LOG.isDebugEnabled())
             LOG.debug("Matched {} with {} from {}",host,x509,Arrays.asList(aliases));
 
         // Check if the SNI selected alias is allowable
-        if (x509!=null)
+        for (String a:aliases)
         {
-            for (String a:aliases)
+            if (a.equals(x509.getAlias()))
             {
-                if (a.equals(x509.getAlias()))
-                {
+                if (session!=null)
                     session.putValue(SNI_X509,x509);
-                    return a;
-                }
+                return a;
             }
-            return null;
         }
-        return NO_MATCHERS;
+        return null;
     }
 
     @Override
@@ -134,6 +177,9 @@ public class SniX509ExtendedKeyManager extends X509ExtendedKeyManager
     @Override
     public X509Certificate[] getCertificateChain(String alias)
     {
+        Key key = alias==null?null:_keys.get(alias);
+        if (key!=null)
+            return key._chain.clone();
         return _delegate.getCertificateChain(alias);
     }
 
@@ -146,6 +192,9 @@ public class SniX509ExtendedKeyManager extends X509ExtendedKeyManager
     @Override
     public PrivateKey getPrivateKey(String alias)
     {
+        Key key = alias==null?null:_keys.get(alias);
+        if (key!=null)
+            return key._key;
         return _delegate.getPrivateKey(alias);
     }
 
@@ -154,4 +203,26 @@ public class SniX509ExtendedKeyManager extends X509ExtendedKeyManager
     {
         return _delegate.getServerAliases(keyType,issuers);
     }
+
+    private static class Key
+    {
+        private final PrivateKey _key;
+        private final X509Certificate[] _chain;
+        private final String _algorithm;
+
+        private Key(PrivateKey key, X509Certificate[] chain)
+        {
+            _key = key;
+            _chain = chain.clone();
+            _algorithm = chain[0].getPublicKey().getAlgorithm();
+        }
+
+        private boolean matches(String keyType)
+        {
+            // Key types such as "EC_RSA" also specify the signature algorithm of the certificate
+            int underscore = keyType.indexOf('_');
+            String keyAlgorithm = underscore<0?keyType:keyType.substring(0,underscore);
+            return _algorithm.equalsIgnoreCase(keyAlgorithm);
+        }
+    }
 }
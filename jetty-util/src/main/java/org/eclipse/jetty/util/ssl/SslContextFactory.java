@@ -24,6 +24,7 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.security.KeyStore;
+import java.security.PrivateKey;
 import java.security.SecureRandom;
 import java.security.Security;
 import java.security.cert.CRL;
@@ -38,12 +39,12 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -60,6 +61,7 @@ import javax.net.ssl.SSLPeerUnverifiedException;
 import javax.net.ssl.SSLServerSocket;
 import javax.net.ssl.SSLServerSocketFactory;
 import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.StandardConstants;
@@ -69,6 +71,8 @@ import javax.net.ssl.X509ExtendedKeyManager;
 import javax.net.ssl.X509TrustManager;
 
 import org.eclipse.jetty.util.StringUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.component.AbstractLifeCycle;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
@@ -84,9 +88,7 @@ import org.eclipse.jetty.util.security.Password;
  * creates SSL context based on these parameters to be
  * used by the SSL connectors.
  */
-
-/**
- */
+@ManagedObject("SSL context factory")
 public class SslContextFactory extends AbstractLifeCycle
 {
     public final static TrustManager[] TRUST_ALL_CERTS = new X509TrustManager[]{new X509TrustManager()
@@ -152,9 +154,10 @@ public class SslContextFactory extends AbstractLifeCycle
 
     /** SSL certificate alias */
     private String _certAlias;
-    private final Map<String,X509> _aliasX509 = new HashMap<>();
-    private final Map<String,X509> _certHosts = new HashMap<>();
-    private final Map<String,X509> _certWilds = new HashMap<>();
+    private final Map<String,X509> _aliasX509 = new ConcurrentHashMap<>();
+    private final Map<String,X509> _certHosts = new ConcurrentHashMap<>();
+    private final Map<String,X509> _certWilds = new ConcurrentHashMap<>();
+    private volatile SniX509ExtendedKeyManager _sniKeyManager;
 
     /** Truststore path */
     private Resource _trustStoreResource;
@@ -225,6 +228,15 @@ public class SslContextFactory extends AbstractLifeCycle
     /** Whether TLS renegotiation is allowed */
     private boolean _renegotiationAllowed = true;
 
+    /** Whether TLS records are small at the beginning of a connection and after idle periods */
+    private boolean _dynamicRecordSizingEnabled;
+    /** The plaintext size of small TLS records, so that a record fits a TCP segment */
+    private int _smallRecordSize = 1369;
+    /** The bytes written with small TLS records before switching to full size records */
+    private long _dynamicRecordSizeThreshold = 1024 * 1024;
+    /** The idle time in ms after which TLS records are small again */
+    private long _dynamicRecordSizeIdleTimeout = 1000;
+
     protected Factory _factory;
 
 
@@ -300,6 +312,61 @@ public class SslContextFactory extends AbstractLifeCycle
         return _aliasX509.get(alias);
     }
 
+    /**
+     * <p>Adds a certificate to a started factory, to be selected by SNI for the hosts
+     * of the certificate, without rebuilding the {@link SSLContext}.</p>
+     * <p>A certificate with the same alias is replaced.</p>
+     *
+     * @param alias the alias of the certificate
+     * @param key the private key of the certificate
+     * @param chain the certificate chain, starting with the certificate of the key
+     * @throws Exception if the certificate cannot be parsed
+     * @throws IllegalStateException if the factory is not started with a keystore
+     */
+    public void addCertificate(String alias, PrivateKey key, X509Certificate[] chain) throws Exception
+    {
+        SniX509ExtendedKeyManager keyManager = _sniKeyManager;
+        if (keyManager == null)
+            throw new IllegalStateException("No SNI key manager: "+this);
+        if (chain == null || chain.length == 0)
+            throw new IllegalArgumentException("No certificate chain for "+alias);
+
+        X509 x509 = new X509(alias,chain[0]);
+        removeCertificate(alias);
+        _aliasX509.put(alias,x509);
+        // Add the key before the hosts, so that a matched alias always has a key.
+        keyManager.addKey(alias,key,chain);
+        for (String h:x509.getHosts())
+            _certHosts.put(h,x509);
+        for (String w:x509.getWilds())
+            _certWilds.put(w,x509);
+        if (LOG.isDebugEnabled())
+            LOG.debug("Added x509={} for {}",x509,this);
+    }
+
+    /**
+     * <p>Removes a certificate from a started factory, so that it is no longer selected by SNI.</p>
+     *
+     * @param alias the alias of the certificate
+     * @return whether a certificate was removed
+     */
+    public boolean removeCertificate(String alias)
+    {
+        X509 x509 = _aliasX509.remove(alias);
+        if (x509 == null)
+            return false;
+        for (String h:x509.getHosts())
+            _certHosts.remove(h,x509);
+        for (String w:x509.getWilds())
+            _certWilds.remove(w,x509);
+        SniX509ExtendedKeyManager keyManager = _sniKeyManager;
+        if (keyManager != null)
+            keyManager.removeKey(alias);
+        if (LOG.isDebugEnabled())
+            LOG.debug("Removed x509={} for {}",x509,this);
+        return true;
+    }
+
     /**
      * Create the SSLContext object and start the lifecycle
      * @see org.eclipse.jetty.util.component.AbstractLifeCycle#doStart()
@@ -391,6 +458,10 @@ public class SslContextFactory extends AbstractLifeCycle
             }
         }
 
+        // configure the session caches
+        configureSessionContext(context.getServerSessionContext());
+        configureSessionContext(context.getClientSessionContext());
+
         // select the protocols and ciphers
         SSLEngine sslEngine=context.createSSLEngine();
         selectCipherSuites(
@@ -406,10 +477,21 @@ public class SslContextFactory extends AbstractLifeCycle
         }
     }
 
+    private void configureSessionContext(SSLSessionContext sessionContext)
+    {
+        if (sessionContext == null)
+            return;
+        if (_sslSessionCacheSize > 0)
+            sessionContext.setSessionCacheSize(_sslSessionCacheSize);
+        if (_sslSessionTimeout > 0)
+            sessionContext.setSessionTimeout(_sslSessionTimeout);
+    }
+
     @Override
     protected void doStop() throws Exception
     {
         _factory = null;
+        _sniKeyManager = null;
         super.doStop();
         _certHosts.clear();
         _certWilds.clear();
@@ -952,6 +1034,84 @@ public class SslContextFactory extends AbstractLifeCycle
         _renegotiationAllowed = renegotiationAllowed;
     }
 
+    /**
+     * @return whether dynamic TLS record sizing is enabled (false by default)
+     * @see #setDynamicRecordSizingEnabled(boolean)
+     */
+    public boolean isDynamicRecordSizingEnabled()
+    {
+        return _dynamicRecordSizingEnabled;
+    }
+
+    /**
+     * <p>Enables dynamic TLS record sizing.</p>
+     * <p>A peer can only decrypt a TLS record once it has received it entirely,
+     * so during TCP slow start a full size record of 16 KiB spanning several
+     * round trips delays the first bytes available to the application.
+     * When enabled, application data is written in small records that fit
+     * a TCP segment until {@link #getDynamicRecordSizeThreshold() a threshold}
+     * of bytes has been written, then in full size records; records are small
+     * again after the connection has not written for
+     * {@link #getDynamicRecordSizeIdleTimeout() an idle timeout}.</p>
+     *
+     * @param dynamicRecordSizingEnabled whether dynamic TLS record sizing is enabled
+     */
+    public void setDynamicRecordSizingEnabled(boolean dynamicRecordSizingEnabled)
+    {
+        _dynamicRecordSizingEnabled = dynamicRecordSizingEnabled;
+    }
+
+    /**
+     * @return the max plaintext bytes of small TLS records (1369 by default)
+     */
+    public int getSmallRecordSize()
+    {
+        return _smallRecordSize;
+    }
+
+    /**
+     * @param smallRecordSize the max plaintext bytes of small TLS records, that
+     * should be such that an encrypted record fits the TCP maximum segment size
+     */
+    public void setSmallRecordSize(int smallRecordSize)
+    {
+        if (smallRecordSize <= 0)
+            throw new IllegalArgumentException("Invalid small record size " + smallRecordSize);
+        _smallRecordSize = smallRecordSize;
+    }
+
+    /**
+     * @return the bytes written in small TLS records before switching to full size records (1 MiB by default)
+     */
+    public long getDynamicRecordSizeThreshold()
+    {
+        return _dynamicRecordSizeThreshold;
+    }
+
+    /**
+     * @param dynamicRecordSizeThreshold the bytes written in small TLS records before switching to full size records
+     */
+    public void setDynamicRecordSizeThreshold(long dynamicRecordSizeThreshold)
+    {
+        _dynamicRecordSizeThreshold = dynamicRecordSizeThreshold;
+    }
+
+    /**
+     * @return the idle time in ms after which TLS records are small again (1000 by default)
+     */
+    public long getDynamicRecordSizeIdleTimeout()
+    {
+        return _dynamicRecordSizeIdleTimeout;
+    }
+
+    /**
+     * @param dynamicRecordSizeIdleTimeout the idle time in ms after which TLS records are small again
+     */
+    public void setDynamicRecordSizeIdleTimeout(long dynamicRecordSizeIdleTimeout)
+    {
+        _dynamicRecordSizeIdleTimeout = dynamicRecordSizeIdleTimeout;
+    }
+
     /**
      * @return Path to file that contains Certificate Revocation List
      */
@@ -1092,12 +1252,26 @@ public class SslContextFactory extends AbstractLifeCycle
                     }
                 }
 
-                if (!_certHosts.isEmpty() || !_certWilds.isEmpty())
+                // Wrap even without SNI hosts, so that certificates can be added later.
+                if (!_aliasX509.isEmpty())
                 {
                     for (int idx = 0; idx < managers.length; idx++)
                     {
                         if (managers[idx] instanceof X509ExtendedKeyManager)
-                            managers[idx]=new SniX509ExtendedKeyManager((X509ExtendedKeyManager)managers[idx]);
+                        {
+                            X509ExtendedKeyManager delegate = (X509ExtendedKeyManager)managers[idx];
+                            SniX509ExtendedKeyManager keyManager = new SniX509ExtendedKeyManager(delegate);
+                            // Resolve the keys now, rather than on every handshake.
+                            for (String alias : _aliasX509.keySet())
+                            {
+                                PrivateKey key = delegate.getPrivateKey(alias);
+                                X509Certificate[] chain = delegate.getCertificateChain(alias);
+                                if (key != null && chain != null && chain.length > 0)
+                                    keyManager.addKey(alias,key,chain);
+                            }
+                            managers[idx] = keyManager;
+                            _sniKeyManager = keyManager;
+                        }
                     }
                 }
             }
@@ -1423,14 +1597,16 @@ public class SslContextFactory extends AbstractLifeCycle
     }
 
     /** Get SSL session cache size.
-     * @return SSL session cache size
+     * @return SSL session cache size, or 0 for the default size of the SSL provider
      */
+    @ManagedAttribute("The max number of cached TLS sessions, or 0 for the default")
     public int getSslSessionCacheSize()
     {
         return _sslSessionCacheSize;
     }
 
-    /** SEt SSL session cache size.
+    /** Set SSL session cache size.
+     * <p>The least recently used sessions are evicted when the cache is full.</p>
      * @param sslSessionCacheSize SSL session cache size to set
      */
     public void setSslSessionCacheSize(int sslSessionCacheSize)
@@ -1439,8 +1615,9 @@ public class SslContextFactory extends AbstractLifeCycle
     }
 
     /** Get SSL session timeout.
-     * @return SSL session timeout
+     * @return SSL session timeout in seconds, or 0 for the default timeout of the SSL provider
      */
+    @ManagedAttribute("The timeout in seconds of cached TLS sessions, or 0 for the default")
     public int getSslSessionTimeout()
     {
         return _sslSessionTimeout;
@@ -1453,6 +1630,21 @@ public class SslContextFactory extends AbstractLifeCycle
     {
         _sslSessionTimeout = sslSessionTimeout;
     }
+
+    /**
+     * @return the number of TLS sessions in the server session cache
+     */
+    @ManagedAttribute("The number of TLS sessions in the server session cache")
+    public int getServerSessionCount()
+    {
+        Factory factory = _factory;
+        if (factory == null)
+            return 0;
+        SSLSessionContext sessionContext = factory._context.getServerSessionContext();
+        if (sessionContext == null)
+            return 0;
+        return Collections.list(sessionContext.getIds()).size();
+    }
     
     /**
      * Create a new Password object
@@ -19,6 +19,7 @@
 package org.eclipse.jetty.util.statistic;
 
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.util.Atomics;
 
@@ -29,33 +30,37 @@ import org.eclipse.jetty.util.Atomics;
  * Keep total, current and maximum values of a counter that
  * can be incremented and decremented. The total refers only
  * to increments.
- *
+ * <p>
+ * The total is kept in a {@link LongAdder}, so that concurrent updates
+ * do not contend on it. The current value is kept in a single atomic,
+ * since the maximum must be computed from the exact current value;
+ * the maximum is only written when it is exceeded.
  */
 public class CounterStatistic
 {
     protected final AtomicLong _max = new AtomicLong();
     protected final AtomicLong _curr = new AtomicLong();
-    protected final AtomicLong _total = new AtomicLong();
+    protected final LongAdder _total = new LongAdder();
 
     /* ------------------------------------------------------------ */
     public void reset()
     {
-        _total.set(0);
+        _total.reset();
         _max.set(0);
         long current=_curr.get();
-        _total.addAndGet(current);
+        _total.add(current);
         Atomics.updateMax(_max,current);
     }
 
     /* ------------------------------------------------------------ */
     public void reset(final long value)
     {
-        _total.set(0);
+        _total.reset();
         _max.set(0);
         _curr.set(value);
         if (value>0)
         {
-            _total.addAndGet(value);
+            _total.add(value);
             Atomics.updateMax(_max,value);
         }
     }
@@ -70,7 +75,7 @@ public class CounterStatistic
         long value=_curr.addAndGet(delta);
         if (delta > 0)
         {
-            _total.addAndGet(delta);
+            _total.add(delta);
             Atomics.updateMax(_max,value);
         }
         return value;
@@ -120,13 +125,13 @@ public class CounterStatistic
      */
     public long getTotal()
     {
-        return _total.get();
+        return _total.sum();
     }
 
     /* ------------------------------------------------------------ */
     @Override
     public String toString()
     {
-        return String.format("%s@%x{c=%d,m=%d,t=%d}",this.getClass().getSimpleName(),hashCode(),_curr.get(),_max.get(),_total.get());
+        return String.format("%s@%x{c=%d,m=%d,t=%d}",this.getClass().getSimpleName(),hashCode(),_curr.get(),_max.get(),_total.sum());
     }
 }
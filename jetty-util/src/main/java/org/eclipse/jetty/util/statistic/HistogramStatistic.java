@@ -0,0 +1,327 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.util.statistic;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>A histogram of non negative long samples, such as durations, that
+ * provides the values at given percentiles.</p>
+ * <p>Samples are counted in log-linear buckets: values below {@code 2^precision}
+ * have their own bucket, while larger values share buckets whose width doubles
+ * at every power of 2, so that the relative error of the reported values is at
+ * most {@code 2^(1-precision)}, that is 6.25% with the default precision of 5.
+ * The memory used is bounded, less than 1000 counters for the default
+ * precision, whatever the number and the range of the samples.</p>
+ * <p>Recording a sample is a single atomic increment of the sample bucket,
+ * without locking; the counters of neighbouring buckets share cache lines,
+ * so threads recording similar values concurrently do contend on them.</p>
+ * <p>The values are computed from a {@link Snapshot} of the bucket counts.
+ * Snapshots of histograms with the same precision can be merged, for example
+ * to aggregate the histograms of several connectors, and
+ * {@link #snapshotAndReset()} allows to report the samples of fixed
+ * intervals without losing the samples recorded concurrently.</p>
+ */
+public class HistogramStatistic
+{
+    private final int _precision;
+    private final int _subBuckets;
+    private final int _halfSubBuckets;
+    private final AtomicLongArray _counts;
+
+    public HistogramStatistic()
+    {
+        this(5);
+    }
+
+    /**
+     * @param precision the number of significant bits of the bucket values, between 1 and 16
+     */
+    public HistogramStatistic(int precision)
+    {
+        if (precision < 1 || precision > 16)
+            throw new IllegalArgumentException("Invalid precision " + precision);
+        _precision = precision;
+        _subBuckets = 1 << precision;
+        _halfSubBuckets = _subBuckets >> 1;
+        _counts = new AtomicLongArray(bucketsFor(precision));
+    }
+
+    private static int bucketsFor(int precision)
+    {
+        return (1 << precision) + (63 - precision) * (1 << (precision - 1));
+    }
+
+    public int getPrecision()
+    {
+        return _precision;
+    }
+
+    public void reset()
+    {
+        for (int i = 0; i < _counts.length(); ++i)
+            _counts.set(i, 0);
+    }
+
+    /**
+     * @param sample the sample to record, negative samples are recorded as 0
+     */
+    public void record(long sample)
+    {
+        _counts.incrementAndGet(indexOf(Math.max(0, sample)));
+    }
+
+    /**
+     * @return a copy of the current bucket counts
+     */
+    public Snapshot snapshot()
+    {
+        long[] counts = new long[_counts.length()];
+        for (int i = 0; i < counts.length; ++i)
+            counts[i] = _counts.get(i);
+        return new Snapshot(_precision, counts);
+    }
+
+    /**
+     * <p>Takes a snapshot and resets the histogram, atomically for each bucket,
+     * so that every sample is in exactly one of the snapshots of consecutive
+     * intervals.</p>
+     *
+     * @return the bucket counts since the histogram was last reset
+     */
+    public Snapshot snapshotAndReset()
+    {
+        long[] counts = new long[_counts.length()];
+        for (int i = 0; i < counts.length; ++i)
+        {
+            if (_counts.get(i) != 0)
+                counts[i] = _counts.getAndSet(i, 0);
+        }
+        return new Snapshot(_precision, counts);
+    }
+
+    /**
+     * @return the number of samples recorded
+     */
+    public long getCount()
+    {
+        long count = 0;
+        for (int i = 0; i < _counts.length(); ++i)
+            count += _counts.get(i);
+        return count;
+    }
+
+    /**
+     * @return the largest value equivalent to the largest sample recorded, or 0 if no samples were recorded
+     * @see Snapshot#getMax()
+     */
+    public long getMax()
+    {
+        for (int i = _counts.length(); i-- > 0;)
+        {
+            if (_counts.get(i) > 0)
+                return Snapshot.highestValueOf(_precision, i);
+        }
+        return 0;
+    }
+
+    /**
+     * @return the approximate mean of the samples, or 0 if no samples were recorded
+     * @see Snapshot#getMean()
+     */
+    public double getMean()
+    {
+        return snapshot().getMean();
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 100
+     * @return the largest value equivalent to the sample at the given percentile,
+     * or 0 if no samples were recorded
+     * @see Snapshot#getValueAtPercentile(double)
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        return snapshot().getValueAtPercentile(percentile);
+    }
+
+    private int indexOf(long value)
+    {
+        if (value < _subBuckets)
+            return (int)value;
+        // The shift that brings the value between half and all the sub buckets.
+        int shift = 64 - Long.numberOfLeadingZeros(value) - _precision;
+        return _subBuckets + (shift - 1) * _halfSubBuckets + (int)((value >>> shift) - _halfSubBuckets);
+    }
+
+    @Override
+    public String toString()
+    {
+        Snapshot snapshot = snapshot();
+        return String.format("%s@%x{c=%d,p50=%d,p99=%d,p999=%d,max=%d}",
+                getClass().getSimpleName(),
+                hashCode(),
+                snapshot.getCount(),
+                snapshot.getValueAtPercentile(50),
+                snapshot.getValueAtPercentile(99),
+                snapshot.getValueAtPercentile(99.9),
+                snapshot.getMax());
+    }
+
+    /**
+     * <p>An immutable copy of the bucket counts of a {@link HistogramStatistic}.</p>
+     */
+    public static class Snapshot
+    {
+        private final int _precision;
+        private final long[] _counts;
+        private final long _count;
+
+        private Snapshot(int precision, long[] counts)
+        {
+            _precision = precision;
+            _counts = counts;
+            long count = 0;
+            for (long c : counts)
+                count += c;
+            _count = count;
+        }
+
+        public int getPrecision()
+        {
+            return _precision;
+        }
+
+        /**
+         * @return the number of samples in this snapshot
+         */
+        public long getCount()
+        {
+            return _count;
+        }
+
+        /**
+         * @param that the snapshot to merge with this snapshot
+         * @return a new snapshot with the samples of both snapshots
+         * @throws IllegalArgumentException if the snapshots have different precisions
+         */
+        public Snapshot merge(Snapshot that)
+        {
+            if (that._precision != _precision)
+                throw new IllegalArgumentException("Cannot merge precision " + that._precision + " into " + _precision);
+            long[] counts = new long[_counts.length];
+            for (int i = 0; i < counts.length; ++i)
+                counts[i] = _counts[i] + that._counts[i];
+            return new Snapshot(_precision, counts);
+        }
+
+        /**
+         * @return the largest value equivalent to the largest sample, or 0 if there are no samples
+         */
+        public long getMax()
+        {
+            for (int i = _counts.length; i-- > 0;)
+            {
+                if (_counts[i] > 0)
+                    return highestValueOf(_precision, i);
+            }
+            return 0;
+        }
+
+        /**
+         * @return the approximate mean of the samples, or 0 if there are no samples
+         */
+        public double getMean()
+        {
+            if (_count == 0)
+                return 0;
+            double total = 0;
+            for (int i = 0; i < _counts.length; ++i)
+            {
+                long c = _counts[i];
+                if (c > 0)
+                    total += c * ((double)lowestValueOf(_precision, i) + highestValueOf(_precision, i)) / 2;
+            }
+            return total / _count;
+        }
+
+        /**
+         * @param percentile the percentile, between 0 and 100
+         * @return the largest value equivalent to the sample at the given percentile,
+         * or 0 if there are no samples
+         */
+        public long getValueAtPercentile(double percentile)
+        {
+            if (percentile < 0 || percentile > 100)
+                throw new IllegalArgumentException("Invalid percentile " + percentile);
+            if (_count == 0)
+                return 0;
+
+            long rank = Math.max(1, (long)Math.ceil(percentile / 100 * _count));
+            long count = 0;
+            for (int i = 0; i < _counts.length; ++i)
+            {
+                count += _counts[i];
+                if (count >= rank)
+                    return highestValueOf(_precision, i);
+            }
+            return getMax();
+        }
+
+        private static long lowestValueOf(int precision, int index)
+        {
+            int subBuckets = 1 << precision;
+            if (index < subBuckets)
+                return index;
+            int halfSubBuckets = subBuckets >> 1;
+            int bucket = index - subBuckets;
+            int shift = bucket / halfSubBuckets + 1;
+            long subBucket = bucket % halfSubBuckets + halfSubBuckets;
+            return subBucket << shift;
+        }
+
+        private static long highestValueOf(int precision, int index)
+        {
+            int subBuckets = 1 << precision;
+            if (index < subBuckets)
+                return index;
+            int halfSubBuckets = subBuckets >> 1;
+            int bucket = index - subBuckets;
+            int shift = bucket / halfSubBuckets + 1;
+            long subBucket = bucket % halfSubBuckets + halfSubBuckets;
+            long next = (subBucket + 1) << shift;
+            // The last bucket ends at Long.MAX_VALUE.
+            return next < 0 ? Long.MAX_VALUE : next - 1;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x{c=%d,p50=%d,p99=%d,p999=%d,max=%d}",
+                    getClass().getSimpleName(),
+                    hashCode(),
+                    getCount(),
+                    getValueAtPercentile(50),
+                    getValueAtPercentile(99),
+                    getValueAtPercentile(99.9),
+                    getMax());
+        }
+    }
+}
@@ -19,6 +19,8 @@
 package org.eclipse.jetty.util.statistic;
 
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.util.Atomics;
 
@@ -28,44 +30,56 @@ import org.eclipse.jetty.util.Atomics;
  * <p>
  * Provides max, total, mean, count, variance, and standard deviation of continuous sequence of samples.
  * <p>
- * Calculates estimates of mean, variance, and standard deviation characteristics of a sample using a non synchronized
- * approximation of the on-line algorithm presented in <cite>Donald Knuth's Art of Computer Programming, Volume 2,
- * Seminumerical Algorithms, 3rd edition, page 232, Boston: Addison-Wesley</cite>. that cites a 1962 paper by B.P. Welford that
- * can be found by following <a href="http://www.jstor.org/pss/1266577">Note on a Method for Calculating Corrected Sums
- * of Squares and Products</a>
- * <p>
- * This algorithm is also described in Wikipedia at <a href=
- * "http://en.wikipedia.org/w/index.php?title=Algorithms_for_calculating_variance&amp;section=4#On-line_algorithm">
- * Algorithms for calculating variance </a>
+ * The count, total and sum of squares of the samples are kept in striped adders ({@link LongAdder} and
+ * {@link DoubleAdder}), so that samples set concurrently by many threads do not contend on shared counters.
+ * The variance is computed when read, from the sum of squares of the samples shifted by the first sample,
+ * using the formula described in Wikipedia at
+ * <a href="http://en.wikipedia.org/wiki/Algorithms_for_calculating_variance#Computing_shifted_data">
+ * Algorithms for calculating variance </a>. The shift keeps the squares small, so that large samples,
+ * such as times in nanoseconds, do not lose the variance to the rounding of their sum of squares.
+ * The maximum is kept in a single atomic that is only written when it is exceeded.
  */
 public class SampleStatistic
 {
+    private static final long NO_SHIFT = Long.MIN_VALUE;
+
     protected final AtomicLong _max = new AtomicLong();
-    protected final AtomicLong _total = new AtomicLong();
-    protected final AtomicLong _count = new AtomicLong();
-    protected final AtomicLong _totalVariance100 = new AtomicLong();
+    protected final LongAdder _total = new LongAdder();
+    protected final LongAdder _count = new LongAdder();
+    protected final DoubleAdder _totalSquares = new DoubleAdder();
+    protected final AtomicLong _shift = new AtomicLong(NO_SHIFT);
 
     public void reset()
     {
         _max.set(0);
-        _total.set(0);
-        _count.set(0);
-        _totalVariance100.set(0);
+        _shift.set(NO_SHIFT);
+        _total.reset();
+        _count.reset();
+        _totalSquares.reset();
     }
 
     public void set(final long sample)
     {
-        long total = _total.addAndGet(sample);
-        long count = _count.incrementAndGet();
+        _total.add(sample);
+        _count.increment();
+        double delta = sample - shift(sample);
+        _totalSquares.add(delta*delta);
+        Atomics.updateMax(_max, sample);
+    }
 
-        if (count>1)
+    /**
+     * @param sample the sample to use as shift if there is none yet
+     * @return the shift of the samples
+     */
+    private long shift(long sample)
+    {
+        long shift = _shift.get();
+        if (shift==NO_SHIFT)
         {
-            long mean10 = total*10/count;
-            long delta10 = sample*10 - mean10;
-            _totalVariance100.addAndGet(delta10*delta10);
+            _shift.compareAndSet(NO_SHIFT,sample);
+            shift = _shift.get();
         }
-
-        Atomics.updateMax(_max, sample);
+        return shift;
     }
 
     /**
@@ -78,25 +92,34 @@ public class SampleStatistic
 
     public long getTotal()
     {
-        return _total.get();
+        return _total.sum();
     }
 
     public long getCount()
     {
-        return _count.get();
+        return _count.sum();
     }
 
     public double getMean()
     {
-        return (double)_total.get()/_count.get();
+        return (double)_total.sum()/_count.sum();
     }
 
+    /**
+     * @return the sample variance of the samples, that is with a denominator of count-1
+     */
     public double getVariance()
     {
-        final long variance100 = _totalVariance100.get();
-        final long count = _count.get();
-
-        return count>1?((double)variance100)/100.0/(count-1):0.0;
+        final long count = _count.sum();
+        if (count<=1)
+            return 0.0;
+
+        final long shift = _shift.get();
+        // Exact in long arithmetic, so that no precision is lost to cancellation.
+        final double totalDelta = _total.sum() - count*shift;
+        final double variance = (_totalSquares.sum() - totalDelta*totalDelta/count)/(count-1);
+        // Concurrent updates and rounding may make the result slightly negative.
+        return Math.max(0.0,variance);
     }
 
     public double getStdDev()
@@ -108,6 +131,6 @@ public class SampleStatistic
     @Override
     public String toString()
     {
-        return String.format("%s@%x{c=%d,m=%d,t=%d,v100=%d}",this.getClass().getSimpleName(),hashCode(),_count.get(),_max.get(),_total.get(),_totalVariance100.get());
+        return String.format("%s@%x{c=%d,m=%d,t=%d,v=%.2f}",this.getClass().getSimpleName(),hashCode(),_count.sum(),_max.get(),_total.sum(),getVariance());
     }
 }
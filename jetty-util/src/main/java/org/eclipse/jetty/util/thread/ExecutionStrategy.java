@@ -71,6 +71,37 @@ public interface ExecutionStrategy
         Runnable produce();
     }
 
+    /**
+     * <p>A {@link Runnable} task that declares whether it may block when run.</p>
+     * <p>Strategies may run non-blocking tasks directly in the producing thread,
+     * without handing off production to another thread, since such tasks cannot
+     * stall production.</p>
+     * <p>Tasks that do not implement this interface are of unknown behaviour,
+     * and strategies must assume that they may block.</p>
+     */
+    public interface Task extends Runnable
+    {
+        /**
+         * @return True if the task is known to never block the caller
+         */
+        default boolean isNonBlocking()
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Task interface that declares itself as non-blocking
+     */
+    public interface NonBlocking extends Task
+    {
+        @Override
+        default boolean isNonBlocking()
+        {
+            return true;
+        }
+    }
+
     public static class Factory
     {
         private static final Logger LOG = Log.getLogger(Factory.class);
@@ -35,16 +35,16 @@ import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.annotation.Name;
-import org.eclipse.jetty.util.component.AbstractLifeCycle;
 import org.eclipse.jetty.util.component.ContainerLifeCycle;
 import org.eclipse.jetty.util.component.Dumpable;
 import org.eclipse.jetty.util.component.LifeCycle;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.statistic.HistogramStatistic;
 import org.eclipse.jetty.util.thread.ThreadPool.SizedThreadPool;
 
 @ManagedObject("A thread pool with no max bound by default")
-public class QueuedThreadPool extends AbstractLifeCycle implements SizedThreadPool, Dumpable
+public class QueuedThreadPool extends ContainerLifeCycle implements SizedThreadPool, Dumpable
 {
     private static final Logger LOG = Log.getLogger(QueuedThreadPool.class);
 
@@ -54,6 +54,8 @@ public class QueuedThreadPool extends AbstractLifeCycle implements SizedThreadPo
     private final ConcurrentHashSet<Thread> _threads=new ConcurrentHashSet<Thread>();
     private final Object _joinLock = new Object();
     private final BlockingQueue<Runnable> _jobs;
+    private final HistogramStatistic _queueLatency = new HistogramStatistic();
+    private final HistogramStatistic _executionTime = new HistogramStatistic();
     private final ThreadGroup _threadGroup;
     private String _name = "qtp" + hashCode();
     private int _idleTimeout;
@@ -62,6 +64,9 @@ public class QueuedThreadPool extends AbstractLifeCycle implements SizedThreadPo
     private int _priority = Thread.NORM_PRIORITY;
     private boolean _daemon = false;
     private boolean _detailedDump = false;
+    private volatile boolean _recordJobTimes;
+    private int _reservedThreads;
+    private volatile ReservedThreadExecutor _reservedThreadExecutor;
 
     public QueuedThreadPool()
     {
@@ -111,11 +116,24 @@ public class QueuedThreadPool extends AbstractLifeCycle implements SizedThreadPo
         _threadsStarted.set(0);
 
         startThreads(_minThreads);
+
+        if (_reservedThreads > 0)
+        {
+            ReservedThreadExecutor reserved = new ReservedThreadExecutor(this, _reservedThreads);
+            // Started as a managed bean, so that it is also visible to JMX.
+            addBean(reserved, true);
+            _reservedThreadExecutor = reserved;
+        }
     }
 
     @Override
     protected void doStop() throws Exception
     {
+        ReservedThreadExecutor reserved = _reservedThreadExecutor;
+        _reservedThreadExecutor = null;
+        if (reserved != null)
+            removeBean(reserved);
+
         super.doStop();
 
         long timeout = getStopTimeout();
@@ -356,6 +374,141 @@ public class QueuedThreadPool extends AbstractLifeCycle implements SizedThreadPo
         return _daemon;
     }
 
+    /**
+     * @return the number of threads reserved to take over tasks by direct handoff
+     * @see #setReservedThreads(int)
+     */
+    @ManagedAttribute("number of threads reserved to take over tasks by direct handoff")
+    public int getReservedThreads()
+    {
+        return _reservedThreads;
+    }
+
+    /**
+     * <p>Sets the number of threads of this pool that are kept parked, ready to take
+     * over a task by direct handoff through the {@link #getReservedThreadExecutor()
+     * reserved thread executor}, without going through the job queue.</p>
+     *
+     * @param reservedThreads the number of reserved threads, or 0 for no reserved threads
+     */
+    public void setReservedThreads(int reservedThreads)
+    {
+        if (isRunning())
+            throw new IllegalStateException("started");
+        _reservedThreads = reservedThreads;
+    }
+
+    /**
+     * @return the executor of the reserved threads, or null if this pool
+     * is not started or has no reserved threads
+     * @see #setReservedThreads(int)
+     */
+    @ManagedAttribute("the executor of the reserved threads")
+    public ReservedThreadExecutor getReservedThreadExecutor()
+    {
+        return _reservedThreadExecutor;
+    }
+
+    /**
+     * @return whether the time jobs wait in the queue and the time they take to run are recorded
+     * @see #setRecordJobTimes(boolean)
+     */
+    @ManagedAttribute("whether the time jobs wait in the queue and the time they take to run are recorded")
+    public boolean isRecordJobTimes()
+    {
+        return _recordJobTimes;
+    }
+
+    /**
+     * <p>Sets whether the time jobs wait in the queue and the time they take to run are recorded.</p>
+     * <p>Recording the queue latency wraps each job with the time it is queued,
+     * so the {@link #getQueue() queue} then holds the wrappers rather than the jobs.</p>
+     *
+     * @param recordJobTimes whether the time jobs wait in the queue and the time they take to run are recorded
+     */
+    public void setRecordJobTimes(boolean recordJobTimes)
+    {
+        _recordJobTimes = recordJobTimes;
+    }
+
+    /**
+     * @return the histogram of the nanoseconds jobs wait in the queue before a thread runs them,
+     * empty unless {@link #setRecordJobTimes(boolean) recorded}
+     */
+    public HistogramStatistic getQueueLatency()
+    {
+        return _queueLatency;
+    }
+
+    /**
+     * @return the histogram of the nanoseconds jobs take to run, excluding {@link ThreadPool.LongLived} jobs,
+     * empty unless {@link #setRecordJobTimes(boolean) recorded}
+     */
+    public HistogramStatistic getExecutionTime()
+    {
+        return _executionTime;
+    }
+
+    @ManagedAttribute("median time jobs wait in the queue in us")
+    public long getQueueLatencyP50()
+    {
+        return toMicros(_queueLatency.getValueAtPercentile(50));
+    }
+
+    @ManagedAttribute("99th percentile of the time jobs wait in the queue in us")
+    public long getQueueLatencyP99()
+    {
+        return toMicros(_queueLatency.getValueAtPercentile(99));
+    }
+
+    @ManagedAttribute("99.9th percentile of the time jobs wait in the queue in us")
+    public long getQueueLatencyP999()
+    {
+        return toMicros(_queueLatency.getValueAtPercentile(99.9));
+    }
+
+    @ManagedAttribute("maximum time jobs wait in the queue in us")
+    public long getQueueLatencyMax()
+    {
+        return toMicros(_queueLatency.getMax());
+    }
+
+    @ManagedAttribute("median time jobs take to run in us")
+    public long getExecutionTimeP50()
+    {
+        return toMicros(_executionTime.getValueAtPercentile(50));
+    }
+
+    @ManagedAttribute("99th percentile of the time jobs take to run in us")
+    public long getExecutionTimeP99()
+    {
+        return toMicros(_executionTime.getValueAtPercentile(99));
+    }
+
+    @ManagedAttribute("99.9th percentile of the time jobs take to run in us")
+    public long getExecutionTimeP999()
+    {
+        return toMicros(_executionTime.getValueAtPercentile(99.9));
+    }
+
+    @ManagedAttribute("maximum time jobs take to run in us")
+    public long getExecutionTimeMax()
+    {
+        return toMicros(_executionTime.getMax());
+    }
+
+    @ManagedOperation("resets the queue latency and execution time statistics")
+    public void resetStatistics()
+    {
+        _queueLatency.reset();
+        _executionTime.reset();
+    }
+
+    private static long toMicros(long nanos)
+    {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
     public boolean isDetailedDump()
     {
         return _detailedDump;
@@ -371,7 +524,7 @@ public class QueuedThreadPool extends AbstractLifeCycle implements SizedThreadPo
     {
         if (LOG.isDebugEnabled())
             LOG.debug("queue {}",job);
-        if (!isRunning() || !_jobs.offer(job))
+        if (!isRunning() || !_jobs.offer(_recordJobTimes ? new QueuedJob(job) : job))
         {
             LOG.warn("{} rejected {}", this, job);
             throw new RejectedExecutionException(job.toString());
@@ -531,8 +684,11 @@ public class QueuedThreadPool extends AbstractLifeCycle implements SizedThreadPo
             }
         }
 
-        ContainerLifeCycle.dumpObject(out, this);
-        ContainerLifeCycle.dump(out, indent, dump);
+        // Dumps the reserved thread executor bean, then the statistics and the threads.
+        dumpBeans(out, indent, Arrays.asList(
+                String.format("queue latency us: p50=%d p99=%d p999=%d max=%d", getQueueLatencyP50(), getQueueLatencyP99(), getQueueLatencyP999(), getQueueLatencyMax()),
+                String.format("execution time us: p50=%d p99=%d p999=%d max=%d", getExecutionTimeP50(), getExecutionTimeP99(), getExecutionTimeP999(), getExecutionTimeMax())),
+                dump);
     }
 
     @Override
@@ -569,7 +725,7 @@ public class QueuedThreadPool extends AbstractLifeCycle implements SizedThreadPo
                     {
                         if (LOG.isDebugEnabled())
                             LOG.debug("run {}",job);
-                        runJob(job);
+                        runQueuedJob(job);
                         if (LOG.isDebugEnabled())
                             LOG.debug("ran {}",job);
                         if (Thread.interrupted())
@@ -643,6 +799,42 @@ public class QueuedThreadPool extends AbstractLifeCycle implements SizedThreadPo
         }
     };
 
+    /**
+     * <p>Runs a job taken from the queue. If it was queued with its time, records
+     * the time it waited in the queue and, unless it is a {@link ThreadPool.LongLived}
+     * job, the time it took to run.</p>
+     *
+     * @param job the job taken from the queue
+     */
+    private void runQueuedJob(Runnable job)
+    {
+        if (!(job instanceof QueuedJob))
+        {
+            runJob(job);
+            return;
+        }
+
+        long start = System.nanoTime();
+        QueuedJob queued = (QueuedJob)job;
+        _queueLatency.record(start - queued._queued);
+        job = queued._job;
+
+        if (job instanceof ThreadPool.LongLived)
+        {
+            runJob(job);
+            return;
+        }
+
+        try
+        {
+            runJob(job);
+        }
+        finally
+        {
+            _executionTime.record(System.nanoTime() - start);
+        }
+    }
+
     /**
      * <p>Runs the given job in the {@link Thread#currentThread() current thread}.</p>
      * <p>Subclasses may override to perform pre/post actions before/after the job is run.</p>
@@ -709,4 +901,30 @@ public class QueuedThreadPool extends AbstractLifeCycle implements SizedThreadPo
         }
         return null;
     }
+
+    /**
+     * <p>A job in the queue, with the time it was queued.</p>
+     */
+    private static class QueuedJob implements Runnable
+    {
+        private final Runnable _job;
+        private final long _queued = System.nanoTime();
+
+        private QueuedJob(Runnable job)
+        {
+            _job = job;
+        }
+
+        @Override
+        public void run()
+        {
+            _job.run();
+        }
+
+        @Override
+        public String toString()
+        {
+            return _job.toString();
+        }
+    }
 }
@@ -0,0 +1,339 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.util.thread;
+
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * <p>An {@link Executor} that keeps a small number of threads of another executor
+ * parked, ready to take over a task by direct handoff.</p>
+ * <p>A task passed to {@link #tryExecute(Runnable)} is given to a parked thread
+ * without going through the job queue of the underlying executor, so it starts
+ * to run as soon as the parked thread is woken up. If no reserved thread is
+ * available, the task is not executed and {@link #tryExecute(Runnable)} returns
+ * false, so that the caller can decide how to run the task; a new thread is then
+ * reserved to replace the ones that are busy.</p>
+ * <p>Once a reserved thread has run a task, it parks again if there are less than
+ * {@link #getCapacity() capacity} reserved threads, otherwise it returns to the
+ * underlying executor.</p>
+ * <p>The parked threads are kept in a lock-free stack and the counts are kept
+ * in atomics, so that concurrent handoffs do not serialize on a lock.</p>
+ */
+@ManagedObject("A pool of threads reserved to take over tasks by direct handoff")
+public class ReservedThreadExecutor extends AbstractLifeCycle implements Executor
+{
+    private static final Logger LOG = Log.getLogger(ReservedThreadExecutor.class);
+    private static final Runnable STOP = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+        }
+
+        @Override
+        public String toString()
+        {
+            return "STOP";
+        }
+    };
+
+    private final Executor _executor;
+    private final int _capacity;
+    private final Deque<ReservedThread> _stack = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger _size = new AtomicInteger();
+    private final AtomicInteger _pending = new AtomicInteger();
+    private final LongAdder _handoffs = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+
+    /**
+     * @param executor the executor providing the threads to reserve
+     * @param capacity the max number of threads to reserve
+     */
+    public ReservedThreadExecutor(Executor executor, int capacity)
+    {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity <= 0");
+        _executor = executor;
+        _capacity = capacity;
+    }
+
+    public Executor getExecutor()
+    {
+        return _executor;
+    }
+
+    /**
+     * @return the max number of threads that are reserved
+     */
+    @ManagedAttribute("max number of reserved threads")
+    public int getCapacity()
+    {
+        return _capacity;
+    }
+
+    /**
+     * @return the number of reserved threads parked and available for a handoff
+     */
+    @ManagedAttribute("number of reserved threads available for a handoff")
+    public int getAvailable()
+    {
+        return _size.get();
+    }
+
+    /**
+     * @return the number of reserved threads that are being started
+     */
+    @ManagedAttribute("number of reserved threads being started")
+    public int getPending()
+    {
+        return _pending.get();
+    }
+
+    /**
+     * @return the number of tasks handed off to a reserved thread
+     */
+    @ManagedAttribute("number of tasks handed off to a reserved thread")
+    public long getHandoffs()
+    {
+        return _handoffs.sum();
+    }
+
+    /**
+     * @return the number of tasks not executed because no reserved thread was available
+     */
+    @ManagedAttribute("number of tasks not handed off because no reserved thread was available")
+    public long getMisses()
+    {
+        return _misses.sum();
+    }
+
+    /**
+     * @return the ratio of handoffs to handoff attempts, between 0 and 1
+     */
+    @ManagedAttribute("ratio of successful handoffs to handoff attempts")
+    public double getHandoffRatio()
+    {
+        long handoffs = _handoffs.sum();
+        long attempts = handoffs + _misses.sum();
+        return attempts == 0 ? 0.0 : (double)handoffs / attempts;
+    }
+
+    @ManagedOperation("resets the handoff statistics")
+    public void reset()
+    {
+        _handoffs.reset();
+        _misses.reset();
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        super.doStart();
+        for (int i = 0; i < _capacity; ++i)
+            startReservedThread();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        while (true)
+        {
+            ReservedThread thread = pop();
+            if (thread == null)
+                break;
+            thread.offer(STOP);
+        }
+        super.doStop();
+    }
+
+    /**
+     * <p>Executes the given task in a reserved thread if one is available,
+     * otherwise in a thread of the underlying executor.</p>
+     *
+     * @param task the task to execute
+     */
+    @Override
+    public void execute(Runnable task) throws RejectedExecutionException
+    {
+        if (!tryExecute(task))
+            _executor.execute(task);
+    }
+
+    /**
+     * <p>Hands off the given task to a reserved thread, if one is available.</p>
+     *
+     * @param task the task to execute
+     * @return true if the task was handed off to a reserved thread,
+     * false if no reserved thread was available and the task was not executed
+     */
+    public boolean tryExecute(Runnable task)
+    {
+        if (task == null)
+            return false;
+
+        ReservedThread thread = pop();
+        if (thread != null)
+        {
+            thread.offer(task);
+            _handoffs.increment();
+            return true;
+        }
+
+        _misses.increment();
+        if (isRunning() && _pending.compareAndSet(0, 1))
+            dispatch(new ReservedThread());
+        return false;
+    }
+
+    private ReservedThread pop()
+    {
+        ReservedThread thread = _stack.pollFirst();
+        if (thread != null)
+            _size.decrementAndGet();
+        return thread;
+    }
+
+    private void startReservedThread()
+    {
+        while (true)
+        {
+            int pending = _pending.get();
+            if (_size.get() + pending >= _capacity)
+                return;
+            if (_pending.compareAndSet(pending, pending + 1))
+                break;
+        }
+        dispatch(new ReservedThread());
+    }
+
+    private void dispatch(ReservedThread thread)
+    {
+        try
+        {
+            _executor.execute(thread);
+        }
+        catch (RejectedExecutionException x)
+        {
+            LOG.ignore(x);
+            _pending.decrementAndGet();
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{s=%d,p=%d,c=%d}", getClass().getSimpleName(), hashCode(), _size.get(), _pending.get(), _capacity);
+    }
+
+    private class ReservedThread implements ThreadPool.LongLived
+    {
+        private volatile Thread _thread;
+        private volatile Runnable _task;
+
+        @Override
+        public void run()
+        {
+            _thread = Thread.currentThread();
+            boolean starting = true;
+            while (true)
+            {
+                Runnable task = reserve(starting);
+                starting = false;
+                if (task == null)
+                    break;
+
+                try
+                {
+                    task.run();
+                }
+                catch (Throwable x)
+                {
+                    LOG.warn(x);
+                }
+            }
+        }
+
+        /**
+         * <p>Hands off the given task to this thread, which must have been popped from the stack.</p>
+         *
+         * @param task the task to run, or {@link #STOP} to return this thread to the executor
+         */
+        private void offer(Runnable task)
+        {
+            _task = task;
+            LockSupport.unpark(_thread);
+        }
+
+        /**
+         * <p>Parks this thread until a task is handed off to it.</p>
+         *
+         * @param starting whether this thread was just started
+         * @return the task handed off, or null if this thread must return to the executor
+         */
+        private Runnable reserve(boolean starting)
+        {
+            if (starting)
+                _pending.decrementAndGet();
+
+            while (true)
+            {
+                int size = _size.get();
+                if (!isRunning() || size >= _capacity)
+                    return null;
+                if (_size.compareAndSet(size, size + 1))
+                    break;
+            }
+            _stack.offerFirst(this);
+
+            while (true)
+            {
+                Runnable task = _task;
+                if (task != null)
+                {
+                    _task = null;
+                    return task == STOP ? null : task;
+                }
+
+                // If stopped, leave the stack, unless this thread has been
+                // popped already, in which case a task is being handed off.
+                if (!isRunning() && _stack.remove(this))
+                {
+                    _size.decrementAndGet();
+                    return null;
+                }
+
+                LockSupport.park(this);
+            }
+        }
+    }
+}
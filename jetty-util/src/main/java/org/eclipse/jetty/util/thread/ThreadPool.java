@@ -63,6 +63,16 @@ public interface ThreadPool extends Executor
     public boolean isLowOnThreads();
     
 
+    /* ------------------------------------------------------------ */
+    /**
+     * <p>A marker for jobs that run for as long as there is work for them,
+     * such as acceptor, selector and production loops, rather than a single task.</p>
+     * <p>Thread pools exclude these jobs from their job execution time statistics.</p>
+     */
+    public interface LongLived extends Runnable
+    {
+    }
+
     /* ------------------------------------------------------------ */
     /* ------------------------------------------------------------ */
     public interface SizedThreadPool extends ThreadPool
@@ -0,0 +1,390 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.thread;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.component.Dumpable;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * <p>Implementation of {@link Scheduler} based on a hashed timing wheel.</p>
+ * <p>Time is divided in ticks of a fixed duration, and the wheel is an array of buckets,
+ * one per tick, that wraps around. A task is placed in the bucket of the tick at which
+ * it expires, along with the number of complete rotations of the wheel still to wait,
+ * so that scheduling and cancelling a task are O(1) operations regardless of the
+ * number of scheduled tasks.</p>
+ * <p>Tasks are never run before their delay, but may run up to one tick later,
+ * so this scheduler is best suited to large numbers of imprecise timeouts, such
+ * as connection idle timeouts, that are frequently scheduled and cancelled.</p>
+ * <p>Scheduled and cancelled tasks are handed over to the wheel thread via concurrent
+ * queues, so that the wheel buckets are only ever accessed by the wheel thread,
+ * which also runs the expired tasks.</p>
+ */
+public class TimingWheelScheduler extends AbstractLifeCycle implements Scheduler, Dumpable
+{
+    private static final Logger LOG = Log.getLogger(TimingWheelScheduler.class);
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final String _name;
+    private final boolean _daemon;
+    private final long _tickNanos;
+    private final Bucket[] _wheel;
+    private final int _mask;
+    private final Queue<WheelTask> _scheduled = new ConcurrentLinkedQueue<>();
+    private final Queue<WheelTask> _cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger _size = new AtomicInteger();
+    private volatile Thread _thread;
+    private volatile long _startNanos;
+    private long _tick;
+
+    public TimingWheelScheduler()
+    {
+        this(null, false);
+    }
+
+    public TimingWheelScheduler(String name, boolean daemon)
+    {
+        this(name, daemon, 100, TimeUnit.MILLISECONDS, 512);
+    }
+
+    /**
+     * @param name the name of the wheel thread, or null for a default name
+     * @param daemon whether the wheel thread is a daemon thread
+     * @param tickDuration the duration of a tick, which is the precision of this scheduler
+     * @param unit the unit of the tick duration
+     * @param wheelSize the number of buckets of the wheel, rounded up to a power of 2
+     */
+    public TimingWheelScheduler(String name, boolean daemon, long tickDuration, TimeUnit unit, int wheelSize)
+    {
+        if (tickDuration <= 0)
+            throw new IllegalArgumentException("tickDuration <= 0");
+        if (wheelSize <= 0 || wheelSize > (1 << 30))
+            throw new IllegalArgumentException("Invalid wheelSize " + wheelSize);
+        _name = name == null ? "Scheduler-" + hashCode() : name;
+        _daemon = daemon;
+        _tickNanos = unit.toNanos(tickDuration);
+        int size = Integer.highestOneBit(wheelSize);
+        if (size < wheelSize)
+            size <<= 1;
+        _wheel = new Bucket[size];
+        for (int i = 0; i < size; ++i)
+            _wheel[i] = new Bucket();
+        _mask = size - 1;
+    }
+
+    public long getTickDuration(TimeUnit unit)
+    {
+        return unit.convert(_tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public int getWheelSize()
+    {
+        return _wheel.length;
+    }
+
+    /**
+     * @return the number of tasks scheduled and not yet expired or cancelled
+     */
+    public int getSize()
+    {
+        return _size.get();
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        _startNanos = System.nanoTime();
+        _tick = 0;
+        Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                TimingWheelScheduler.this.run();
+            }
+        }, _name);
+        thread.setDaemon(_daemon);
+        _thread = thread;
+        super.doStart();
+        thread.start();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        Thread thread = _thread;
+        _thread = null;
+        if (thread != null)
+        {
+            thread.interrupt();
+            if (thread != Thread.currentThread())
+                thread.join();
+        }
+        super.doStop();
+        for (Bucket bucket : _wheel)
+            bucket.clear();
+        _scheduled.clear();
+        _cancelled.clear();
+        _size.set(0);
+    }
+
+    @Override
+    public Task schedule(Runnable task, long delay, TimeUnit units)
+    {
+        if (_thread == null)
+            return new Task()
+            {
+                @Override
+                public boolean cancel()
+                {
+                    return false;
+                }
+            };
+
+        long deadline = System.nanoTime() - _startNanos + Math.max(0, units.toNanos(delay));
+        WheelTask wheelTask = new WheelTask(task, deadline);
+        _size.incrementAndGet();
+        _scheduled.offer(wheelTask);
+        return wheelTask;
+    }
+
+    private void run()
+    {
+        Thread thread = Thread.currentThread();
+        while (_thread == thread)
+        {
+            if (!waitForNextTick())
+                break;
+
+            removeCancelled();
+            transferScheduled();
+
+            Bucket bucket = _wheel[(int)(_tick & _mask)];
+            bucket.expire();
+            ++_tick;
+        }
+    }
+
+    private boolean waitForNextTick()
+    {
+        long deadline = _startNanos + (_tick + 1) * _tickNanos;
+        while (true)
+        {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0)
+                return true;
+            try
+            {
+                TimeUnit.NANOSECONDS.sleep(remaining);
+            }
+            catch (InterruptedException x)
+            {
+                return false;
+            }
+        }
+    }
+
+    private void removeCancelled()
+    {
+        while (true)
+        {
+            WheelTask task = _cancelled.poll();
+            if (task == null)
+                break;
+            if (task._bucket != null)
+                task._bucket.remove(task);
+        }
+    }
+
+    private void transferScheduled()
+    {
+        // Bound the transfers per tick, so that a thread scheduling
+        // continuously cannot prevent the wheel from advancing.
+        for (int i = 0; i < 100_000; ++i)
+        {
+            WheelTask task = _scheduled.poll();
+            if (task == null)
+                break;
+            if (task.get() == CANCELLED)
+                continue;
+
+            long ticks = Math.max(task._deadline / _tickNanos, _tick);
+            task._rounds = (ticks - _tick) / _wheel.length;
+            _wheel[(int)(ticks & _mask)].add(task);
+        }
+    }
+
+    @Override
+    public String dump()
+    {
+        return ContainerLifeCycle.dump(this);
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        ContainerLifeCycle.dumpObject(out, this);
+        Thread thread = _thread;
+        if (thread != null)
+        {
+            List<StackTraceElement> frames = Arrays.asList(thread.getStackTrace());
+            ContainerLifeCycle.dump(out, indent, frames);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,tick=%dms,wheel=%d,size=%d}",
+                getClass().getSimpleName(),
+                hashCode(),
+                getState(),
+                TimeUnit.NANOSECONDS.toMillis(_tickNanos),
+                _wheel.length,
+                getSize());
+    }
+
+    /**
+     * <p>A doubly linked list of tasks, only accessed by the wheel thread.</p>
+     */
+    private class Bucket
+    {
+        private WheelTask _head;
+        private WheelTask _tail;
+
+        private void add(WheelTask task)
+        {
+            task._bucket = this;
+            if (_tail == null)
+            {
+                _head = _tail = task;
+            }
+            else
+            {
+                _tail._next = task;
+                task._prev = _tail;
+                _tail = task;
+            }
+        }
+
+        private void remove(WheelTask task)
+        {
+            WheelTask next = task._next;
+            if (task._prev != null)
+                task._prev._next = next;
+            if (next != null)
+                next._prev = task._prev;
+            if (task == _head)
+                _head = next;
+            if (task == _tail)
+                _tail = task._prev;
+            task._prev = null;
+            task._next = null;
+            task._bucket = null;
+        }
+
+        private void expire()
+        {
+            WheelTask task = _head;
+            while (task != null)
+            {
+                WheelTask next = task._next;
+                if (task._rounds <= 0)
+                {
+                    remove(task);
+                    task.expire();
+                }
+                else
+                {
+                    --task._rounds;
+                }
+                task = next;
+            }
+        }
+
+        private void clear()
+        {
+            _head = _tail = null;
+        }
+    }
+
+    private class WheelTask extends AtomicInteger implements Task
+    {
+        private final Runnable _task;
+        private final long _deadline;
+        private long _rounds;
+        private Bucket _bucket;
+        private WheelTask _prev;
+        private WheelTask _next;
+
+        private WheelTask(Runnable task, long deadline)
+        {
+            super(PENDING);
+            _task = task;
+            _deadline = deadline;
+        }
+
+        @Override
+        public boolean cancel()
+        {
+            if (!compareAndSet(PENDING, CANCELLED))
+                return false;
+            _size.decrementAndGet();
+            _cancelled.offer(this);
+            return true;
+        }
+
+        private void expire()
+        {
+            if (!compareAndSet(PENDING, EXPIRED))
+                return;
+            _size.decrementAndGet();
+            try
+            {
+                _task.run();
+            }
+            catch (Throwable x)
+            {
+                LOG.warn("Exception while executing task " + _task, x);
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s.%s@%x{%s}",
+                    TimingWheelScheduler.class.getSimpleName(),
+                    WheelTask.class.getSimpleName(),
+                    hashCode(),
+                    _task);
+        }
+    }
+}
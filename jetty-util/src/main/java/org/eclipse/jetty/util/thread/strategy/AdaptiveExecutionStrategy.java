@@ -0,0 +1,529 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.util.thread.strategy;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.thread.ExecutionStrategy;
+import org.eclipse.jetty.util.thread.Locker;
+import org.eclipse.jetty.util.thread.Locker.Lock;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ReservedThreadExecutor;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+/**
+ * <p>A strategy that chooses, for each produced task, how to run it depending
+ * on whether the task may block:</p>
+ * <ul>
+ * <li>tasks that declare themselves non-blocking are run by the producing thread,
+ * which then continues producing (produce-consume), so that fast tasks such as
+ * HTTP/2 control frames are never delayed by a thread handoff;</li>
+ * <li>other tasks are run by the producing thread after production has been
+ * handed off to another thread (execute-produce-consume), so that a task that
+ * blocks cannot stall production;</li>
+ * <li>other tasks are submitted to the executor when it is low on threads,
+ * when production cannot be handed off, or when they are measured as slow,
+ * and this thread continues producing (produce-execute-consume).</li>
+ * </ul>
+ * <p>Whether a task may block is declared by tasks that implement
+ * {@link ExecutionStrategy.Task}; other tasks are assumed to block.
+ * The run time of the undeclared tasks of the same class is measured, and a task
+ * class whose average run time is above the {@link #getSlowTaskThreshold() slow task
+ * threshold} is executed rather than run after handing off production, as a slow task
+ * gains little from running in the thread that produced it, while handing off
+ * production takes a reserved thread. Executed slow tasks are still measured, so that
+ * a task class that becomes fast again returns to execute-produce-consume.
+ * At most {@link #MAX_PROFILES} task classes are measured; tasks of other
+ * classes are never considered slow.</p>
+ */
+@ManagedObject("Adaptive execution strategy")
+public class AdaptiveExecutionStrategy implements ExecutionStrategy, ThreadPool.LongLived
+{
+    private static final Logger LOG = Log.getLogger(AdaptiveExecutionStrategy.class);
+    /** The maximum number of task classes whose run time is measured */
+    public static final int MAX_PROFILES = 64;
+
+    private final Locker _locker = new Locker();
+    private final Runnable _runExecute = new RunExecute();
+    private final LongAdder _produceConsumed = new LongAdder();
+    private final LongAdder _executeProduceConsumed = new LongAdder();
+    private final LongAdder _produceExecuteConsumed = new LongAdder();
+    private final Producer _producer;
+    private final Executor _executor;
+    private final ThreadPool _threadpool;
+    private final long _slowTaskThreshold;
+    private final ConcurrentMap<Class<?>,TaskProfile> _profiles = new ConcurrentHashMap<>();
+    private boolean _idle=true;
+    private boolean _execute;
+    private boolean _producing;
+    private boolean _pending;
+
+    public AdaptiveExecutionStrategy(Producer producer, Executor executor)
+    {
+        this(producer,executor,50,TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * @param producer the task producer
+     * @param executor the executor to hand off production or tasks to
+     * @param slowTaskThreshold the average run time above which undeclared tasks are executed
+     * rather than run after handing off production
+     * @param unit the unit of the threshold
+     */
+    public AdaptiveExecutionStrategy(Producer producer, Executor executor, long slowTaskThreshold, TimeUnit unit)
+    {
+        _producer = producer;
+        _executor = executor;
+        _threadpool = (executor instanceof ThreadPool)?((ThreadPool)executor):null;
+        _slowTaskThreshold = unit.toNanos(slowTaskThreshold);
+    }
+
+    @ManagedAttribute("The average run time in ns above which undeclared tasks are executed rather than run after handing off production")
+    public long getSlowTaskThreshold()
+    {
+        return _slowTaskThreshold;
+    }
+
+    @ManagedAttribute("The number of tasks run by the producing thread before producing again")
+    public long getProduceConsumed()
+    {
+        return _produceConsumed.sum();
+    }
+
+    @ManagedAttribute("The number of tasks run by the producing thread after handing off production")
+    public long getExecuteProduceConsumed()
+    {
+        return _executeProduceConsumed.sum();
+    }
+
+    @ManagedAttribute("The number of tasks submitted to the executor")
+    public long getProduceExecuteConsumed()
+    {
+        return _produceExecuteConsumed.sum();
+    }
+
+    @ManagedOperation(value="Resets the statistics and the measured task profiles",impact="ACTION")
+    public void reset()
+    {
+        _profiles.clear();
+        _produceConsumed.reset();
+        _executeProduceConsumed.reset();
+        _produceExecuteConsumed.reset();
+    }
+
+    @Override
+    public void execute()
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("{} execute",this);
+
+        boolean produce=false;
+        try (Lock locked = _locker.lock())
+        {
+            // If we are idle and a thread is not producing
+            if (_idle)
+            {
+                if (_producing)
+                    throw new IllegalStateException();
+
+                // Then this thread will do the producing
+                produce=_producing=true;
+                // and we are no longer idle
+                _idle=false;
+            }
+            else
+            {
+                // Otherwise, lets tell the producing thread
+                // that it should call produce again before going idle
+                _execute=true;
+            }
+        }
+
+        if (produce)
+            produceAndRun();
+    }
+
+    @Override
+    public void dispatch()
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("{} spawning",this);
+        boolean dispatch=false;
+        try (Lock locked = _locker.lock())
+        {
+            if (_idle)
+                dispatch=true;
+            else
+                _execute=true;
+        }
+        if (dispatch)
+            _executor.execute(_runExecute);
+    }
+
+    @Override
+    public void run()
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("{} run",this);
+        boolean produce=false;
+        try (Lock locked = _locker.lock())
+        {
+            _pending=false;
+            if (!_idle && !_producing)
+                produce=_producing=true;
+        }
+
+        if (produce)
+            produceAndRun();
+    }
+
+    private void produceAndRun()
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("{} produce enter",this);
+
+        while (true)
+        {
+            // If we got here, then we are the thread that is producing.
+            Runnable task = _producer.produce();
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("{} produced {}",this,task);
+
+            if (task == null)
+            {
+                try (Lock locked = _locker.lock())
+                {
+                    // Finished producing
+                    _producing=false;
+
+                    // Was there an additional call to execute?
+                    if (_execute)
+                    {
+                        _idle=false;
+                        _producing=true;
+                        _execute=false;
+                        continue;
+                    }
+
+                    // ... no, so we are idle
+                    _idle=true;
+                    break;
+                }
+            }
+
+            if (isNonBlocking(task))
+            {
+                // Run the task and keep producing, without a thread handoff.
+                if (LOG.isDebugEnabled())
+                    LOG.debug("{} PC {}",this,task);
+                _produceConsumed.increment();
+                runTask(task);
+                try (Lock locked = _locker.lock())
+                {
+                    _execute=false;
+                }
+                continue;
+            }
+
+            if ((_threadpool!=null && _threadpool.isLowOnThreads()) || isSlow(task))
+            {
+                // Handing off production may starve production, or is not worth
+                // a reserved thread for a slow task, so queue the task.
+                if (!produceExecuteConsume(task))
+                {
+                    // The task was not executed, so run it in this thread.
+                    _executeProduceConsumed.increment();
+                    runTask(task);
+                }
+                continue;
+            }
+
+            boolean dispatch=false;
+            try (Lock locked = _locker.lock())
+            {
+                // We will run the task ourselves, so if
+                // we don't have another thread pending
+                _producing=false;
+                if (!_pending)
+                {
+                    // dispatch one
+                    dispatch=_pending=true;
+                }
+                _execute=false;
+            }
+
+            if (dispatch && !dispatchProducer())
+            {
+                // Production could not be handed off, so execute the task and
+                // continue producing, unless another thread has become the producer.
+                boolean produce=false;
+                try (Lock locked = _locker.lock())
+                {
+                    _pending=false;
+                    if (!_producing)
+                        produce=_producing=true;
+                }
+                if (produceExecuteConsume(task))
+                {
+                    if (produce)
+                        continue;
+                    break;
+                }
+
+                // The task was not executed, so give up
+                // production and run the task in this thread.
+                if (produce)
+                {
+                    try (Lock locked = _locker.lock())
+                    {
+                        _producing=false;
+                    }
+                }
+            }
+
+            // Run the task.
+            if (LOG.isDebugEnabled())
+                LOG.debug("{} EPC {}",this,task);
+            _executeProduceConsumed.increment();
+            runTask(task);
+
+            // Once we have run the task, we can try producing again.
+            try (Lock locked = _locker.lock())
+            {
+                // Is another thread already producing or we are now idle?
+                if (_producing || _idle)
+                    break;
+                _producing=true;
+            }
+        }
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("{} produce exit",this);
+    }
+
+    /**
+     * @param task the task to execute
+     * @return true if the task has been executed, false if the executor rejected it
+     */
+    private boolean produceExecuteConsume(Runnable task)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("{} PEC {}",this,task);
+        try (Lock locked = _locker.lock())
+        {
+            _execute=false;
+        }
+        if (!(task instanceof Task))
+        {
+            // Keep measuring slow tasks, so that they can be reclassified as fast.
+            TaskProfile profile = profileOf(task);
+            if (profile.isSlow())
+                task = new ProfiledTask(task,profile);
+        }
+        try
+        {
+            _executor.execute(task);
+            _produceExecuteConsumed.increment();
+            return true;
+        }
+        catch (RejectedExecutionException x)
+        {
+            LOG.ignore(x);
+            return false;
+        }
+    }
+
+    /**
+     * @return true if a thread has been dispatched to continue production,
+     * false if no reserved thread was available to take over production
+     */
+    private boolean dispatchProducer()
+    {
+        ReservedThreadExecutor reserved = _threadpool instanceof QueuedThreadPool?((QueuedThreadPool)_threadpool).getReservedThreadExecutor():null;
+        if (reserved==null)
+        {
+            _executor.execute(this);
+            return true;
+        }
+        return reserved.tryExecute(this);
+    }
+
+    /**
+     * @param task the task to classify
+     * @return whether the task has been declared as non-blocking
+     */
+    protected boolean isNonBlocking(Runnable task)
+    {
+        return task instanceof Task && ((Task)task).isNonBlocking();
+    }
+
+    /**
+     * @param task the task to classify
+     * @return whether the task is undeclared and has been measured as slow
+     */
+    protected boolean isSlow(Runnable task)
+    {
+        return !(task instanceof Task) && profileOf(task).isSlow();
+    }
+
+    private void runTask(Runnable task)
+    {
+        if (task instanceof Task)
+            task.run();
+        else
+            profileOf(task).run(task);
+    }
+
+    /**
+     * @param task the task to profile
+     * @return the profile of the task class, or a profile that is not retained
+     * if {@link #MAX_PROFILES} task classes are already measured
+     */
+    private TaskProfile profileOf(Runnable task)
+    {
+        Class<?> type = task.getClass();
+        TaskProfile profile = _profiles.get(type);
+        if (profile==null)
+        {
+            profile = new TaskProfile();
+            if (_profiles.size()<MAX_PROFILES)
+            {
+                TaskProfile existing = _profiles.putIfAbsent(type,profile);
+                if (existing!=null)
+                    profile = existing;
+            }
+        }
+        return profile;
+    }
+
+    public Boolean isIdle()
+    {
+        try (Lock locked = _locker.lock())
+        {
+            return _idle;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder();
+        builder.append("AES ");
+        try (Lock locked = _locker.lock())
+        {
+            builder.append(_idle?"Idle/":"");
+            builder.append(_producing?"Prod/":"");
+            builder.append(_pending?"Pend/":"");
+            builder.append(_execute?"Exec/":"");
+        }
+        builder.append(_producer);
+        return builder.toString();
+    }
+
+    /**
+     * <p>The measured run time of the tasks of one class, as an exponentially
+     * weighted moving average that jumps up to any run time above the threshold.</p>
+     */
+    private class TaskProfile
+    {
+        private final AtomicLong _samples = new AtomicLong();
+        private volatile long _average;
+
+        private void run(Runnable task)
+        {
+            long begin = System.nanoTime();
+            try
+            {
+                task.run();
+            }
+            finally
+            {
+                record(System.nanoTime()-begin);
+            }
+        }
+
+        private void record(long nanos)
+        {
+            long samples = _samples.incrementAndGet();
+            long average = _average;
+            if (samples==1 || nanos>_slowTaskThreshold)
+                average = Math.max(average,nanos);
+            else
+                average += (nanos-average)/8;
+            _average = average;
+        }
+
+        private boolean isSlow()
+        {
+            return _average>_slowTaskThreshold;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x{samples=%d,avg=%dns}",getClass().getSimpleName(),hashCode(),_samples.get(),_average);
+        }
+    }
+
+    private static class ProfiledTask implements Runnable
+    {
+        private final Runnable _task;
+        private final TaskProfile _profile;
+
+        private ProfiledTask(Runnable task, TaskProfile profile)
+        {
+            _task = task;
+            _profile = profile;
+        }
+
+        @Override
+        public void run()
+        {
+            _profile.run(_task);
+        }
+
+        @Override
+        public String toString()
+        {
+            return _task.toString();
+        }
+    }
+
+    private class RunExecute implements ThreadPool.LongLived
+    {
+        @Override
+        public void run()
+        {
+            execute();
+        }
+    }
+}
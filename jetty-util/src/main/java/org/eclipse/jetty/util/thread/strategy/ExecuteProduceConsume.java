@@ -19,12 +19,15 @@
 package org.eclipse.jetty.util.thread.strategy;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.thread.ExecutionStrategy;
 import org.eclipse.jetty.util.thread.Locker;
 import org.eclipse.jetty.util.thread.Locker.Lock;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ReservedThreadExecutor;
 import org.eclipse.jetty.util.thread.ThreadPool;
 
 /**
@@ -41,8 +44,14 @@ import org.eclipse.jetty.util.thread.ThreadPool;
  * does not yet have capacity to consume, which can save memory and exert back
  * pressure on producers.
  * </p>
+ * <p>If the executor is a {@link QueuedThreadPool} with
+ * {@link QueuedThreadPool#setReservedThreads(int) reserved threads}, production is
+ * handed off directly to a reserved thread rather than queued as a job. If no reserved
+ * thread is available, the strategy falls back to produce-execute-consume for that task:
+ * the task is executed by the executor and this thread continues producing.
+ * </p>
  */
-public class ExecuteProduceConsume implements ExecutionStrategy, Runnable
+public class ExecuteProduceConsume implements ExecutionStrategy, ThreadPool.LongLived
 {
     private static final Logger LOG = Log.getLogger(ExecuteProduceConsume.class);
     private final Locker _locker = new Locker();
@@ -204,7 +213,41 @@ public class ExecuteProduceConsume implements ExecutionStrategy, Runnable
                 // Spawn a new thread to continue production by running the produce loop.
                 if (LOG.isDebugEnabled())
                     LOG.debug("{} dispatch",this);
-                _executor.execute(this);
+                if (!dispatchProducer())
+                {
+                    // No reserved thread could take over production, so
+                    // execute the task and continue producing in this thread,
+                    // unless another thread has become the producer meanwhile.
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("{} execute {}",this,task);
+                    boolean produce=false;
+                    try (Lock locked = _locker.lock())
+                    {
+                        _pending=false;
+                        if (!_producing)
+                            produce=_producing=true;
+                    }
+                    try
+                    {
+                        _executor.execute(task);
+                        if (produce)
+                            continue;
+                        break;
+                    }
+                    catch (RejectedExecutionException x)
+                    {
+                        // The task was not executed, so give up
+                        // production and run the task in this thread.
+                        LOG.ignore(x);
+                        if (produce)
+                        {
+                            try (Lock locked = _locker.lock())
+                            {
+                                _producing=false;
+                            }
+                        }
+                    }
+                }
             }
 
             // Run the task.
@@ -228,6 +271,21 @@ public class ExecuteProduceConsume implements ExecutionStrategy, Runnable
             LOG.debug("{} produce exit",this);
     }
 
+    /**
+     * @return true if a thread has been dispatched to continue production,
+     * false if no reserved thread was available to take over production
+     */
+    private boolean dispatchProducer()
+    {
+        ReservedThreadExecutor reserved = _threadpool instanceof QueuedThreadPool?((QueuedThreadPool)_threadpool).getReservedThreadExecutor():null;
+        if (reserved==null)
+        {
+            _executor.execute(this);
+            return true;
+        }
+        return reserved.tryExecute(this);
+    }
+
     public Boolean isIdle()
     {
         try (Lock locked = _locker.lock())
@@ -251,7 +309,7 @@ public class ExecuteProduceConsume implements ExecutionStrategy, Runnable
         return builder.toString();
     }
 
-    private class RunExecute implements Runnable
+    private class RunExecute implements ThreadPool.LongLived
     {
         @Override
         public void run()
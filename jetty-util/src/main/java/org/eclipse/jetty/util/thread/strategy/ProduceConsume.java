@@ -21,12 +21,13 @@ package org.eclipse.jetty.util.thread.strategy;
 import java.util.concurrent.Executor;
 
 import org.eclipse.jetty.util.thread.ExecutionStrategy;
+import org.eclipse.jetty.util.thread.ThreadPool;
 
 /**
  * <p>A strategy where the caller thread iterates over task production, submitting each
  * task to an {@link Executor} for execution.</p>
  */
-public class ProduceConsume implements ExecutionStrategy, Runnable
+public class ProduceConsume implements ExecutionStrategy, ThreadPool.LongLived
 {
     private final Producer _producer;
     private final Executor _executor;
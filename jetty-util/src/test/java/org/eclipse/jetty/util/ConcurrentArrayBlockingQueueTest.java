@@ -0,0 +1,196 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConcurrentArrayBlockingQueueTest
+{
+    @Test
+    public void testOfferPollSize() throws Exception
+    {
+        ConcurrentArrayBlockingQueue<String> queue = new ConcurrentArrayBlockingQueue<>(4, 0);
+        Assert.assertTrue(queue.isEmpty());
+        String[] items = new String[10];
+        for (int i = 0; i < items.length; ++i)
+        {
+            items[i] = "item" + i;
+            Assert.assertTrue(queue.offer(items[i]));
+        }
+        Assert.assertEquals(10, queue.size());
+        Assert.assertFalse(queue.isEmpty());
+
+        Assert.assertTrue(queue.remove(items[5]));
+        Assert.assertFalse(queue.remove(items[5]));
+        Assert.assertEquals(9, queue.size());
+
+        Assert.assertEquals("item0", queue.poll());
+        Assert.assertEquals("item1", queue.poll(1, TimeUnit.SECONDS));
+        Assert.assertEquals("item2", queue.take());
+        Assert.assertEquals(6, queue.size());
+
+        List<String> drained = new ArrayList<>();
+        Assert.assertEquals(2, queue.drainTo(drained, 2));
+        Assert.assertEquals(4, queue.drainTo(drained));
+        Assert.assertEquals("[item3, item4, item6, item7, item8, item9]", drained.toString());
+        Assert.assertEquals(0, queue.size());
+        Assert.assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testPollTimeout() throws Exception
+    {
+        ConcurrentArrayBlockingQueue<String> queue = new ConcurrentArrayBlockingQueue<>();
+        long start = System.nanoTime();
+        Assert.assertNull(queue.poll(200, TimeUnit.MILLISECONDS));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Assert.assertTrue(elapsed >= 200);
+    }
+
+    @Test
+    public void testTake() throws Exception
+    {
+        final ConcurrentArrayBlockingQueue<String> queue = new ConcurrentArrayBlockingQueue<>();
+        final AtomicReference<String> taken = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        Thread thread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    taken.set(queue.take());
+                    latch.countDown();
+                }
+                catch (InterruptedException x)
+                {
+                    x.printStackTrace();
+                }
+            }
+        };
+        thread.start();
+
+        Thread.sleep(200);
+        Assert.assertEquals(1, latch.getCount());
+        queue.offer("zero");
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals("zero", taken.get());
+    }
+
+    @Test
+    public void testInterrupt() throws Exception
+    {
+        final ConcurrentArrayBlockingQueue<String> queue = new ConcurrentArrayBlockingQueue<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        Thread thread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    queue.take();
+                }
+                catch (InterruptedException x)
+                {
+                    latch.countDown();
+                }
+            }
+        };
+        thread.start();
+
+        Thread.sleep(200);
+        thread.interrupt();
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testConcurrentTakeNoLostWakeups() throws Exception
+    {
+        // No spinning, so that consumers park as often as possible.
+        final ConcurrentArrayBlockingQueue<Integer> queue = new ConcurrentArrayBlockingQueue<>(16, 0);
+        final int consumers = 8;
+        final int producers = 8;
+        final int iterations = 10000;
+        final AtomicInteger sum = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(producers * iterations);
+
+        for (int i = 0; i < consumers; ++i)
+        {
+            Thread consumer = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        while (true)
+                        {
+                            Integer item = queue.take();
+                            if (item < 0)
+                                break;
+                            sum.addAndGet(item);
+                            latch.countDown();
+                        }
+                    }
+                    catch (InterruptedException x)
+                    {
+                        x.printStackTrace();
+                    }
+                }
+            };
+            consumer.start();
+        }
+
+        for (int i = 0; i < producers; ++i)
+        {
+            Thread producer = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for (int j = 0; j < iterations; ++j)
+                    {
+                        queue.offer(1);
+                        if (j % 100 == 0)
+                            Thread.yield();
+                    }
+                }
+            };
+            producer.start();
+        }
+
+        Assert.assertTrue(latch.await(30, TimeUnit.SECONDS));
+        Assert.assertEquals(producers * iterations, sum.get());
+        Assert.assertEquals(0, queue.size());
+
+        for (int i = 0; i < consumers; ++i)
+            queue.offer(-1);
+    }
+}
@@ -0,0 +1,269 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+public class MultiPartParserTest
+{
+    private static final String BOUNDARY = "AaB03x";
+
+    private static final String FORM =
+            "This is the preamble\r\n" +
+            "--AaB03x\r\n" +
+            "Content-Disposition: form-data; name=\"field1\"\r\n" +
+            "\r\n" +
+            "Joe Blow\r\n" +
+            "--AaB03x \t\r\n" +
+            "Content-Disposition: form-data;\r\n" +
+            "  name=\"pics\"; filename=\"file1.txt\"\r\n" +
+            "Content-Type: text/plain\r\n" +
+            "\r\n" +
+            "line one\r\n" +
+            "--AaB03 is not a boundary\r\n" +
+            "-- AaB03x neither is this\r\n" +
+            "\r\n" +
+            "--AaB03x\r\n" +
+            "Content-Disposition: form-data; name=\"empty\"\r\n" +
+            "\r\n" +
+            "\r\n" +
+            "--AaB03x--\r\n" +
+            "This is the epilogue\r\n";
+
+    private static final List<String> EXPECTED = new ArrayList<>();
+    static
+    {
+        EXPECTED.add("start");
+        EXPECTED.add("Content-Disposition: form-data; name=\"field1\"");
+        EXPECTED.add("header");
+        EXPECTED.add("content<Joe Blow>");
+        EXPECTED.add("start");
+        EXPECTED.add("Content-Disposition: form-data; name=\"pics\"; filename=\"file1.txt\"");
+        EXPECTED.add("Content-Type: text/plain");
+        EXPECTED.add("header");
+        EXPECTED.add("content<line one\r\n--AaB03 is not a boundary\r\n-- AaB03x neither is this\r\n>");
+        EXPECTED.add("start");
+        EXPECTED.add("Content-Disposition: form-data; name=\"empty\"");
+        EXPECTED.add("header");
+        EXPECTED.add("content<>");
+        EXPECTED.add("complete");
+    }
+
+    @Test
+    public void testForm() throws Exception
+    {
+        Recorder recorder = new Recorder();
+        MultiPartParser parser = new MultiPartParser(recorder, BOUNDARY);
+        assertTrue(parser.parse(BufferUtil.toBuffer(FORM), true));
+        assertEquals(EXPECTED, recorder.getEvents());
+    }
+
+    @Test
+    public void testFormWithLFLineEndings() throws Exception
+    {
+        Recorder recorder = new Recorder();
+        MultiPartParser parser = new MultiPartParser(recorder, BOUNDARY);
+        assertTrue(parser.parse(BufferUtil.toBuffer(FORM.replace("\r\n", "\n")), true));
+
+        List<String> expected = new ArrayList<>();
+        for (String event : EXPECTED)
+            expected.add(event.replace("\r\n", "\n"));
+        assertEquals(expected, recorder.getEvents());
+    }
+
+    @Test
+    public void testCROnlyWithLeadingLFContent() throws Exception
+    {
+        String form = "--AaB03x\r" +
+                "Content-Disposition: form-data; name=\"field1\"\r" +
+                "\r" +
+                "\nJoe Blow\n\r" +
+                "--AaB03x--\r";
+        Recorder recorder = new Recorder();
+        MultiPartParser parser = new MultiPartParser(recorder, BOUNDARY);
+        assertTrue(parser.parse(BufferUtil.toBuffer(form), true));
+
+        List<String> expected = new ArrayList<>();
+        expected.add("start");
+        expected.add("Content-Disposition: form-data; name=\"field1\"");
+        expected.add("header");
+        expected.add("content<\nJoe Blow\n>");
+        expected.add("complete");
+        assertEquals(expected, recorder.getEvents());
+    }
+
+    @Test
+    public void testFormSplitAtEveryPosition() throws Exception
+    {
+        byte[] form = FORM.getBytes(StandardCharsets.US_ASCII);
+        for (int split1 = 0; split1 <= form.length; ++split1)
+        {
+            for (int split2 = split1; split2 <= form.length; split2 += 7)
+            {
+                Recorder recorder = new Recorder();
+                MultiPartParser parser = new MultiPartParser(recorder, BOUNDARY);
+                parser.parse(ByteBuffer.wrap(form, 0, split1), false);
+                parser.parse(direct(form, split1, split2 - split1), false);
+                assertTrue(parser.parse(ByteBuffer.wrap(form, split2, form.length - split2).slice(), true));
+                assertEquals(split1 + "/" + split2, EXPECTED, recorder.getEvents());
+            }
+        }
+    }
+
+    @Test
+    public void testContentIsNotCopied() throws Exception
+    {
+        String form = "--AaB03x\r\n\r\n" +
+                "0123456789\r\n" +
+                "--AaB03x--";
+        final List<ByteBuffer> chunks = new ArrayList<>();
+        MultiPartParser parser = new MultiPartParser(new MultiPartParser.Handler()
+        {
+            @Override
+            public void content(ByteBuffer buffer, boolean last) throws IOException
+            {
+                if (buffer.hasRemaining())
+                    chunks.add(buffer);
+            }
+        }, BOUNDARY);
+        ByteBuffer buffer = BufferUtil.toBuffer(form);
+        parser.parse(buffer, true);
+
+        assertEquals(1, chunks.size());
+        assertTrue(chunks.get(0).array() == buffer.array());
+        assertEquals("0123456789", BufferUtil.toString(chunks.get(0)));
+    }
+
+    @Test
+    public void testNoContent() throws Exception
+    {
+        expectFailure("", "Missing content");
+    }
+
+    @Test
+    public void testNoInitialBoundary() throws Exception
+    {
+        expectFailure("Content-Disposition: form-data; name=\"field1\"\r\n\r\nJoe Blow\r\n", "Missing initial");
+    }
+
+    @Test
+    public void testNoCloseDelimiter() throws Exception
+    {
+        expectFailure("--AaB03x\r\nContent-Disposition: form-data; name=\"field1\"\r\n\r\nJoe Blow\r\n--AaB03x\r\n", "Incomplete");
+    }
+
+    @Test
+    public void testBadCloseDelimiter() throws Exception
+    {
+        expectFailure("--AaB03x\r\n\r\nJoe Blow\r\n--AaB03x-X\r\n", "close delimiter");
+    }
+
+    @Test
+    public void testHeadersTooLarge() throws Exception
+    {
+        StringBuilder form = new StringBuilder("--AaB03x\r\nX-Large: ");
+        for (int i = 0; i < 1024; ++i)
+            form.append("0123456789");
+        form.append("\r\n\r\n\r\n--AaB03x--");
+        expectFailure(form.toString(), "too large");
+    }
+
+    private void expectFailure(String form, String message) throws Exception
+    {
+        MultiPartParser parser = new MultiPartParser(new Recorder(), BOUNDARY, 8192);
+        try
+        {
+            parser.parse(BufferUtil.toBuffer(form), true);
+            fail();
+        }
+        catch (IOException x)
+        {
+            assertThat(x.getMessage(), Matchers.containsString(message));
+        }
+        assertFalse(parser.isComplete());
+    }
+
+    private static ByteBuffer direct(byte[] bytes, int offset, int length)
+    {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(length);
+        buffer.put(bytes, offset, length);
+        buffer.flip();
+        return buffer;
+    }
+
+    private static class Recorder implements MultiPartParser.Handler
+    {
+        private final List<String> _events = new ArrayList<>();
+        private final StringBuilder _content = new StringBuilder();
+
+        @Override
+        public void startPart() throws IOException
+        {
+            _events.add("start");
+        }
+
+        @Override
+        public void parsedField(String name, String value) throws IOException
+        {
+            _events.add(name + ": " + value);
+        }
+
+        @Override
+        public void headerComplete() throws IOException
+        {
+            _events.add("header");
+        }
+
+        @Override
+        public void content(ByteBuffer buffer, boolean last) throws IOException
+        {
+            _content.append(BufferUtil.toString(buffer, StandardCharsets.ISO_8859_1));
+            if (last)
+            {
+                _events.add("content<" + _content + ">");
+                _content.setLength(0);
+            }
+        }
+
+        @Override
+        public void messageComplete() throws IOException
+        {
+            _events.add("complete");
+        }
+
+        private List<String> getEvents()
+        {
+            return _events;
+        }
+    }
+}
@@ -90,10 +90,32 @@ public class QueueBenchmarkTest
         queues.add(new LinkedBlockingQueue<Runnable>());
         queues.add(new ArrayBlockingQueue<Runnable>(iterations * writers));
         queues.add(new BlockingArrayQueue<Runnable>(iterations * writers));
+        queues.add(new ConcurrentArrayBlockingQueue<Runnable>()); // Jetty lock-free blocking queue
 
         testQueues(readers, writers, iterations, queues, true);
     }
 
+    @Stress("High CPU")
+    @Test
+    public void testBlockingQueuesProducers() throws Exception
+    {
+        int cores = Runtime.getRuntime().availableProcessors();
+        Assume.assumeTrue(cores > 1);
+
+        // Like the thread pool job queue: a varying number of threads execute()
+        // jobs, while a fixed number of pool threads take() them.
+        final int readers = cores / 2;
+        for (int writers : new int[]{1, 8, 64})
+        {
+            final int iterations = 4 * 1024 * 1024 / writers;
+            final List<Queue<Runnable>> queues = new ArrayList<>();
+            queues.add(new BlockingArrayQueue<Runnable>(iterations * writers + readers * writers));
+            queues.add(new ConcurrentArrayBlockingQueue<Runnable>());
+
+            testQueues(readers, writers, iterations, queues, true);
+        }
+    }
+
     private void testQueues(final int readers, final int writers, final int iterations, List<Queue<Runnable>> queues, final boolean blocking) throws Exception
     {
         final int runs = 8;
@@ -0,0 +1,93 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class SearchPatternTest
+{
+    @Test
+    public void testMatch() throws Exception
+    {
+        SearchPattern pattern = SearchPattern.compile("--boundary");
+        byte[] data = "xx--bound--boundary--boundary".getBytes(StandardCharsets.US_ASCII);
+
+        assertEquals(9, pattern.match(data, 0, data.length));
+        assertEquals(9, pattern.match(data, 9, data.length - 9));
+        assertEquals(19, pattern.match(data, 10, data.length - 10));
+        assertEquals(-1, pattern.match(data, 0, 18));
+        assertEquals(-1, pattern.match(data, 20, data.length - 20));
+    }
+
+    @Test
+    public void testMatchAgainstIndexOf() throws Exception
+    {
+        SearchPattern pattern = SearchPattern.compile("abab");
+        String text = "aabaabababbabbaaabab";
+        byte[] data = text.getBytes(StandardCharsets.US_ASCII);
+        for (int offset = 0; offset <= data.length; ++offset)
+        {
+            for (int end = offset; end <= data.length; ++end)
+            {
+                int expected = text.substring(0, end).indexOf("abab", offset);
+                assertEquals(offset + "-" + end, expected, pattern.match(data, offset, end - offset));
+            }
+        }
+    }
+
+    @Test
+    public void testEndsWith() throws Exception
+    {
+        SearchPattern pattern = SearchPattern.compile("--boundary");
+        byte[] data = "content--bou".getBytes(StandardCharsets.US_ASCII);
+
+        assertEquals(5, pattern.endsWith(data, 0, data.length));
+        assertEquals(3, pattern.endsWith(data, 0, data.length - 2));
+        assertEquals(0, pattern.endsWith(data, 0, 6));
+        assertEquals(2, pattern.endsWith(data, 0, data.length - 3));
+
+        // A complete occurrence is not a partial one.
+        data = "--boundary".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(0, pattern.endsWith(data, 0, data.length));
+    }
+
+    @Test
+    public void testStartsWith() throws Exception
+    {
+        SearchPattern pattern = SearchPattern.compile("--boundary");
+        byte[] data = "undary--".getBytes(StandardCharsets.US_ASCII);
+
+        assertEquals(10, pattern.startsWith(data, 0, data.length, 4));
+        assertEquals(6, pattern.startsWith(data, 0, 2, 4));
+        assertEquals(0, pattern.startsWith(data, 0, data.length, 3));
+        assertEquals(0, pattern.startsWith(data, 0, data.length, 0));
+        assertEquals(2, pattern.startsWith(data, 6, 2, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyPattern() throws Exception
+    {
+        SearchPattern.compile("");
+    }
+}
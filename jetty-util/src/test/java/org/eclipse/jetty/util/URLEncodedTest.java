@@ -22,9 +22,11 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 
+import org.hamcrest.Matchers;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -237,6 +239,162 @@ public class URLEncodedTest
     }
 
 
+    /* -------------------------------------------------------------- */
+    @Test
+    public void testUrlEncodedBuffer()
+        throws Exception
+    {
+        String [][] charsets = new String[][]
+        {
+           {StringUtil.__UTF8,null,"%30"},
+           {StringUtil.__ISO_8859_1,StringUtil.__ISO_8859_1,"%30"},
+           {StringUtil.__UTF8,StringUtil.__UTF8,"%30"},
+           {StringUtil.__UTF16,StringUtil.__UTF16,"%00%30"},
+        };
+
+        for (int i=0;i<charsets.length;i++)
+        {
+            byte[] content = ("name\n=value+"+charsets[i][2]+"&name1=&name2&n\u00e3me3=value+3").getBytes(charsets[i][0]);
+            MultiMap<String> m = new MultiMap<>();
+            UrlEncoded.decodeTo(ByteBuffer.wrap(content), m, charsets[i][1]==null?null:Charset.forName(charsets[i][1]),-1,-1);
+            assertEquals(charsets[i][1]+" buffer length",4,m.size());
+            assertEquals(charsets[i][1]+" buffer name\\n","value 0",m.getString("name\n"));
+            assertEquals(charsets[i][1]+" buffer name1","",m.getString("name1"));
+            assertEquals(charsets[i][1]+" buffer name2","",m.getString("name2"));
+            assertEquals(charsets[i][1]+" buffer n\u00e3me3","value 3",m.getString("n\u00e3me3"));
+        }
+    }
+
+    /* -------------------------------------------------------------- */
+    @Test
+    public void testDecoderSplitBuffers()
+        throws Exception
+    {
+        String query="a=1&b=x%E2%82%ACy+z&c=%u30ED&b=2&flag&d=e=f&&";
+        byte[] content=query.getBytes(StandardCharsets.ISO_8859_1);
+
+        // Split the content at every position, so that escapes span buffers.
+        for (int split=0;split<=content.length;split++)
+        {
+            for (boolean direct : new boolean[]{false,true})
+            {
+                MultiMap<String> map = new MultiMap<>();
+                UrlEncodedDecoder decoder = new UrlEncodedDecoder(map,StandardCharsets.UTF_8);
+                decoder.decode(buffer(content,0,split,direct));
+                decoder.decode(buffer(content,split,content.length,direct));
+                decoder.end();
+
+                String reason="split="+split+",direct="+direct;
+                assertEquals(reason,5,map.size());
+                assertEquals(reason,"1",map.getValue("a",0));
+                assertEquals(reason,"x\u20acy z",map.getValue("b",0));
+                assertEquals(reason,"2",map.getValue("b",1));
+                assertEquals(reason,"\u30ed",map.getValue("c",0));
+                assertEquals(reason,"",map.getValue("flag",0));
+                assertEquals(reason,"e=f",map.getValue("d",0));
+            }
+        }
+    }
+
+    /* -------------------------------------------------------------- */
+    @Test
+    public void testDecoderInvalidEscapes()
+        throws Exception
+    {
+        MultiMap<String> map = new MultiMap<>();
+        UrlEncoded.decodeTo(ByteBuffer.wrap("Name14=%uXXXX%GG%+%%+%".getBytes(StandardCharsets.ISO_8859_1)),map,StandardCharsets.UTF_8,-1,-1);
+        assertEquals("\ufffdXXXX\ufffdGG\ufffd \ufffd\ufffd \ufffd",map.getString("Name14"));
+
+        map.clear();
+        UrlEncoded.decodeTo(ByteBuffer.wrap("name=X%c0%afZ&x=%&y".getBytes(StandardCharsets.ISO_8859_1)),map,StandardCharsets.UTF_8,-1,-1);
+        assertEquals("X"+Utf8Appendable.REPLACEMENT+Utf8Appendable.REPLACEMENT+"Z",map.getValue("name",0));
+        assertEquals(""+Utf8Appendable.REPLACEMENT,map.getValue("x",0));
+        assertEquals("",map.getValue("y",0));
+    }
+
+    /* -------------------------------------------------------------- */
+    @Test
+    public void testDecoderSurrogatePairs()
+        throws Exception
+    {
+        String query="a=%uD83D%uDE00&b=x%uD83Dy&%uD83D%uDE00=%uD83D";
+        byte[] content=query.getBytes(StandardCharsets.ISO_8859_1);
+
+        // Split the content at every position, so that pairs span buffers.
+        for (int split=0;split<=content.length;split++)
+        {
+            MultiMap<String> map = new MultiMap<>();
+            UrlEncodedDecoder decoder = new UrlEncodedDecoder(map,StandardCharsets.UTF_8);
+            decoder.decode(buffer(content,0,split,false));
+            decoder.decode(buffer(content,split,content.length,false));
+            decoder.end();
+
+            String reason="split="+split;
+            assertEquals(reason,"\uD83D\uDE00",map.getValue("a",0));
+            // A high surrogate without its low surrogate cannot be encoded.
+            assertEquals(reason,"x?y",map.getValue("b",0));
+            assertEquals(reason,"?",map.getValue("\uD83D\uDE00",0));
+        }
+    }
+
+    /* -------------------------------------------------------------- */
+    @Test
+    public void testDecoderLimits()
+        throws Exception
+    {
+        try
+        {
+            UrlEncoded.decodeTo(ByteBuffer.wrap("a=1&b=2&c=3".getBytes(StandardCharsets.ISO_8859_1)),new MultiMap<String>(),StandardCharsets.UTF_8,-1,2);
+            Assert.fail();
+        }
+        catch (IllegalStateException e)
+        {
+            Assert.assertThat(e.getMessage(),Matchers.containsString("too many keys"));
+        }
+
+        MultiMap<String> map = new MultiMap<>();
+        UrlEncodedDecoder decoder = new UrlEncodedDecoder(map,StandardCharsets.UTF_8,10,-1,new UrlEncodedDecoder.KeyCache());
+        decoder.decode(ByteBuffer.wrap("a=12345".getBytes(StandardCharsets.ISO_8859_1)));
+        try
+        {
+            decoder.decode(ByteBuffer.wrap("6789".getBytes(StandardCharsets.ISO_8859_1)));
+            Assert.fail();
+        }
+        catch (IllegalStateException e)
+        {
+            Assert.assertThat(e.getMessage(),Matchers.containsString("Form too large"));
+        }
+    }
+
+    /* -------------------------------------------------------------- */
+    @Test
+    public void testKeyCache()
+        throws Exception
+    {
+        UrlEncodedDecoder.KeyCache keys = new UrlEncodedDecoder.KeyCache(4);
+        MultiMap<String> map1 = new MultiMap<>();
+        UrlEncodedDecoder decoder = new UrlEncodedDecoder(map1,StandardCharsets.UTF_8,-1,-1,keys);
+        decoder.decode(ByteBuffer.wrap("field=1&other=2".getBytes(StandardCharsets.ISO_8859_1)));
+        decoder.end();
+
+        MultiMap<String> map2 = new MultiMap<>();
+        decoder = new UrlEncodedDecoder(map2,StandardCharsets.UTF_8,-1,-1,keys);
+        decoder.decode(ByteBuffer.wrap("field=3".getBytes(StandardCharsets.ISO_8859_1)));
+        decoder.end();
+
+        String key1 = map1.keySet().stream().filter("field"::equals).findFirst().get();
+        String key2 = map2.keySet().iterator().next();
+        Assert.assertSame(key1,key2);
+        assertEquals("3",map2.getValue("field",0));
+    }
+
+    private ByteBuffer buffer(byte[] content, int from, int to, boolean direct)
+    {
+        ByteBuffer buffer = direct?ByteBuffer.allocateDirect(to-from):ByteBuffer.allocate(to-from);
+        buffer.put(content,from,to-from).flip();
+        return buffer;
+    }
+
     /* -------------------------------------------------------------- */
     @Test
     public void testCharsetViaSystemProperty ()
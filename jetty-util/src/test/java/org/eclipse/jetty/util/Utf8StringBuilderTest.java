@@ -21,6 +21,7 @@ package org.eclipse.jetty.util;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 
 import org.junit.Assert;
@@ -134,4 +135,106 @@ public class Utf8StringBuilderTest
         String result = buffer.toString();
         assertEquals(source,result);
     }
+
+    @Test
+    public void testAsciiRunsAndMultibyte() throws Exception
+    {
+        String[] parts = new String[]{"", "a", "/path/to/resource", "\u00e9", "\u20ac", "\ud83d\ude00", "x=1&y=2"};
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 200; i++)
+        {
+            source.append(parts[i % parts.length]);
+            source.append(parts[(i * 7) % parts.length]);
+            // Vary the length of the ASCII runs around the 8 bytes words.
+            for (int j = 0; j < i % 19; j++)
+                source.append((char)('a' + j));
+        }
+        String expected = source.toString();
+        byte[] bytes = expected.getBytes(StandardCharsets.UTF_8);
+
+        Utf8StringBuilder buffer = new Utf8StringBuilder();
+        buffer.append(bytes, 0, bytes.length);
+        assertEquals(expected, buffer.toString());
+
+        // Split at every offset, so that runs and sequences are split across appends.
+        for (int split = 0; split < 64; split++)
+        {
+            buffer.reset();
+            buffer.append(bytes, 0, split);
+            buffer.append(bytes, split, bytes.length - split);
+            assertEquals(expected, buffer.toString());
+        }
+
+        ByteBuffer heap = BufferUtil.toBuffer(bytes);
+        buffer.reset();
+        buffer.append(heap);
+        assertEquals(0, heap.remaining());
+        assertEquals(expected, buffer.toString());
+
+        ByteBuffer direct = BufferUtil.allocateDirect(bytes.length + 10);
+        BufferUtil.append(direct, bytes, 0, bytes.length);
+        buffer.reset();
+        buffer.append(direct);
+        assertEquals(0, direct.remaining());
+        assertEquals(expected, buffer.toString());
+    }
+
+    @Test
+    public void testMaxChars() throws Exception
+    {
+        byte[] bytes = "0123456789abcdefghij\u00e9klmnopqrstuvwxyz".getBytes(StandardCharsets.UTF_8);
+        for (int maxChars = 0; maxChars < 40; maxChars++)
+        {
+            Utf8StringBuilder bulk = new Utf8StringBuilder();
+            boolean bulkResult = bulk.append(bytes, 0, bytes.length, maxChars);
+
+            Utf8StringBuilder single = new Utf8StringBuilder();
+            boolean singleResult = true;
+            for (byte b : bytes)
+            {
+                if (single.length() > maxChars)
+                {
+                    singleResult = false;
+                    break;
+                }
+                single.append(b);
+            }
+
+            assertEquals(singleResult, bulkResult);
+            assertEquals(single.toString(), bulk.toString());
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testMaxCharsUnlimited() throws Exception
+    {
+        byte[] bytes = "0123456789abcdefghij\u00e9klmnopqrstuvwxyz".getBytes(StandardCharsets.UTF_8);
+        Utf8StringBuilder buffer = new Utf8StringBuilder();
+        assertTrue(buffer.append(bytes, 10, bytes.length - 10, Integer.MAX_VALUE));
+        assertEquals("abcdefghij\u00e9klmnopqrstuvwxyz", buffer.toString());
+    }
+
+    @Test
+    public void testInvalidAfterAsciiRun() throws Exception
+    {
+        byte[] bytes = "0123456789abcdef?ghij".getBytes(StandardCharsets.ISO_8859_1);
+        bytes[16] = (byte)0xFF;
+        for (boolean direct : new boolean[]{false, true})
+        {
+            ByteBuffer buf = direct ? BufferUtil.allocateDirect(bytes.length) : BufferUtil.allocate(bytes.length);
+            BufferUtil.append(buf, bytes, 0, bytes.length);
+            Utf8StringBuilder buffer = new Utf8StringBuilder();
+            try
+            {
+                buffer.append(buf);
+                Assert.fail("Should have thrown a NotUtf8Exception");
+            }
+            catch (Utf8Appendable.NotUtf8Exception e)
+            {
+                // The buffer is positioned after the invalid byte.
+                assertEquals(17, buf.position());
+                assertEquals("0123456789abcdef\ufffd", buffer.getStringBuilder().toString());
+            }
+        }
+    }
 }
@@ -28,12 +28,19 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
 
+import org.eclipse.jetty.toolchain.test.AdvancedRunner;
 import org.eclipse.jetty.toolchain.test.JDK;
 import org.eclipse.jetty.toolchain.test.OS;
+import org.eclipse.jetty.toolchain.test.annotation.Stress;
+import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.component.AbstractLifeCycle;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.StdErrLog;
@@ -43,8 +50,10 @@ import org.junit.Assert;
 import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
+import org.junit.runner.RunWith;
 
 
+@RunWith(AdvancedRunner.class)
 public class SslContextFactoryTest
 {
 
@@ -269,4 +278,197 @@ public class SslContextFactoryTest
         assertFalse(cf.getX509("wild").matches("foo.bar.domain.com"));
         assertFalse(cf.getX509("wild").matches("other.com"));
     }
+
+    @Test
+    public void testSessionCacheConfiguration() throws Exception
+    {
+        Resource keystoreResource = Resource.newSystemResource("keystore");
+        cf.setKeyStoreResource(keystoreResource);
+        cf.setKeyStorePassword("storepwd");
+        cf.setKeyManagerPassword("keypwd");
+        cf.setSslSessionCacheSize(123);
+        cf.setSslSessionTimeout(45);
+        cf.start();
+
+        Assert.assertEquals(123, cf.getSslContext().getServerSessionContext().getSessionCacheSize());
+        Assert.assertEquals(45, cf.getSslContext().getServerSessionContext().getSessionTimeout());
+        Assert.assertEquals(0, cf.getServerSessionCount());
+    }
+
+    @Test
+    public void testSNICertificatesAddedAndRemoved() throws Exception
+    {
+        KeyStore sniKeyStore = loadSniKeyStore();
+        KeyStore.PasswordProtection password = new KeyStore.PasswordProtection("keypwd".toCharArray());
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        keyStore.load(null,null);
+        keyStore.setEntry("jetty",sniKeyStore.getEntry("jetty",password),password);
+        keyStore.setEntry("wild",sniKeyStore.getEntry("wild",password),password);
+        KeyStore.PrivateKeyEntry other = (KeyStore.PrivateKeyEntry)sniKeyStore.getEntry("other",password);
+        X509Certificate otherCertificate = (X509Certificate)other.getCertificate();
+
+        cf.setKeyStore(keyStore);
+        cf.setKeyManagerPassword("keypwd");
+        cf.start();
+        SslContextFactory client = new SslContextFactory(true);
+        client.start();
+
+        try
+        {
+            assertThat(cf.getAliases(),containsInAnyOrder("jetty","wild"));
+            Assert.assertEquals(keyStore.getCertificate("wild"),handshake(cf,client,"www.domain.com"));
+            Assert.assertNotEquals(otherCertificate,handshake(cf,client,"www.example.com"));
+
+            cf.addCertificate("other",other.getPrivateKey(),(X509Certificate[])other.getCertificateChain());
+            assertThat(cf.getAliases(),containsInAnyOrder("jetty","other","wild"));
+            assertTrue(cf.getX509("other").matches("www.example.com"));
+            Assert.assertEquals(otherCertificate,handshake(cf,client,"www.example.com"));
+            Assert.assertEquals(keyStore.getCertificate("jetty"),handshake(cf,client,"jetty.eclipse.org"));
+
+            assertTrue(cf.removeCertificate("other"));
+            assertFalse(cf.removeCertificate("other"));
+            assertThat(cf.getAliases(),containsInAnyOrder("jetty","wild"));
+            Assert.assertNotEquals(otherCertificate,handshake(cf,client,"www.example.com"));
+        }
+        finally
+        {
+            client.stop();
+        }
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testAddCertificateNotStarted() throws Exception
+    {
+        KeyStore.PasswordProtection password = new KeyStore.PasswordProtection("keypwd".toCharArray());
+        KeyStore.PrivateKeyEntry other = (KeyStore.PrivateKeyEntry)loadSniKeyStore().getEntry("other",password);
+        cf.addCertificate("other",other.getPrivateKey(),(X509Certificate[])other.getCertificateChain());
+    }
+
+    @Stress("High CPU")
+    @Test
+    public void testSNIHandshakeBenchmark() throws Exception
+    {
+        KeyStore sniKeyStore = loadSniKeyStore();
+        KeyStore.PasswordProtection password = new KeyStore.PasswordProtection("keypwd".toCharArray());
+        KeyStore.Entry other = sniKeyStore.getEntry("other",password);
+
+        SslContextFactory client = new SslContextFactory(true);
+        client.start();
+        try
+        {
+            for (int certificates : new int[]{1, 5000})
+            {
+                // The same certificate under many aliases makes the key manager
+                // as large as with many tenants, without generating certificates.
+                KeyStore keyStore = KeyStore.getInstance("JKS");
+                keyStore.load(null,null);
+                keyStore.setEntry("jetty",sniKeyStore.getEntry("jetty",password),password);
+                for (int i = 0; i < certificates; ++i)
+                    keyStore.setEntry("other" + i,other,password);
+
+                SslContextFactory server = new SslContextFactory();
+                server.setKeyStore(keyStore);
+                server.setKeyManagerPassword("keypwd");
+                server.start();
+                try
+                {
+                    for (int i = 0; i < 200; ++i)
+                        handshake(server,client,"jetty.eclipse.org");
+
+                    int handshakes = 1000;
+                    long begin = System.nanoTime();
+                    for (int i = 0; i < handshakes; ++i)
+                        handshake(server,client,"jetty.eclipse.org");
+                    long elapsed = System.nanoTime() - begin;
+                    System.err.printf("%d certificates: %d us/handshake%n",certificates,TimeUnit.NANOSECONDS.toMicros(elapsed / handshakes));
+                }
+                finally
+                {
+                    server.stop();
+                }
+            }
+        }
+        finally
+        {
+            client.stop();
+        }
+    }
+
+    private KeyStore loadSniKeyStore() throws Exception
+    {
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        try (InputStream input = Resource.newSystemResource("snikeystore").getInputStream())
+        {
+            keyStore.load(input,"storepwd".toCharArray());
+        }
+        return keyStore;
+    }
+
+    /**
+     * Performs an in memory handshake, returning the certificate chosen by the server.
+     */
+    private X509Certificate handshake(SslContextFactory server, SslContextFactory client, String host) throws Exception
+    {
+        SSLEngine serverEngine = server.newSSLEngine();
+        serverEngine.setUseClientMode(false);
+        SSLEngine clientEngine = client.newSSLEngine(host,443);
+        clientEngine.setUseClientMode(true);
+
+        // The engines require a whole packet buffer of space to wrap, so allow some records to accumulate.
+        int packetSize = serverEngine.getSession().getPacketBufferSize();
+        ByteBuffer clientToServer = ByteBuffer.allocate(4 * packetSize);
+        ByteBuffer serverToClient = ByteBuffer.allocate(4 * packetSize);
+        ByteBuffer application = ByteBuffer.allocate(serverEngine.getSession().getApplicationBufferSize());
+
+        clientEngine.beginHandshake();
+        serverEngine.beginHandshake();
+        for (int i = 0; i < 100; ++i)
+        {
+            boolean clientProgress = step(clientEngine,serverToClient,clientToServer,application);
+            boolean serverProgress = step(serverEngine,clientToServer,serverToClient,application);
+            if (isHandshaken(clientEngine) && isHandshaken(serverEngine))
+                return (X509Certificate)clientEngine.getSession().getPeerCertificates()[0];
+            if (!clientProgress && !serverProgress)
+                break;
+        }
+        throw new IllegalStateException("Handshake failed for " + host);
+    }
+
+    private boolean isHandshaken(SSLEngine engine)
+    {
+        return engine.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING;
+    }
+
+    private boolean step(SSLEngine engine, ByteBuffer input, ByteBuffer output, ByteBuffer application) throws Exception
+    {
+        boolean progress = false;
+        while (true)
+        {
+            switch (engine.getHandshakeStatus())
+            {
+                case NEED_TASK:
+                    Runnable task;
+                    while ((task = engine.getDelegatedTask()) != null)
+                        task.run();
+                    progress = true;
+                    break;
+                case NEED_WRAP:
+                    if (engine.wrap(BufferUtil.EMPTY_BUFFER,output).bytesProduced() == 0)
+                        return progress;
+                    progress = true;
+                    break;
+                case NEED_UNWRAP:
+                    input.flip();
+                    SSLEngineResult result = engine.unwrap(input,application);
+                    input.compact();
+                    application.clear();
+                    if (result.bytesConsumed() == 0)
+                        return progress;
+                    progress = true;
+                    break;
+                default:
+                    return progress;
+            }
+        }
+    }
 }
@@ -23,6 +23,10 @@ import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.lessThan;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.hamcrest.Matchers;
 import org.junit.Assert;
@@ -77,4 +81,36 @@ public class CounterStatisticTest
         assertThat(count.getTotal(),equalTo(5L));
     }
 
+
+    @Test
+    public void testConcurrentCounter()
+        throws Exception
+    {
+        final CounterStatistic count = new CounterStatistic();
+        final int threads = 8;
+        final int loops = 100000;
+        final CountDownLatch latch = new CountDownLatch(threads);
+        for (int t=0;t<threads;t++)
+        {
+            new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for (int i=0;i<loops;i++)
+                    {
+                        count.increment();
+                        count.decrement();
+                    }
+                    latch.countDown();
+                }
+            }.start();
+        }
+
+        assertTrue(latch.await(30,TimeUnit.SECONDS));
+        assertThat(count.getCurrent(),equalTo(0L));
+        assertThat(count.getTotal(),equalTo((long)threads*loops));
+        assertThat(count.getMax(),greaterThan(0L));
+        assertThat(count.getMax(),Matchers.lessThanOrEqualTo((long)threads));
+    }
 }
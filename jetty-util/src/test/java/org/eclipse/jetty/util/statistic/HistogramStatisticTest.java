@@ -0,0 +1,136 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.util.statistic;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class HistogramStatisticTest
+{
+    @Test
+    public void testEmpty()
+    {
+        HistogramStatistic histogram = new HistogramStatistic();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(99), 0);
+        assertEquals(0.0, histogram.getMean(), 0.0);
+    }
+
+    @Test
+    public void testSmallValuesAreExact()
+    {
+        HistogramStatistic histogram = new HistogramStatistic();
+        for (int i = 1; i <= 10; ++i)
+            histogram.record(i);
+        histogram.record(-5);
+
+        assertEquals(11, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(0));
+        assertEquals(5, histogram.getValueAtPercentile(50));
+        assertEquals(10, histogram.getValueAtPercentile(100));
+        assertEquals(10, histogram.getMax());
+        assertEquals(55.0 / 11, histogram.getMean(), 0.0001);
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+    }
+
+    @Test
+    public void testRelativeError()
+    {
+        HistogramStatistic histogram = new HistogramStatistic();
+        Random random = new Random(13);
+        long[] samples = new long[100_000];
+        for (int i = 0; i < samples.length; ++i)
+        {
+            // Log-normal like distribution of durations, from ns to minutes.
+            samples[i] = (long)Math.exp(random.nextDouble() * 25);
+            histogram.record(samples[i]);
+        }
+        histogram.record(Long.MAX_VALUE);
+        Arrays.sort(samples);
+
+        assertEquals(samples.length + 1, histogram.getCount());
+        assertEquals(Long.MAX_VALUE, histogram.getMax());
+        for (double percentile : new double[]{10, 50, 90, 99, 99.9})
+        {
+            long expected = samples[(int)Math.ceil(percentile / 100 * (samples.length + 1)) - 1];
+            long value = histogram.getValueAtPercentile(percentile);
+            // The reported value is the largest equivalent value, within about 3%.
+            assertThat(value, greaterThanOrEqualTo(expected));
+            assertThat(value, lessThanOrEqualTo(expected + expected / 16 + 1));
+        }
+    }
+
+    @Test
+    public void testSnapshotAndReset()
+    {
+        HistogramStatistic histogram = new HistogramStatistic();
+        for (int i = 1; i <= 100; ++i)
+            histogram.record(i * 1000);
+
+        HistogramStatistic.Snapshot interval1 = histogram.snapshotAndReset();
+        assertEquals(100, interval1.getCount());
+        assertEquals(0, histogram.getCount());
+        assertThat(interval1.getValueAtPercentile(50), greaterThanOrEqualTo(50_000L));
+        assertThat(interval1.getValueAtPercentile(50), lessThanOrEqualTo(52_000L));
+
+        histogram.record(7);
+        HistogramStatistic.Snapshot interval2 = histogram.snapshotAndReset();
+        assertEquals(1, interval2.getCount());
+        assertEquals(7, interval2.getMax());
+
+        // Snapshots are not affected by later samples.
+        histogram.record(1_000_000);
+        assertEquals(1, interval2.getCount());
+        assertEquals(7, interval2.getMax());
+    }
+
+    @Test
+    public void testMerge()
+    {
+        HistogramStatistic histogram1 = new HistogramStatistic();
+        HistogramStatistic histogram2 = new HistogramStatistic();
+        for (int i = 0; i < 99; ++i)
+            histogram1.record(10);
+        histogram2.record(20);
+
+        HistogramStatistic.Snapshot merged = histogram1.snapshot().merge(histogram2.snapshot());
+        assertEquals(100, merged.getCount());
+        assertEquals(10, merged.getValueAtPercentile(99));
+        assertEquals(20, merged.getValueAtPercentile(100));
+        assertEquals(20, merged.getMax());
+        assertEquals(10.1, merged.getMean(), 0.0001);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMergeDifferentPrecisions()
+    {
+        new HistogramStatistic(5).snapshot().merge(new HistogramStatistic(7).snapshot());
+    }
+}
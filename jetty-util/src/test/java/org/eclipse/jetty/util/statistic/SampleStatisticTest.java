@@ -39,10 +39,10 @@ public class SampleStatisticTest
     private static double[][] results =
     { /* {mean,stddev}*/
         {100.0,0.0},
-        {100.0,Math.sqrt((10*10+10*10)/12.0)},
-        {100.0,Math.sqrt((10*10+10*10+5*5+5*5+3*3+3*3)/14.0)},
-        {100.0,Math.sqrt((10*10+10*10+5*5+5*5+3*3+3*3)/24.0)},
-        {100.0,Math.sqrt((10*10+10*10+5*5+5*5+3*3+3*3)/104.0)}
+        {100.0,Math.sqrt((10*10+10*10)/11.0)},
+        {100.0,Math.sqrt((10*10+10*10+5*5+5*5+3*3+3*3)/13.0)},
+        {100.0,Math.sqrt((10*10+10*10+5*5+5*5+3*3+3*3)/23.0)},
+        {100.0,Math.sqrt((10*10+10*10+5*5+5*5+3*3+3*3)/103.0)}
     };
 
 
@@ -63,6 +63,34 @@ public class SampleStatisticTest
         }
     }
 
+    @Test
+    public void testSmallCount()
+        throws Exception
+    {
+        SampleStatistic stats = new SampleStatistic();
+        stats.set(1);
+        assertEquals(0.0, stats.getVariance(), 0.0);
+
+        stats.set(3);
+        assertEquals(2, stats.getCount());
+        assertEquals(2.0, stats.getMean(), 0.0);
+        assertEquals(2.0, stats.getVariance(), 0.0);
+    }
+
+    @Test
+    public void testLargeSamples()
+        throws Exception
+    {
+        // Nanosecond sized samples, whose squares lose the variance to rounding.
+        SampleStatistic stats = new SampleStatistic();
+        for (int i=0;i<1000000;i++)
+            stats.set(1000000000L+(i%2==0?-10:10));
+
+        assertEquals(1000000, stats.getCount());
+        assertNearEnough("mean",1000000000.0, stats.getMean());
+        assertNearEnough("stddev",10.0, stats.getStdDev());
+    }
+
     private void assertNearEnough(String test,double expected, double actual)
     {
         Assert.assertThat(actual,Matchers.greaterThan(expected-0.1D));
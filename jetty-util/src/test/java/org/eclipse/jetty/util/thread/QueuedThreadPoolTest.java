@@ -18,8 +18,10 @@
 
 package org.eclipse.jetty.util.thread;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
@@ -29,6 +31,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.jetty.toolchain.test.AdvancedRunner;
 import org.eclipse.jetty.toolchain.test.annotation.Slow;
+import org.eclipse.jetty.util.ConcurrentArrayBlockingQueue;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.StdErrLog;
 import org.junit.Assert;
@@ -308,4 +311,170 @@ public class QueuedThreadPoolTest
 
         assertTrue(latch.await(5, TimeUnit.SECONDS));
     }
+
+    @Test
+    public void testConcurrentArrayBlockingQueue() throws Exception
+    {
+        QueuedThreadPool pool = new QueuedThreadPool(10, 2, 60000, new ConcurrentArrayBlockingQueue<Runnable>());
+        pool.start();
+        try
+        {
+            int jobs = 1000;
+            final CountDownLatch latch = new CountDownLatch(jobs);
+            for (int i = 0; i < jobs; ++i)
+            {
+                pool.execute(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        latch.countDown();
+                    }
+                });
+            }
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertEquals(0, pool.getQueueSize());
+        }
+        finally
+        {
+            pool.stop();
+        }
+    }
+
+    @Test
+    public void testQueueLatencyAndExecutionTime() throws Exception
+    {
+        QueuedThreadPool pool = new QueuedThreadPool(2, 1);
+        pool.setRecordJobTimes(true);
+        pool.start();
+        try
+        {
+            int jobs = 10;
+            final CountDownLatch latch = new CountDownLatch(jobs);
+            for (int i = 0; i < jobs; ++i)
+            {
+                pool.execute(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            Thread.sleep(10);
+                        }
+                        catch (InterruptedException x)
+                        {
+                            throw new RuntimeException(x);
+                        }
+                        latch.countDown();
+                    }
+                });
+            }
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            // The last job may still be recording its execution time.
+            Thread.sleep(100);
+
+            assertEquals(jobs, pool.getQueueLatency().getCount());
+            assertEquals(jobs, pool.getExecutionTime().getCount());
+            // At most 2 threads ran the jobs, so the last jobs waited in the queue.
+            assertThat(pool.getQueueLatencyMax(), greaterThanOrEqualTo(30000L));
+            assertThat(pool.getExecutionTimeP50(), greaterThanOrEqualTo(10000L));
+            assertTrue(pool.dump().contains("queue latency us: p50="));
+
+            pool.resetStatistics();
+            assertEquals(0, pool.getQueueLatency().getCount());
+        }
+        finally
+        {
+            pool.stop();
+        }
+    }
+
+    @Test
+    public void testLongLivedJobsAreNotTimed() throws Exception
+    {
+        QueuedThreadPool pool = new QueuedThreadPool(2, 1);
+        pool.setRecordJobTimes(true);
+        pool.start();
+        try
+        {
+            final CountDownLatch latch = new CountDownLatch(2);
+            pool.execute(new ThreadPool.LongLived()
+            {
+                @Override
+                public void run()
+                {
+                    latch.countDown();
+                }
+            });
+            pool.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    latch.countDown();
+                }
+            });
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            // The last job may still be recording its execution time.
+            Thread.sleep(100);
+
+            assertEquals(1, pool.getExecutionTime().getCount());
+            assertEquals(2, pool.getQueueLatency().getCount());
+        }
+        finally
+        {
+            pool.stop();
+        }
+    }
+
+    @Test
+    public void testJobTimesNotRecordedByDefault() throws Exception
+    {
+        QueuedThreadPool pool = new QueuedThreadPool(2, 1);
+        pool.start();
+        try
+        {
+            final CountDownLatch latch = new CountDownLatch(1);
+            pool.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    latch.countDown();
+                }
+            });
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            Thread.sleep(100);
+
+            assertEquals(0, pool.getQueueLatency().getCount());
+            assertEquals(0, pool.getExecutionTime().getCount());
+        }
+        finally
+        {
+            pool.stop();
+        }
+    }
+
+    @Test
+    public void testReservedThreadExecutorIsManaged() throws Exception
+    {
+        QueuedThreadPool pool = new QueuedThreadPool();
+        pool.setReservedThreads(1);
+        pool.start();
+        ReservedThreadExecutor reserved = pool.getReservedThreadExecutor();
+        try
+        {
+            assertTrue(reserved.isStarted());
+            assertTrue(pool.getBeans(ReservedThreadExecutor.class).contains(reserved));
+            assertThat(pool.dump(), containsString(ReservedThreadExecutor.class.getSimpleName()));
+        }
+        finally
+        {
+            pool.stop();
+        }
+
+        assertTrue(reserved.isStopped());
+        assertFalse(pool.getBeans(ReservedThreadExecutor.class).contains(reserved));
+    }
 }
@@ -0,0 +1,223 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.util.thread;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jetty.util.thread.strategy.ExecuteProduceConsume;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReservedThreadExecutorTest
+{
+    private static final int CAPACITY = 3;
+
+    private TestExecutor _executor;
+    private ReservedThreadExecutor _reserved;
+
+    @Before
+    public void before() throws Exception
+    {
+        _executor = new TestExecutor();
+        _reserved = new ReservedThreadExecutor(_executor, CAPACITY);
+        _reserved.start();
+    }
+
+    @After
+    public void after() throws Exception
+    {
+        _reserved.stop();
+    }
+
+    @Test
+    public void testStarted() throws Exception
+    {
+        Assert.assertEquals(CAPACITY, _executor._executions.size());
+        waitForAvailable(CAPACITY);
+        Assert.assertEquals(0, _reserved.getPending());
+    }
+
+    @Test
+    public void testHandoff() throws Exception
+    {
+        waitForAvailable(CAPACITY);
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<Thread> thread = new AtomicReference<>();
+        Assert.assertTrue(_reserved.tryExecute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                thread.set(Thread.currentThread());
+                latch.countDown();
+            }
+        }));
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertNotSame(Thread.currentThread(), thread.get());
+
+        // The thread is reserved again after running the task.
+        waitForAvailable(CAPACITY);
+        Assert.assertEquals(CAPACITY, _executor._executions.size());
+        Assert.assertEquals(1, _reserved.getHandoffs());
+        Assert.assertEquals(0, _reserved.getMisses());
+        Assert.assertEquals(1.0, _reserved.getHandoffRatio(), 0.0);
+    }
+
+    @Test
+    public void testMissWhenAllBusy() throws Exception
+    {
+        waitForAvailable(CAPACITY);
+
+        final CountDownLatch busy = new CountDownLatch(CAPACITY);
+        final CountDownLatch release = new CountDownLatch(1);
+        Runnable blocking = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                busy.countDown();
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException x)
+                {
+                    throw new RuntimeException(x);
+                }
+            }
+        };
+        for (int i = 0; i < CAPACITY; ++i)
+            Assert.assertTrue(_reserved.tryExecute(blocking));
+        Assert.assertTrue(busy.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, _reserved.getAvailable());
+
+        // No thread available, the task is not executed,
+        // and a new thread is reserved to replace the busy ones.
+        _executor._executions.clear();
+        Assert.assertFalse(_reserved.tryExecute(blocking));
+        Assert.assertEquals(1, _reserved.getMisses());
+        Assert.assertEquals(0.75, _reserved.getHandoffRatio(), 0.0);
+        Assert.assertEquals(1, _executor._executions.size());
+        waitForAvailable(1);
+
+        // When the busy threads complete, they fill the reserve up to capacity and no more.
+        release.countDown();
+        waitForAvailable(CAPACITY);
+        Thread.sleep(100);
+        Assert.assertEquals(CAPACITY, _reserved.getAvailable());
+    }
+
+    @Test
+    public void testStop() throws Exception
+    {
+        waitForAvailable(CAPACITY);
+        _reserved.stop();
+        Assert.assertEquals(0, _reserved.getAvailable());
+        for (Thread thread : _executor._threads)
+            thread.join(5000);
+        for (Thread thread : _executor._threads)
+            Assert.assertFalse(thread.isAlive());
+        Assert.assertFalse(_reserved.tryExecute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+            }
+        }));
+    }
+
+    @Test
+    public void testExecuteProduceConsumeHandsOffProduction() throws Exception
+    {
+        QueuedThreadPool threadPool = new QueuedThreadPool();
+        threadPool.setReservedThreads(1);
+        threadPool.start();
+        try
+        {
+            final ReservedThreadExecutor reserved = threadPool.getReservedThreadExecutor();
+            Assert.assertNotNull(reserved);
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (reserved.getAvailable() < 1 && System.nanoTime() < end)
+                Thread.sleep(10);
+
+            final int count = 10;
+            final CountDownLatch latch = new CountDownLatch(count);
+            final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+            for (int i = 0; i < count; ++i)
+            {
+                tasks.offer(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        latch.countDown();
+                    }
+                });
+            }
+            ExecutionStrategy strategy = new ExecuteProduceConsume(new ExecutionStrategy.Producer()
+            {
+                @Override
+                public Runnable produce()
+                {
+                    return tasks.poll();
+                }
+            }, threadPool);
+            strategy.execute();
+
+            Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+            Assert.assertTrue(reserved.getHandoffs() > 0);
+        }
+        finally
+        {
+            threadPool.stop();
+        }
+    }
+
+    private void waitForAvailable(int size) throws InterruptedException
+    {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (_reserved.getAvailable() < size && System.nanoTime() < end)
+            Thread.sleep(10);
+        Assert.assertEquals(size, _reserved.getAvailable());
+    }
+
+    private static class TestExecutor implements Executor
+    {
+        private final Queue<Runnable> _executions = new ConcurrentLinkedQueue<>();
+        private final Queue<Thread> _threads = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public void execute(Runnable task)
+        {
+            _executions.offer(task);
+            Thread thread = new Thread(task);
+            _threads.offer(thread);
+            thread.start();
+        }
+    }
+}
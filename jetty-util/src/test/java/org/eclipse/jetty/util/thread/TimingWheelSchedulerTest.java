@@ -0,0 +1,165 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.thread;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.toolchain.test.AdvancedRunner;
+import org.eclipse.jetty.toolchain.test.annotation.Stress;
+import org.hamcrest.Matchers;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AdvancedRunner.class)
+public class TimingWheelSchedulerTest
+{
+    private TimingWheelScheduler _scheduler;
+
+    @Before
+    public void before() throws Exception
+    {
+        // A small wheel, so that tasks wait for several rotations.
+        _scheduler = new TimingWheelScheduler(null, true, 10, TimeUnit.MILLISECONDS, 6);
+        _scheduler.start();
+    }
+
+    @After
+    public void after() throws Exception
+    {
+        _scheduler.stop();
+    }
+
+    @Test
+    public void testWheelSizeRoundedToPowerOfTwo() throws Exception
+    {
+        Assert.assertEquals(8, _scheduler.getWheelSize());
+        Assert.assertEquals(10, _scheduler.getTickDuration(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testExecutionAfterSeveralRotations() throws Exception
+    {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicLong executed = new AtomicLong();
+        long delay = 250;
+        long start = System.nanoTime();
+        _scheduler.schedule(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                executed.set(System.nanoTime());
+                latch.countDown();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(executed.get() - start);
+        Assert.assertThat(elapsed, Matchers.greaterThanOrEqualTo(delay));
+        Assert.assertEquals(0, _scheduler.getSize());
+    }
+
+    @Test
+    public void testCancelledTasksAreRemoved() throws Exception
+    {
+        final AtomicLong executed = new AtomicLong();
+        Runnable task = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                executed.incrementAndGet();
+            }
+        };
+
+        int count = 1000;
+        Scheduler.Task[] tasks = new Scheduler.Task[count];
+        for (int i = 0; i < count; ++i)
+            tasks[i] = _scheduler.schedule(task, 100 + i % 100, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(count, _scheduler.getSize());
+
+        for (int i = 0; i < count; i += 2)
+            Assert.assertTrue(tasks[i].cancel());
+        Assert.assertFalse(tasks[0].cancel());
+        Assert.assertEquals(count / 2, _scheduler.getSize());
+
+        Thread.sleep(500);
+        Assert.assertEquals(count / 2, executed.get());
+        Assert.assertEquals(0, _scheduler.getSize());
+        Assert.assertFalse(tasks[1].cancel());
+    }
+
+    @Test
+    public void testScheduleWhenStopped() throws Exception
+    {
+        _scheduler.stop();
+        Scheduler.Task task = _scheduler.schedule(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+            }
+        }, 10, TimeUnit.MILLISECONDS);
+        Assert.assertFalse(task.cancel());
+    }
+
+    @Stress("High CPU")
+    @Test
+    public void testScheduleCancelBenchmark() throws Exception
+    {
+        Scheduler[] schedulers = new Scheduler[]{new TimingWheelScheduler(), new ScheduledExecutorScheduler(), new TimerScheduler()};
+        Runnable task = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+            }
+        };
+
+        int tasks = 500_000;
+        for (Scheduler scheduler : schedulers)
+        {
+            scheduler.start();
+            try
+            {
+                for (int run = 0; run < 3; ++run)
+                {
+                    Scheduler.Task[] scheduled = new Scheduler.Task[tasks];
+                    long begin = System.nanoTime();
+                    // Idle timeout like usage: long delays, mostly cancelled before expiring.
+                    for (int i = 0; i < tasks; ++i)
+                        scheduled[i] = scheduler.schedule(task, 30_000 + i % 1000, TimeUnit.MILLISECONDS);
+                    for (int i = 0; i < tasks; ++i)
+                        scheduled[i].cancel();
+                    long elapsed = System.nanoTime() - begin;
+                    System.err.printf("%s: %d schedule+cancel in %d ms%n", scheduler.getClass().getSimpleName(), tasks, TimeUnit.NANOSECONDS.toMillis(elapsed));
+                }
+            }
+            finally
+            {
+                scheduler.stop();
+            }
+        }
+    }
+}
@@ -0,0 +1,261 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2015 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.util.thread.strategy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.thread.ExecutionStrategy;
+import org.eclipse.jetty.util.thread.ExecutionStrategy.Producer;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ReservedThreadExecutor;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AdaptiveExecutionStrategyTest
+{
+    private final Queue<Runnable> _produce = new ConcurrentLinkedQueue<>();
+    private final Queue<Runnable> _executions = new ConcurrentLinkedQueue<>();
+    private AdaptiveExecutionStrategy _strategy;
+
+    @Before
+    public void before()
+    {
+        Producer producer = new Producer()
+        {
+            @Override
+            public Runnable produce()
+            {
+                return _produce.poll();
+            }
+        };
+
+        Executor executor = new Executor()
+        {
+            @Override
+            public void execute(Runnable task)
+            {
+                _executions.add(task);
+            }
+        };
+
+        _strategy = new AdaptiveExecutionStrategy(producer,executor,10,TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void testNonBlockingTasksRunWithoutHandoff()
+    {
+        int count = 10;
+        NonBlockingTask[] tasks = new NonBlockingTask[count];
+        for (int i=0;i<count;i++)
+            _produce.add(tasks[i]=new NonBlockingTask());
+
+        _strategy.execute();
+
+        for (NonBlockingTask task : tasks)
+            assertSame(Thread.currentThread(),task._thread);
+        assertTrue(_executions.isEmpty());
+        assertEquals(count,_strategy.getProduceConsumed());
+        assertEquals(0,_strategy.getExecuteProduceConsumed());
+        assertTrue(_strategy.isIdle());
+    }
+
+    @Test
+    public void testBlockingTaskHandsOffProduction()
+    {
+        BlockingTask blocking = new BlockingTask();
+        NonBlockingTask nonBlocking = new NonBlockingTask();
+        _produce.add(blocking);
+        _produce.add(nonBlocking);
+
+        _strategy.execute();
+
+        // The blocking task ran in this thread, after production was handed off.
+        assertTrue(blocking._ran);
+        assertEquals(1,_strategy.getExecuteProduceConsumed());
+        assertSame(_strategy,_executions.poll());
+        assertTrue(_executions.isEmpty());
+
+        // The dispatched thread has not yet run, so this thread resumed production.
+        assertSame(Thread.currentThread(),nonBlocking._thread);
+        assertEquals(1,_strategy.getProduceConsumed());
+        assertTrue(_strategy.isIdle());
+
+        // The dispatched thread finds nothing to produce.
+        _strategy.run();
+        assertTrue(_strategy.isIdle());
+        assertTrue(_executions.isEmpty());
+    }
+
+    @Test
+    public void testUndeclaredTasksAreNeverRunWithoutHandoff()
+    {
+        Runnable task = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+            }
+        };
+
+        // However fast, undeclared tasks may block, so production is always handed off.
+        int count = 50;
+        for (int i=0;i<count;i++)
+        {
+            _produce.add(task);
+            _strategy.execute();
+            assertSame(_strategy,_executions.poll());
+            _strategy.run();
+        }
+        assertEquals(0,_strategy.getProduceConsumed());
+        assertEquals(count,_strategy.getExecuteProduceConsumed());
+        assertTrue(_executions.isEmpty());
+    }
+
+    @Test
+    public void testSlowUndeclaredTasksAreExecuted()
+    {
+        final int[] runs = new int[1];
+        final long[] sleep = new long[]{20};
+        Runnable task = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                runs[0]++;
+                try
+                {
+                    Thread.sleep(sleep[0]);
+                }
+                catch (InterruptedException x)
+                {
+                    throw new RuntimeException(x);
+                }
+            }
+        };
+
+        // An unknown task is run after handing off production, and measured as slow.
+        _produce.add(task);
+        _strategy.execute();
+        assertEquals(1,_strategy.getExecuteProduceConsumed());
+        assertSame(_strategy,_executions.poll());
+        _strategy.run();
+
+        // A slow task is executed, and this thread keeps producing.
+        _produce.add(task);
+        _strategy.execute();
+        assertEquals(1,_strategy.getProduceExecuteConsumed());
+        assertEquals(1,_executions.size());
+        assertEquals(1,runs[0]);
+        assertTrue(_strategy.isIdle());
+
+        // The executed task is still measured, so it is reclassified once fast.
+        sleep[0] = 0;
+        Runnable executed = _executions.poll();
+        int produced = 0;
+        while (executed!=_strategy)
+        {
+            assertTrue(++produced<100);
+            executed.run();
+            _produce.add(task);
+            _strategy.execute();
+            executed = _executions.poll();
+        }
+        _strategy.run();
+        assertEquals(2,_strategy.getExecuteProduceConsumed());
+        assertEquals(produced+2,runs[0]);
+    }
+
+    @Test
+    public void testTaskRunWhenExecuteRejected()
+    {
+        Producer producer = new Producer()
+        {
+            @Override
+            public Runnable produce()
+            {
+                return _produce.poll();
+            }
+        };
+
+        // No reserved thread can take over production and the tasks are rejected.
+        QueuedThreadPool threadpool = new QueuedThreadPool()
+        {
+            private final ReservedThreadExecutor _reserved = new ReservedThreadExecutor(this,1);
+
+            @Override
+            public ReservedThreadExecutor getReservedThreadExecutor()
+            {
+                return _reserved;
+            }
+
+            @Override
+            public void execute(Runnable job)
+            {
+                throw new RejectedExecutionException(job.toString());
+            }
+        };
+        AdaptiveExecutionStrategy strategy = new AdaptiveExecutionStrategy(producer,threadpool,10,TimeUnit.MILLISECONDS);
+
+        BlockingTask blocking = new BlockingTask();
+        NonBlockingTask nonBlocking = new NonBlockingTask();
+        _produce.add(blocking);
+        _produce.add(nonBlocking);
+
+        strategy.execute();
+
+        // The rejected task ran in this thread, which then resumed production.
+        assertTrue(blocking._ran);
+        assertEquals(1,strategy.getExecuteProduceConsumed());
+        assertEquals(0,strategy.getProduceExecuteConsumed());
+        assertSame(Thread.currentThread(),nonBlocking._thread);
+        assertEquals(1,strategy.getProduceConsumed());
+        assertTrue(strategy.isIdle());
+    }
+
+    private static class NonBlockingTask implements ExecutionStrategy.NonBlocking
+    {
+        private volatile Thread _thread;
+
+        @Override
+        public void run()
+        {
+            _thread = Thread.currentThread();
+        }
+    }
+
+    private static class BlockingTask implements ExecutionStrategy.Task
+    {
+        private volatile boolean _ran;
+
+        @Override
+        public void run()
+        {
+            _ran = true;
+        }
+    }
+}
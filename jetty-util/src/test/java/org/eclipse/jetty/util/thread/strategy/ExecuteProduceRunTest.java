@@ -27,10 +27,13 @@ import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.eclipse.jetty.util.BlockingArrayQueue;
 import org.eclipse.jetty.util.ConcurrentArrayQueue;
 import org.eclipse.jetty.util.thread.ExecutionStrategy.Producer;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ReservedThreadExecutor;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -330,7 +333,49 @@ public class ExecuteProduceRunTest
         t1.unblock();
         thread0.join();
     }
-    
+
+    @Test
+    public void testProduceWhenExecuteRejected()
+    {
+        Producer producer = new Producer()
+        {
+            @Override
+            public Runnable produce()
+            {
+                return _produce.poll();
+            }
+        };
+
+        // No reserved thread can take over production and the tasks are rejected.
+        QueuedThreadPool threadpool = new QueuedThreadPool()
+        {
+            private final ReservedThreadExecutor _reserved = new ReservedThreadExecutor(this,1);
+
+            @Override
+            public ReservedThreadExecutor getReservedThreadExecutor()
+            {
+                return _reserved;
+            }
+
+            @Override
+            public void execute(Runnable job)
+            {
+                throw new RejectedExecutionException(job.toString());
+            }
+        };
+        ExecuteProduceConsume ewyk = new ExecuteProduceConsume(producer,threadpool);
+
+        Task t0 = new Task();
+        Task t1 = new Task();
+        _produce.add(t0);
+        _produce.add(t1);
+        ewyk.execute();
+
+        // The tasks are run by this thread, which keeps producing until idle.
+        assertThat(t0.hasRun(),equalTo(true));
+        assertThat(t1.hasRun(),equalTo(true));
+        assertThat(ewyk.isIdle(),equalTo(true));
+    }
 
     public static class Task implements Runnable
     {
@@ -88,6 +88,7 @@ public class WebSocketClientSelectorManager extends SelectorManager
                     SSLEngine engine = newSSLEngine(sslContextFactory,channel);
                     SslConnection sslConnection = new SslConnection(bufferPool,getExecutor(),endPoint,engine);
                     sslConnection.setRenegotiationAllowed(sslContextFactory.isRenegotiationAllowed());
+                    sslConnection.setDynamicRecordSizing(sslContextFactory);
                     EndPoint sslEndPoint = sslConnection.getDecryptedEndPoint();
 
                     Connection connection = newUpgradeConnection(channel,sslEndPoint,connectPromise);